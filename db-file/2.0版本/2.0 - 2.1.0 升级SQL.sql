@@ -8,3 +8,29 @@ where parent_ids like '0,1314068325453574145,1314071137365307394%'
 delete ref from sys_role_menu_ref ref
 left join sys_menu m on m.id = ref.menu_id
 where m.id is null;
+
+
+-- 组织机构闭包表 数据权限 部门及以下 半连接查询
+DROP TABLE IF EXISTS `sys_org_closure`;
+CREATE TABLE `sys_org_closure` (
+  `ancestor_id` bigint(19) NOT NULL COMMENT '祖先主键',
+  `descendant_id` bigint(19) NOT NULL COMMENT '后代主键',
+  `depth` int(11) NOT NULL DEFAULT '0' COMMENT '层级深度 自身为0',
+  PRIMARY KEY (`ancestor_id`,`descendant_id`) USING BTREE,
+  KEY `descendant_id` (`descendant_id`) USING BTREE COMMENT '后代id'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='组织机构闭包表';
+
+-- 根据 org_ids 回填闭包表
+INSERT INTO `sys_org_closure` (`ancestor_id`, `descendant_id`, `depth`)
+SELECT a.id, d.id,
+       (LENGTH(d.org_ids) - LENGTH(REPLACE(d.org_ids, ',', ''))) -
+       (LENGTH(a.org_ids) - LENGTH(REPLACE(a.org_ids, ',', '')))
+FROM sys_org a
+INNER JOIN sys_org d ON d.org_ids = a.org_ids OR d.org_ids LIKE CONCAT(a.org_ids, ',%');
+
+-- 组织机构用户关联表 按组织ID 闭包表半连接
+ALTER TABLE `sys_user_org_ref` ADD INDEX `sys_org_user_org_id` (`org_id`) USING BTREE COMMENT '组织id 闭包表半连接';
+
+-- 系统监控 限流QPS 运行时调整权限
+INSERT INTO `sys_menu` VALUES (1651151183402659841, 1351012936860155906, '0,1314610817013919745,1351012936860155906,1651151183402659841', '限流配置', 'devops_sysmonitor_update', '', '0', '2', NULL, NULL, NULL, 2, '0', '0', '0', 0, 1, '2023-04-26 14:20:00', 1, '2023-04-26 14:20:00', '2023-04-26 14:20:00');
+INSERT INTO `sys_role_menu_ref` VALUES (1651151183402659842, 1651151183402659841, 2);
@@ -4201,6 +4201,7 @@ INSERT INTO `sys_menu` VALUES (1340626988251766786, 1340626549594677250, '0,1327
 INSERT INTO `sys_menu` VALUES (1340627032942075906, 1340626549594677250, '0,1327085543511293954,1340626549594677250,1340627032942075906', '导出', 'gentest_carinfo_export', '', '0,1', '2', NULL, NULL, NULL, 6, '0', '0', '0', 7, 1313694379541635074, '2020-12-20 19:56:07', 1, '2022-04-29 16:36:49', '2022-08-07 00:18:15');
 INSERT INTO `sys_menu` VALUES (1351012936860155906, 1314610817013919745, '0,1314610817013919745,1351012936860155906', '系统监控', NULL, '', '0', '1', 'sysmonitor', 'views/modules/system/monitorManagement/index', NULL, 1, '0', '0', '0', 1, 1313694379541635074, '2021-01-18 11:45:59', 1313694379541635074, '2021-01-18 11:47:15', '2022-04-29 17:28:43');
 INSERT INTO `sys_menu` VALUES (1351013587816136705, 1351012936860155906, '0,1314610817013919745,1351012936860155906,1351013587816136705', '查看', 'devops_sysmonitor_select', '', '0', '2', NULL, NULL, NULL, 1, '0', '0', '0', 0, 1, '2021-01-18 11:48:35', 1, '2021-01-18 11:48:35', '2022-04-29 17:29:44');
+INSERT INTO `sys_menu` VALUES (1651151183402659841, 1351012936860155906, '0,1314610817013919745,1351012936860155906,1651151183402659841', '限流配置', 'devops_sysmonitor_update', '', '0', '2', NULL, NULL, NULL, 2, '0', '0', '0', 0, 1, '2023-04-26 14:20:00', 1, '2023-04-26 14:20:00', '2023-04-26 14:20:00');
 INSERT INTO `sys_menu` VALUES (1360233188433977345, 1, '0,1,1360233188433977345', '系统设置', NULL, '', '0', '1', 'set', 'views/modules/system/setManagement/index', NULL, 99, '0', '0', '0', 4, 1313694379541635074, '2021-02-12 22:23:59', 1, '2021-04-29 13:01:24', '2022-04-29 17:28:43');
 INSERT INTO `sys_menu` VALUES (1360233383397810177, 1360233188433977345, '0,1,1360233188433977345,1360233383397810177', '更新', 'system_options_update', '', '0', '2', NULL, NULL, NULL, 1, '0', '0', '0', 2, 1313694379541635074, '2021-02-12 22:24:45', 1313694379541635074, '2021-02-14 01:37:07', '2022-04-29 17:29:44');
 INSERT INTO `sys_menu` VALUES (1370051609388388353, 3, '0,1460639200696160257,3,1370051609388388353', '重置密码', 'system_user_resetPassword', '', '0,1', '2', NULL, NULL, NULL, 10, '0', '0', '0', 1, 1, '2021-03-12 00:38:53', 1, '2021-03-12 00:39:04', '2022-04-29 17:29:44');
@@ -4340,6 +4341,30 @@ INSERT INTO `sys_org` VALUES (1465996676186124290, 1401861575953842177, '0,14018
 INSERT INTO `sys_org` VALUES (1622857274103009281, 1332710973848449026, '0,1332710973848449026', '0,1332710973848449026,1622857274103009281', '0011_123444', '12344', 1, '1234', 1, '0', 0, 1465879900211294210, '2023-02-07 15:18:20', 1465879900211294210, '2023-02-07 15:18:20', '2023-02-07 15:18:20');
 COMMIT;
 
+-- ----------------------------
+-- Table structure for sys_org_closure
+-- ----------------------------
+DROP TABLE IF EXISTS `sys_org_closure`;
+CREATE TABLE `sys_org_closure` (
+  `ancestor_id` bigint(19) NOT NULL COMMENT '祖先主键',
+  `descendant_id` bigint(19) NOT NULL COMMENT '后代主键',
+  `depth` int(11) NOT NULL DEFAULT '0' COMMENT '层级深度 自身为0',
+  PRIMARY KEY (`ancestor_id`,`descendant_id`) USING BTREE,
+  KEY `descendant_id` (`descendant_id`) USING BTREE COMMENT '后代id'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='组织机构闭包表';
+
+-- ----------------------------
+-- Records of sys_org_closure
+-- ----------------------------
+BEGIN;
+INSERT INTO `sys_org_closure` (`ancestor_id`, `descendant_id`, `depth`)
+SELECT a.id, d.id,
+       (LENGTH(d.org_ids) - LENGTH(REPLACE(d.org_ids, ',', ''))) -
+       (LENGTH(a.org_ids) - LENGTH(REPLACE(a.org_ids, ',', '')))
+FROM sys_org a
+INNER JOIN sys_org d ON d.org_ids = a.org_ids OR d.org_ids LIKE CONCAT(a.org_ids, ',%');
+COMMIT;
+
 -- ----------------------------
 -- Table structure for sys_role
 -- ----------------------------
@@ -4597,6 +4622,7 @@ INSERT INTO `sys_role_menu_ref` VALUES (1465888325427200038, 1340627032942075906
 INSERT INTO `sys_role_menu_ref` VALUES (1504780316210511893, 1340627032942075906, 1463431580473810945);
 INSERT INTO `sys_role_menu_ref` VALUES (1505730836832075817, 1351012936860155906, 2);
 INSERT INTO `sys_role_menu_ref` VALUES (1505730836832075818, 1351013587816136705, 2);
+INSERT INTO `sys_role_menu_ref` VALUES (1651151183402659842, 1651151183402659841, 2);
 INSERT INTO `sys_role_menu_ref` VALUES (1505730836832075809, 1360233188433977345, 2);
 INSERT INTO `sys_role_menu_ref` VALUES (1505730836832075810, 1360233383397810177, 2);
 INSERT INTO `sys_role_menu_ref` VALUES (1465888361674375181, 1370051609388388353, 1448924680386441217);
@@ -4765,7 +4791,8 @@ CREATE TABLE `sys_user_org_ref` (
   `org_ids` varchar(500) NOT NULL COMMENT '组织机构组',
   `iz_def` char(1) NOT NULL COMMENT '是否默认',
   PRIMARY KEY (`id`) USING BTREE,
-  KEY `sys_org_user` (`user_id`,`org_ids`) USING BTREE
+  KEY `sys_org_user` (`user_id`,`org_ids`) USING BTREE,
+  KEY `sys_org_user_org_id` (`org_id`) USING BTREE COMMENT '组织id 闭包表半连接'
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='组织机构用户关联表';
 
 -- ----------------------------
@@ -62,12 +62,14 @@ public interface SysAreaRestApi {
     ResultWrapper<?> findTree(String parentId);
 
     /**
-     * 组织树
+     * 组织树 (树快照 支持 ETag 协商缓存)
      * @param deep 层级
-     * @return ResultWrapper
+     * @param request request
+     * @param response response
      */
     @GetMapping("/findTreeAll")
-    ResultWrapper<?> findTreeAll(@RequestParam(name = "deep", defaultValue = "3", required = false) Integer deep);
+    void findTreeAll(@RequestParam(name = "deep", defaultValue = "3", required = false) Integer deep,
+                     HttpServletRequest request, HttpServletResponse response);
 
     /**
     * 组织机构表 新增
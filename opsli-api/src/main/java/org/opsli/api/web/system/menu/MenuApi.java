@@ -76,11 +76,12 @@ public interface MenuApi {
     ResultWrapper<?> findMenuTreeByLazy(String parentId, String id);
 
     /**
-     * 获得当前用户登录菜单
-     * @return ResultWrapper
+     * 获得当前用户登录菜单 (树快照 支持 ETag 协商缓存)
+     * @param request request
+     * @param response response
      */
     @PostMapping("/findMenuTree")
-    ResultWrapper<?> findMenuTree();
+    void findMenuTree(HttpServletRequest request, HttpServletResponse response);
 
 
     /**
@@ -53,20 +53,22 @@ public interface SysOrgRestApi {
     ResultWrapper<?> findTreeLazy(String parentId, String id);
 
     /**
-     * 获得全量树 包含默认节点
+     * 获得全量树 包含默认节点 (树快照 支持 ETag 协商缓存)
      * @param isGen 是否包含根节点
      * @param id 忽略自身ID
-     * @return ResultWrapper
+     * @param request request
+     * @param response response
      */
     @GetMapping("/findTreeByDef")
-    ResultWrapper<?> findTreeByDef(boolean isGen, String id);
+    void findTreeByDef(boolean isGen, String id, HttpServletRequest request, HttpServletResponse response);
 
     /**
-     * 获得当前用户下 组织
-     * @return ResultWrapper
+     * 获得当前用户下 组织 (树快照 支持 ETag 协商缓存)
+     * @param request request
+     * @param response response
      */
     @GetMapping("/findTreeByDefWithUserToLike")
-    ResultWrapper<?> findTreeByDefWithUserToLike();
+    void findTreeByDefWithUserToLike(HttpServletRequest request, HttpServletResponse response);
 
     // ================
 
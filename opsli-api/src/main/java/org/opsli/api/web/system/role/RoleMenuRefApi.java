@@ -27,6 +27,7 @@ import org.springframework.web.multipart.MultipartHttpServletRequest;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.List;
 
 
 /**
@@ -83,4 +84,13 @@ public interface RoleMenuRefApi {
     @ApiVersion(2)
     ResultWrapper<?> setPermsV2(@RequestBody RoleMenuRefModel model);
 
+    /**
+     * 根据角色ID 获得权限标识
+     * @param roleId 角色Id
+     * @param label 标签
+     * @return ResultWrapper
+     */
+    //@GetMapping("/getPermsByRoleId")
+    ResultWrapper<List<String>> getPermsByRoleId(String roleId, String label);
+
 }
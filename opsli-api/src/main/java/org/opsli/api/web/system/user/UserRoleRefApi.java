@@ -70,6 +70,14 @@ public interface UserRoleRefApi {
     //@GetMapping("/getRolesByUserId")
     ResultWrapper<List<String>> getRolesByUserId(String userId);
 
+    /**
+     * 根据 userId 获得用户角色ID
+     * @param userId 用户Id
+     * @return ResultWrapper
+     */
+    //@GetMapping("/getRoleIdsByUserId")
+    ResultWrapper<List<String>> getRoleIdsByUserId(String userId);
+
     /**
      * 根据 userId 获得用户默认角色
      * @param userId 用户Id
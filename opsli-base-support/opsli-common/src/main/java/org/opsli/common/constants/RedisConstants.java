@@ -24,6 +24,12 @@ public final class RedisConstants {
 	/** 用户搜索记录 */
 	public static final String PREFIX_HIS_USERNAME = "zset#{}:his:username:";
 
+	/** 限流令牌桶 */
+	public static final String PREFIX_LIMITER = "hash#{}:limiter:";
+
+	/** 限流 QPS 覆盖 (运行时调整) */
+	public static final String PREFIX_LIMITER_QPS = "hash#{}:limiter_qps";
+
 
 
 	/** 用户ID */
@@ -32,6 +38,9 @@ public final class RedisConstants {
 	/** 用户ID 和 角色 */
 	public static final String PREFIX_USER_ID_AND_ROLES = "kv#{}:user_id:roles:";
 
+	/** 用户ID 和 角色ID */
+	public static final String PREFIX_USER_ID_ROLE_IDS = "kv#{}:user_id:role_ids:";
+
 	/** 用户ID 和 默认角色 */
 	public static final String PREFIX_USER_ID_DEF_ROLE = "kv#{}:user_id:def_role_id:";
 
@@ -47,6 +56,18 @@ public final class RedisConstants {
 	/** 用户ID 和 菜单 */
 	public static final String PREFIX_USER_ID_MENUS = "kv#{}:user_id:menus:";
 
+	/** 角色ID 和 权限 */
+	public static final String PREFIX_ROLE_ID_PERMISSIONS = "kv#{}:role_id:permissions:";
+
+	/** 用户权限代数 (用户角色关系变动时自增) */
+	public static final String PREFIX_GENERATION_USER = "kv#{}:generation:user:";
+
+	/** 角色权限代数 (角色 / 角色菜单变动时自增) */
+	public static final String PREFIX_GENERATION_ROLE = "kv#{}:generation:role:";
+
+	/** 组织代数 (组织机构变动时自增) */
+	public static final String PREFIX_GENERATION_ORG = "kv#{}:generation:org";
+
 	/** 用户名 + 用户ID */
 	public static final String PREFIX_USER_USERNAME = "kv#{}:user:username_id:";
 	/** 手机号 + 用户ID */
@@ -79,6 +100,8 @@ public final class RedisConstants {
 	public static final String PREFIX_TMP_EXCEL_EXPORT_NUM_NAME = "kv#{}:excel-export-num";
 	/** Excel 导出 凭证 */
 	public static final String PREFIX_TMP_EXCEL_EXPORT_NAME = "kv#{}:excel-export:";
+	/** Excel 异步任务 进度 */
+	public static final String PREFIX_TMP_EXCEL_JOB_NAME = "kv#{}:excel-job:";
 
 	public static final String PREFIX_ID_INCR = "kv#{}:id_incr:";
 
@@ -0,0 +1,263 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.common.thread;
+
+import cn.hutool.core.collection.CollUtil;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * 有界批量写入缓冲区
+ *
+ * 生产者只做非阻塞入队，由单独的后台线程按 批次大小 / 刷新间隔 两个条件合并写出
+ * 队列水位超过高水位线后按采样率接收，队列满时直接丢弃，保证调用方永远不会被阻塞
+ * 停止时不中断写出线程, 由写出线程写完当前批次 并在入队全部结束后 写出剩余数据, 停止后的入队计入丢弃数
+ *
+ * @author Parker
+ * @date 2023-04-12 14:20
+ */
+@Slf4j
+public class BatchWriteBuffer<T> {
+
+	/** 高水位线 (队列容量百分比) */
+	private static final int HIGH_WATERMARK_PERCENT = 75;
+
+	/** 丢弃日志打印间隔 (每丢弃 N 条打印一次) */
+	private static final long DROP_LOG_INTERVAL = 1000L;
+
+	/** 缓冲区名称 */
+	private final String name;
+
+	/** 有界队列 */
+	private final BlockingQueue<T> queue;
+
+	/** 单批次最大条数 */
+	private final int batchSize;
+
+	/** 刷新间隔 (纳秒) */
+	private final long flushIntervalNanos;
+
+	/** 高水位线 */
+	private final int highWatermark;
+
+	/** 超过高水位线后的采样率 (每 N 条接收 1 条) */
+	private final int sampleRate;
+
+	/** 批量写出处理器 */
+	private final Consumer<List<T>> writer;
+
+	/** 写出线程 */
+	private final Thread worker;
+
+	/** 采样计数器 */
+	private final AtomicLong sampleCounter = new AtomicLong();
+
+	/** 丢弃数 */
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	/** 成功写出数 */
+	private final AtomicLong writtenCount = new AtomicLong();
+
+	/** 写出失败数 */
+	private final AtomicLong failedCount = new AtomicLong();
+
+	/** 入队锁 入队持有读锁, 停止后写出线程获取写锁 等待进行中的入队结束 再写出剩余数据 */
+	private final ReadWriteLock offerLock = new ReentrantReadWriteLock();
+
+	private volatile boolean running = true;
+
+	/**
+	 * 构造函数
+	 * @param name 缓冲区名称
+	 * @param capacity 队列容量
+	 * @param batchSize 单批次最大条数
+	 * @param flushInterval 刷新间隔
+	 * @param unit 刷新间隔单位
+	 * @param sampleRate 超过高水位线后的采样率 (每 N 条接收 1 条, 小于等于1 则不采样)
+	 * @param writer 批量写出处理器
+	 */
+	public BatchWriteBuffer(String name, int capacity, int batchSize,
+							long flushInterval, TimeUnit unit, int sampleRate,
+							Consumer<List<T>> writer) {
+		this.name = name;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.batchSize = Math.max(1, batchSize);
+		this.flushIntervalNanos = unit.toNanos(flushInterval);
+		this.highWatermark = capacity * HIGH_WATERMARK_PERCENT / 100;
+		this.sampleRate = sampleRate;
+		this.writer = writer;
+		this.worker = new ThreadFactoryBuilder()
+				.setNameFormat(name + "-Writer")
+				.setDaemon(true)
+				.build()
+				.newThread(this::run);
+		this.worker.start();
+	}
+
+	/**
+	 * 入队 (非阻塞)
+	 * @param element 元素
+	 * @return boolean 是否被接收
+	 */
+	public boolean offer(T element) {
+		if(null == element){
+			return false;
+		}
+
+		// 先持有读锁 再检查状态 保证停止后 写出线程能等到本次入队结束
+		offerLock.readLock().lock();
+		try {
+			if(!running){
+				return drop();
+			}
+
+			// 超过高水位线 按采样率接收
+			if(sampleRate > 1 && queue.size() >= highWatermark
+					&& sampleCounter.incrementAndGet() % sampleRate != 0){
+				return drop();
+			}
+
+			if(!queue.offer(element)){
+				return drop();
+			}
+			return true;
+		}finally {
+			offerLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 当前队列深度
+	 * @return int
+	 */
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	/**
+	 * 累计丢弃数
+	 * @return long
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * 累计成功写出数
+	 * @return long
+	 */
+	public long getWrittenCount() {
+		return writtenCount.get();
+	}
+
+	/**
+	 * 累计写出失败数
+	 * @return long
+	 */
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+
+	/**
+	 * 停止缓冲区 并将剩余数据写出
+	 *
+	 * 不中断写出线程 避免打断正在执行的批量写入, 写出线程最迟在一个刷新间隔内 感知停止信号
+	 *
+	 * @param timeout 等待时长
+	 * @param unit 等待时长单位
+	 */
+	public void shutdown(long timeout, TimeUnit unit) {
+		running = false;
+		try {
+			worker.join(unit.toMillis(timeout));
+		}catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private boolean drop() {
+		long dropped = droppedCount.incrementAndGet();
+		if(dropped % DROP_LOG_INTERVAL == 1){
+			if(running){
+				log.warn("[{}] 缓冲区已满, 累计丢弃 {} 条, 当前队列深度 {}", name, dropped, queue.size());
+			}else {
+				log.warn("[{}] 缓冲区已停止, 累计丢弃 {} 条", name, dropped);
+			}
+		}
+		return false;
+	}
+
+	private void run() {
+		while (running) {
+			List<T> batch = new ArrayList<>(batchSize);
+			long deadline = System.nanoTime() + flushIntervalNanos;
+			try {
+				while (batch.size() < batchSize) {
+					long remaining = deadline - System.nanoTime();
+					if(remaining <= 0){
+						break;
+					}
+					T element = queue.poll(remaining, TimeUnit.NANOSECONDS);
+					if(null == element){
+						break;
+					}
+					batch.add(element);
+					queue.drainTo(batch, batchSize - batch.size());
+				}
+			}catch (InterruptedException e){
+				// 非正常中断 写出当前批次后退出
+				Thread.currentThread().interrupt();
+				running = false;
+			}
+			write(batch);
+		}
+
+		// 等待 进行中的入队结束 (停止后的入队 均已计入丢弃)
+		offerLock.writeLock().lock();
+		offerLock.writeLock().unlock();
+
+		// 停止后 写出剩余数据
+		List<T> batch = new ArrayList<>(batchSize);
+		while (queue.drainTo(batch, batchSize) > 0) {
+			write(batch);
+			batch = new ArrayList<>(batchSize);
+		}
+	}
+
+	private void write(List<T> batch) {
+		if(CollUtil.isEmpty(batch)){
+			return;
+		}
+		try {
+			writer.accept(batch);
+			writtenCount.addAndGet(batch.size());
+		}catch (Exception e){
+			failedCount.addAndGet(batch.size());
+			log.error("[{}] 批量写出失败, 条数 {}", name, batch.size(), e);
+		}
+	}
+
+}
@@ -27,13 +27,21 @@ import org.opsli.common.thread.AsyncProcessExecutor;
 import org.opsli.common.thread.AsyncProcessExecutorFactory;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 单机限流
  *
+ * 默认每个节点独立限流, 注册 Backend 后 (如 Redis 令牌桶) 由 Backend 负责集群限流
+ * Backend 不可用 (抛出异常) 时 降级为单机限流
+ *
  * @author Parker
  * @date 2021-01-05 16:06
  */
@@ -50,8 +58,16 @@ public final class RateLimiterUtil {
     private static final int DEFAULT_CACHE_TIME = 5;
     /** 默认等待时长 */
     private static final int DEFAULT_WAIT = 500;
+    /** 限流后端不可用 告警间隔(毫秒) */
+    private static final long BACKEND_WARN_INTERVAL = 60_000L;
+    /** 限流后端不可用 上次告警时间 */
+    private static final AtomicLong BACKEND_WARN_TIME = new AtomicLong();
     /** 限流器单机缓存 */
     private static final Cache<String, Map<String, RateLimiterUtil.RateLimiterInner> > LFU_CACHE;
+    /** 限流后端 为空则单机限流 */
+    private static volatile Backend backend;
+    /** QPS 覆盖 资源 - QPS (运行时可调整 优先于 @Limiter 注解) */
+    private static final ConcurrentMap<String, Double> QPS_OVERRIDE = Maps.newConcurrentMap();
 
     static{
         LFU_CACHE = CacheBuilder
@@ -60,6 +76,53 @@ public final class RateLimiterUtil {
     }
 
 
+    /**
+     * 设置限流后端
+     * @param limiterBackend 限流后端 (为空则恢复单机限流)
+     */
+    public static void setBackend(Backend limiterBackend) {
+        backend = limiterBackend;
+    }
+
+    /**
+     * 获得 QPS (覆盖优先)
+     * @param resource 资源
+     * @param defQps 默认QPS
+     * @return double
+     */
+    public static double getQps(String resource, double defQps) {
+        Double qps = resource == null ? null : QPS_OVERRIDE.get(resource);
+        return qps == null ? defQps : qps;
+    }
+
+    /**
+     * 设置 QPS 覆盖 下一次请求立即生效
+     * 变更后 通知限流后端 作废该资源已预取的令牌
+     * @param resource 资源
+     * @param qps QPS (为空则删除覆盖 恢复注解配置)
+     */
+    public static void setQps(String resource, Double qps) {
+        if(StrUtil.isBlank(resource)){
+            return;
+        }
+        Double old = null == qps ? QPS_OVERRIDE.remove(resource) : QPS_OVERRIDE.put(resource, qps);
+        if(Objects.equals(old, qps)){
+            return;
+        }
+        Backend currBackend = backend;
+        if(currBackend != null){
+            currBackend.qpsChanged(resource);
+        }
+    }
+
+    /**
+     * 获得全部 QPS 覆盖
+     * @return Map
+     */
+    public static Map<String, Double> getQpsOverrides() {
+        return Collections.unmodifiableMap(new HashMap<>(QPS_OVERRIDE));
+    }
+
     /**
      * 删除IP
      * @param ip IP
@@ -116,6 +179,23 @@ public final class RateLimiterUtil {
             clientIpAddress = DEFAULT_IP;
         }
 
+        // 集群限流
+        Backend currBackend = backend;
+        if(currBackend != null){
+            //不限流
+            if (dfQps == null || dfQps == 0.0) {
+                return true;
+            }
+            Boolean acquired = tryBackend(currBackend, clientIpAddress, resource, dfQps);
+            if(acquired != null){
+                if(!acquired){
+                    log.error("限流器 - 访问频繁 IP地址: " + clientIpAddress + ", URI: " + resource);
+                }
+                return acquired;
+            }
+            // 限流后端不可用 降级为单机限流
+        }
+
         // 计时器
         long t1 = System.currentTimeMillis();
 
@@ -148,6 +228,11 @@ public final class RateLimiterUtil {
             rateLimiterInner.setRateLimiter(RateLimiter.create(dfQps));
             rateLimiterInnerMap.put(resource, rateLimiterInner);
         }else{
+            // QPS 变更 直接调整速率
+            if(dfQps != null && dfQps > 0 && !dfQps.equals(rateLimiterInner.getQps())){
+                rateLimiterInner.getRateLimiter().setRate(dfQps);
+                rateLimiterInner.setQps(dfQps);
+            }
             qps = rateLimiterInner.getQps();
         }
         rateLimiterObj = rateLimiterInner;
@@ -170,6 +255,50 @@ public final class RateLimiterUtil {
         }
     }
 
+    /**
+     * 限流后端 获取令牌
+     * @param currBackend 限流后端
+     * @param clientIpAddress IP
+     * @param resource 资源
+     * @param qps QPS
+     * @return Boolean 限流后端不可用时 为 null
+     */
+    private static Boolean tryBackend(Backend currBackend, String clientIpAddress, String resource, double qps) {
+        try {
+            return currBackend.tryAcquire(clientIpAddress, resource, qps);
+        }catch (Exception e){
+            // 告警限频 避免每个请求都打印
+            long now = System.currentTimeMillis();
+            long last = BACKEND_WARN_TIME.get();
+            if(now - last >= BACKEND_WARN_INTERVAL && BACKEND_WARN_TIME.compareAndSet(last, now)){
+                log.warn("限流器 - 限流后端不可用 降级为单机限流: {}", e.getMessage());
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 限流后端
+     */
+    public interface Backend {
+
+        /**
+         * 获取令牌 (非阻塞 获取不到直接返回)
+         * 后端不可用时 直接抛出异常 由调用方降级为单机限流
+         * @param clientIpAddress IP
+         * @param resource 资源
+         * @param qps 当前QPS (每次调用传入 变更后立即生效)
+         * @return boolean
+         */
+        boolean tryAcquire(String clientIpAddress, String resource, double qps);
+
+        /**
+         * QPS 变更 作废该资源的本地状态 (如 预取令牌)
+         * @param resource 资源
+         */
+        default void qpsChanged(String resource) {}
+
+    }
 
     /**
      * 限流器
@@ -0,0 +1,130 @@
+package org.opsli.core.autoconfigure.conf;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.bean.PropDesc;
+import org.opsli.api.wrapper.system.dict.DictWrapper;
+import org.opsli.api.wrapper.system.menu.MenuModel;
+import org.opsli.api.wrapper.system.user.UserModel;
+import org.opsli.plugins.redis.codec.CodecRedisSerializer;
+import org.opsli.plugins.redis.jsonserializer.FastJson2JsonRedisSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis 二进制编码 基准测试
+ *
+ * 对比 FastJson2JsonRedisSerializer 与 CodecRedisSerializer 编码、解码耗时
+ * 运行: mvn -P jmh test -pl opsli-base-support/opsli-core -am
+ *
+ * @author Parker
+ * @date 2023-04-24 10:30
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedisCodecBenchmark {
+
+    /** 固定时间 */
+    private static final long TIME = 1682303400000L;
+
+    @Param({"UserModel", "MenuModel", "DictWrapper"})
+    private String model;
+
+    private final FastJson2JsonRedisSerializer<Object> jsonSerializer =
+            new FastJson2JsonRedisSerializer<>(Object.class);
+
+    private final CodecRedisSerializer serializer = new CodecRedisSerializer(
+            Collections.singletonList(new RedisCodecConfig().systemModelCodec()), jsonSerializer, true);
+
+    private Object bean;
+    private byte[] json;
+    private byte[] bin;
+
+    @Setup
+    public void setup() throws Exception {
+        Class<?> modelClass;
+        if("MenuModel".equals(model)){
+            modelClass = MenuModel.class;
+        }else if("DictWrapper".equals(model)){
+            modelClass = DictWrapper.class;
+        }else {
+            modelClass = UserModel.class;
+        }
+
+        bean = modelClass.getDeclaredConstructor().newInstance();
+        for (PropDesc prop : BeanUtil.getBeanDesc(modelClass).getProps()) {
+            if(prop.getGetter() == null || prop.getSetter() == null){
+                continue;
+            }
+            Object value = this.createValue(prop.getFieldName(), prop.getFieldClass());
+            if(null != value){
+                prop.setValue(bean, value);
+            }
+        }
+        json = jsonSerializer.serialize(bean);
+        bin = serializer.serialize(bean);
+    }
+
+    @Benchmark
+    public byte[] jsonEncode() {
+        return jsonSerializer.serialize(bean);
+    }
+
+    @Benchmark
+    public byte[] codecEncode() {
+        return serializer.serialize(bean);
+    }
+
+    @Benchmark
+    public Object jsonDecode() {
+        return jsonSerializer.deserialize(json);
+    }
+
+    @Benchmark
+    public Object codecDecode() {
+        return serializer.deserialize(bin);
+    }
+
+    private Object createValue(String name, Class<?> type) {
+        if(type == String.class){
+            return name;
+        }
+        if(type == Integer.class || type == int.class){
+            return name.length();
+        }
+        if(type == Long.class || type == long.class){
+            return (long) name.hashCode();
+        }
+        if(type == Boolean.class || type == boolean.class){
+            return true;
+        }
+        if(type == Double.class || type == double.class){
+            return name.length() + 0.5D;
+        }
+        if(type == BigDecimal.class){
+            return new BigDecimal("12.50");
+        }
+        if(type == Date.class){
+            return new Date(TIME);
+        }
+        return null;
+    }
+
+}
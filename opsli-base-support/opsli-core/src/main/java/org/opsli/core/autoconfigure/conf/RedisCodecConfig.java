@@ -0,0 +1,66 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.core.autoconfigure.conf;
+
+import com.google.common.collect.Lists;
+import org.opsli.api.wrapper.system.dict.DictDetailModel;
+import org.opsli.api.wrapper.system.dict.DictWrapper;
+import org.opsli.api.wrapper.system.menu.MenuModel;
+import org.opsli.api.wrapper.system.options.OptionsModel;
+import org.opsli.api.wrapper.system.role.RoleModel;
+import org.opsli.api.wrapper.system.tenant.TenantModel;
+import org.opsli.api.wrapper.system.user.UserModel;
+import org.opsli.api.wrapper.system.user.UserOrgRefModel;
+import org.opsli.plugins.redis.codec.BeanSchemaCodec;
+import org.opsli.plugins.redis.codec.RedisValueCodec;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Redis 缓存二进制编码配置
+ *
+ * 注册高频缓存模型, 写入开关见 opsli.redis.binary-codec
+ * 注意: 编码器ID 不可变更, 新增模型 追加到末尾 (结构变更后 旧缓存自动失效 回源重建)
+ *
+ * @author Parker
+ * @date 2023-04-24 10:30
+ */
+@Configuration
+public class RedisCodecConfig {
+
+    /** 系统模型 编码器ID */
+    private static final byte SYSTEM_MODEL_CODEC_ID = 1;
+
+    /**
+     * 系统模型 二进制编码器
+     *
+     * @return RedisValueCodec
+     */
+    @Bean
+    public RedisValueCodec systemModelCodec() {
+        return new BeanSchemaCodec(SYSTEM_MODEL_CODEC_ID, Lists.newArrayList(
+                UserModel.class,
+                MenuModel.class,
+                RoleModel.class,
+                TenantModel.class,
+                OptionsModel.class,
+                UserOrgRefModel.class,
+                DictDetailModel.class,
+                DictWrapper.class
+        ));
+    }
+
+}
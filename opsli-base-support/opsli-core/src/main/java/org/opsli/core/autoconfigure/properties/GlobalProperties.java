@@ -6,6 +6,8 @@ import org.opsli.common.enums.LoginLimitRefuse;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -43,6 +45,12 @@ public class GlobalProperties {
     /** 代码生成器 */
     private Generator generator;
 
+    /** 限流器 */
+    private Limiter limiter = new Limiter();
+
+    /** 日志 */
+    private Log log = new Log();
+
     // ============== 内部类 =============
 
     /**
@@ -76,6 +84,9 @@ public class GlobalProperties {
         /** Login */
         private Login login;
 
+        /** 验证码 */
+        private Captcha captcha;
+
 
         /**
          * 认证类
@@ -117,6 +128,27 @@ public class GlobalProperties {
             /** 失败锁定时间(秒) */
             private Integer slipLockSpeed;
 
+            /** 票据本地校验 (开启后 已校验通过的票据在本地缓存一段时间 减少每次请求的 Redis 校验) */
+            private Boolean ticketLocalVerify = false;
+
+            /** 票据本地校验时效(秒) */
+            private Integer ticketLocalVerifyTime = 30;
+
+        }
+
+        /**
+         * 验证码类
+         */
+        @Data
+        @EqualsAndHashCode(callSuper = false)
+        public static class Captcha {
+
+            /** 预渲染验证码池大小 (0 为关闭 请求时同步渲染) */
+            private Integer poolSize = 200;
+
+            /** 预渲染线程数 */
+            private Integer poolThreads = 1;
+
         }
 
     }
@@ -131,6 +163,72 @@ public class GlobalProperties {
         /** 最大导出操作数 */
         private Integer exportMaxCount;
 
+        /** 流式导出 (游标逐行读取 分批转换写出 内存占用与总行数无关) */
+        private Boolean exportStream = true;
+
+        /** 流式导出 每批行数 */
+        private Integer exportBatchSize = 2000;
+
+        /** 导入 每批行数 */
+        private Integer importBatchSize = 2000;
+
+        /** 导入 并行数 (字典翻译 + 入库 工作线程数 全部导入共享) */
+        private Integer importParallelism = 4;
+
+        /** 导入 等待处理的批次数上限 (全部导入共享 超出后由解析线程自行处理 形成背压) */
+        private Integer importQueueSize = 4;
+
+        /** 异步任务 并行数 */
+        private Integer jobParallelism = 2;
+
+        /** 异步任务 排队数上限 (超出后拒绝提交) */
+        private Integer jobQueueSize = 16;
+
+        /** 异步任务 结果保留时长(小时) 到期后删除落盘文件 */
+        private Integer jobExpireHours = 24;
+
+    }
+
+    /**
+     * 日志
+     */
+    @Data
+    @EqualsAndHashCode(callSuper = false)
+    public static class Log {
+
+        /** 批量写入 队列容量 */
+        private Integer bufferCapacity = 8192;
+
+        /** 批量写入 单批次最大条数 */
+        private Integer batchSize = 200;
+
+        /** 批量写入 刷新间隔(毫秒) */
+        private Long flushInterval = 1000L;
+
+        /** 队列超过高水位线后 采样率 (每 N 条接收 1 条) */
+        private Integer sampleRate = 10;
+
+        /** 停止时 等待写出时长(秒) */
+        private Long shutdownTimeout = 10L;
+
+    }
+
+    /**
+     * 限流器
+     */
+    @Data
+    @EqualsAndHashCode(callSuper = false)
+    public static class Limiter {
+
+        /** 集群限流 (Redis 令牌桶, 关闭则每个节点独立限流) */
+        private Boolean cluster = false;
+
+        /** 集群限流 本地预取令牌时长(毫秒) 预取 QPS * 时长 个令牌 过期未用则作废 (0 为不预取) */
+        private Integer prefetchMillis = 100;
+
+        /** QPS 初始覆盖 (key 为 URI, 优先于 @Limiter 注解; 运行时可由系统监控接口调整 保存至 Redis 启动后加载 优先于此配置) */
+        private Map<String, Double> qps = new HashMap<>();
+
     }
 
     /**
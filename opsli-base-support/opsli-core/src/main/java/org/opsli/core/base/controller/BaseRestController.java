@@ -42,7 +42,6 @@ import org.opsli.api.base.warpper.ApiWrapper;
 import org.opsli.api.wrapper.system.user.UserModel;
 import org.opsli.common.constants.RedisConstants;
 import org.opsli.common.constants.TreeConstants;
-import org.opsli.common.enums.ExcelOperate;
 import org.opsli.common.exception.ServiceException;
 import org.opsli.common.utils.UniqueStrGeneratorUtils;
 import org.opsli.common.utils.WrapperUtil;
@@ -55,9 +54,12 @@ import org.opsli.core.msg.CoreMsg;
 import org.opsli.core.persistence.querybuilder.QueryBuilder;
 import org.opsli.core.persistence.querybuilder.WebQueryBuilder;
 import org.opsli.core.utils.ExcelUtil;
+import org.opsli.core.utils.excel.ExcelImportEngine;
+import org.opsli.core.utils.excel.ExcelImportReport;
+import org.opsli.core.utils.excel.job.ExcelJobManager;
 import org.opsli.core.utils.UserUtil;
 import org.opsli.plugins.excel.exception.ExcelPluginException;
-import org.opsli.plugins.excel.listener.BatchExcelListener;
+import org.opsli.plugins.excel.factory.ExcelStreamWriter;
 import org.opsli.plugins.redis.RedisPlugin;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.ModelAttribute;
@@ -68,6 +70,10 @@ import org.springframework.web.multipart.MultipartHttpServletRequest;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
@@ -86,6 +92,9 @@ public abstract class BaseRestController <T extends BaseEntity, E extends ApiWra
     /** 凭证 10分钟失效 */
     private static final int CERTIFICATE_EXPIRED_MINUTE = 10;
 
+    /** 异步导入参数 */
+    private static final String ASYNC_PARAM = "async";
+
     /** 配置类 */
     @Autowired
     protected GlobalProperties globalProperties;
@@ -98,6 +107,10 @@ public abstract class BaseRestController <T extends BaseEntity, E extends ApiWra
     @Autowired
     private RedisPlugin redisPlugin;
 
+    /** Excel 异步任务 */
+    @Autowired
+    private ExcelJobManager excelJobManager;
+
     /**
      * 默认 直接设置 传入数据的
      * 根据id 从缓存 直接查询 数据对象
@@ -132,34 +145,40 @@ public abstract class BaseRestController <T extends BaseEntity, E extends ApiWra
         String msgInfo;
         try {
             UserModel user = UserUtil.getUser();
-            Date currDate = DateUtil.date();
-
-            // 导入优化为 监听器 模式 超过一定阈值直接释放资源 防止导入数据导致系统 OOM
-            ExcelUtil.getInstance().readExcelByListener(files.get(0), IService.getModelClass(), new BatchExcelListener<E>() {
-                @Override
-                public void saveData(List<E> dataList) {
-                    // 处理字典数据
-                    List<E> disposeData = ExcelUtil.getInstance().handleDatas(dataList, IService.getModelClass(), ExcelOperate.READ);
-                    // 手动赋值 必要数据 防止频繁开启Redis网络IO
-                    for (E model : disposeData) {
-                        model.setIzManual(true);
-                        model.setCreateBy(user.getId());
-                        model.setUpdateBy(user.getId());
-                        model.setCreateTime(currDate);
-                        model.setUpdateTime(currDate);
-                    }
-                    // 数据库插入数据
-                    IService.insertBatch(disposeData);
-                }
-            });
+
+            // 异步导入 文件落盘后立即返回任务ID 由前端轮询进度
+            if(Boolean.parseBoolean(request.getParameter(ASYNC_PARAM))){
+                String jobId = excelJobManager.submitImport(user.getId(), null, files.get(0),
+                        context -> {
+                            ExcelImportEngine<E> importEngine = this.createImportEngine(user)
+                                    .onProgress(context::setHandled);
+                            try (InputStream inputStream = new FileInputStream(context.getSpoolFile())){
+                                ExcelImportReport report = importEngine.execute(inputStream);
+                                context.setReport(report);
+                                context.setTotal(report.getTotalCount());
+                            }
+                        });
+                return ResultWrapper.getCustomResultWrapper(jobId,
+                        CoreMsg.EXCEL_JOB_SUBMIT.getCode(), CoreMsg.EXCEL_JOB_SUBMIT.getMessage());
+            }
+
+            ExcelImportReport report = this.createImportEngine(user).execute(files.get(0));
 
             // 花费毫秒数
             long timerCount = timer.interval();
-            // 提示信息
-            msgInfo = StrUtil.format(CoreMsg.EXCEL_IMPORT_SUCCESS.getMessage(), DateUtil.formatBetween(timerCount));
-            // 导出成功
-            resultVo = ResultWrapper.getSuccessResultWrapper(msgInfo);
-            resultVo.setCode(CoreMsg.EXCEL_IMPORT_SUCCESS.getCode());
+            if(report.getRejectCount() > 0){
+                // 部分数据被拒绝
+                msgInfo = StrUtil.format(CoreMsg.EXCEL_IMPORT_REJECT.getMessage(), DateUtil.formatBetween(timerCount),
+                        report.getSuccessCount(), report.getRejectCount());
+                resultVo = ResultWrapper.getCustomResultWrapper(report,
+                        CoreMsg.EXCEL_IMPORT_REJECT.getCode(), msgInfo);
+            }else {
+                // 提示信息
+                msgInfo = StrUtil.format(CoreMsg.EXCEL_IMPORT_SUCCESS.getMessage(), DateUtil.formatBetween(timerCount));
+                // 导出成功
+                resultVo = ResultWrapper.getSuccessResultWrapper(msgInfo);
+                resultVo.setCode(CoreMsg.EXCEL_IMPORT_SUCCESS.getCode());
+            }
 
         } catch (ExcelPluginException e) {
             // 花费毫秒数
@@ -176,6 +195,30 @@ public abstract class BaseRestController <T extends BaseEntity, E extends ApiWra
         return resultVo;
     }
 
+    /**
+     * 创建导入引擎
+     * 导入优化为 流水线 模式 解析与 字典翻译、入库 解耦并行 有界队列防止导入数据导致系统 OOM
+     *
+     * @param user 当前用户
+     * @return ExcelImportEngine
+     */
+    private ExcelImportEngine<E> createImportEngine(UserModel user){
+        Date currDate = DateUtil.date();
+        GlobalProperties.Excel excelConf = globalProperties.getExcel();
+        return new ExcelImportEngine<>(IService.getModelClass(),
+                excelConf.getImportBatchSize(), excelJobManager.getImportExecutor(),
+                model -> {
+                    // 手动赋值 必要数据 防止频繁开启Redis网络IO
+                    model.setIzManual(true);
+                    model.setCreateBy(user.getId());
+                    model.setUpdateBy(user.getId());
+                    model.setCreateTime(currDate);
+                    model.setUpdateTime(currDate);
+                },
+                // 数据库插入数据
+                dataList -> IService.insertBatch(dataList));
+    }
+
     /**
      * Excel 导出认证
      *
@@ -187,7 +230,7 @@ public abstract class BaseRestController <T extends BaseEntity, E extends ApiWra
     protected Optional<String> excelExportAuth(String type, String subName, HttpServletRequest request){
         // 封装缓存数据
         ExcelExportCache exportCache;
-        if(ExcelExportCache.EXCEL_EXPORT.equals(type)){
+        if(ExcelExportCache.EXCEL_EXPORT.equals(type) || ExcelExportCache.EXCEL_EXPORT_ASYNC.equals(type)){
             // 异常检测
             QueryBuilder<T> queryBuilder = new WebQueryBuilder<>(IService.getEntityClass(), request.getParameterMap());
             QueryWrapper<T> queryWrapper = queryBuilder.build();
@@ -204,6 +247,11 @@ public abstract class BaseRestController <T extends BaseEntity, E extends ApiWra
                 }
             }
 
+            // 异步导出 直接提交任务 任务ID 即为凭证
+            if(ExcelExportCache.EXCEL_EXPORT_ASYNC.equals(type)){
+                return Optional.of(this.submitExportJob(queryWrapper, subName));
+            }
+
             // 封装缓存数据
             exportCache = ExcelExportCache.builder()
                     .subName(subName)
@@ -269,6 +317,15 @@ public abstract class BaseRestController <T extends BaseEntity, E extends ApiWra
             QueryBuilder<T> queryBuilder = new WebQueryBuilder<>(IService.getEntityClass(), parameterMap);
             QueryWrapper<T> queryWrapper = queryBuilder.build();
 
+            // 流式导出 游标分批读取 每批转换后直接写出到响应流
+            if(!Boolean.FALSE.equals(globalProperties.getExcel().getExportStream())){
+                this.excelExportByStream(queryWrapper, subName, response);
+
+                // 删除凭证
+                redisPlugin.del(certificateCacheKeyTmp);
+                return;
+            }
+
             List<T> entityList = IService.findList(queryWrapper);
             // 转化类型
             modelList = WrapperUtil.transformInstance(entityList, IService.getModelClass());
@@ -284,6 +341,74 @@ public abstract class BaseRestController <T extends BaseEntity, E extends ApiWra
     }
 
 
+    /**
+     * 流式导出 Excel
+     * 内存占用只与批大小相关 与导出总行数无关
+     *
+     * @param queryWrapper 查询条件
+     * @param subName 主题名称
+     * @param response response
+     */
+    private void excelExportByStream(QueryWrapper<T> queryWrapper, String subName, HttpServletResponse response){
+        // 计时器
+        TimeInterval timer = DateUtil.timer();
+        Integer batchSize = globalProperties.getExcel().getExportBatchSize();
+
+        // 字典在打开写出器时解析 先于游标
+        ExcelStreamWriter<E> writer = ExcelUtil.getInstance().openStreamWriter(
+                response, subName,"sheet", IService.getModelClass() ,ExcelTypeEnum.XLSX);
+        try {
+            IService.findListByStream(queryWrapper, batchSize != null ? batchSize : 0,
+                    entityList -> writer.write(
+                            WrapperUtil.transformInstance(entityList, IService.getModelClass())));
+        }finally {
+            writer.close();
+        }
+
+        log.info("Excel 流式导出 {} 行 耗时：{}", writer.getRowCount(),
+                DateUtil.formatBetween(timer.interval()));
+    }
+
+
+    /**
+     * 提交异步导出任务
+     * 任务内流式读取 写出到落盘文件 完成后由任务接口下载
+     *
+     * @param queryWrapper 查询条件
+     * @param subName 主题名称
+     * @return 任务ID
+     */
+    private String submitExportJob(QueryWrapper<T> queryWrapper, String subName){
+        UserModel user = UserUtil.getUser();
+        return excelJobManager.submitExport(user.getId(), subName, context -> {
+            // 计时器
+            TimeInterval timer = DateUtil.timer();
+            Integer batchSize = globalProperties.getExcel().getExportBatchSize();
+
+            // 总数 用于前端进度展示
+            context.setTotal(IService.count(queryWrapper));
+
+            // 字典在打开写出器时解析 先于游标
+            try (OutputStream outputStream = new FileOutputStream(context.getSpoolFile())){
+                ExcelStreamWriter<E> writer = ExcelUtil.getInstance().openStreamWriter(
+                        outputStream, "sheet", IService.getModelClass());
+                try {
+                    IService.findListByStream(queryWrapper, batchSize != null ? batchSize : 0,
+                            entityList -> {
+                                writer.write(WrapperUtil.transformInstance(entityList, IService.getModelClass()));
+                                context.addHandled(entityList.size());
+                            });
+                }finally {
+                    writer.close();
+                }
+
+                log.info("Excel 异步导出 {} 行 耗时：{}", writer.getRowCount(),
+                        DateUtil.formatBetween(timer.interval()));
+            }
+        });
+    }
+
+
     /**
      * 演示模式
      */
@@ -372,6 +497,8 @@ public abstract class BaseRestController <T extends BaseEntity, E extends ApiWra
 
         public final static String EXCEL_EXPORT = "export";
 
+        public final static String EXCEL_EXPORT_ASYNC = "export-async";
+
 
         /** 主题名 */
         private String subName;
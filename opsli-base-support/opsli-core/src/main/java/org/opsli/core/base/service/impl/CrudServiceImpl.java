@@ -20,14 +20,25 @@ import cn.hutool.core.util.ReflectUtil;
 import cn.hutool.core.util.TypeUtil;
 import com.alibaba.fastjson.JSONObject;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.enums.SqlMethod;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.toolkit.Constants;
 import com.baomidou.mybatisplus.core.toolkit.ReflectionKit;
 import com.baomidou.mybatisplus.core.toolkit.reflect.SpringReflectionHelper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.baomidou.mybatisplus.extension.toolkit.SqlHelper;
 import com.github.pagehelper.PageInfo;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionUtils;
 import org.opsli.api.base.warpper.ApiWrapper;
 import org.opsli.common.utils.WrapperUtil;
 import org.opsli.core.base.entity.BaseEntity;
@@ -47,6 +58,7 @@ import java.lang.reflect.Type;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * CurdServiceImpl 基类 - 实现类
@@ -69,6 +81,15 @@ import java.util.Map;
 public abstract class CrudServiceImpl<M extends BaseMapper<T>, T extends BaseEntity, E extends ApiWrapper>
         extends BaseService<M, T> implements CrudServiceInterface<T,E> {
 
+    /** 流式查询 默认每批行数 */
+    private static final int DEF_STREAM_BATCH_SIZE = 2000;
+    /** 流式查询 非 MySQL 数据库 每次抓取行数 */
+    private static final int DEF_STREAM_FETCH_SIZE = 1000;
+    /** 流式查询 语句后缀 */
+    private static final String STREAM_STATEMENT_SUFFIX = "_Stream";
+    /** 流式查询 MySQL 语句后缀 */
+    private static final String STREAM_MYSQL_STATEMENT_SUFFIX = "_StreamMySQL";
+
     /** Model Clazz 类 */
     protected Class<E> modelClazz = getInnerModelClazz();
 
@@ -219,6 +240,44 @@ public abstract class CrudServiceImpl<M extends BaseMapper<T>, T extends BaseEnt
         return super.list(qWrapper);
     }
 
+    @Override
+    public long findListByStream(QueryWrapper<T> queryWrapper, int batchSize, Consumer<List<T>> consumer) {
+        if(null == consumer){
+            return 0;
+        }
+        final int size = batchSize > 0 ? batchSize : DEF_STREAM_BATCH_SIZE;
+
+        // 数据处理责任链
+        QueryWrapper<T> qWrapper = this.addHandler(this.getEntityClass(), queryWrapper);
+
+        SqlSessionFactory sqlSessionFactory = SqlHelper.sqlSessionFactory(this.getEntityClass());
+        SqlSession sqlSession = SqlSessionUtils.getSqlSession(sqlSessionFactory);
+        try {
+            String statementId = this.getStreamStatement(sqlSession.getConfiguration(), this.isMySql(sqlSession));
+            Map<String, Object> param = Maps.newHashMapWithExpectedSize(1);
+            param.put(Constants.WRAPPER, qWrapper);
+
+            final long[] count = {0};
+            final List<T> chunk = Lists.newArrayListWithCapacity(size);
+            sqlSession.select(statementId, param, (ResultHandler<T>) context -> {
+                chunk.add(context.getResultObject());
+                if(chunk.size() >= size){
+                    count[0] += chunk.size();
+                    consumer.accept(Lists.newArrayList(chunk));
+                    chunk.clear();
+                }
+            });
+            if(!chunk.isEmpty()){
+                count[0] += chunk.size();
+                consumer.accept(Lists.newArrayList(chunk));
+                chunk.clear();
+            }
+            return count[0];
+        }finally {
+            SqlSessionUtils.closeSqlSession(sqlSession, sqlSessionFactory);
+        }
+    }
+
     @Override
     public List<T> findAllList() {
         // 数据处理责任链
@@ -341,6 +400,62 @@ public abstract class CrudServiceImpl<M extends BaseMapper<T>, T extends BaseEnt
         ).handler(qClass, conf, qQueryWrapper);
     }
 
+    /**
+     * 获得流式查询 MappedStatement
+     * 复制 selectList 语句 设置只读前进游标
+     * MySQL fetchSize 为 Integer.MIN_VALUE (驱动逐行流式返回), 其他数据库 按 DEF_STREAM_FETCH_SIZE 分批抓取
+     * (Integer.MIN_VALUE 仅 MySQL 驱动支持 其他驱动会直接报错)
+     * @param configuration 配置
+     * @param isMySql 是否为 MySQL
+     * @return String 语句ID
+     */
+    private String getStreamStatement(Configuration configuration, boolean isMySql){
+        String statementId = this.getSqlStatement(SqlMethod.SELECT_LIST)
+                + (isMySql ? STREAM_MYSQL_STATEMENT_SUFFIX : STREAM_STATEMENT_SUFFIX);
+        if(configuration.hasStatement(statementId, false)){
+            return statementId;
+        }
+
+        synchronized (configuration){
+            if(configuration.hasStatement(statementId, false)){
+                return statementId;
+            }
+            MappedStatement ms = configuration.getMappedStatement(
+                    this.getSqlStatement(SqlMethod.SELECT_LIST));
+            MappedStatement streamMs = new MappedStatement.Builder(
+                    configuration, statementId, ms.getSqlSource(), ms.getSqlCommandType())
+                    .resource(ms.getResource())
+                    .parameterMap(ms.getParameterMap())
+                    .resultMaps(ms.getResultMaps())
+                    .statementType(ms.getStatementType())
+                    .resultSetType(ResultSetType.FORWARD_ONLY)
+                    .fetchSize(isMySql ? Integer.MIN_VALUE : DEF_STREAM_FETCH_SIZE)
+                    .timeout(ms.getTimeout())
+                    .databaseId(ms.getDatabaseId())
+                    .lang(ms.getLang())
+                    .flushCacheRequired(false)
+                    .useCache(false)
+                    .build();
+            configuration.addMappedStatement(streamMs);
+        }
+        return statementId;
+    }
+
+    /**
+     * 当前连接 是否为 MySQL (多数据源时 以当前路由的数据源为准)
+     * @param sqlSession sqlSession
+     * @return boolean
+     */
+    private boolean isMySql(SqlSession sqlSession){
+        try {
+            String productName = sqlSession.getConnection().getMetaData().getDatabaseProductName();
+            return StringUtils.containsIgnoreCase(productName, "mysql");
+        }catch (Exception e){
+            log.warn("流式查询 - 获取数据库类型失败: {}", e.getMessage());
+            return false;
+        }
+    }
+
     // ======================== 初始化 ========================
 
     @Override
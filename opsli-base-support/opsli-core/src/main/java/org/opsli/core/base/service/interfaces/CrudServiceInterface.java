@@ -24,6 +24,7 @@ import org.opsli.core.persistence.Page;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * 增删改查 总接口
@@ -187,6 +188,18 @@ public interface CrudServiceInterface<T extends BaseEntity, E extends ApiWrapper
      */
     List<T> findList(QueryWrapper<T> queryWrapper);
 
+    /**
+     * 流式查询数据列表
+     * 游标逐行读取 每满一批回调一次 内存占用只与批大小相关
+     * 回调内不可再执行数据库查询 (当前连接正被游标占用)
+     *
+     * @param queryWrapper 查询条件构造器
+     * @param batchSize 每批行数
+     * @param consumer 批回调
+     * @return long 总行数
+     */
+    long findListByStream(QueryWrapper<T> queryWrapper, int batchSize, Consumer<List<T>> consumer);
+
 
     /**
      * 查询全部数据列表
@@ -21,6 +21,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.opsli.core.autoconfigure.properties.CacheProperties;
 import org.opsli.core.msg.CoreMsg;
 import org.opsli.core.utils.ThrowExceptionUtil;
+import org.opsli.plugins.redis.RedisPlugin;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
@@ -65,8 +66,9 @@ public class CacheUtil {
      * 初始化
      */
     @Autowired
-    public void init(CacheProperties cacheProperties){
+    public void init(CacheProperties cacheProperties, RedisPlugin redisPlugin){
         CacheUtil.PREFIX_NAME = Convert.toStr(cacheProperties.getPrefix(), "opsli");
+        SecurityCache.init(redisPlugin);
         IS_INIT = true;
     }
 
@@ -23,13 +23,19 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.util.concurrent.Striped;
 import lombok.extern.slf4j.Slf4j;
+import org.opsli.core.cache.pushsub.SecurityCacheMsg;
+import org.opsli.plugins.redis.RedisPlugin;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.function.Function;
 
@@ -42,6 +48,11 @@ import java.util.function.Function;
  * 实际业务的话 这两种一般也是足够了
  * 依赖于 RedisTemplate 和 LRU cache，多套业务部署 最大穿透次数为 业务服务N次
  *
+ * 2023-04-10 新增本地一级缓存 命中后直接返回 不再访问 Redis
+ * 修改/删除 缓存时 通过 Redis 发布订阅 通知其他节点清除本地缓存
+ * 读穿透回填 只写入 Redis (不覆盖已有值) 与本机本地缓存 不广播
+ * 本地缓存中 可变对象以编码后的字节存储 每次命中解码为新实例 调用方修改返回值不会影响缓存
+ *
  * @author Parker
  * @date 2021/12/10 12:39
  */
@@ -59,18 +70,42 @@ public final class SecurityCache {
 	/** 缓存前缀 HASH */
 	private static final String CACHE_PREFIX_HASH = "hash#";
 
+	/** 本地缓存 最大数量 */
+	private static final int LOCAL_CACHE_MAX_SIZE = 10000;
+	/** 本地缓存 时效 超出后自动清理 (秒) 防止广播丢失后 长时间数据不一致 */
+	private static final int LOCAL_CACHE_TIME = 60;
+	/** 本地缓存 KV */
+	private static final Cache<String, Object> LOCAL_KV_CACHE;
+	/** 本地缓存 HASH */
+	private static final Cache<String, LocalHash> LOCAL_HASH_CACHE;
+	/** 本地缓存版本 每次清除本地缓存时自增 防止并发读取时 回填已失效的数据 */
+	private static final AtomicLong LOCAL_VERSION = new AtomicLong();
+
 	/** 默认锁时间 (秒) */
 	private static final int DEFAULT_LOCK_TIME = 10;
 	/** 锁 */
 	@SuppressWarnings("UnstableApiUsage")
 	private static final Striped<Lock> STRIPED = Striped.lock(1024);
 
+	/** Redis 插件 用于广播失效消息 */
+	private static RedisPlugin redisPlugin;
+
 
 	static {
 		// 超时自动清理
 		LFU_NULL_CACHE = CacheBuilder
 				.newBuilder()
 				.expireAfterWrite(DEFAULT_CACHE_TIME, TimeUnit.MINUTES).build();
+
+		// 本地缓存 数量 + 时效 双重淘汰
+		LOCAL_KV_CACHE = CacheBuilder
+				.newBuilder()
+				.maximumSize(LOCAL_CACHE_MAX_SIZE)
+				.expireAfterWrite(LOCAL_CACHE_TIME, TimeUnit.SECONDS).build();
+		LOCAL_HASH_CACHE = CacheBuilder
+				.newBuilder()
+				.maximumSize(LOCAL_CACHE_MAX_SIZE)
+				.expireAfterWrite(LOCAL_CACHE_TIME, TimeUnit.SECONDS).build();
 	}
 
 	/**
@@ -131,6 +166,7 @@ public final class SecurityCache {
 				}
 
 				// 如果这时候还没有 则查询源数据
+				long version = LOCAL_VERSION.get();
 				cache = callbackSource.apply(key);
 				if(null == cache){
 					// 存储缓存状态
@@ -138,8 +174,8 @@ public final class SecurityCache {
 					return null;
 				}
 
-				// 存入 Redis缓存
-				put(redisTemplate, key, cache, isEden);
+				// 回填 Redis 与本地缓存 (读穿透 不广播)
+				fill(redisTemplate, key, cache, isEden ? null : randomTimeout(), version);
 			}
 		}catch (Exception e){
 			log.error(e.getMessage(), e);
@@ -195,6 +231,7 @@ public final class SecurityCache {
 				}
 
 				// 如果这时候还没有 则查询源数据
+				long version = LOCAL_VERSION.get();
 				cache = callbackSource.apply(key);
 				if(null == cache){
 					// 存储缓存状态
@@ -202,8 +239,8 @@ public final class SecurityCache {
 					return null;
 				}
 
-				// 存入 Redis缓存
-				put(redisTemplate, key, cache, ttl);
+				// 回填 Redis 与本地缓存 (读穿透 不广播)
+				fill(redisTemplate, key, cache, ttl, version);
 			}
 		}catch (Exception e){
 			log.error(e.getMessage(), e);
@@ -248,13 +285,7 @@ public final class SecurityCache {
 					.set(cacheKey, val);
 		}else{
 			// 随机缓存失效时间 防止缓存雪崩
-			// 范围在当前时效的 1.2 - 2倍
-
-			// 生成随机失效时间
-			int timeout = RandomUtil.randomInt(
-					Convert.toInt(TTL_HOT_DATA_TIME * 1.2),
-					Convert.toInt(TTL_HOT_DATA_TIME * 2)
-			);
+			int timeout = randomTimeout();
 
 			redisTemplate.opsForValue()
 					.set(
@@ -265,8 +296,8 @@ public final class SecurityCache {
 					);
 		}
 
-		// 清除本地记录
-		LFU_NULL_CACHE.invalidate(key);
+		// 清除本地记录 并通知其他节点
+		evictLocalAndBroadcast(null, key);
 	}
 
 	/**
@@ -293,8 +324,8 @@ public final class SecurityCache {
 						TimeUnit.SECONDS
 				);
 
-		// 清除本地记录
-		LFU_NULL_CACHE.invalidate(key);
+		// 清除本地记录 并通知其他节点
+		evictLocalAndBroadcast(null, key);
 	}
 
 	/**
@@ -345,6 +376,7 @@ public final class SecurityCache {
 				}
 
 				// 如果这时候还没有 则查询源数据
+				long version = LOCAL_VERSION.get();
 				cache = callbackSource.apply(null);
 				if(null == cache){
 					// 存储缓存状态
@@ -352,8 +384,8 @@ public final class SecurityCache {
 					return null;
 				}
 
-				// 存入 Redis缓存
-				hPut(redisTemplate, key, field, cache);
+				// 回填 Redis 与本地缓存 (读穿透 不广播)
+				hFill(redisTemplate, key, field, cache, version);
 			}
 		}catch (Exception e){
 			log.error(e.getMessage(), e);
@@ -414,6 +446,7 @@ public final class SecurityCache {
 				}
 
 				// 如果这时候还没有 则查询源数据
+				long version = LOCAL_VERSION.get();
 				cache = callbackSource.apply(null);
 				if(null == cache){
 					// 存储缓存状态
@@ -421,8 +454,8 @@ public final class SecurityCache {
 					return null;
 				}
 
-				// 存入 Redis缓存
-				hAllPut(redisTemplate, key, cache);
+				// 回填 Redis 与本地缓存 (读穿透 不广播)
+				hAllFill(redisTemplate, key, cache, version);
 			}
 		}catch (Exception e){
 			log.error(e.getMessage(), e);
@@ -483,6 +516,7 @@ public final class SecurityCache {
 				}
 
 				// 如果这时候还没有 则查询源数据
+				long version = LOCAL_VERSION.get();
 				cache = callbackSource.apply(null);
 				if(null == cache){
 					// 存储缓存状态
@@ -490,8 +524,8 @@ public final class SecurityCache {
 					return null;
 				}
 
-				// 存入 Redis缓存
-				hAllPut(redisTemplate, key, cache);
+				// 回填 Redis 与本地缓存 (读穿透 不广播)
+				hAllFill(redisTemplate, key, cache, version);
 			}
 		}catch (Exception e){
 			log.error(e.getMessage(), e);
@@ -523,8 +557,8 @@ public final class SecurityCache {
 		redisTemplate.opsForHash()
 				.putAll(cacheKeyByHash, cacheMap);
 
-		// 清除本地记录
-		LFU_NULL_CACHE.invalidate(key);
+		// 清除本地记录 并通知其他节点
+		evictLocalAndBroadcast(null, key);
 	}
 
 	/**
@@ -547,9 +581,8 @@ public final class SecurityCache {
 		redisTemplate.opsForHash()
 				.put(cacheKeyByHash, field, val);
 
-		final String tempKey = key + "_" + field;
-		// 清除本地记录
-		LFU_NULL_CACHE.invalidate(tempKey);
+		// 清除本地记录 并通知其他节点
+		evictLocalAndBroadcast(field, key);
 	}
 
 
@@ -593,10 +626,8 @@ public final class SecurityCache {
 			throw new RuntimeException("入参[redisTemplate,key,field]必填");
 		}
 
-		final String tempKey = key + "_" + field;
-
-		// 清除本地记录
-		LFU_NULL_CACHE.invalidate(tempKey);
+		// 清除本地记录 并通知其他节点
+		evictLocalAndBroadcast(field, key);
 
 		// 判断是否存在
 		boolean isExist = Boolean.TRUE.equals(redisTemplate.opsForHash().hasKey(key, field));
@@ -624,18 +655,48 @@ public final class SecurityCache {
 
 		List<String> removeKeyList = new ArrayList<>();
 		for (String key : keys) {
-			// 清除本地记录
-			LFU_NULL_CACHE.invalidate(key);
-
 			removeKeyList.add(StrUtil.addPrefixIfNot(key, CACHE_PREFIX_KV));
 			removeKeyList.add(StrUtil.addPrefixIfNot(key, CACHE_PREFIX_HASH));
 		}
 
 		// 清除缓存
 		redisTemplate.delete(removeKeyList);
+
+		// 清除本地记录 并通知其他节点
+		evictLocalAndBroadcast(null, keys);
 		return true;
 	}
 
+	/**
+	 * 初始化
+	 * @param redisPlugin Redis 插件
+	 */
+	public static void init(RedisPlugin redisPlugin) {
+		SecurityCache.redisPlugin = redisPlugin;
+	}
+
+	/**
+	 * 清除本地缓存 (不处理 Redis)
+	 * 用于接收其他节点的失效广播
+	 *
+	 * @param key 主键
+	 * @param field 字段 (为空则清除整个Key)
+	 */
+	public static void evictLocal(final String key, final String field) {
+		if(null == key){
+			return;
+		}
+
+		LOCAL_VERSION.incrementAndGet();
+		if(null == field){
+			LOCAL_KV_CACHE.invalidate(key);
+		}else {
+			LFU_NULL_CACHE.invalidate(key + "_" + field);
+		}
+		LOCAL_HASH_CACHE.invalidate(key);
+		LFU_NULL_CACHE.invalidate(key);
+	}
+
 
 	// =================================================================================================================
 
@@ -646,12 +707,27 @@ public final class SecurityCache {
 	 * @return Object
 	 */
 	private static Object getCacheObject(RedisTemplate<String, Object> redisTemplate, String key) {
-		Object cache = null;
+		// 优先读取本地缓存
+		Object cache = fromLocal(redisTemplate.getValueSerializer(), LOCAL_KV_CACHE.getIfPresent(key));
+		if(null != cache){
+			return cache;
+		}
+
 		try {
+			long version = LOCAL_VERSION.get();
 			String cacheKey = StrUtil.addPrefixIfNot(key, CACHE_PREFIX_KV);
 
 			// 从 缓存回调查询数据
 			cache = redisTemplate.opsForValue().get(cacheKey);
+
+			// 回填本地缓存 如果期间发生过失效 则放弃回填
+			if(null != cache && version == LOCAL_VERSION.get()){
+				LOCAL_KV_CACHE.put(key, toLocal(redisTemplate.getValueSerializer(), cache));
+				// 检查与回填之间 可能发生失效 回填后再次校验
+				if(version != LOCAL_VERSION.get()){
+					LOCAL_KV_CACHE.invalidate(key);
+				}
+			}
 		}catch (Exception e){
 			log.error(e.getMessage(), e);
 		}
@@ -665,12 +741,30 @@ public final class SecurityCache {
 	 * @return Object
 	 */
 	private static Object getHashCacheObject(RedisTemplate<String, Object> redisTemplate, String key, String field) {
-		Object cache = null;
+		// 优先读取本地缓存
+		LocalHash localHash = LOCAL_HASH_CACHE.getIfPresent(key);
+		Object cache = null != localHash
+				? fromLocal(redisTemplate.getHashValueSerializer(), localHash.fields.get(field)) : null;
+		if(null != cache){
+			return cache;
+		}
+
 		try {
+			long version = LOCAL_VERSION.get();
 			String cacheKeyByHash = StrUtil.addPrefixIfNot(key, CACHE_PREFIX_HASH);
 
 			// 从 缓存回调查询数据
 			cache = redisTemplate.opsForHash().get(cacheKeyByHash, field);
+
+			// 回填本地缓存 如果期间发生过失效 则放弃回填
+			if(null != cache && version == LOCAL_VERSION.get()){
+				LOCAL_HASH_CACHE.get(key, LocalHash::new)
+						.fields.put(field, toLocal(redisTemplate.getHashValueSerializer(), cache));
+				// 检查与回填之间 可能发生失效 回填后再次校验
+				if(version != LOCAL_VERSION.get()){
+					LOCAL_HASH_CACHE.invalidate(key);
+				}
+			}
 		}catch (Exception e){
 			log.error(e.getMessage(), e);
 		}
@@ -689,6 +783,22 @@ public final class SecurityCache {
 												final Function<String, Integer> callbackSourceCount) {
 		Map<String, Object> cache = null;
 		try {
+			// 优先读取本地缓存 (只有完整的 Hash 才可直接返回)
+			LocalHash localHash = LOCAL_HASH_CACHE.getIfPresent(key);
+			if(null != localHash && localHash.complete){
+				// 如果补偿器不为空 则进行补偿判断
+				if(null == callbackSourceCount ||
+						callbackSourceCount.apply(key) == localHash.fields.size()){
+					Map<String, Object> localCache = new HashMap<>(localHash.fields.size());
+					for (Map.Entry<String, Object> entry : localHash.fields.entrySet()) {
+						localCache.put(entry.getKey(),
+								fromLocal(redisTemplate.getHashValueSerializer(), entry.getValue()));
+					}
+					return localCache;
+				}
+			}
+
+			long version = LOCAL_VERSION.get();
 			String cacheKeyByHash = StrUtil.addPrefixIfNot(key, CACHE_PREFIX_HASH);
 
 			// 从 缓存回调查询数据
@@ -708,6 +818,21 @@ public final class SecurityCache {
 				for (Map.Entry<Object, Object> entry : entries.entrySet()) {
 					cache.put(String.valueOf(entry.getKey()), entry.getValue());
 				}
+
+				// 回填本地缓存 如果期间发生过失效 则放弃回填
+				if(version == LOCAL_VERSION.get()){
+					LocalHash completeHash = new LocalHash();
+					for (Map.Entry<String, Object> entry : cache.entrySet()) {
+						completeHash.fields.put(entry.getKey(),
+								toLocal(redisTemplate.getHashValueSerializer(), entry.getValue()));
+					}
+					completeHash.complete = true;
+					LOCAL_HASH_CACHE.put(key, completeHash);
+					// 检查与回填之间 可能发生失效 回填后再次校验
+					if(version != LOCAL_VERSION.get()){
+						LOCAL_HASH_CACHE.invalidate(key);
+					}
+				}
 			}
 		}catch (Exception e){
 			log.error(e.getMessage(), e);
@@ -715,6 +840,141 @@ public final class SecurityCache {
 		return cache;
 	}
 
+	/**
+	 * 随机缓存失效时间 防止缓存雪崩
+	 * 范围在当前时效的 1.2 - 2倍
+	 * @return int 秒
+	 */
+	private static int randomTimeout() {
+		return RandomUtil.randomInt(
+				Convert.toInt(TTL_HOT_DATA_TIME * 1.2),
+				Convert.toInt(TTL_HOT_DATA_TIME * 2)
+		);
+	}
+
+	/**
+	 * 读穿透回填 Redis 与本地缓存
+	 * 回填不是数据变更 不清除其他节点本地缓存 也不自增本地缓存版本
+	 * Redis 中已有值 (期间被写入) 则不覆盖 也不回填本地
+	 * @param redisTemplate redisTemplate
+	 * @param key 主键
+	 * @param val 值
+	 * @param seconds 过期秒数 (为空则永久存储)
+	 * @param version 查询源数据前的 本地缓存版本
+	 */
+	private static void fill(RedisTemplate<String, Object> redisTemplate, String key, Object val,
+							 Integer seconds, long version) {
+		String cacheKey = StrUtil.addPrefixIfNot(key, CACHE_PREFIX_KV);
+		Boolean isSet = null == seconds
+				? redisTemplate.opsForValue().setIfAbsent(cacheKey, val)
+				: redisTemplate.opsForValue().setIfAbsent(cacheKey, val, seconds, TimeUnit.SECONDS);
+		if(!Boolean.TRUE.equals(isSet) || version != LOCAL_VERSION.get()){
+			return;
+		}
+		LOCAL_KV_CACHE.put(key, toLocal(redisTemplate.getValueSerializer(), val));
+		// 检查与回填之间 可能发生失效 回填后再次校验
+		if(version != LOCAL_VERSION.get()){
+			LOCAL_KV_CACHE.invalidate(key);
+		}
+	}
+
+	/**
+	 * 读穿透回填 Redis 与本地缓存 Hash 字段
+	 * @param redisTemplate redisTemplate
+	 * @param key 主键
+	 * @param field 字段
+	 * @param val 值
+	 * @param version 查询源数据前的 本地缓存版本
+	 */
+	private static void hFill(RedisTemplate<String, Object> redisTemplate, String key, String field,
+							  Object val, long version) {
+		String cacheKeyByHash = StrUtil.addPrefixIfNot(key, CACHE_PREFIX_HASH);
+		Boolean isSet = redisTemplate.opsForHash().putIfAbsent(cacheKeyByHash, field, val);
+		if(!Boolean.TRUE.equals(isSet) || version != LOCAL_VERSION.get()){
+			return;
+		}
+		LOCAL_HASH_CACHE.get(key, LocalHash::new)
+				.fields.put(field, toLocal(redisTemplate.getHashValueSerializer(), val));
+		// 检查与回填之间 可能发生失效 回填后再次校验
+		if(version != LOCAL_VERSION.get()){
+			LOCAL_HASH_CACHE.invalidate(key);
+		}
+	}
+
+	/**
+	 * 读穿透回填 Redis 与本地缓存 完整 Hash
+	 * @param redisTemplate redisTemplate
+	 * @param key 主键
+	 * @param cacheMap 缓存Map
+	 * @param version 查询源数据前的 本地缓存版本
+	 */
+	private static void hAllFill(RedisTemplate<String, Object> redisTemplate, String key,
+								 Map<String, Object> cacheMap, long version) {
+		String cacheKeyByHash = StrUtil.addPrefixIfNot(key, CACHE_PREFIX_HASH);
+		redisTemplate.opsForHash().putAll(cacheKeyByHash, cacheMap);
+		if(version != LOCAL_VERSION.get()){
+			return;
+		}
+		LocalHash completeHash = new LocalHash();
+		for (Map.Entry<String, Object> entry : cacheMap.entrySet()) {
+			completeHash.fields.put(entry.getKey(),
+					toLocal(redisTemplate.getHashValueSerializer(), entry.getValue()));
+		}
+		completeHash.complete = true;
+		LOCAL_HASH_CACHE.put(key, completeHash);
+		// 检查与回填之间 可能发生失效 回填后再次校验
+		if(version != LOCAL_VERSION.get()){
+			LOCAL_HASH_CACHE.invalidate(key);
+		}
+	}
+
+	/**
+	 * 转为本地缓存存储形式
+	 * 不可变类型 直接共享; 其余对象 (Model、JSON 等可变对象) 以编码后的字节存储
+	 * 避免调用方修改返回对象 (如 切换租户) 污染本地缓存
+	 * @param serializer 序列化
+	 * @param value 值
+	 * @return Object
+	 */
+	@SuppressWarnings("unchecked")
+	private static Object toLocal(RedisSerializer<?> serializer, Object value) {
+		if(null == value || value instanceof String || value instanceof Number || value instanceof Boolean){
+			return value;
+		}
+		return new LocalEncoded(((RedisSerializer<Object>) serializer).serialize(value));
+	}
+
+	/**
+	 * 本地缓存存储形式 还原为对象 每次命中都解码出新的实例
+	 * @param serializer 序列化
+	 * @param local 本地缓存值
+	 * @return Object
+	 */
+	private static Object fromLocal(RedisSerializer<?> serializer, Object local) {
+		if(local instanceof LocalEncoded){
+			return serializer.deserialize(((LocalEncoded) local).bytes);
+		}
+		return local;
+	}
+
+	/**
+	 * 清除本地缓存 并广播通知其他节点
+	 * @param field 字段 (为空则清除整个Key)
+	 * @param keys 主键
+	 */
+	private static void evictLocalAndBroadcast(String field, String... keys) {
+		for (String key : keys) {
+			evictLocal(key, field);
+		}
+
+		// 未初始化时 只清除本地缓存
+		if(null == redisPlugin){
+			log.warn("安全缓存 - RedisPlugin 未初始化 无法广播失效消息");
+			return;
+		}
+		redisPlugin.sendMessage(SecurityCacheMsg.createEvictMsg(field, keys));
+	}
+
 	/**
 	 * 判断是否不存在
 	 * @param key  key
@@ -745,6 +1005,33 @@ public final class SecurityCache {
 
 	}
 
+	/**
+	 * 本地 Hash 缓存
+	 */
+	private static final class LocalHash {
+
+		/** 字段 */
+		private final ConcurrentMap<String, Object> fields = new ConcurrentHashMap<>();
+
+		/** 是否为完整的 Hash (通过 hGetAll 回填) */
+		private volatile boolean complete;
+
+	}
+
+	/**
+	 * 本地缓存 已编码的值
+	 */
+	private static final class LocalEncoded {
+
+		/** 编码后的字节 (与 Redis 中存储一致) */
+		private final byte[] bytes;
+
+		private LocalEncoded(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+	}
+
 	/**
 	 * 私有化构造函数
 	 */
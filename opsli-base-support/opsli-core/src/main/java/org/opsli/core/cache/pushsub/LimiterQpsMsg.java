@@ -0,0 +1,57 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.core.cache.pushsub;
+
+import com.alibaba.fastjson.JSONObject;
+import org.opsli.plugins.redis.pushsub.entity.BaseSubMessage;
+import org.opsli.plugins.redis.pushsub.receiver.BaseReceiver;
+
+/**
+ * 限流 QPS 变更消息
+ *
+ * @author Parker
+ * @date 2023-04-26 14:20
+ */
+public final class LimiterQpsMsg extends BaseSubMessage {
+
+    /** 通道 */
+    public static final String CHANNEL = "limiter_qps";
+    /** 消息类型 */
+    public static final String TYPE = "QPS";
+    /** URI */
+    public static final String FIELD_URI = "uri";
+    /** QPS */
+    public static final String FIELD_QPS = "qps";
+
+    /**
+     * 构建 QPS 变更消息
+     * @param uri URI
+     * @param qps QPS (为空则删除覆盖)
+     * @return LimiterQpsMsg
+     */
+    public static LimiterQpsMsg createQpsMsg(final String uri, final Double qps){
+        JSONObject jsonObj = new JSONObject();
+        jsonObj.put(FIELD_URI, uri);
+        jsonObj.put(FIELD_QPS, qps);
+
+        LimiterQpsMsg msg = new LimiterQpsMsg();
+        msg.build(BaseReceiver.BASE_CHANNEL + CHANNEL, TYPE, jsonObj);
+        return msg;
+    }
+
+    private LimiterQpsMsg(){}
+
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.core.cache.pushsub;
+
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.opsli.common.enums.SystemInfo;
+import org.opsli.common.utils.RateLimiterUtil;
+import org.opsli.plugins.redis.pushsub.entity.BaseSubMessage;
+import org.opsli.plugins.redis.pushsub.receiver.BaseReceiver;
+import org.springframework.stereotype.Component;
+
+/**
+ * 限流 QPS 变更消息订阅
+ *
+ * 其他节点 调整 QPS 后 同步更新本节点 QPS 覆盖 并作废预取令牌
+ *
+ * @author Parker
+ * @date 2023-04-26 14:20
+ */
+@Slf4j
+@Component
+public class LimiterQpsReceiver extends BaseReceiver {
+
+    public LimiterQpsReceiver() {
+        super(LimiterQpsMsg.CHANNEL);
+    }
+
+    @Override
+    public void receiveMessage(String msg) {
+        if(msg == null){
+            return;
+        }
+        try {
+            JSONObject msgJson = JSONObject.parseObject(msg);
+            // 自身发出的消息 已预先处理
+            if(SystemInfo.INSTANCE.getSystemID().equals(msgJson.getString(BaseSubMessage.BASE_ID))){
+                return;
+            }
+
+            RateLimiterUtil.setQps(msgJson.getString(LimiterQpsMsg.FIELD_URI),
+                    msgJson.getDouble(LimiterQpsMsg.FIELD_QPS));
+        }catch (Exception e){
+            log.error(e.getMessage(), e);
+        }
+    }
+
+}
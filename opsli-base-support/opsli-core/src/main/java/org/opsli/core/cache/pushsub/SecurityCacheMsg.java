@@ -0,0 +1,62 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.core.cache.pushsub;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.opsli.plugins.redis.pushsub.entity.BaseSubMessage;
+import org.opsli.plugins.redis.pushsub.receiver.BaseReceiver;
+
+/**
+ * 安全缓存 本地缓存失效消息
+ *
+ * @author Parker
+ * @date 2023-04-10 10:12
+ */
+public final class SecurityCacheMsg extends BaseSubMessage {
+
+    /** 通道 */
+    public static final String CHANNEL = "security-cache";
+    /** 消息类型 */
+    public static final String TYPE = "EVICT";
+    /** 缓存Key集合 */
+    public static final String FIELD_KEYS = "keys";
+    /** Hash 字段 */
+    public static final String FIELD_HASH_FIELD = "field";
+
+    /**
+     * 构建 失效消息
+     * @param field Hash字段 (可为空)
+     * @param keys 缓存Key
+     * @return SecurityCacheMsg
+     */
+    public static SecurityCacheMsg createEvictMsg(final String field, final String... keys){
+        JSONObject jsonObj = new JSONObject();
+        JSONArray keyArray = new JSONArray();
+        for (String key : keys) {
+            keyArray.add(key);
+        }
+        jsonObj.put(FIELD_KEYS, keyArray);
+        jsonObj.put(FIELD_HASH_FIELD, field);
+
+        SecurityCacheMsg msg = new SecurityCacheMsg();
+        msg.build(BaseReceiver.BASE_CHANNEL + CHANNEL, TYPE, jsonObj);
+        return msg;
+    }
+
+    private SecurityCacheMsg(){}
+
+}
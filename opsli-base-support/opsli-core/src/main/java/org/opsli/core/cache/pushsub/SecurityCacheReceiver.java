@@ -0,0 +1,68 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.core.cache.pushsub;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.opsli.common.enums.SystemInfo;
+import org.opsli.core.cache.SecurityCache;
+import org.opsli.plugins.redis.pushsub.entity.BaseSubMessage;
+import org.opsli.plugins.redis.pushsub.receiver.BaseReceiver;
+import org.springframework.stereotype.Component;
+
+/**
+ * 安全缓存 本地缓存失效消息订阅
+ *
+ * 其他节点 修改/删除 缓存后 同步清除本节点 本地缓存
+ *
+ * @author Parker
+ * @date 2023-04-10 10:12
+ */
+@Slf4j
+@Component
+public class SecurityCacheReceiver extends BaseReceiver {
+
+    public SecurityCacheReceiver() {
+        super(SecurityCacheMsg.CHANNEL);
+    }
+
+    @Override
+    public void receiveMessage(String msg) {
+        if(msg == null){
+            return;
+        }
+        try {
+            JSONObject msgJson = JSONObject.parseObject(msg);
+            // 自身发出的消息 已预先处理
+            if(SystemInfo.INSTANCE.getSystemID().equals(msgJson.getString(BaseSubMessage.BASE_ID))){
+                return;
+            }
+
+            JSONArray keys = msgJson.getJSONArray(SecurityCacheMsg.FIELD_KEYS);
+            if(null == keys){
+                return;
+            }
+            String field = msgJson.getString(SecurityCacheMsg.FIELD_HASH_FIELD);
+            for (int i = 0; i < keys.size(); i++) {
+                SecurityCache.evictLocal(keys.getString(i), field);
+            }
+        }catch (Exception e){
+            log.error(e.getMessage(), e);
+        }
+    }
+
+}
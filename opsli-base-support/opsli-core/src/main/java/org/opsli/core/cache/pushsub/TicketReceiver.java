@@ -0,0 +1,60 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.core.cache.pushsub;
+
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.opsli.common.enums.SystemInfo;
+import org.opsli.core.utils.UserTokenUtil;
+import org.opsli.plugins.redis.pushsub.entity.BaseSubMessage;
+import org.opsli.plugins.redis.pushsub.receiver.BaseReceiver;
+import org.springframework.stereotype.Component;
+
+/**
+ * 用户票据 吊销消息订阅
+ *
+ * 其他节点 退出登录/弹出票据后 同步清除本节点 本地票据
+ *
+ * @author Parker
+ * @date 2023-04-11 14:20
+ */
+@Slf4j
+@Component
+public class TicketReceiver extends BaseReceiver {
+
+    public TicketReceiver() {
+        super(TicketMsg.CHANNEL);
+    }
+
+    @Override
+    public void receiveMessage(String msg) {
+        if(msg == null){
+            return;
+        }
+        try {
+            JSONObject msgJson = JSONObject.parseObject(msg);
+            // 自身发出的消息 已预先处理
+            if(SystemInfo.INSTANCE.getSystemID().equals(msgJson.getString(BaseSubMessage.BASE_ID))){
+                return;
+            }
+
+            UserTokenUtil.evictLocalTicket(msgJson.getString(TicketMsg.FIELD_TOKEN));
+        }catch (Exception e){
+            log.error(e.getMessage(), e);
+        }
+    }
+
+}
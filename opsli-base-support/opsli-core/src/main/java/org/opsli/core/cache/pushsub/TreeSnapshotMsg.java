@@ -0,0 +1,53 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.core.cache.pushsub;
+
+import com.alibaba.fastjson.JSONObject;
+import org.opsli.plugins.redis.pushsub.entity.BaseSubMessage;
+import org.opsli.plugins.redis.pushsub.receiver.BaseReceiver;
+
+/**
+ * 树快照 失效消息
+ *
+ * @author Parker
+ * @date 2021-03-12 10:20
+ */
+public final class TreeSnapshotMsg extends BaseSubMessage {
+
+    /** 通道 */
+    public static final String CHANNEL = "tree-snapshot";
+    /** 消息类型 */
+    public static final String TYPE = "EVICT";
+    /** 树类型 */
+    public static final String FIELD_TREE_TYPE = "treeType";
+
+    /**
+     * 构建 失效消息
+     * @param treeType 树类型
+     * @return TreeSnapshotMsg
+     */
+    public static TreeSnapshotMsg createEvictMsg(final String treeType){
+        JSONObject jsonObj = new JSONObject();
+        jsonObj.put(FIELD_TREE_TYPE, treeType);
+
+        TreeSnapshotMsg msg = new TreeSnapshotMsg();
+        msg.build(BaseReceiver.BASE_CHANNEL + CHANNEL, TYPE, jsonObj);
+        return msg;
+    }
+
+    private TreeSnapshotMsg(){}
+
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.core.cache.pushsub;
+
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.opsli.common.enums.SystemInfo;
+import org.opsli.core.utils.TreeSnapshotUtil;
+import org.opsli.plugins.redis.pushsub.entity.BaseSubMessage;
+import org.opsli.plugins.redis.pushsub.receiver.BaseReceiver;
+import org.springframework.stereotype.Component;
+
+/**
+ * 树快照 失效消息订阅
+ *
+ * 其他节点 变更树数据后 同步失效本节点 树快照
+ *
+ * @author Parker
+ * @date 2021-03-12 10:20
+ */
+@Slf4j
+@Component
+public class TreeSnapshotReceiver extends BaseReceiver {
+
+    public TreeSnapshotReceiver() {
+        super(TreeSnapshotMsg.CHANNEL);
+    }
+
+    @Override
+    public void receiveMessage(String msg) {
+        if(msg == null){
+            return;
+        }
+        try {
+            JSONObject msgJson = JSONObject.parseObject(msg);
+            // 自身发出的消息 已预先处理
+            if(SystemInfo.INSTANCE.getSystemID().equals(msgJson.getString(BaseSubMessage.BASE_ID))){
+                return;
+            }
+            TreeSnapshotUtil.evictLocal(msgJson.getString(TreeSnapshotMsg.FIELD_TREE_TYPE));
+        }catch (Exception e){
+            log.error(e.getMessage(), e);
+        }
+    }
+
+}
@@ -27,7 +27,9 @@ import org.opsli.common.enums.AlertType;
 import org.opsli.common.exception.ServiceException;
 import org.opsli.common.utils.OutputStreamUtil;
 import org.opsli.common.utils.RateLimiterUtil;
+import org.opsli.core.autoconfigure.properties.GlobalProperties;
 import org.opsli.core.msg.CoreMsg;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 import org.springframework.web.context.request.RequestAttributes;
@@ -52,6 +54,18 @@ import static org.opsli.common.constants.OrderConstants.LIMITER_AOP_SORT;
 @Component
 public class LimiterAop {
 
+    /**
+     * 初始化 加载配置中的 QPS 覆盖
+     * @param globalProperties 配置
+     */
+    @Autowired
+    public void init(GlobalProperties globalProperties){
+        GlobalProperties.Limiter limiter = globalProperties.getLimiter();
+        if(limiter == null || limiter.getQps() == null){
+            return;
+        }
+        limiter.getQps().forEach(RateLimiterUtil::setQps);
+    }
 
     @Pointcut("@annotation(org.opsli.common.annotation.Limiter)")
     public void requestMapping() {
@@ -74,7 +88,8 @@ public class LimiterAop {
                 Limiter limiter = method.getAnnotation(Limiter.class);
                 if(limiter != null){
                     AlertType alertType = limiter.alertType();
-                    double qps = limiter.qps();
+                    // 每次读取 QPS 变更后立即生效
+                    double qps = RateLimiterUtil.getQps(request.getRequestURI(), limiter.qps());
 
                     // 限流
                     boolean enterFlag = RateLimiterUtil.enter(request, qps);
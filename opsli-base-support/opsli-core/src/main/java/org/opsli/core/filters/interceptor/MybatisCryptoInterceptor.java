@@ -17,8 +17,11 @@ import org.apache.ibatis.session.RowBounds;
 import org.opsli.core.autoconfigure.properties.EncryptProperties;
 import org.springframework.stereotype.Component;
 import java.lang.reflect.*;
+import java.time.temporal.Temporal;
 import java.time.chrono.ChronoLocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Mybatis 拦截器
@@ -28,6 +31,9 @@ import java.util.*;
  * Signature.method:在定义拦截类的基础之上，在定义拦截的方法
  * Signature.args:在定义拦截方法的基础之上在定义拦截的方法对应的参数，JAVA里面方法可能重载，故注意参数的类型和顺序
  *
+ * 每个类 只解析一次 加密计划 (CryptoPlan)：只记录 注解的 String 字段 与 可能包含嵌套对象的字段
+ * 没有任何加密字段的类 标记为 空计划 直接跳过 不再逐行反射遍历
+ *
  * @author Parker
  * @date 2022-08-07
  */
@@ -43,8 +49,21 @@ import java.util.*;
 )
 public class MybatisCryptoInterceptor implements Interceptor {
 
+    /** 结果集 并行解密阈值 */
+    private static final int PARALLEL_THRESHOLD = 512;
+
+    /** 空计划 */
+    private static final CryptoPlan EMPTY_PLAN =
+            new CryptoPlan(Collections.emptyList(), Collections.emptyList());
+
     private final EncryptProperties encryptProperties;
 
+    /** 类 加密计划缓存 */
+    private final ConcurrentMap<Class<?>, CryptoPlan> planCache = new ConcurrentHashMap<>();
+
+    /** 加密解密器 实例缓存 (无状态 可共享) */
+    private final ConcurrentMap<Class<? extends ICrypto>, ICrypto> cryptoCache = new ConcurrentHashMap<>();
+
     /**
      * @param invocation 拦截到对象
      * @return
@@ -72,6 +91,7 @@ public class MybatisCryptoInterceptor implements Interceptor {
      * @return
      * @throws Throwable
      */
+    @SuppressWarnings("unchecked")
     private Object selectHandle(Invocation invocation) throws Throwable {
         Object[] args = invocation.getArgs();
         MappedStatement ms = (MappedStatement) args[0];
@@ -97,10 +117,24 @@ public class MybatisCryptoInterceptor implements Interceptor {
             boundSql = (BoundSql) args[5];
         }
 
+        // 自定义 ResultHandler (如 流式读取) 结果不会出现在返回集合中 需要逐行解密后再交给原处理器
+        if (resultHandler != null && resultHandler != Executor.NO_RESULT_HANDLER) {
+            ResultHandler<Object> delegate = resultHandler;
+            resultHandler = context -> {
+                handleResult(context.getResultObject());
+                delegate.handleResult(context);
+            };
+        }
+
         List<Object> resultList = executor.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql);
 
-        for (Object o : resultList) {
-            handleParameterOrResult(o, CryptoType.DECRYPT);
+        if (resultList.size() >= PARALLEL_THRESHOLD && hasCryptoField(resultList.get(0))) {
+            // 大结果集 并行解密
+            resultList.parallelStream().forEach(this::handleResult);
+        } else {
+            for (Object o : resultList) {
+                handleResult(o);
+            }
         }
 
         return resultList;
@@ -119,68 +153,200 @@ public class MybatisCryptoInterceptor implements Interceptor {
         return invocation.proceed();
     }
 
+    /**
+     * 处理单条结果
+     *
+     * @param result
+     */
+    private void handleResult(Object result) {
+        handleParameterOrResult(result, CryptoType.DECRYPT);
+    }
+
     /**
      * 处理参数或结果
      *
      * @param object
      * @param cryptoType
-     * @throws IllegalAccessException
      */
-    private void handleParameterOrResult(Object object, CryptoType cryptoType) throws IllegalAccessException {
-        HashMap<Field, Object> fieldObjectHashMap = new HashMap<>();
+    private void handleParameterOrResult(Object object, CryptoType cryptoType) {
+        if (object == null) {
+            return;
+        }
+        // 同一对象 只处理一次 (如 MyBatis-Plus 参数Map中 et 与 param1 指向同一实体 防止重复加密)
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
         //多个参数
         if (object instanceof Map) {
-            Map paramMap = (Map) object;
-            Set keySet = paramMap.keySet();
-            for (Object key : keySet) {
-                Object o = paramMap.get(key);
-                if (o != null) {
-                    handleObject(o, o.getClass(), fieldObjectHashMap);
+            Map<?, ?> paramMap = (Map<?, ?>) object;
+            for (Object o : paramMap.values()) {
+                handleObject(o, cryptoType, visited);
+            }
+        } else {
+            handleObject(object, cryptoType, visited);
+        }
+    }
+
+    /**
+     * 是否是
+     *
+     * @param object
+     * @return
+     */
+    private boolean isFilter(Object object) {
+
+        return object == null || object instanceof CharSequence || object instanceof Number || object instanceof Collection || object instanceof Date || object instanceof ChronoLocalDate;
+    }
+
+    /**
+     * 是否为叶子类型 (不可能包含加密字段)
+     *
+     * @param type
+     * @return
+     */
+    private boolean isLeafType(Class<?> type) {
+        if (type.isPrimitive() || type.isEnum() || type.isArray()) {
+            return true;
+        }
+        if (CharSequence.class.isAssignableFrom(type) || Number.class.isAssignableFrom(type)
+                || Boolean.class.equals(type) || Character.class.equals(type)
+                || Date.class.isAssignableFrom(type) || Temporal.class.isAssignableFrom(type)
+                || Map.class.isAssignableFrom(type)) {
+            return true;
+        }
+        // JDK 内部类 不做反射遍历 (集合单独处理)
+        String name = type.getName();
+        return !Collection.class.isAssignableFrom(type) && !Object.class.equals(type)
+                && (name.startsWith("java.") || name.startsWith("javax."));
+    }
+
+    /**
+     * 处理Object
+     *
+     * @param obj
+     * @param cryptoType
+     * @param visited
+     */
+    private void handleObject(Object obj, CryptoType cryptoType, Set<Object> visited) {
+        //过滤
+        if (obj == null) {
+            return;
+        }
+
+        if (obj instanceof Collection) {
+            for (Object o : (Collection<?>) obj) {
+                if (isFilter(o)) {
+                    //默认集合内类型一致
+                    break;
                 }
+                handleObject(o, cryptoType, visited);
+            }
+            return;
+        }
+
+        if (isFilter(obj) || isLeafType(obj.getClass())) {
+            return;
+        }
+
+        CryptoPlan plan = getPlan(obj.getClass());
+        if (plan == EMPTY_PLAN || !visited.add(obj)) {
+            return;
+        }
 
+        try {
+            for (CryptoField cryptoField : plan.cryptoFields) {
+                handleString(cryptoField, obj, cryptoType);
             }
-        } else {
-            if (object != null) {
-                handleObject(object, object.getClass(), fieldObjectHashMap);
+            for (Field nestedField : plan.nestedFields) {
+                handleObject(nestedField.get(obj), cryptoType, visited);
             }
+        } catch (IllegalAccessException e) {
+            log.error(e.getMessage(), e);
         }
+    }
 
-        //统一修改加密解密值
-        fieldObjectHashMap.keySet().forEach(key -> {
-            try {
-                handleString(key, fieldObjectHashMap.get(key), cryptoType);
-            } catch (Exception e) {
-                e.printStackTrace();
+    /**
+     * 处理字符
+     *
+     * @param cryptoField
+     * @param object
+     * @param cryptoType
+     */
+    private void handleString(CryptoField cryptoField, Object object, CryptoType cryptoType) throws IllegalAccessException {
+        Object value = cryptoField.field.get(object);
+        if (!(value instanceof String)) {
+            return;
+        }
+
+        try {
+            //解密后的值
+            String valueResult;
+            if (cryptoType.equals(CryptoType.DECRYPT)) {
+                valueResult = cryptoField.crypto.decrypt((String) value, cryptoField.key);
+            } else {
+                valueResult = cryptoField.crypto.encrypt((String) value, cryptoField.key);
             }
-        });
+            cryptoField.field.set(object, String.valueOf(valueResult));
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
     }
 
     /**
-     * 是否是基本类型
+     * 是否包含加密字段
      *
-     * @param type
+     * @param object
      * @return
      */
-    private boolean isBase(Type type) {
-        return boolean.class.equals(type) ||
-                char.class.equals(type) ||
-                long.class.equals(type) ||
-                int.class.equals(type) ||
-                byte.class.equals(type) ||
-                short.class.equals(type) ||
-                double.class.equals(type) ||
-                float.class.equals(type);
+    private boolean hasCryptoField(Object object) {
+        return object != null && !isFilter(object) && !isLeafType(object.getClass())
+                && getPlan(object.getClass()) != EMPTY_PLAN;
     }
 
+    // ========================= 加密计划 =========================
+
     /**
-     * 是否是
+     * 获得 类 加密计划
      *
-     * @param object
+     * @param oClass
      * @return
      */
-    private boolean isFilter(Object object) {
+    private CryptoPlan getPlan(Class<?> oClass) {
+        return planCache.computeIfAbsent(oClass, this::createPlan);
+    }
 
-        return object == null || object instanceof CharSequence || object instanceof Number || object instanceof Collection || object instanceof Date || object instanceof ChronoLocalDate;
+    /**
+     * 解析 类 加密计划
+     *
+     * @param oClass
+     * @return
+     */
+    private CryptoPlan createPlan(Class<?> oClass) {
+        List<CryptoField> cryptoFields = new ArrayList<>();
+        List<Field> nestedFields = new ArrayList<>();
+
+        for (Field declaredField : mergeField(oClass, null)) {
+            Class<?> fieldType = declaredField.getType();
+            CryptoMapperField annotation = declaredField.getAnnotation(CryptoMapperField.class);
+            if (String.class.equals(fieldType)) {
+                if (annotation != null) {
+                    declaredField.setAccessible(true);
+                    cryptoFields.add(new CryptoField(declaredField,
+                            getCrypto(annotation.iCrypto()), getKey(annotation)));
+                }
+            } else if (!isLeafType(fieldType)) {
+                // 可能包含嵌套对象 运行时按实际类型处理
+                try {
+                    declaredField.setAccessible(true);
+                    nestedFields.add(declaredField);
+                } catch (RuntimeException e) {
+                    log.debug("跳过无法访问的字段：{}", declaredField);
+                }
+            }
+        }
+
+        if (cryptoFields.isEmpty() && nestedFields.isEmpty()) {
+            return EMPTY_PLAN;
+        }
+        return new CryptoPlan(cryptoFields, nestedFields);
     }
 
     /**
@@ -213,110 +379,35 @@ public class MybatisCryptoInterceptor implements Interceptor {
     }
 
     /**
-     * 处理Object
+     * 获得秘钥 注解优先 否则走全局配置
      *
-     * @param obj
-     * @param oClass
-     * @throws IllegalAccessException
+     * @param annotation
+     * @return
      */
-    private void handleObject(Object obj, Class<?> oClass, HashMap<Field, Object> fieldObjectHashMap) throws IllegalAccessException {
-        //过滤
-        if (isFilter(obj)) {
-            return;
+    private String getKey(CryptoMapperField annotation) {
+        //属性上的key
+        String annotationKey = annotation.key();
+        if (StrUtil.isNotBlank(annotationKey)) {
+            return annotationKey;
         }
-
-        List<Field> fields = mergeField(oClass, null);
-
-        for (Field declaredField : fields) {
-
-            //静态属性直接跳过
-            if (Modifier.isStatic(declaredField.getModifiers())) {
-                continue;
-            }
-
-            boolean accessible = declaredField.isAccessible();
-            declaredField.setAccessible(true);
-            Object value = declaredField.get(obj);
-            declaredField.setAccessible(accessible);
-
-            if (value == null) {
-                // TODO
-                continue;
-            } else if (value instanceof Number) {
-                // TODO
-                continue;
-            } else if (value instanceof String) {
-                CryptoMapperField annotation = declaredField.getAnnotation(CryptoMapperField.class);
-                if (annotation != null) {
-                    fieldObjectHashMap.put(declaredField, obj);
-                }
-
-            } else if (value instanceof Collection) {
-                Collection coll = (Collection) value;
-                for (Object o : coll) {
-                    if (isFilter(o)) {
-                        //默认集合内类型一致
-                        break;
-                    }
-                    handleObject(o, o.getClass(), fieldObjectHashMap);
-                }
-            } else {
-                handleObject(value, value.getClass(), fieldObjectHashMap);
-            }
-        }
-
+        //全局配置的key
+        return encryptProperties.getKey();
     }
 
     /**
-     * 处理字符
+     * 获得加密解密器
      *
-     * @param field
-     * @param object
-     * @param cryptoType
-     * @throws IllegalAccessException
-     * @throws InstantiationException
-     * @throws NoSuchMethodException
-     * @throws InvocationTargetException
+     * @param iCryptoImpl
+     * @return
      */
-    private void handleString(Field field, Object object, CryptoType cryptoType) throws Exception {
-
-        boolean accessible = field.isAccessible();
-        field.setAccessible(true);
-        Object value = field.get(object);
-
-        CryptoMapperField annotation = field.getAnnotation(CryptoMapperField.class);
-        if (annotation != null) {
-
-            String key;
-            //全局配置的key
-            String propertiesKey = encryptProperties.getKey();
-            log.debug("全局key是：" + propertiesKey);
-            //属性上的key
-            String annotationKey = annotation.key();
-            log.debug("注解key是：" + annotationKey);
-
-            if (StrUtil.isNotBlank(annotationKey)) {
-                key = annotationKey;
-            } else {
-                key = propertiesKey;
-            }
-
-            Class<? extends ICrypto> iCryptoImpl = annotation.iCrypto();
-            ICrypto iCrypto = iCryptoImpl.newInstance();
-
-            //解密后的值
-            String valueResult;
-            if (cryptoType.equals(CryptoType.DECRYPT)) {
-                valueResult = iCrypto.decrypt(String.valueOf(value), key);
-            } else {
-                valueResult = iCrypto.encrypt(String.valueOf(value), key);
+    private ICrypto getCrypto(Class<? extends ICrypto> iCryptoImpl) {
+        return cryptoCache.computeIfAbsent(iCryptoImpl, clazz -> {
+            try {
+                return clazz.newInstance();
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new IllegalStateException("加密解密器实例化失败：" + clazz.getName(), e);
             }
-
-            log.debug("原值：" + value);
-            log.debug("现在：" + valueResult);
-            field.set(object, String.valueOf(valueResult));
-            field.setAccessible(accessible);
-        }
+        });
     }
 
     /**
@@ -333,4 +424,39 @@ public class MybatisCryptoInterceptor implements Interceptor {
     @Override
     public void setProperties(Properties properties) {
     }
+
+    /**
+     * 类 加密计划
+     */
+    private static final class CryptoPlan {
+
+        /** 加密字段 */
+        private final List<CryptoField> cryptoFields;
+
+        /** 嵌套字段 */
+        private final List<Field> nestedFields;
+
+        private CryptoPlan(List<CryptoField> cryptoFields, List<Field> nestedFields) {
+            this.cryptoFields = cryptoFields;
+            this.nestedFields = nestedFields;
+        }
+    }
+
+    /**
+     * 加密字段
+     */
+    private static final class CryptoField {
+
+        private final Field field;
+
+        private final ICrypto crypto;
+
+        private final String key;
+
+        private CryptoField(Field field, ICrypto crypto, String key) {
+            this.field = field;
+            this.crypto = crypto;
+            this.key = key;
+        }
+    }
 }
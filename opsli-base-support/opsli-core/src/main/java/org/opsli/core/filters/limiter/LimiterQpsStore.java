@@ -0,0 +1,87 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.core.filters.limiter;
+
+import cn.hutool.core.convert.Convert;
+import lombok.extern.slf4j.Slf4j;
+import org.opsli.common.constants.RedisConstants;
+import org.opsli.common.utils.RateLimiterUtil;
+import org.opsli.core.cache.CacheUtil;
+import org.opsli.plugins.redis.RedisPlugin;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 限流 QPS 覆盖 持久化
+ *
+ * 运行时调整的 QPS 覆盖 保存在 Redis 中, 节点启动完成后加载 (优先于配置文件中的初始覆盖)
+ * 后启动的节点 不会错过 启动前广播的 QPS 变更
+ *
+ * @author Parker
+ * @date 2023-04-26 14:20
+ */
+@Slf4j
+@Component
+public class LimiterQpsStore implements ApplicationListener<ApplicationReadyEvent> {
+
+    @Autowired
+    private RedisPlugin redisPlugin;
+
+    /**
+     * 保存 QPS 覆盖
+     * @param uri URI
+     * @param qps QPS (为空则删除覆盖)
+     * @return boolean
+     */
+    public boolean save(String uri, Double qps) {
+        String key = CacheUtil.formatKey(RedisConstants.PREFIX_LIMITER_QPS);
+        if(null == qps){
+            try {
+                redisPlugin.hDelete(key, uri);
+                return true;
+            }catch (Exception e){
+                log.error(e.getMessage(), e);
+                return false;
+            }
+        }
+        return redisPlugin.hPut(key, uri, qps);
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        Map<Object, Object> overrides;
+        try {
+            overrides = redisPlugin.hGetAll(CacheUtil.formatKey(RedisConstants.PREFIX_LIMITER_QPS));
+        }catch (Exception e){
+            log.warn("限流器 - 加载 QPS 覆盖失败: {}", e.getMessage());
+            return;
+        }
+        if(null == overrides){
+            return;
+        }
+        for (Map.Entry<Object, Object> entry : overrides.entrySet()) {
+            Double qps = Convert.toDouble(entry.getValue());
+            if(null != qps){
+                RateLimiterUtil.setQps(Convert.toStr(entry.getKey()), qps);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.core.filters.limiter;
+
+import cn.hutool.core.util.StrUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import lombok.extern.slf4j.Slf4j;
+import org.opsli.common.constants.RedisConstants;
+import org.opsli.common.utils.RateLimiterUtil;
+import org.opsli.core.autoconfigure.properties.GlobalProperties;
+import org.opsli.core.cache.CacheUtil;
+import org.opsli.plugins.redis.RedisPlugin;
+import org.opsli.plugins.redis.scripts.enums.RedisScriptsEnum;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis 令牌桶 集群限流
+ *
+ * 令牌桶保存在 Redis 中 由脚本原子补充与扣减, 所有节点共享同一个 QPS
+ * 每次回源 按 QPS * 预取时长 批量申请令牌 在本地消费, 减少 Redis 往返
+ * 预取的令牌已从全局扣除 过期未用则作废, 因此不会超出全局 QPS
+ * 获取不到令牌 直接拒绝 不阻塞请求线程
+ * Redis 不可用时 降级为各节点单机限流 (见 RateLimiterUtil)
+ *
+ * 开关见 opsli.limiter.cluster
+ *
+ * @author Parker
+ * @date 2023-04-26 14:20
+ */
+@Slf4j
+@Component
+public class RedisTokenBucketBackend implements RateLimiterUtil.Backend, DisposableBean {
+
+    /** 默认缓存个数 超出后自动清理 */
+    private static final int DEFAULT_CACHE_COUNT = 10_0000;
+    /** 默认缓存时效(分钟) 超出后自动清理 */
+    private static final int DEFAULT_CACHE_TIME = 5;
+    /** 单次最大预取令牌数 */
+    private static final int MAX_PREFETCH = 1000;
+
+    /** 本地预取令牌 */
+    private final Cache<String, LocalPermits> permitsCache = CacheBuilder.newBuilder()
+            .maximumSize(DEFAULT_CACHE_COUNT)
+            .expireAfterAccess(DEFAULT_CACHE_TIME, TimeUnit.MINUTES).build();
+
+    /** 预取时长(毫秒) */
+    private int prefetchMillis;
+
+    private RedisPlugin redisPlugin;
+
+    /**
+     * 初始化
+     * @param globalProperties 配置
+     * @param redisPlugin Redis插件
+     */
+    @Autowired
+    public void init(GlobalProperties globalProperties, RedisPlugin redisPlugin){
+        this.redisPlugin = redisPlugin;
+        GlobalProperties.Limiter limiter = globalProperties.getLimiter();
+        if(limiter == null || !Boolean.TRUE.equals(limiter.getCluster())){
+            return;
+        }
+        this.prefetchMillis = limiter.getPrefetchMillis() == null ? 0 : Math.max(0, limiter.getPrefetchMillis());
+        RateLimiterUtil.setBackend(this);
+    }
+
+    @Override
+    public boolean tryAcquire(String clientIpAddress, String resource, double qps) {
+        String key = clientIpAddress + StrUtil.COLON + resource;
+        LocalPermits permits;
+        try {
+            permits = permitsCache.get(key, LocalPermits::new);
+        }catch (ExecutionException e){
+            log.error(e.getMessage(), e);
+            return false;
+        }
+
+        // 优先消费本地令牌
+        long now = System.currentTimeMillis();
+        if(permits.take(now, qps)){
+            return true;
+        }
+        // 令牌桶已空 下一个令牌生成前 直接拒绝
+        if(permits.isEmpty(now, qps)){
+            return false;
+        }
+
+        // 回源 批量申请令牌
+        int requested = (int) Math.max(1, Math.min(MAX_PREFETCH, Math.floor(qps * prefetchMillis / 1000d)));
+        // Redis 不可用时 异常直接抛出 由 RateLimiterUtil 降级为单机限流
+        Long granted = redisPlugin.callScript(RedisScriptsEnum.REDIS_TOKEN_BUCKET, Long.class,
+                Lists.newArrayList(CacheUtil.formatKey(RedisConstants.PREFIX_LIMITER) + key),
+                qps, Math.max(1d, qps), requested);
+        if(granted == null || granted <= 0){
+            permits.markEmpty(now + (long) Math.ceil(1000d / qps), qps);
+            return false;
+        }
+
+        // 本次消费一个 其余留在本地
+        if(granted > 1){
+            permits.put(now + prefetchMillis, qps, (int) (granted - 1));
+        }
+        return true;
+    }
+
+    @Override
+    public void qpsChanged(String resource) {
+        // 作废 该资源 全部 IP 的预取令牌 与 空桶标记
+        String suffix = StrUtil.COLON + resource;
+        permitsCache.asMap().keySet().removeIf(key -> key.endsWith(suffix));
+    }
+
+    @Override
+    public void destroy() {
+        RateLimiterUtil.setBackend(null);
+    }
+
+    // ==============
+
+    /**
+     * 本地预取令牌
+     */
+    private static final class LocalPermits {
+
+        /** 剩余令牌 */
+        private int remaining;
+
+        /** 过期时间 */
+        private long expireAt;
+
+        /** 预取时的 QPS (变更后作废) */
+        private double qps;
+
+        /** 令牌桶为空 截止时间 */
+        private long emptyUntil;
+
+        synchronized boolean take(long now, double currQps) {
+            if(remaining <= 0 || now >= expireAt || qps != currQps){
+                remaining = 0;
+                return false;
+            }
+            remaining--;
+            return true;
+        }
+
+        synchronized boolean isEmpty(long now, double currQps) {
+            return qps == currQps && now < emptyUntil;
+        }
+
+        synchronized void markEmpty(long until, double currQps) {
+            remaining = 0;
+            emptyUntil = until;
+            qps = currQps;
+        }
+
+        synchronized void put(long expire, double currQps, int count) {
+            // 未过期且 QPS 不变 则累加, 否则替换
+            if(remaining > 0 && qps == currQps && System.currentTimeMillis() < expireAt){
+                remaining += count;
+                expireAt = Math.max(expireAt, expire);
+                return;
+            }
+            remaining = count;
+            expireAt = expire;
+            qps = currQps;
+        }
+    }
+
+}
@@ -15,6 +15,8 @@
  */
 package org.opsli.core.holder;
 
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.util.ObjectUtil;
 import com.alibaba.ttl.TransmittableThreadLocal;
 import org.apache.commons.lang3.StringUtils;
 import org.opsli.core.utils.UserTokenUtil;
@@ -23,7 +25,14 @@ import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * 用户认证信息上下文
@@ -39,6 +48,16 @@ public final class UserContextHolder {
      */
     public static final ThreadLocal<String> THREAD_LOCAL = new TransmittableThreadLocal<>();
 
+    /**
+     * 请求内 用户身份缓存
+     * 同一次请求内 相同缓存Key 最多只查询一次
+     * 采用普通 ThreadLocal 不向子线程/线程池传递 避免缓存被其他线程持有 存活超过请求本身
+     */
+    private static final ThreadLocal<Map<String, Object>> CONTEXT_CACHE = new ThreadLocal<>();
+
+    /** 空值占位 */
+    private static final Object NULL_VALUE = new Object();
+
     /**
      * 获取当前上下文用户
      * 推荐用法,避免空指针:
@@ -76,6 +95,107 @@ public final class UserContextHolder {
 
     public static void clear() {
         THREAD_LOCAL.remove();
+        CONTEXT_CACHE.remove();
+    }
+
+    /**
+     * 开启 请求内 用户身份缓存
+     */
+    public static void openContextCache() {
+        CONTEXT_CACHE.set(new ConcurrentHashMap<>());
+    }
+
+    /**
+     * 关闭 请求内 用户身份缓存
+     */
+    public static void closeContextCache() {
+        CONTEXT_CACHE.remove();
+    }
+
+    /**
+     * 获得 请求内 用户身份缓存
+     * 如果未开启 则直接查询源数据
+     * 返回值为副本 (集合只读) 调用方修改返回值 不会污染缓存
+     *
+     * @param key 缓存Key
+     * @param callbackSource 原数据回调
+     * @return V
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> V getContextCache(String key, Supplier<V> callbackSource) {
+        Map<String, Object> contextCache = CONTEXT_CACHE.get();
+        if(null == contextCache || null == key){
+            return callbackSource.get();
+        }
+
+        Object cache = contextCache.get(key);
+        if(null == cache){
+            // 这里不使用 computeIfAbsent 防止回调内 嵌套查询 造成递归更新
+            V source = callbackSource.get();
+            cache = null == source ? NULL_VALUE : source;
+            contextCache.putIfAbsent(key, cache);
+        }
+        return NULL_VALUE == cache ? null : (V) copyOf(cache);
+    }
+
+    /**
+     * 获得缓存值副本
+     * 不可变类型 直接共享; BitSet、Bean 复制; 集合 只读包装
+     * @param cache 缓存值
+     * @return Object
+     */
+    private static Object copyOf(Object cache) {
+        if(cache instanceof String || cache instanceof Number
+                || cache instanceof Boolean || cache instanceof Enum){
+            return cache;
+        }
+        if(cache instanceof BitSet){
+            return ((BitSet) cache).clone();
+        }
+        if(cache instanceof Map){
+            return Collections.unmodifiableMap((Map<?, ?>) cache);
+        }
+        if(cache instanceof List){
+            return Collections.unmodifiableList((List<?>) cache);
+        }
+        if(cache instanceof Set){
+            return Collections.unmodifiableSet((Set<?>) cache);
+        }
+        if(cache instanceof Cloneable){
+            return ObjectUtil.clone(cache);
+        }
+        if(BeanUtil.isBean(cache.getClass())){
+            return BeanUtil.copyProperties(cache, cache.getClass());
+        }
+        return cache;
+    }
+
+    /**
+     * 删除 请求内 用户身份缓存
+     * @param keys 缓存Key
+     */
+    public static void removeContextCache(String... keys) {
+        Map<String, Object> contextCache = CONTEXT_CACHE.get();
+        if(null == contextCache || null == keys){
+            return;
+        }
+        for (String key : keys) {
+            if(null != key){
+                contextCache.remove(key);
+            }
+        }
+    }
+
+    /**
+     * 按前缀删除 请求内 用户身份缓存
+     * @param prefix 缓存Key前缀
+     */
+    public static void removeContextCacheByPrefix(String prefix) {
+        Map<String, Object> contextCache = CONTEXT_CACHE.get();
+        if(null == contextCache || null == prefix){
+            return;
+        }
+        contextCache.keySet().removeIf(key -> key.startsWith(prefix));
     }
 
 
@@ -48,6 +48,11 @@ public enum CoreMsg implements BaseMsg {
     EXCEL_IMPORT_ERROR(10303,"Excel导入失败!   -  耗时：{}  -  失败信息：{}"),
     EXCEL_IMPORT_NO(10304,"导入对象为空"),
     EXCEL_FILE_NULL(10305,"请选择文件"),
+    EXCEL_IMPORT_REJECT(10306,"EXCEL 导入完成！  -  耗时：{}  -  成功：{} 条  -  拒绝：{} 条"),
+    EXCEL_JOB_SUBMIT(200,"Excel 任务已提交，请稍后查询任务进度"),
+    EXCEL_JOB_BUSY(10307,"当前 Excel 任务过多，请稍后再试"),
+    EXCEL_JOB_NULL(10308,"Excel 任务不存在或已过期"),
+    EXCEL_JOB_SPOOL_ERROR(10309,"Excel 文件暂存失败"),
     EXCEL_HANDLE_MAX(10700, "超出最大操作数量, 当前数据[{}]条，允许最大阈值[{}]条"),
 
 
@@ -28,6 +28,7 @@ import org.opsli.common.utils.FieldUtil;
 import org.opsli.common.utils.ListDistinctUtil;
 import org.opsli.core.base.entity.BaseEntity;
 import org.opsli.core.persistence.querybuilder.conf.WebQueryConf;
+import org.opsli.core.utils.OrgUtil;
 import org.opsli.core.utils.UserUtil;
 
 import java.util.List;
@@ -91,6 +92,39 @@ public class QueryDataPermsHandler implements QueryBuilderChain{
     }
 
 
+    /**
+     * 获得 当前用户 数据权限查询类型
+     *
+     * @param currUser 当前用户
+     * @param orgIdGroupList 当前用户 组织机构集合
+     * @return ConditionType
+     */
+    public static ConditionType getConditionType(UserModel currUser, List<String> orgIdGroupList) {
+        String userId = currUser.getId();
+
+        // 如果是超级管理员 则查询类型为全部
+        ConditionType conditionType = ConditionType.SELF;
+        if(StringUtils.equals(UserUtil.SUPER_ADMIN, currUser.getUsername())){
+            conditionType = ConditionType.ALL;
+        }else{
+            // 如果不是超级管理员 则获得当前用户的默认角色下的 授权数据权限类型
+            RoleModel defRole = UserUtil.getUserDefRoleByUserId(userId);
+            if(null != defRole){
+                conditionType = ConditionType.getConditionType(defRole.getDataScope());
+            }
+
+            // 如果组织为空 则默认权限为查自己的数据
+            if(!ConditionType.SELF.equals(conditionType) &&
+                    CollUtil.isEmpty(orgIdGroupList)){
+                // 如果不是 查看全部数据 需要默认角色权限为只查自己
+                if(!ConditionType.ALL.equals(conditionType)){
+                    conditionType = ConditionType.SELF;
+                }
+            }
+        }
+        return conditionType;
+    }
+
     /**
      * 处理 数据权限 条件
      *
@@ -124,39 +158,25 @@ public class QueryDataPermsHandler implements QueryBuilderChain{
         // 2. 当前用户 组织机构集合
         List<UserOrgRefModel> userOrgRefModelList = UserUtil.getOrgListByUserId(userId);
         List<String> orgIdGroupList = Lists.newArrayListWithCapacity(userOrgRefModelList.size());
+        List<String> orgIdList = Lists.newArrayListWithCapacity(userOrgRefModelList.size());
         for (UserOrgRefModel userOrgRefModel : userOrgRefModelList) {
             orgIdGroupList.add(userOrgRefModel.getOrgIds());
+            orgIdList.add(userOrgRefModel.getOrgId());
         }
         // 组织机构集合 去重
         orgIdGroupList = ListDistinctUtil.distinct(orgIdGroupList);
 
         // 3. 获得查询类型
-        // 如果是超级管理员 则查询类型为全部
-        ConditionType conditionType = ConditionType.SELF;
-        if(StringUtils.equals(UserUtil.SUPER_ADMIN, currUser.getUsername())){
-            conditionType = ConditionType.ALL;
-        }else{
-            // 如果不是超级管理员 则获得当前用户的默认角色下的 授权数据权限类型
-            RoleModel defRole = UserUtil.getUserDefRoleByUserId(userId);
-            if(null != defRole){
-                conditionType = ConditionType.getConditionType(defRole.getDataScope());
-            }
-
-            // 如果组织为空 则默认权限为查自己的数据
-            if(!ConditionType.SELF.equals(conditionType) &&
-                    CollUtil.isEmpty(orgIdGroupList)){
-                // 如果不是 查看全部数据 需要默认角色权限为只查自己
-                if(!ConditionType.ALL.equals(conditionType)){
-                    conditionType = ConditionType.SELF;
-                }
-            }
-        }
+        ConditionType conditionType = getConditionType(currUser, orgIdGroupList);
 
         // 常量
         final ConditionType finalConditionType = conditionType;
         final String finalOrgField = orgFiled;
         final String finalCreateByField = createByFiled;
         final List<String> finalOrgIdGroupList = orgIdGroupList;
+        final String finalDescendantSql = ConditionType.DEPT_AND_BELOW.equals(finalConditionType)
+                ? OrgUtil.getDescendantOrgIdGroupSql(orgIdList)
+                : null;
 
         // 查询 全部
         if(ConditionType.ALL.equals(finalConditionType)){
@@ -169,18 +189,23 @@ public class QueryDataPermsHandler implements QueryBuilderChain{
                 }
                 // 部门及以下
                 else if(ConditionType.DEPT_AND_BELOW.equals(finalConditionType)){
-                    wra.and(wraConfine -> {
-                        // 增加右模糊 查询条件
-                        for (int i = 0; i < finalOrgIdGroupList.size(); i++) {
-                            // 右模糊匹配
-                            wraConfine.likeRight(
-                                    finalOrgField, finalOrgIdGroupList.get(i));
-
-                            if(i < finalOrgIdGroupList.size() - 1){
-                                wraConfine.or();
+                    // 闭包表 半连接 单个等值 IN 子查询 可走 org_ids 索引
+                    if(null != finalDescendantSql){
+                        wra.inSql(finalOrgField, finalDescendantSql);
+                    }else {
+                        wra.and(wraConfine -> {
+                            // 增加右模糊 查询条件
+                            for (int i = 0; i < finalOrgIdGroupList.size(); i++) {
+                                // 右模糊匹配
+                                wraConfine.likeRight(
+                                        finalOrgField, finalOrgIdGroupList.get(i));
+
+                                if(i < finalOrgIdGroupList.size() - 1){
+                                    wraConfine.or();
+                                }
                             }
-                        }
-                    });
+                        });
+                    }
                 }else {
                     // 查自身
                     wra.eq(finalCreateByField, userId);
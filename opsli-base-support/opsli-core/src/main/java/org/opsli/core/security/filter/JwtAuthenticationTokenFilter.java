@@ -18,6 +18,7 @@ package org.opsli.core.security.filter;
 import cn.hutool.json.JSONUtil;
 import lombok.AllArgsConstructor;
 import org.opsli.core.base.dto.LoginUserDto;
+import org.opsli.core.holder.UserContextHolder;
 import org.opsli.core.security.service.UidUserDetailDetailServiceImpl;
 import org.opsli.core.utils.UserTokenUtil;
 import org.opsli.plugins.security.authentication.AfterAuthenticationToken;
@@ -59,6 +60,9 @@ public class JwtAuthenticationTokenFilter extends OncePerRequestFilter {
             return;
         }
 
+        // 开启请求内 用户身份缓存 同一次请求内 用户信息只查询一次
+        // 在 UserAuthInterceptor.afterCompletion 中清除
+        UserContextHolder.openContextCache();
         try {
             // 验证Token
             UserTokenUtil.verify(token);
@@ -84,17 +88,26 @@ public class JwtAuthenticationTokenFilter extends OncePerRequestFilter {
             AuthResultWrapper<?> customResultWrapper =
                     AuthResultWrapper.getCustomResultWrapper(code, errorMessage);
 
+            // 未进入拦截器 需要手动清除上下文
+            UserContextHolder.clear();
             WebUtils.renderString(request, response, JSONUtil.toJsonStr(customResultWrapper));
             return;
         }catch (Exception e){
             // 其他异常
             AuthResultWrapper<?> customResultWrapper =
                     AuthResultWrapper.getCustomResultWrapper(AuthErrorCodeEnum.AUTH_AUTH_INVALID);
+            // 未进入拦截器 需要手动清除上下文
+            UserContextHolder.clear();
             WebUtils.renderString(request, response, JSONUtil.toJsonStr(customResultWrapper));
             return;
         }
-        //放行
-        filterChain.doFilter(request, response);
+        try {
+            //放行
+            filterChain.doFilter(request, response);
+        }finally {
+            // 兜底清除 防止请求未进入拦截器时 上下文残留在线程池中
+            UserContextHolder.clear();
+        }
     }
 
 }
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.core.security.perms;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.collection.ListUtil;
+import cn.hutool.core.util.StrUtil;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 权限标识 驻留索引
+ *
+ * 将权限标识字符串驻留为进程内唯一的整型下标, 角色权限以 BitSet 形式存储
+ * 用户有效权限 = 所属角色 BitSet 的并集, 权限校验为 O(1) 位测试
+ *
+ * 下标只在当前进程内有效, 不可持久化或跨节点传递
+ *
+ * @author Parker
+ * @date 2023-04-13 11:05
+ */
+public final class PermissionIndex {
+
+	/** 权限标识 -> 下标 */
+	private static final Map<String, Integer> PERMS_INDEX = new ConcurrentHashMap<>();
+
+	/** 下标 -> 权限标识 */
+	private static volatile String[] PERMS_NAME = new String[256];
+
+	/** 已分配下标数 */
+	private static int SIZE = 0;
+
+	/**
+	 * 驻留权限标识
+	 * @param perms 权限标识
+	 * @return int 下标
+	 */
+	public static int intern(String perms) {
+		Integer index = PERMS_INDEX.get(perms);
+		if(null != index){
+			return index;
+		}
+
+		synchronized (PermissionIndex.class) {
+			index = PERMS_INDEX.get(perms);
+			if(null != index){
+				return index;
+			}
+
+			String[] names = PERMS_NAME;
+			if(SIZE == names.length){
+				String[] newNames = new String[names.length << 1];
+				System.arraycopy(names, 0, newNames, 0, names.length);
+				names = newNames;
+			}
+			names[SIZE] = perms;
+			// 先发布名称 再发布下标 保证读取方拿到下标时 名称已可见
+			PERMS_NAME = names;
+			PERMS_INDEX.put(perms, SIZE);
+			return SIZE++;
+		}
+	}
+
+	/**
+	 * 获得权限标识下标
+	 * @param perms 权限标识
+	 * @return int 未驻留返回 -1
+	 */
+	public static int indexOf(String perms) {
+		if(null == perms){
+			return -1;
+		}
+		Integer index = PERMS_INDEX.get(perms);
+		return null == index ? -1 : index;
+	}
+
+	/**
+	 * 权限标识集合 转 BitSet
+	 * @param permsList 权限标识集合
+	 * @return BitSet
+	 */
+	public static BitSet toBitSet(Collection<String> permsList) {
+		BitSet bitSet = new BitSet();
+		if(CollUtil.isEmpty(permsList)){
+			return bitSet;
+		}
+		for (String perms : permsList) {
+			if(StrUtil.isEmpty(perms)){
+				continue;
+			}
+			bitSet.set(intern(perms));
+		}
+		return bitSet;
+	}
+
+	/**
+	 * BitSet 转 权限标识集合
+	 * @param bitSet BitSet
+	 * @return List
+	 */
+	public static List<String> toList(BitSet bitSet) {
+		if(null == bitSet || bitSet.isEmpty()){
+			return ListUtil.empty();
+		}
+		String[] names = PERMS_NAME;
+		List<String> permsList = new ArrayList<>(bitSet.cardinality());
+		for (int i = bitSet.nextSetBit(0); i >= 0; i = bitSet.nextSetBit(i + 1)) {
+			permsList.add(names[i]);
+		}
+		return permsList;
+	}
+
+	/**
+	 * 是否拥有权限
+	 * @param bitSet BitSet
+	 * @param perms 权限标识
+	 * @return boolean
+	 */
+	public static boolean contains(BitSet bitSet, String perms) {
+		int index = indexOf(perms);
+		return null != bitSet && index >= 0 && bitSet.get(index);
+	}
+
+	private PermissionIndex(){}
+
+}
@@ -17,23 +17,40 @@ package org.opsli.core.utils;
 
 import cn.hutool.core.util.RandomUtil;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.wf.captcha.ArithmeticCaptcha;
 import com.wf.captcha.GifCaptcha;
 import com.wf.captcha.SpecCaptcha;
 import com.wf.captcha.base.Captcha;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.opsli.common.exception.TokenException;
+import org.opsli.core.autoconfigure.properties.GlobalProperties;
 import org.opsli.core.cache.CacheUtil;
 import org.opsli.core.msg.CoreMsg;
 import org.opsli.core.msg.TokenMsg;
 import org.opsli.plugins.redis.RedisPlugin;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import static org.opsli.common.constants.OrderConstants.UTIL_ORDER;
 
@@ -41,13 +58,17 @@ import static org.opsli.common.constants.OrderConstants.UTIL_ORDER;
 /**
  * 验证码
  *
+ * 验证码图片由后台低优先级线程预先渲染至有界池中 请求时直接取出
+ * 池为空时 在请求线程中同步渲染 (仅使用开销较低的静态/算数验证码)
+ *
  * @author parker
  * @date 2021年5月19日12:47:20
  */
+@Slf4j
 @Component
 @Order(UTIL_ORDER)
 @Lazy(false)
-public class CaptchaUtil {
+public class CaptchaUtil implements MeterBinder, DisposableBean {
 
     /** 验证码宽度 */
     private static final int CAPTCHA_WIDTH = 180;
@@ -57,6 +78,8 @@ public class CaptchaUtil {
     private static final int CAPTCHA_LEN = 4;
     /** 验证码策略 */
     private static final List<CaptchaStrategy> CAPTCHA_STRATEGY_LIST;
+    /** 验证码策略 (池未命中时 请求线程同步渲染 不使用GIF) */
+    private static final List<CaptchaStrategy> CAPTCHA_FALLBACK_STRATEGY_LIST;
 
     /** 缓存前缀 */
     private static final String PREFIX = "temp:captcha:";
@@ -65,6 +88,20 @@ public class CaptchaUtil {
     /** Redis插件 */
     private static RedisPlugin redisPlugin;
 
+    /** 验证码池 */
+    private static BlockingQueue<CaptchaEntry> CAPTCHA_POOL;
+    /** 验证码生成线程 */
+    private static ExecutorService GENERATOR;
+
+    /** 池命中数 */
+    private static final LongAdder POOL_HIT = new LongAdder();
+    /** 池未命中数 */
+    private static final LongAdder POOL_MISS = new LongAdder();
+    /** 渲染次数 */
+    private static final LongAdder RENDER_COUNT = new LongAdder();
+    /** 渲染总耗时 (纳秒) */
+    private static final LongAdder RENDER_NANOS = new LongAdder();
+
     /** 增加初始状态开关 防止异常使用 */
     private static boolean IS_INIT;
 
@@ -73,6 +110,10 @@ public class CaptchaUtil {
         CAPTCHA_STRATEGY_LIST.add(new CaptchaStrategyBySpec());
         CAPTCHA_STRATEGY_LIST.add(new CaptchaStrategyByGif());
         CAPTCHA_STRATEGY_LIST.add(new CaptchaStrategyByArithmetic());
+
+        CAPTCHA_FALLBACK_STRATEGY_LIST = Lists.newArrayListWithCapacity(2);
+        CAPTCHA_FALLBACK_STRATEGY_LIST.add(new CaptchaStrategyBySpec());
+        CAPTCHA_FALLBACK_STRATEGY_LIST.add(new CaptchaStrategyByArithmetic());
     }
 
     /**
@@ -89,23 +130,33 @@ public class CaptchaUtil {
             throw new RuntimeException("uuid不能为空");
         }
 
-        // 随机生成验证码
-        int randomInt = RandomUtil.randomInt(0, CAPTCHA_STRATEGY_LIST.size());
-
-        // 获得验证码生成策略
-        CaptchaStrategy captchaStrategy = CAPTCHA_STRATEGY_LIST.get(randomInt);
-
-        // 生成验证码
-        Captcha captcha = captchaStrategy.createCaptcha();
+        // 优先从池中获取 预渲染验证码
+        CaptchaEntry entry = null;
+        if(null != CAPTCHA_POOL){
+            entry = CAPTCHA_POOL.poll();
+        }
+        if(null != entry){
+            POOL_HIT.increment();
+        }else {
+            POOL_MISS.increment();
+            List<CaptchaStrategy> strategyList = null != CAPTCHA_POOL
+                    ? CAPTCHA_FALLBACK_STRATEGY_LIST : CAPTCHA_STRATEGY_LIST;
+            entry = render(strategyList);
+        }
 
         // 缓存Key
         String cacheKey = CacheUtil.formatKey(PREFIX + uuid);
 
         // 保存至缓存
-        boolean ret = redisPlugin.put(cacheKey, captcha.text(), TIME_OUT);
+        boolean ret = redisPlugin.put(cacheKey, entry.getText(), TIME_OUT);
         if(ret){
             // 输出
-            captcha.out(out);
+            try {
+                out.write(entry.getImage());
+                out.flush();
+            }catch (IOException e){
+                log.error(e.getMessage(), e);
+            }
         }
     }
 
@@ -169,8 +220,73 @@ public class CaptchaUtil {
         return redisPlugin.del(cacheKey);
     }
 
+    /**
+     * 随机渲染验证码
+     * @param strategyList 验证码策略
+     * @return CaptchaEntry
+     */
+    private static CaptchaEntry render(List<CaptchaStrategy> strategyList) {
+        long startTime = System.nanoTime();
+
+        // 随机生成验证码
+        int randomInt = RandomUtil.randomInt(0, strategyList.size());
+
+        // 获得验证码生成策略
+        CaptchaStrategy captchaStrategy = strategyList.get(randomInt);
+
+        // 生成验证码
+        Captcha captcha = captchaStrategy.createCaptcha();
+        String text = captcha.text();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(4096);
+        captcha.out(bos);
+
+        RENDER_COUNT.increment();
+        RENDER_NANOS.add(System.nanoTime() - startTime);
+        return new CaptchaEntry(text, bos.toByteArray());
+    }
+
+    /**
+     * 后台填充验证码池 池满时阻塞等待
+     */
+    private static void fillPool() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                CAPTCHA_POOL.put(render(CAPTCHA_STRATEGY_LIST));
+            }catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }catch (Exception e){
+                log.error("验证码预生成失败", e);
+            }
+        }
+    }
+
     // ======================
 
+    /**
+     * 预渲染验证码
+     */
+    private static final class CaptchaEntry {
+
+        /** 验证码答案 */
+        private final String text;
+
+        /** 图片 */
+        private final byte[] image;
+
+        CaptchaEntry(String text, byte[] image) {
+            this.text = text;
+            this.image = image;
+        }
+
+        String getText() {
+            return text;
+        }
+
+        byte[] getImage() {
+            return image;
+        }
+    }
+
     public interface CaptchaStrategy{
 
         /**
@@ -224,10 +340,55 @@ public class CaptchaUtil {
      * 初始化
      */
     @Autowired
-    public void init(RedisPlugin redisPlugin) {
+    public void init(GlobalProperties globalProperties, RedisPlugin redisPlugin) {
         CaptchaUtil.redisPlugin = redisPlugin;
 
+        GlobalProperties.Auth.Captcha captchaProperties = null;
+        if(globalProperties != null && globalProperties.getAuth() != null){
+            captchaProperties = globalProperties.getAuth().getCaptcha();
+        }
+
+        // 验证码池 (池大小 <= 0 则关闭 与原有同步渲染一致)
+        if(null != captchaProperties
+                && null != captchaProperties.getPoolSize() && captchaProperties.getPoolSize() > 0){
+            int threads = null != captchaProperties.getPoolThreads() && captchaProperties.getPoolThreads() > 0
+                    ? captchaProperties.getPoolThreads() : 1;
+            CAPTCHA_POOL = new ArrayBlockingQueue<>(captchaProperties.getPoolSize());
+            GENERATOR = Executors.newFixedThreadPool(threads,
+                    new ThreadFactoryBuilder()
+                            .setNameFormat("Captcha-Generator-%d")
+                            .setPriority(Thread.MIN_PRIORITY)
+                            .setDaemon(true).build());
+            for (int i = 0; i < threads; i++) {
+                GENERATOR.execute(CaptchaUtil::fillPool);
+            }
+        }
+
         IS_INIT = true;
     }
 
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("opsli.captcha.pool.size", () -> null != CAPTCHA_POOL ? CAPTCHA_POOL.size() : 0)
+                .description("验证码池剩余数")
+                .register(registry);
+        FunctionCounter.builder("opsli.captcha.pool.hit", POOL_HIT, LongAdder::sum)
+                .description("验证码池命中数")
+                .register(registry);
+        FunctionCounter.builder("opsli.captcha.pool.miss", POOL_MISS, LongAdder::sum)
+                .description("验证码池未命中数")
+                .register(registry);
+        FunctionTimer.builder("opsli.captcha.render", RENDER_COUNT, LongAdder::sum,
+                        adder -> RENDER_NANOS.sum(), TimeUnit.NANOSECONDS)
+                .description("验证码渲染耗时")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        if(null != GENERATOR){
+            GENERATOR.shutdownNow();
+        }
+    }
+
 }
@@ -34,10 +34,13 @@ import org.opsli.core.utils.excel.factory.ModelFactoryHelper;
 import org.opsli.plugins.excel.ExcelPlugin;
 import org.opsli.plugins.excel.annotation.ExcelInfo;
 import org.opsli.plugins.excel.exception.ExcelPluginException;
+import org.opsli.plugins.excel.factory.ExcelStreamWriter;
 import org.opsli.plugins.excel.listener.BatchExcelListener;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.util.List;
 import java.util.Map;
@@ -55,7 +58,7 @@ public final class ExcelUtil {
     public static final String DICT_NAME_KEY = "dictName";
     public static final String DICT_VALUE_KEY = "dictValue";
     /** 字段字典Map */
-    private static final Map<Class<?>, JSONObject> FIELD_DICT_MAP = Maps.newHashMap();
+    private static final Map<Class<?>, JSONObject> FIELD_DICT_MAP = Maps.newConcurrentMap();
 
     private ExcelUtil(){}
 
@@ -110,6 +113,11 @@ public final class ExcelUtil {
         ExcelUtilSingletonHolder.EXCEL_PLUGIN.readExcelByListener(excel, rowModel, sheetName, headLineNum, batchExcelListener);
     }
 
+    public <T> void readExcelByListener(InputStream inputStream, Class<T> rowModel,
+                                        BatchExcelListener<T> batchExcelListener) throws ExcelPluginException {
+        ExcelUtilSingletonHolder.EXCEL_PLUGIN.readExcelByListener(inputStream, rowModel, null, 1, batchExcelListener);
+    }
+
     ///////////////////////
 
     public <T> void writeExcel(HttpServletResponse response, List<T> list, String fileName, String sheetName, Class<T> classType, ExcelTypeEnum excelTypeEnum) throws ExcelPluginException {
@@ -118,6 +126,40 @@ public final class ExcelUtil {
         ExcelUtilSingletonHolder.EXCEL_PLUGIN.writeExcel(response, ts, fileName, sheetName, classType, excelTypeEnum);
     }
 
+    /**
+     * 流式导出
+     * 字典在打开时解析一次 之后每批数据只做翻译 不再访问缓存
+     * (流式游标未读完前 当前连接不可再执行其他查询 所以字典必须先于游标加载)
+     * @param response response
+     * @param fileName 文件名
+     * @param sheetName sheet名
+     * @param classType 数据Clazz
+     * @param excelTypeEnum 文件类型
+     * @param <T> 泛型
+     * @return ExcelStreamWriter
+     */
+    public <T> ExcelStreamWriter<T> openStreamWriter(HttpServletResponse response, String fileName, String sheetName,
+                                                     Class<T> classType, ExcelTypeEnum excelTypeEnum) throws ExcelPluginException {
+        JSONObject fieldsDictJson = this.getFieldsDict(this.getFields(classType));
+        return ExcelUtilSingletonHolder.EXCEL_PLUGIN.openStreamWriter(response, fileName, sheetName, classType, excelTypeEnum,
+                chunk -> this.handleDatas(chunk, classType, ExcelOperate.WRITE, fieldsDictJson));
+    }
+
+    /**
+     * 流式导出 到指定输出流 (如 落盘文件)
+     * 字典在打开时解析一次
+     * @param outputStream 输出流
+     * @param sheetName sheet名
+     * @param classType 数据Clazz
+     * @param <T> 泛型
+     * @return ExcelStreamWriter
+     */
+    public <T> ExcelStreamWriter<T> openStreamWriter(OutputStream outputStream, String sheetName, Class<T> classType) {
+        JSONObject fieldsDictJson = this.getFieldsDict(this.getFields(classType));
+        return ExcelUtilSingletonHolder.EXCEL_PLUGIN.openStreamWriter(outputStream, sheetName, classType,
+                chunk -> this.handleDatas(chunk, classType, ExcelOperate.WRITE, fieldsDictJson));
+    }
+
     /**
      * 处理字典
      * @param datas 数据
@@ -127,6 +169,27 @@ public final class ExcelUtil {
      * @return List<T>
      */
     public <T> List<T> handleDatas(List<T> datas, Class<T> typeClazz, ExcelOperate operate){
+        // 空处理
+        if(datas == null || datas.size() == 0){
+            return datas;
+        }
+
+        JSONObject fieldsJson = this.getFields(typeClazz);
+        JSONObject fieldsDictJson = this.getFieldsDict(fieldsJson);
+        return this.handleDatas(datas, typeClazz, operate, fieldsDictJson);
+    }
+
+    /**
+     * 处理字典 (使用已解析的字典快照)
+     * @param datas 数据
+     * @param typeClazz 数据CLazz
+     * @param operate 操作方式
+     * @param fieldsDictJson 字典快照
+     * @param <T> 泛型
+     * @return List<T>
+     */
+    public <T> List<T> handleDatas(List<T> datas, Class<T> typeClazz, ExcelOperate operate,
+                                   JSONObject fieldsDictJson){
         // 计时器
         TimeInterval timer = DateUtil.timer();
         // 空处理
@@ -135,9 +198,6 @@ public final class ExcelUtil {
         }
 
         try {
-            JSONObject fieldsJson = this.getFields(typeClazz);
-            JSONObject fieldsDictJson = this.getFieldsDict(fieldsJson);
-
             // 获得 helper类
             AbstractModelHelper modelHelper = ModelFactoryHelper.getModelHelper(typeClazz);
             // 字典赋值
@@ -160,7 +220,7 @@ public final class ExcelUtil {
         }finally {
             // 花费毫秒数
             long timerCount = timer.interval();
-            log.info("Excel 处理数据耗时："+ DateUtil.formatBetween(timerCount));
+            log.debug("Excel 处理数据耗时："+ DateUtil.formatBetween(timerCount));
         }
 
         return datas;
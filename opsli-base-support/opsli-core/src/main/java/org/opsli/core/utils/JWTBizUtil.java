@@ -87,11 +87,35 @@ public final class JWTBizUtil {
      * @return String
      */
     public static String generateAccessToken(LoginUserDto userInfo, String secret, Integer expireMinutes) {
+        return generateAccessToken(userInfo, createSigner(secret), expireMinutes);
+    }
+
+    /**
+     * 认证 Token
+     *
+     * @param userInfo      用户信息
+     * @param jwtSigner     签名器
+     * @param expireMinutes 过期时间,单位分钟
+     * @return String
+     */
+    public static String generateAccessToken(LoginUserDto userInfo, JWTSigner jwtSigner, Integer expireMinutes) {
         Map<String, Object> payloadsMap = BeanUtil.beanToMap(userInfo);
         payloadsMap.put(JwtConstants.JWT_CLAIM_TAG, Tag.TOKEN.getTag());
 
         // 生成新Token
-        return generate(payloadsMap, secret, expireMinutes);
+        return generate(payloadsMap, jwtSigner, expireMinutes);
+    }
+
+    /**
+     * 创建签名器
+     * 签名器可重复使用 建议预先创建 避免每次都重新计算密钥
+     *
+     * @param secret 盐
+     * @return JWTSigner
+     */
+    public static JWTSigner createSigner(String secret) {
+        byte[] keys = Base64.encode(secret).getBytes();
+        return JWTSignerUtil.hs256(keys);
     }
 
 
@@ -104,9 +128,18 @@ public final class JWTBizUtil {
      * @return String
      */
     private static String generate(Map<String, Object> payloadsMap, String secret, Integer expireMinutes) {
-        byte[] keys = Base64.encode(secret).getBytes();
-        JWTSigner jwtSigner = JWTSignerUtil.hs256(keys);
+        return generate(payloadsMap, createSigner(secret), expireMinutes);
+    }
 
+    /**
+     * 生成Token
+     *
+     * @param payloadsMap   载荷数据
+     * @param jwtSigner     签名器
+     * @param expireMinutes 过期时间,单位分钟
+     * @return String
+     */
+    private static String generate(Map<String, Object> payloadsMap, JWTSigner jwtSigner, Integer expireMinutes) {
         // 签发时间
         Date issuedAt = DateUtil.date();
 
@@ -129,10 +162,17 @@ public final class JWTBizUtil {
      * @param secret 盐
      */
     public static void verify(String token, String secret) {
-        byte[] keys = Base64.encode(secret).getBytes();
-        JWTSigner jwtSigner = JWTSignerUtil.hs256(keys);
+        verify(JWT.of(token), createSigner(secret));
+    }
 
-        JWTValidator validator = JWTValidator.of(token);
+    /**
+     * 校验Token 是否正确
+     *
+     * @param jwt       已解析的 Token
+     * @param jwtSigner 签名器
+     */
+    public static void verify(JWT jwt, JWTSigner jwtSigner) {
+        JWTValidator validator = JWTValidator.of(jwt);
         try {
             // 验证签名
             validator.validateAlgorithm(jwtSigner);
@@ -155,10 +195,17 @@ public final class JWTBizUtil {
      * @param secret 盐
      */
     public static void verifyBySign(String token, String secret) {
-        byte[] keys = Base64.encode(secret).getBytes();
-        JWTSigner jwtSigner = JWTSignerUtil.hs256(keys);
+        verifyBySign(JWT.of(token), createSigner(secret));
+    }
 
-        JWTValidator validator = JWTValidator.of(token);
+    /**
+     * 校验Token 是否正确 (只验证签名)
+     *
+     * @param jwt       已解析的 Token
+     * @param jwtSigner 签名器
+     */
+    public static void verifyBySign(JWT jwt, JWTSigner jwtSigner) {
+        JWTValidator validator = JWTValidator.of(jwt);
         try {
             // 验证签名
             validator.validateAlgorithm(jwtSigner);
@@ -174,8 +221,17 @@ public final class JWTBizUtil {
      * @param token Token
      */
     public static LoginUserDto getLoginUserFromToken(String token) {
-        JSONObject payloads = JWT.of(token)
-                .getPayloads();
+        return getLoginUserFromToken(JWT.of(token));
+    }
+
+    /**
+     * 获得登陆用户信息
+     *
+     * @param jwt 已解析的 Token
+     */
+    public static LoginUserDto getLoginUserFromToken(JWT jwt) {
+        // 复制一份 防止修改原始载荷
+        JSONObject payloads = new JSONObject(jwt.getPayloads());
         // 移除标识
         payloads.remove(JwtConstants.JWT_CLAIM_TAG);
         return payloads.toBean(LoginUserDto.class);
@@ -211,8 +267,17 @@ public final class JWTBizUtil {
      * @param token Token
      */
     public static Date getExpiredDateFromToken(String token) {
+        return getExpiredDateFromToken(JWT.of(token));
+    }
+
+    /**
+     * 获得Token的失效时间
+     *
+     * @param jwt 已解析的 Token
+     */
+    public static Date getExpiredDateFromToken(JWT jwt) {
         // 获得失效时间
-        return JWT.of(token).getPayload()
+        return jwt.getPayload()
                 .getClaimsJson().getDate(JWTPayload.EXPIRES_AT);
     }
 
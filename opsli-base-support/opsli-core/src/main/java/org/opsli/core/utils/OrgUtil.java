@@ -16,6 +16,7 @@
 package org.opsli.core.utils;
 
 import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.NumberUtil;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.google.common.collect.Lists;
 import lombok.extern.slf4j.Slf4j;
@@ -23,9 +24,12 @@ import org.opsli.api.wrapper.system.org.SysOrgModel;
 import org.opsli.api.wrapper.system.user.UserOrgRefModel;
 import org.opsli.common.enums.DictType;
 import org.opsli.common.utils.FieldUtil;
-import org.opsli.common.utils.ListDistinctUtil;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * 组织机构工具类
@@ -43,6 +47,13 @@ public final class OrgUtil {
     /** 未分组 */
     public static final String ORG_NULL = "org_null";
 
+    /** 组织闭包表 */
+    private static final String ORG_CLOSURE_TABLE = "sys_org_closure";
+    /** 组织ID组 分割符 */
+    private static final String DELIMITER = ",";
+    /** 顶级节点ID */
+    private static final String TOP_PARENT_ID = "0";
+
     /** 增加初始状态开关 防止异常使用 */
     private static boolean IS_INIT;
 
@@ -79,7 +90,8 @@ public final class OrgUtil {
      * @param queryWrapper 组织集合
      */
     public static void handleOrgIdGroupCondition(String orgIdGroup, QueryWrapper<?> queryWrapper) {
-        String userRefOrgField = "b.org_ids";
+        // sys_user_org_ref.org_id 有独立索引
+        String userRefOrgField = "b.org_id";
 
         queryWrapper.and(wra -> {
 
@@ -87,29 +99,18 @@ public final class OrgUtil {
                 wra.and(wraConfine -> {
                     // 增加自身 组织限制
                     List<UserOrgRefModel> orgListByUserId = UserUtil.getOrgByCurrUser();
-                    if(CollUtil.isEmpty(orgListByUserId)){
+                    List<String> orgIdList = Lists.newArrayListWithCapacity(orgListByUserId.size());
+                    for (UserOrgRefModel userOrgRefModel : orgListByUserId) {
+                        orgIdList.add(userOrgRefModel.getOrgId());
+                    }
+
+                    // 闭包表 半连接 本组织及以下
+                    String descendantSql = getDescendantOrgIdSql(orgIdList);
+                    if(null == descendantSql){
                         // 如果为空 则默认 不查询
                         wraConfine.eq("1", "2");
                     }else {
-                        List<String> parentIdList = Lists.newArrayListWithCapacity(orgListByUserId.size());
-                        // 处理ParentId数据
-                        for (UserOrgRefModel userOrgRefModel : orgListByUserId) {
-                            parentIdList.add(userOrgRefModel.getOrgIds());
-                        }
-                        // 去重
-                        parentIdList = ListDistinctUtil.distinct(parentIdList);
-
-                        // 增加右模糊 查询条件
-                        for (int i = 0; i < parentIdList.size(); i++) {
-                            // 右模糊匹配
-                            wraConfine.likeRight(
-                                    userRefOrgField,
-                                    parentIdList.get(i));
-
-                            if(i < parentIdList.size() - 1){
-                                wraConfine.or();
-                            }
-                        }
+                        wraConfine.inSql(userRefOrgField, descendantSql);
                     }
                 });
             }
@@ -133,9 +134,17 @@ public final class OrgUtil {
                     });
                     break;
                 default:
-                    // 右模糊匹配
-                    wra.likeRight(
-                            userRefOrgField, orgIdGroup);
+                    // 组织ID组 末位即为当前组织ID 闭包表 半连接 本组织及以下
+                    String currOrgId = orgIdGroup.substring(orgIdGroup.lastIndexOf(DELIMITER) + 1);
+                    // 顶级节点 不在闭包表中 等同于 全部组织
+                    if(!TOP_PARENT_ID.equals(currOrgId)){
+                        String descendantSql = getDescendantOrgIdSql(Collections.singletonList(currOrgId));
+                        if(null == descendantSql){
+                            wra.eq("1", "2");
+                        }else {
+                            wra.inSql(userRefOrgField, descendantSql);
+                        }
+                    }
                     wra.and(wraYes -> {
                         wraYes.eq(FieldUtil.humpToUnderline(USER_ORG_FIELD),
                                 DictType.NO_YES_YES.getValue());
@@ -146,6 +155,57 @@ public final class OrgUtil {
         });
     }
 
+    /**
+     * 获得 本组织及以下 组织ID 子查询 (闭包表)
+     * 组织ID 只允许为数字 防止SQL注入
+     *
+     * @param orgIdList 组织ID集合
+     * @return String 无有效组织ID 返回 null
+     */
+    public static String getDescendantOrgIdSql(Collection<String> orgIdList) {
+        String ancestorIds = joinOrgIds(orgIdList);
+        if(null == ancestorIds){
+            return null;
+        }
+        return "SELECT descendant_id FROM " + ORG_CLOSURE_TABLE +
+                " WHERE ancestor_id IN (" + ancestorIds + ")";
+    }
+
+    /**
+     * 获得 本组织及以下 组织ID组 子查询 (闭包表)
+     * 业务表 org_ids 字段直接等值匹配 可走索引
+     *
+     * @param orgIdList 组织ID集合
+     * @return String 无有效组织ID 返回 null
+     */
+    public static String getDescendantOrgIdGroupSql(Collection<String> orgIdList) {
+        String ancestorIds = joinOrgIds(orgIdList);
+        if(null == ancestorIds){
+            return null;
+        }
+        return "SELECT o.org_ids FROM sys_org o INNER JOIN " + ORG_CLOSURE_TABLE +
+                " c ON c.descendant_id = o.id WHERE c.ancestor_id IN (" + ancestorIds + ")";
+    }
+
+    /**
+     * 拼接组织ID
+     * @param orgIdList 组织ID集合
+     * @return String
+     */
+    private static String joinOrgIds(Collection<String> orgIdList) {
+        if(CollUtil.isEmpty(orgIdList)){
+            return null;
+        }
+
+        Set<String> orgIdSet = new LinkedHashSet<>(orgIdList.size());
+        for (String orgId : orgIdList) {
+            if(NumberUtil.isLong(orgId)){
+                orgIdSet.add(orgId);
+            }
+        }
+        return orgIdSet.isEmpty() ? null : String.join(DELIMITER, orgIdSet);
+    }
+
     // ===========
 
     private OrgUtil() {}
@@ -10,12 +10,15 @@ import cn.hutool.system.oshi.OshiUtil;
 import com.google.common.collect.Lists;
 import lombok.Data;
 import org.opsli.common.utils.ConvertBytesUtil;
-import oshi.SystemInfo;
+import oshi.hardware.CentralProcessor;
 import oshi.hardware.GlobalMemory;
 import oshi.software.os.FileSystem;
 import oshi.software.os.OSFileStore;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
 import java.lang.management.RuntimeMXBean;
+import java.lang.management.ThreadMXBean;
 import java.util.List;
 
 
@@ -60,9 +63,9 @@ public enum SystemInfoUtil {
      */
     public List<DiskInfo> getDiskInfo(){
         List<DiskInfo> diskInfoList = Lists.newArrayList();
-        SystemInfo si = new SystemInfo();
 
-        FileSystem fileSystem = si.getOperatingSystem().getFileSystem();
+        // 复用 OSHI 单例 避免每次创建 SystemInfo
+        FileSystem fileSystem = OshiUtil.getOs().getFileSystem();
         List<OSFileStore> fileStores = fileSystem.getFileStores();
         for (OSFileStore fs : fileStores) {
             long free = fs.getUsableSpace();
@@ -118,6 +121,74 @@ public enum SystemInfoUtil {
         return OshiUtil.getCpuInfo(WAITING_TIME);
     }
 
+    /**
+     * 获得CPU 当前累计时钟数
+     * @return long[]
+     */
+    public long[] getCpuTicks(){
+        return OshiUtil.getProcessor().getSystemCpuLoadTicks();
+    }
+
+    /**
+     * 根据两次CPU时钟数 计算CPU信息 (不阻塞等待)
+     * @param prevTicks 上一次时钟数
+     * @param ticks 当前时钟数
+     * @return CpuInfo
+     */
+    public CpuInfo getCpuInfo(long[] prevTicks, long[] ticks){
+        CentralProcessor processor = OshiUtil.getProcessor();
+        long user = tickDiff(prevTicks, ticks, CentralProcessor.TickType.USER);
+        long nice = tickDiff(prevTicks, ticks, CentralProcessor.TickType.NICE);
+        long sys = tickDiff(prevTicks, ticks, CentralProcessor.TickType.SYSTEM);
+        long idle = tickDiff(prevTicks, ticks, CentralProcessor.TickType.IDLE);
+        long ioWait = tickDiff(prevTicks, ticks, CentralProcessor.TickType.IOWAIT);
+        long irq = tickDiff(prevTicks, ticks, CentralProcessor.TickType.IRQ);
+        long softIrq = tickDiff(prevTicks, ticks, CentralProcessor.TickType.SOFTIRQ);
+        long steal = tickDiff(prevTicks, ticks, CentralProcessor.TickType.STEAL);
+        long totalCpu = user + nice + sys + idle + ioWait + irq + softIrq + steal;
+
+        CpuInfo cpuInfo = new CpuInfo();
+        cpuInfo.setCpuNum(processor.getLogicalProcessorCount());
+        cpuInfo.setCpuModel(processor.toString());
+        cpuInfo.setToTal(totalCpu);
+        cpuInfo.setSys(tickUsage(sys, totalCpu));
+        cpuInfo.setUsed(tickUsage(user, totalCpu));
+        cpuInfo.setWait(tickUsage(ioWait, totalCpu));
+        cpuInfo.setFree(tickUsage(idle, totalCpu));
+        return cpuInfo;
+    }
+
+    /**
+     * 获得GC信息
+     * @return List GcInfo
+     */
+    public List<GcInfo> getGcInfo(){
+        List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+        List<GcInfo> gcInfoList = Lists.newArrayListWithCapacity(gcBeans.size());
+        for (GarbageCollectorMXBean gcBean : gcBeans) {
+            GcInfo gcInfo = new GcInfo();
+            gcInfo.setName(gcBean.getName());
+            gcInfo.setCount(gcBean.getCollectionCount());
+            gcInfo.setTime(gcBean.getCollectionTime());
+            gcInfoList.add(gcInfo);
+        }
+        return gcInfoList;
+    }
+
+    /**
+     * 获得线程信息
+     * @return ThreadInfo
+     */
+    public ThreadInfo getThreadInfo(){
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        ThreadInfo threadInfo = new ThreadInfo();
+        threadInfo.setCount(threadBean.getThreadCount());
+        threadInfo.setDaemonCount(threadBean.getDaemonThreadCount());
+        threadInfo.setPeakCount(threadBean.getPeakThreadCount());
+        threadInfo.setStartedCount(threadBean.getTotalStartedThreadCount());
+        return threadInfo;
+    }
+
     /**
      * 获得Jvm信息
      * @return JvmInfo
@@ -182,13 +253,24 @@ public enum SystemInfoUtil {
         return jvmInfo;
     }
 
+    private static long tickDiff(long[] prevTicks, long[] ticks, CentralProcessor.TickType tickType){
+        return Math.max(0, ticks[tickType.getIndex()] - prevTicks[tickType.getIndex()]);
+    }
+
+    private static double tickUsage(long tick, long totalCpu){
+        if(totalCpu <= 0){
+            return 0;
+        }
+        return NumberUtil.round(100d * tick / totalCpu, 2).doubleValue();
+    }
+
     // ======================================
 
     /**
      * 内存信息 静态内部类
      */
     @Data
-    private static class MemoryInfo {
+    public static class MemoryInfo {
 
         /** 内存总量 */
         private String total;
@@ -302,4 +384,39 @@ public enum SystemInfoUtil {
         private double usage;
     }
 
+    /**
+     * GC信息
+     */
+    @Data
+    public static class GcInfo {
+
+        /** 收集器名称 */
+        private String name;
+
+        /** 累计收集次数 */
+        private long count;
+
+        /** 累计收集耗时(毫秒) */
+        private long time;
+    }
+
+    /**
+     * 线程信息
+     */
+    @Data
+    public static class ThreadInfo {
+
+        /** 当前线程数 */
+        private int count;
+
+        /** 守护线程数 */
+        private int daemonCount;
+
+        /** 峰值线程数 */
+        private int peakCount;
+
+        /** 累计启动线程数 */
+        private long startedCount;
+    }
+
 }
@@ -16,6 +16,7 @@
 package org.opsli.core.utils;
 
 import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.bean.PropDesc;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.collection.ListUtil;
 import cn.hutool.core.convert.Convert;
@@ -24,18 +25,39 @@ import cn.hutool.core.lang.tree.TreeNodeConfig;
 import cn.hutool.core.lang.tree.TreeUtil;
 import cn.hutool.core.util.ObjectUtil;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import lombok.extern.slf4j.Slf4j;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 
 /**
  * 树状结构工具类
  *
+ * 节点一次遍历 以ID哈希索引 关联父子节点 整体为线性构建 (排序除外)
+ * Bean 属性读取 按类编译为访问器 (LambdaMetafactory) 并缓存 不再逐个节点 beanToMap 反射拷贝
+ * 输出结构 与 hutool TreeUtil 保持一致
+ *
  * 注：排序只支持 int 类型
  *
  * @author Parker
  * @date 2017-05-20 14:41
  */
+@Slf4j
 public enum TreeBuildUtil {
 
     /** 实例 */
@@ -47,13 +69,21 @@ public enum TreeBuildUtil {
     private static final String DEF_ID = "";
 
     /** 默认排除字段 */
-    private static final List<String> DEF_EXCLUDE_FIELDS;
+    private static final Set<String> DEF_EXCLUDE_FIELDS;
     static {
-        DEF_EXCLUDE_FIELDS = ListUtil.list(false);
+        DEF_EXCLUDE_FIELDS = Sets.newHashSet();
         DEF_EXCLUDE_FIELDS.add("izApi");
         DEF_EXCLUDE_FIELDS.add("izManual");
     }
 
+    /** 权重排序 空值在前 与 hutool 保持一致 */
+    private static final Comparator<Tree<Object>> WEIGHT_COMPARATOR =
+            (o1, o2) -> ObjectUtil.compare(toInt(o1.getWeight()), toInt(o2.getWeight()));
+
+    /** 类属性访问器 缓存 */
+    private static final ConcurrentMap<Class<?>, List<PropertyAccessor>> ACCESSOR_CACHE =
+            Maps.newConcurrentMap();
+
     /**
      * 构建Tree
      * @param dataList 数据集合
@@ -91,34 +121,47 @@ public enum TreeBuildUtil {
      * @return List<Tree<Object>>
      */
     public List<Tree<Object>> build(List<?> dataList, String parentId, TreeNodeConfig config){
-        if(CollUtil.isEmpty(dataList)){
+        if(!this.isSupport(dataList)){
             return ListUtil.empty();
         }
 
-        // 处理Map集合
-        Object obj = dataList.get(0);
+        // 默认值处理
+        final String defParentId = ObjectUtil.defaultIfNull(parentId, DEF_PARENT_ID);
+        final TreeNodeConfig treeConfig = ObjectUtil.defaultIfNull(config, TreeNodeConfig.DEFAULT_CONFIG);
+        final Set<String> excludeFields = this.getExcludeFields(treeConfig);
 
-        if(!(obj instanceof Map)){
-            // 处理Bean 验证
-            boolean isBean = BeanUtil.isBean(obj.getClass());
-            if(!isBean){
-                return ListUtil.empty();
+        // 创建节点 建立ID索引 (重复ID 后者覆盖前者)
+        Map<Object, Tree<Object>> idIndex = Maps.newLinkedHashMapWithExpectedSize(dataList.size());
+        for (Object model : dataList) {
+            if(null == model){
+                continue;
             }
+            Tree<Object> treeNode = new Tree<>(treeConfig);
+            this.handlerTreeNode(model, treeNode, treeConfig, excludeFields);
+            idIndex.put(treeNode.getId(), treeNode);
         }
 
-        // 默认值处理
-        final String defParentId = ObjectUtil.defaultIfNull(parentId, DEF_PARENT_ID);
-        final TreeNodeConfig treeConfig = ObjectUtil.defaultIfNull(config, TreeNodeConfig.DEFAULT_CONFIG);
+        // 按权重稳定排序 保证子节点按序挂载
+        List<Tree<Object>> nodeList = Lists.newArrayList(idIndex.values());
+        nodeList.sort(WEIGHT_COMPARATOR);
 
-        List<String> excludeFields = ListUtil.list(false);
-        excludeFields.addAll(DEF_EXCLUDE_FIELDS);
-        excludeFields.add(treeConfig.getIdKey());
-        excludeFields.add(treeConfig.getParentIdKey());
-        excludeFields.add(treeConfig.getWeightKey());
+        // 一次遍历 关联父子节点 找不到父节点的 直接丢弃
+        List<Tree<Object>> rootList = Lists.newArrayList();
+        for (Tree<Object> treeNode : nodeList) {
+            Object currParentId = treeNode.getParentId();
+            if(ObjectUtil.equals(defParentId, currParentId)){
+                rootList.add(treeNode);
+                continue;
+            }
+            Tree<Object> parentNode = idIndex.get(currParentId);
+            if(null != parentNode){
+                parentNode.addChildren(treeNode);
+            }
+        }
 
-        //转换器
-        return TreeUtil.build(dataList, defParentId, treeConfig,
-                (treeNode, tree) -> handlerTreeNode(treeNode, tree, treeConfig, excludeFields));
+        // 层级裁剪
+        this.cutTree(rootList, treeConfig.getDeep());
+        return rootList;
     }
 
     /**
@@ -137,34 +180,20 @@ public enum TreeBuildUtil {
      * @return List<Tree<Object>>
      */
     public List<Tree<Object>> buildByLazy(List<?> dataList, TreeNodeConfig config){
-        if(CollUtil.isEmpty(dataList)){
+        if(!this.isSupport(dataList)){
             return ListUtil.empty();
         }
 
-        // 处理Map集合
-        Object obj = dataList.get(0);
-        if(!(obj instanceof Map)){
-            // 处理Bean 验证
-            boolean isBean = BeanUtil.isBean(obj.getClass());
-            if(!isBean){
-                return ListUtil.empty();
-            }
-        }
-
         // 默认值处理
         final TreeNodeConfig treeConfig = ObjectUtil.defaultIfNull(config, TreeNodeConfig.DEFAULT_CONFIG);
-        List<String> excludeFields = ListUtil.list(false);
-        excludeFields.addAll(DEF_EXCLUDE_FIELDS);
-        excludeFields.add(treeConfig.getIdKey());
-        excludeFields.add(treeConfig.getParentIdKey());
-        excludeFields.add(treeConfig.getWeightKey());
+        final Set<String> excludeFields = this.getExcludeFields(treeConfig);
 
         //转换器
         List<Tree<Object>> treeNodes = Lists.newArrayListWithCapacity(dataList.size());
         for (Object model : dataList) {
             Tree<Object> emptyNode = TreeUtil.createEmptyNode(DEF_ID);
             // 处理对象数据
-            TreeBuildUtil.INSTANCE.handlerTreeNode(model, emptyNode, treeConfig, excludeFields);
+            this.handlerTreeNode(model, emptyNode, treeConfig, excludeFields);
             treeNodes.add(emptyNode);
         }
 
@@ -172,6 +201,38 @@ public enum TreeBuildUtil {
     }
 
 
+    /**
+     * 是否支持构建 (Map 或 Bean)
+     * @param dataList 数据集合
+     * @return boolean
+     */
+    private boolean isSupport(List<?> dataList) {
+        if(CollUtil.isEmpty(dataList)){
+            return false;
+        }
+
+        // 处理Map集合
+        Object obj = dataList.get(0);
+        if(obj instanceof Map){
+            return true;
+        }
+        // 处理Bean 验证
+        return null != obj && BeanUtil.isBean(obj.getClass());
+    }
+
+    /**
+     * 获得排除字段
+     * @param config 配置
+     * @return Set
+     */
+    private Set<String> getExcludeFields(TreeNodeConfig config) {
+        Set<String> excludeFields = Sets.newHashSet(DEF_EXCLUDE_FIELDS);
+        excludeFields.add(config.getIdKey());
+        excludeFields.add(config.getParentIdKey());
+        excludeFields.add(config.getWeightKey());
+        return excludeFields;
+    }
+
     /**
      * 处理 树节点
      * @param config 配置
@@ -180,48 +241,81 @@ public enum TreeBuildUtil {
      * @param tree 树节点
      */
     private void handlerTreeNode(Object treeNode, Tree<Object> tree,
-                                 TreeNodeConfig config, List<String> excludeFields) {
+                                 TreeNodeConfig config, Set<String> excludeFields) {
         // 非空校验
         if(ObjectUtil.isEmpty(treeNode) || null == tree){
             return;
         }
 
-        // 初始化
-        if(null == config){
-            config = TreeNodeConfig.DEFAULT_CONFIG;
+        // Map 直接读取
+        if(treeNode instanceof Map){
+            Map<?, ?> beanMap = (Map<?, ?>) treeNode;
+            // 主要属性
+            tree.setId(beanMap.get(config.getIdKey()));
+            tree.setParentId(beanMap.get(config.getParentIdKey()));
+            tree.setWeight(cast(beanMap.get(config.getWeightKey())));
+
+            // 扩展属性 ...
+            for (Map.Entry<?, ?> entry : beanMap.entrySet()) {
+                String key = Convert.toStr(entry.getKey());
+                // 排除字段
+                if(null == key || excludeFields.contains(key)){
+                    continue;
+                }
+                tree.putExtra(key, entry.getValue());
+            }
+            return;
+        }
+
+        // Bean 通过已编译的访问器读取
+        for (PropertyAccessor accessor : getAccessors(treeNode.getClass())) {
+            String key = accessor.name;
+            Object value = accessor.get(treeNode);
+            if(key.equals(config.getIdKey())){
+                tree.setId(value);
+            }else if(key.equals(config.getParentIdKey())){
+                tree.setParentId(value);
+            }else if(key.equals(config.getWeightKey())){
+                tree.setWeight(cast(value));
+            }else if(!excludeFields.contains(key)){
+                // 扩展属性 ...
+                tree.putExtra(key, value);
+            }
+        }
+    }
+
+    /**
+     * 层级裁剪 超出层级的节点 不再保留子节点
+     * 与 hutool TreeUtil 一致 虚拟根节点为第 0 层, deep 为 0 时 不返回任何节点
+     * @param rootList 根节点集合
+     * @param deep 最大层级
+     */
+    private void cutTree(List<Tree<Object>> rootList, Integer deep) {
+        if(null == deep || deep < 0){
+            return;
         }
-        if(CollUtil.isEmpty(excludeFields)){
-            excludeFields = ListUtil.list(false);
-            excludeFields.addAll(DEF_EXCLUDE_FIELDS);
-            excludeFields.add(config.getIdKey());
-            excludeFields.add(config.getParentIdKey());
-            excludeFields.add(config.getWeightKey());
+        if(deep == 0){
+            rootList.clear();
+            return;
         }
 
-        // Bean 对象转 Map
-        Map<String, Object> beanMap;
-        if(treeNode instanceof Map){
-            beanMap = Convert.toMap(String.class, Object.class, treeNode);
-        }else{
-            beanMap = BeanUtil.beanToMap(treeNode);
-        }
-
-        // 主要属性
-        tree.setId(beanMap.get(config.getIdKey()));
-        tree.setParentId(beanMap.get(config.getParentIdKey()));
-        tree.setWeight(
-                cast(
-                        beanMap.get(config.getWeightKey())));
-
-        // 扩展属性 ...
-        for (Map.Entry<String, Object> entry : beanMap.entrySet()) {
-            String key = entry.getKey();
-            Object value = entry.getValue();
-            // 排除字段
-            if(excludeFields.contains(key)){
-                continue;
+        // 根节点集合 为第 1 层
+        Deque<Tree<Object>> currLevel = new ArrayDeque<>(rootList);
+        int currDeep = 1;
+        while (!currLevel.isEmpty()){
+            Deque<Tree<Object>> nextLevel = new ArrayDeque<>();
+            for (Tree<Object> treeNode : currLevel) {
+                if(currDeep >= deep){
+                    treeNode.setChildren(null);
+                    continue;
+                }
+                List<Tree<Object>> children = treeNode.getChildren();
+                if(CollUtil.isNotEmpty(children)){
+                    nextLevel.addAll(children);
+                }
             }
-            tree.putExtra(key, value);
+            currLevel = nextLevel;
+            currDeep++;
         }
     }
 
@@ -238,4 +332,106 @@ public enum TreeBuildUtil {
         return comparable;
     }
 
+    private static Integer toInt(Object obj){
+        return Convert.toInt(obj);
+    }
+
+    // =====================================
+
+    /**
+     * 获得类属性访问器 (与 BeanUtil.beanToMap 属性一致)
+     * @param clazz 类
+     * @return List
+     */
+    private static List<PropertyAccessor> getAccessors(Class<?> clazz){
+        return ACCESSOR_CACHE.computeIfAbsent(clazz, TreeBuildUtil::createAccessors);
+    }
+
+    /**
+     * 编译类属性访问器
+     * @param clazz 类
+     * @return List
+     */
+    private static List<PropertyAccessor> createAccessors(Class<?> clazz){
+        Collection<PropDesc> props = BeanUtil.getBeanDesc(clazz).getProps();
+        List<PropertyAccessor> accessorList = Lists.newArrayListWithCapacity(props.size());
+        for (PropDesc prop : props) {
+            Method getter = prop.getGetter();
+            if(null == getter){
+                continue;
+            }
+            accessorList.add(new PropertyAccessor(prop.getFieldName(), compileGetter(getter)));
+        }
+        return accessorList;
+    }
+
+    /**
+     * 编译 Getter 为 Function
+     * 不同类加载器 (如 devtools) 下 生成类无法引用目标类 此时回退为反射
+     * @param getter Getter
+     * @return Function
+     */
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> compileGetter(Method getter){
+        Class<?> declaringClass = getter.getDeclaringClass();
+        try {
+            if(!isVisible(declaringClass)){
+                throw new IllegalAccessException("class not visible: " + declaringClass.getName());
+            }
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle handle = lookup.unreflect(getter);
+            CallSite callSite = LambdaMetafactory.metafactory(lookup,
+                    "apply",
+                    MethodType.methodType(Function.class),
+                    MethodType.methodType(Object.class, Object.class),
+                    handle,
+                    MethodType.methodType(Object.class, declaringClass));
+            return (Function<Object, Object>) callSite.getTarget().invokeExact();
+        }catch (Throwable e){
+            log.debug("树节点属性访问器 编译失败 回退为反射：{}", getter, e);
+            getter.setAccessible(true);
+            return bean -> {
+                try {
+                    return getter.invoke(bean);
+                }catch (Exception ex){
+                    throw new IllegalStateException(ex);
+                }
+            };
+        }
+    }
+
+    /**
+     * 目标类 是否对当前类加载器可见
+     * @param clazz 类
+     * @return boolean
+     */
+    private static boolean isVisible(Class<?> clazz){
+        try {
+            return Class.forName(clazz.getName(), false, TreeBuildUtil.class.getClassLoader()) == clazz;
+        }catch (ClassNotFoundException e){
+            return false;
+        }
+    }
+
+    /**
+     * 属性访问器
+     */
+    private static final class PropertyAccessor {
+
+        /** 属性名 */
+        private final String name;
+
+        /** 读取 */
+        private final Function<Object, Object> getter;
+
+        private PropertyAccessor(String name, Function<Object, Object> getter) {
+            this.name = name;
+            this.getter = getter;
+        }
+
+        private Object get(Object bean){
+            return getter.apply(bean);
+        }
+    }
+
 }
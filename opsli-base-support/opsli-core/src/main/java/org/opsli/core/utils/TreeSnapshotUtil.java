@@ -0,0 +1,251 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.core.utils;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.crypto.SecureUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.opsli.api.base.result.ResultWrapper;
+import org.opsli.core.cache.pushsub.TreeSnapshotMsg;
+import org.opsli.core.msg.CoreMsg;
+import org.opsli.plugins.redis.RedisPlugin;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.opsli.common.constants.OrderConstants.UTIL_ORDER;
+
+/**
+ * 树快照工具类
+ *
+ * 地域、组织、菜单树 变更极少 但每次请求都要 全量查询 + 构建树 + 序列化
+ * 这里按数据版本 缓存构建完成的响应字节 并附带 ETag 客户端携带 If-None-Match 命中时直接返回 304
+ * 对应 Service 变更数据时 自增版本 (事务提交后再自增一次 防止提交前重建出旧快照) 并通知其他节点
+ *
+ * @author Parker
+ * @date 2021-03-12 10:20
+ */
+@Slf4j
+@Order(UTIL_ORDER)
+@Component
+@Lazy(false)
+public class TreeSnapshotUtil {
+
+    /** 树类型 地域 */
+    public static final String TREE_AREA = "area";
+    /** 树类型 组织 */
+    public static final String TREE_ORG = "org";
+    /** 树类型 菜单 */
+    public static final String TREE_MENU = "menu";
+
+    /** 快照最大数量 */
+    private static final int MAX_SIZE = 1024;
+    /** 快照空闲过期时间(分钟) */
+    private static final int EXPIRE_MINUTES = 60;
+    /** 分隔符 */
+    private static final String DELIMITER = ":";
+
+    /** 数据版本 */
+    private static final ConcurrentMap<String, AtomicLong> VERSION_MAP = new ConcurrentHashMap<>();
+
+    /** 快照 */
+    private static final Cache<String, TreeSnapshot> SNAPSHOT_CACHE = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .expireAfterAccess(EXPIRE_MINUTES, TimeUnit.MINUTES)
+            .build();
+
+    /** 增加初始状态开关 防止异常使用 */
+    private static boolean IS_INIT;
+
+    /** 序列化 与 MVC 输出保持一致 */
+    private static ObjectMapper objectMapper;
+
+    private static RedisPlugin redisPlugin;
+
+    /**
+     * 获得树快照 不存在时构建
+     * @param treeType 树类型
+     * @param variant 变体 (同一份数据的不同视图 如层级、用户可见范围指纹)
+     * @param treeSupplier 树数据构建
+     * @return TreeSnapshot
+     */
+    public static TreeSnapshot get(String treeType, String variant, Supplier<Object> treeSupplier){
+        // 判断 工具类是否初始化完成
+        ThrowExceptionUtil.isThrowException(!IS_INIT,
+                CoreMsg.OTHER_EXCEPTION_UTILS_INIT);
+
+        // 先取版本 构建期间发生变更 旧快照落在旧版本Key下 不会被读取
+        long version = getVersion(treeType).get();
+        String cacheKey = treeType + DELIMITER + version + DELIMITER + StringUtils.defaultString(variant);
+        try {
+            return SNAPSHOT_CACHE.get(cacheKey, () -> createSnapshot(treeSupplier.get()));
+        }catch (ExecutionException e){
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * 输出快照
+     * If-None-Match 与 ETag 一致时 返回 304
+     * @param snapshot 快照
+     * @param request request
+     * @param response response
+     */
+    public static void write(TreeSnapshot snapshot, HttpServletRequest request, HttpServletResponse response){
+        response.setHeader(HttpHeaders.ETAG, snapshot.getEtag());
+        // 可缓存 但每次需要验证
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if(StringUtils.isNotEmpty(ifNoneMatch) && ifNoneMatch.contains(snapshot.getEtag())){
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.setContentLength(snapshot.getBody().length);
+        try {
+            response.getOutputStream().write(snapshot.getBody());
+            response.flushBuffer();
+        }catch (IOException e){
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 失效树快照 并通知其他节点
+     * @param treeType 树类型
+     */
+    public static void evict(String treeType){
+        evictLocal(treeType);
+
+        // 事务提交后 再次自增 防止事务期间 读取旧数据重建的快照被继续使用
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evictLocal(treeType);
+                    publish(treeType);
+                }
+            });
+        }else {
+            publish(treeType);
+        }
+    }
+
+    /**
+     * 失效本地树快照
+     * @param treeType 树类型
+     */
+    public static void evictLocal(String treeType){
+        if(StringUtils.isEmpty(treeType)){
+            return;
+        }
+        getVersion(treeType).incrementAndGet();
+        String prefix = treeType + DELIMITER;
+        SNAPSHOT_CACHE.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * 生成指纹 用于区分 不同可见范围的快照
+     * @param parts 组成部分
+     * @return String
+     */
+    public static String fingerprint(Collection<?> parts){
+        if(CollUtil.isEmpty(parts)){
+            return "";
+        }
+        return SecureUtil.md5(CollUtil.join(parts, ","));
+    }
+
+    // =====================================
+
+    /**
+     * 构建快照
+     * @param treeData 树数据
+     * @return TreeSnapshot
+     */
+    private static TreeSnapshot createSnapshot(Object treeData) throws IOException {
+        byte[] body = objectMapper.writeValueAsBytes(
+                ResultWrapper.getSuccessResultWrapper(treeData));
+        String etag = "\"" + SecureUtil.md5().digestHex(body) + "\"";
+        return new TreeSnapshot(body, etag);
+    }
+
+    /**
+     * 发送失效消息
+     * @param treeType 树类型
+     */
+    private static void publish(String treeType){
+        redisPlugin.sendMessage(TreeSnapshotMsg.createEvictMsg(treeType));
+    }
+
+    private static AtomicLong getVersion(String treeType){
+        return VERSION_MAP.computeIfAbsent(treeType, k -> new AtomicLong());
+    }
+
+    // =====================================
+
+    /**
+     * 树快照 (不可变)
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class TreeSnapshot {
+
+        /** 响应字节 */
+        private final byte[] body;
+
+        /** ETag */
+        private final String etag;
+
+    }
+
+    /**
+     * 初始化
+     */
+    @Autowired
+    public void init(ObjectMapper objectMapper,
+                     RedisPlugin redisPlugin) {
+        TreeSnapshotUtil.objectMapper = objectMapper;
+        TreeSnapshotUtil.redisPlugin = redisPlugin;
+        IS_INIT = true;
+    }
+
+}
@@ -19,6 +19,11 @@ import cn.hutool.core.convert.Convert;
 import cn.hutool.core.date.DateUtil;
 import cn.hutool.core.util.BooleanUtil;
 import cn.hutool.core.util.StrUtil;
+import cn.hutool.jwt.JWT;
+import cn.hutool.jwt.signers.JWTSigner;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.swagger.annotations.ApiModelProperty;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -36,6 +41,7 @@ import org.opsli.common.exception.TokenException;
 import org.opsli.core.autoconfigure.properties.GlobalProperties;
 import org.opsli.core.base.dto.LoginUserDto;
 import org.opsli.core.cache.CacheUtil;
+import org.opsli.core.cache.pushsub.TicketMsg;
 import org.opsli.core.holder.UserContextHolder;
 import org.opsli.core.msg.CoreMsg;
 import org.opsli.core.msg.TokenMsg;
@@ -49,8 +55,15 @@ import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import static org.opsli.common.constants.OrderConstants.UTIL_ORDER;
@@ -71,11 +84,33 @@ public class UserTokenUtil {
     public static final String TOKEN_NAME = JwtConstants.TOKEN_HEADER;
     /** 限制登录数量 -1 为无限大 */
     public static final int ACCOUNT_LIMIT_INFINITE = -1;
+    /** 请求内缓存Key 登陆凭证信息 */
+    private static final String CONTEXT_KEY_LOGIN_USER = "login_user:";
+    /** 已验证Token缓存 最大数量 */
+    private static final int VERIFIED_TOKEN_CACHE_MAX_SIZE = 10000;
+    /** 已验证Token缓存 时效 (分钟) 续命模式下不校验Token失效时间 以此为准重新验证 */
+    private static final int VERIFIED_TOKEN_CACHE_TIME = 10;
+    /**
+     * 已验证Token缓存
+     * 以 Token 全文作为Key 不使用摘要 防止摘要碰撞后 伪造Token绕过签名验证
+     */
+    private static final Cache<String, VerifiedToken> VERIFIED_TOKEN_CACHE = CacheBuilder
+            .newBuilder()
+            .maximumSize(VERIFIED_TOKEN_CACHE_MAX_SIZE)
+            .expireAfterWrite(VERIFIED_TOKEN_CACHE_TIME, TimeUnit.MINUTES).build();
     /** 登录配置信息 */
     public static GlobalProperties.Auth.Login LOGIN_PROPERTIES;
     public static GlobalProperties.Auth.Token TOKEN_PROPERTIES;
+    /** 续命模式 批量延长票据时效间隔 (秒) */
+    private static final int REVIVE_FLUSH_INTERVAL = 10;
+    /** 续命模式 待延长时效的票据Key */
+    private static final Set<String> REVIVE_TICKET_KEYS = ConcurrentHashMap.newKeySet();
+    /** 本地有效票据 (开启票据本地校验后生效) */
+    private static Cache<String, Boolean> LOCAL_TICKET_CACHE;
     /** Redis插件 */
     private static RedisPlugin redisPlugin;
+    /** Token 签名器 */
+    private static JWTSigner jwtSigner;
     /** 增加初始状态开关 防止异常使用 */
     private static boolean IS_INIT;
 
@@ -107,7 +142,9 @@ public class UserTokenUtil {
                 }
                 // 如果是拒绝前者 则弹出前者
                 else {
-                    redisPlugin.sPop(ticketSetKey);
+                    Object popToken = redisPlugin.sPop(ticketSetKey);
+                    // 通知全部节点 清除本地票据
+                    revokeLocalTicket(Convert.toStr(popToken));
                 }
             }
         }
@@ -115,7 +152,7 @@ public class UserTokenUtil {
 
         // 认证Token
         String accessToken = JWTBizUtil.generateAccessToken(loginUser,
-                TOKEN_PROPERTIES.getSecret(), TOKEN_PROPERTIES.getEffectiveTime());
+                jwtSigner, TOKEN_PROPERTIES.getEffectiveTime());
 
         // 获得当前Token时间戳
         Date expiredDateFromToken = JWTBizUtil.getExpiredDateFromToken(accessToken);
@@ -148,7 +185,15 @@ public class UserTokenUtil {
             return Optional.empty();
         }
 
-        LoginUserDto loginUserFromToken = JWTBizUtil.getLoginUserFromToken(token);
+        // 已验证过的Token 直接返回
+        VerifiedToken verifiedToken = VERIFIED_TOKEN_CACHE.getIfPresent(token);
+        if(null != verifiedToken){
+            return Optional.of(verifiedToken.getLoginUser());
+        }
+
+        // 同一次请求内 Token 只解析一次
+        LoginUserDto loginUserFromToken = UserContextHolder.getContextCache(
+                CONTEXT_KEY_LOGIN_USER + token, () -> JWTBizUtil.getLoginUserFromToken(token));
         return Optional.ofNullable(loginUserFromToken);
     }
 
@@ -173,7 +218,8 @@ public class UserTokenUtil {
         }
         String userId = "";
         try {
-            LoginUserDto loginUserFromToken = JWTBizUtil.getLoginUserFromToken(token);
+            LoginUserDto loginUserFromToken = getLoginUserDto(token)
+                    .orElseThrow(()-> new AuthException(AuthErrorCodeEnum.AUTH_AUTH_INVALID));
             userId = loginUserFromToken.getUid();
         }catch (Exception ignored){}
         return userId;
@@ -200,7 +246,8 @@ public class UserTokenUtil {
         }
         String username = "";
         try {
-            LoginUserDto loginUserFromToken = JWTBizUtil.getLoginUserFromToken(token);
+            LoginUserDto loginUserFromToken = getLoginUserDto(token)
+                    .orElseThrow(()-> new AuthException(AuthErrorCodeEnum.AUTH_AUTH_INVALID));
             username = loginUserFromToken.getUsername();
         }catch (Exception ignored){}
         return username;
@@ -227,7 +274,8 @@ public class UserTokenUtil {
         }
         String username = "";
         try {
-            LoginUserDto loginUserFromToken = JWTBizUtil.getLoginUserFromToken(token);
+            LoginUserDto loginUserFromToken = getLoginUserDto(token)
+                    .orElseThrow(()-> new AuthException(AuthErrorCodeEnum.AUTH_AUTH_INVALID));
             username = loginUserFromToken.getTenantId();
         }catch (Exception ignored){}
         return username;
@@ -246,6 +294,10 @@ public class UserTokenUtil {
         if(StringUtils.isEmpty(token)){
             return;
         }
+
+        // 清除本地票据 并通知其他节点 (无论用户是否存在 都需清除)
+        revokeLocalTicket(token);
+
         try {
             LoginUserDto loginUserDto = getLoginUserDto(token)
                     .orElseThrow(()-> new AuthException(AuthErrorCodeEnum.AUTH_AUTH_INVALID));
@@ -296,15 +348,7 @@ public class UserTokenUtil {
         // 1. 校验是否是有效的 token
         // 开启续命模式 如果为续命模式 则不验证失效时间
         boolean reviveMode = LOGIN_PROPERTIES.getReviveMode() != null && LOGIN_PROPERTIES.getReviveMode();
-        if(reviveMode){
-            JWTBizUtil.verifyBySign(token, TOKEN_PROPERTIES.getSecret());
-        }else {
-            JWTBizUtil.verify(token, TOKEN_PROPERTIES.getSecret());
-        }
-
-
-        LoginUserDto loginUserDto = getLoginUserDto(token)
-                .orElseThrow(()-> new AuthException(AuthErrorCodeEnum.AUTH_AUTH_INVALID));
+        LoginUserDto loginUserDto = verifyAndGetLoginUser(token, reviveMode);
 
         // 2022-07-22 用户票据新增 终端缓存 多终端下不影响
         String ticketSetKey = CacheUtil.formatKey(
@@ -312,7 +356,7 @@ public class UserTokenUtil {
                         loginUserDto.getLoginFrom() + ":" + loginUserDto.getUsername());
 
         // 2. 校验当前缓存中token是否失效
-        boolean hashKey = redisPlugin.sHashKey(ticketSetKey, token);
+        boolean hashKey = hasTicket(ticketSetKey, token);
         if(!hashKey){
             throw new AuthException(AuthErrorCodeEnum.AUTH_AUTH_INVALID);
         }
@@ -320,12 +364,119 @@ public class UserTokenUtil {
         // 3. 校验通过后 如果开启续命模式 则整体延长登录时效
         if(BooleanUtil.isTrue(LOGIN_PROPERTIES.getReviveMode())){
             // 设置该用户全部token失效时间， 如果这时又有新设备登录 则续命
-            redisPlugin.expire(ticketSetKey,
+            // 不在请求内逐个续命 由后台定时合并批量处理
+            REVIVE_TICKET_KEYS.add(ticketSetKey);
+        }
+    }
+
+    /**
+     * 清除本节点 本地票据 (不处理 Redis)
+     * 用于接收其他节点的吊销广播
+     * @param token token
+     */
+    public static void evictLocalTicket(String token) {
+        if(StringUtils.isEmpty(token)){
+            return;
+        }
+        VERIFIED_TOKEN_CACHE.invalidate(token);
+        if(null != LOCAL_TICKET_CACHE){
+            LOCAL_TICKET_CACHE.invalidate(token);
+        }
+    }
+
+    /**
+     * 校验票据是否存在
+     * 开启票据本地校验后 校验通过的票据 在时效内不再访问 Redis
+     *
+     * @param ticketSetKey 票据Key
+     * @param token token
+     * @return boolean
+     */
+    private static boolean hasTicket(String ticketSetKey, String token) {
+        Cache<String, Boolean> localTicketCache = LOCAL_TICKET_CACHE;
+        if(null != localTicketCache && null != localTicketCache.getIfPresent(token)){
+            return true;
+        }
+
+        boolean hashKey = redisPlugin.sHashKey(ticketSetKey, token);
+        if(hashKey && null != localTicketCache){
+            localTicketCache.put(token, Boolean.TRUE);
+        }
+        return hashKey;
+    }
+
+    /**
+     * 吊销本地票据 并通知其他节点
+     * @param token token
+     */
+    private static void revokeLocalTicket(String token) {
+        if(StringUtils.isEmpty(token)){
+            return;
+        }
+        evictLocalTicket(token);
+        redisPlugin.sendMessage(TicketMsg.createRevokeMsg(token));
+    }
+
+    /**
+     * 续命模式 批量延长票据时效
+     */
+    private static void flushReviveTickets() {
+        if(REVIVE_TICKET_KEYS.isEmpty()){
+            return;
+        }
+        try {
+            List<String> ticketSetKeys = new ArrayList<>(REVIVE_TICKET_KEYS.size());
+            Iterator<String> iterator = REVIVE_TICKET_KEYS.iterator();
+            while (iterator.hasNext()){
+                ticketSetKeys.add(iterator.next());
+                iterator.remove();
+            }
+            redisPlugin.expire(ticketSetKeys,
                     TOKEN_PROPERTIES.getEffectiveTime(), TimeUnit.MINUTES);
+        }catch (Exception e){
+            log.error(e.getMessage(), e);
         }
     }
 
 
+    /**
+     * 校验 Token 签名 并获得登陆凭证信息
+     * 验证通过后缓存结果 Token 失效后 或退出登录后清除
+     *
+     * @param token token
+     * @param reviveMode 是否为续命模式 (不验证失效时间)
+     * @return LoginUserDto
+     */
+    private static LoginUserDto verifyAndGetLoginUser(String token, boolean reviveMode) {
+        VerifiedToken verifiedToken = VERIFIED_TOKEN_CACHE.getIfPresent(token);
+        if(null != verifiedToken){
+            // 非续命模式下 Token 已失效 则清除缓存 重新验证
+            if(!reviveMode && verifiedToken.isExpired()){
+                VERIFIED_TOKEN_CACHE.invalidate(token);
+            }else {
+                return verifiedToken.getLoginUser();
+            }
+        }
+
+        // Token 只解析一次
+        JWT jwt = JWT.of(token);
+        if(reviveMode){
+            JWTBizUtil.verifyBySign(jwt, jwtSigner);
+        }else {
+            JWTBizUtil.verify(jwt, jwtSigner);
+        }
+
+        LoginUserDto loginUserDto = JWTBizUtil.getLoginUserFromToken(jwt);
+        if(null == loginUserDto){
+            throw new AuthException(AuthErrorCodeEnum.AUTH_AUTH_INVALID);
+        }
+
+        Date expiredDate = JWTBizUtil.getExpiredDateFromToken(jwt);
+        VERIFIED_TOKEN_CACHE.put(token, new VerifiedToken(loginUserDto,
+                null == expiredDate ? Long.MAX_VALUE : expiredDate.getTime()));
+        return loginUserDto;
+    }
+
     /**
      * 获得当前失败次数
      * @param principal 主键凭证
@@ -391,8 +542,60 @@ public class UserTokenUtil {
         // Redis 插件
         UserTokenUtil.redisPlugin = redisPlugin;
 
+        // 预先创建签名器 避免每次验证时重复计算密钥
+        if(null != TOKEN_PROPERTIES){
+            UserTokenUtil.jwtSigner = JWTBizUtil.createSigner(TOKEN_PROPERTIES.getSecret());
+        }
+
+        if(null != LOGIN_PROPERTIES){
+            // 票据本地校验
+            if(BooleanUtil.isTrue(LOGIN_PROPERTIES.getTicketLocalVerify())){
+                UserTokenUtil.LOCAL_TICKET_CACHE = CacheBuilder
+                        .newBuilder()
+                        .maximumSize(VERIFIED_TOKEN_CACHE_MAX_SIZE)
+                        .expireAfterWrite(LOGIN_PROPERTIES.getTicketLocalVerifyTime(), TimeUnit.SECONDS)
+                        .build();
+            }
+
+            // 续命模式 后台定时批量延长票据时效
+            if(BooleanUtil.isTrue(LOGIN_PROPERTIES.getReviveMode())){
+                ScheduledExecutorService reviveExecutor = Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder()
+                                .setNameFormat("Ticket-Revive-%d")
+                                .setDaemon(true).build());
+                reviveExecutor.scheduleWithFixedDelay(UserTokenUtil::flushReviveTickets,
+                        REVIVE_FLUSH_INTERVAL, REVIVE_FLUSH_INTERVAL, TimeUnit.SECONDS);
+            }
+        }
+
         IS_INIT = true;
     }
 
+    // ==========================
+
+    /**
+     * 已验证的 Token
+     */
+    private static final class VerifiedToken {
+
+        /** 登陆凭证信息 */
+        private final LoginUserDto loginUser;
+
+        /** 失效时间戳 */
+        private final long expiredTime;
+
+        VerifiedToken(LoginUserDto loginUser, long expiredTime) {
+            this.loginUser = loginUser;
+            this.expiredTime = expiredTime;
+        }
+
+        LoginUserDto getLoginUser() {
+            return loginUser;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expiredTime;
+        }
+    }
 
 }
@@ -18,11 +18,17 @@ package org.opsli.core.utils;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.collection.ListUtil;
 import cn.hutool.core.convert.Convert;
+import cn.hutool.core.util.ArrayUtil;
 import cn.hutool.core.util.StrUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 //import org.apache.shiro.crypto.hash.Md5Hash;
 import org.opsli.api.base.result.ResultWrapper;
+import org.opsli.api.web.system.role.RoleMenuRefApi;
 import org.opsli.api.web.system.user.UserApi;
 import org.opsli.api.web.system.user.UserOrgRefApi;
 import org.opsli.api.web.system.user.UserRoleRefApi;
@@ -31,6 +37,7 @@ import org.opsli.api.wrapper.system.role.RoleModel;
 import org.opsli.api.wrapper.system.user.UserModel;
 import org.opsli.api.wrapper.system.user.UserOrgRefModel;
 import org.opsli.common.constants.RedisConstants;
+import org.opsli.common.enums.DictType;
 import org.opsli.common.exception.TokenException;
 import org.opsli.core.autoconfigure.properties.GlobalProperties;
 import org.opsli.core.cache.CacheUtil;
@@ -38,13 +45,21 @@ import org.opsli.core.cache.SecurityCache;
 import org.opsli.core.holder.UserContextHolder;
 import org.opsli.core.msg.CoreMsg;
 import org.opsli.core.msg.TokenMsg;
+import org.opsli.core.security.perms.PermissionIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.core.annotation.Order;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import static org.opsli.common.constants.OrderConstants.UTIL_ORDER;
 
@@ -63,6 +78,9 @@ public class UserUtil {
     /** 修改租户权限 */
     private static final String PERMS_TENANT = "system_set_tenant_admin";
 
+    /** 请求内 代数缓存前缀 */
+    private static final String CONTEXT_GENERATION_PREFIX = "generation#";
+
     /** 用户Service */
     private static UserApi userApi;
 
@@ -72,6 +90,15 @@ public class UserUtil {
     /** 用户组织 Api */
     private static UserOrgRefApi userOrgRefApi;
 
+    /** 角色权限 Api */
+    private static RoleMenuRefApi roleMenuRefApi;
+
+    /** 角色权限 本地缓存 (Key 携带角色代数 无需主动失效) */
+    private static final Cache<String, BitSet> LOCAL_ROLE_PERMS = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
+
     /** 超级管理员 */
     public static String SUPER_ADMIN;
 
@@ -172,11 +199,11 @@ public class UserUtil {
         // 缓存Key
         String cacheKey = CacheUtil.formatKey(RedisConstants.PREFIX_USER_ID + userId);
 
-        Object cache = SecurityCache.get(redisTemplate, cacheKey, (k) -> {
+        Object cache = getCache(cacheKey, (k) -> {
             // 查询数据库
             ResultWrapper<UserModel> resultVo = userApi.getById(userId);
             return resultVo.getData();
-        }, true);
+        });
 
         UserModel userModel = Convert.convert(UserModel.class, cache);
 
@@ -210,7 +237,7 @@ public class UserUtil {
         // 缓存Key
         String cacheKey = CacheUtil.formatKey(RedisConstants.PREFIX_USER_USERNAME + userName);
 
-        String userId = (String) SecurityCache.get(redisTemplate, cacheKey, (k) -> {
+        String userId = (String) getCache(cacheKey, (k) -> {
             // 查询数据库
             ResultWrapper<UserModel> resultVo = userApi.getUserByUsername(userName);
             if(!ResultWrapper.isSuccess(resultVo)){
@@ -222,7 +249,7 @@ public class UserUtil {
             }
 
             return resultVo.getData().getId();
-        }, true);
+        });
 
         // 只查一次
         return getUser(userId, true);
@@ -246,7 +273,7 @@ public class UserUtil {
         // 缓存Key
         String cacheKey = CacheUtil.formatKey(RedisConstants.PREFIX_USER_MOBILE + mobile);
 
-        String userId = (String) SecurityCache.get(redisTemplate, cacheKey, (k) -> {
+        String userId = (String) getCache(cacheKey, (k) -> {
             // 查询数据库
             ResultWrapper<UserModel> resultVo = userApi.getUserByMobile(mobile);
             if(!ResultWrapper.isSuccess(resultVo)){
@@ -258,7 +285,7 @@ public class UserUtil {
             }
 
             return resultVo.getData().getId();
-        }, true);
+        });
 
         // 只查一次
         return getUser(userId, true);
@@ -282,7 +309,7 @@ public class UserUtil {
         // 缓存Key
         String cacheKey = CacheUtil.formatKey(RedisConstants.PREFIX_USER_EMAIL + email);
 
-        String userId = (String) SecurityCache.get(redisTemplate, cacheKey, (k) -> {
+        String userId = (String) getCache(cacheKey, (k) -> {
             // 查询数据库
             ResultWrapper<UserModel> resultVo = userApi.getUserByEmail(email);
             if(!ResultWrapper.isSuccess(resultVo)){
@@ -294,7 +321,7 @@ public class UserUtil {
             }
 
             return resultVo.getData().getId();
-        }, true);
+        });
 
         // 只查一次
         return getUser(userId, true);
@@ -319,17 +346,17 @@ public class UserUtil {
         }
 
         // 缓存Key
-        String cacheKey = CacheUtil.formatKey(RedisConstants.PREFIX_USER_ID_AND_ROLES + userId);
+        String cacheKey = getPermsCacheKey(RedisConstants.PREFIX_USER_ID_AND_ROLES, userId);
 
         final String finalUserId = userId;
-        Object cache = SecurityCache.get(redisTemplate, cacheKey, (k) -> {
+        Object cache = getCache(cacheKey, (k) -> {
             // 查询数据库
             ResultWrapper<List<String>> resultVo = userRoleRefApi.getRolesByUserId(finalUserId);
             if(!ResultWrapper.isSuccess(resultVo)){
                 return null;
             }
             return resultVo.getData();
-        }, true);
+        });
 
         List<String> roles = Convert.toList(String.class, cache);
         if(null == roles){
@@ -357,24 +384,48 @@ public class UserUtil {
         }
 
 
-        // 缓存Key
-        String cacheKey = CacheUtil.formatKey(RedisConstants.PREFIX_USER_ID_PERMISSIONS + userId);
+        UserModel permsUser = getUserBySource(userId);
+        if(null == permsUser){
+            return ListUtil.empty();
+        }
 
-        final String finalUserId = userId;
-        Object cache = SecurityCache.get(redisTemplate, cacheKey, (k) -> {
-            // 查询数据库
-            ResultWrapper<List<String>> resultVo = userRoleRefApi.getAllPerms(finalUserId);
-            if(!ResultWrapper.isSuccess(resultVo)){
-                return null;
-            }
-            return resultVo.getData();
-        }, true);
+        // 超级管理员 默认享有全部权限 不依赖角色 按用户缓存
+        if(StringUtils.equals(SUPER_ADMIN, permsUser.getUsername())){
+            return getSuperAdminPerms(permsUser.getId());
+        }
 
-        List<String> permissions = Convert.toList(String.class, cache);
-        if(null == permissions){
-            return ListUtil.empty();
+        // 其余用户 权限为所属角色权限的并集
+        return PermissionIndex.toList(getUserPermsBitSet(permsUser));
+    }
+
+    /**
+     * 根据 userId 判断用户是否拥有权限
+     * @param userId 用户ID
+     * @param perms 权限标识
+     * @return boolean
+     */
+    public static boolean hasPerms(String userId, String perms){
+        // 判断 工具类是否初始化完成
+        ThrowExceptionUtil.isThrowException(!IS_INIT,
+                CoreMsg.OTHER_EXCEPTION_UTILS_INIT);
+
+        // 处理 切换租户
+        UserModel currUser = getUser(userId);
+        if (null != currUser &&
+                StringUtils.isNotBlank(currUser.getSwitchTenantUserId())){
+            userId = currUser.getSwitchTenantUserId();
         }
-        return permissions;
+
+        UserModel permsUser = getUserBySource(userId);
+        if(null == permsUser || StrUtil.isEmpty(perms)){
+            return false;
+        }
+
+        if(StringUtils.equals(SUPER_ADMIN, permsUser.getUsername())){
+            return getSuperAdminPerms(permsUser.getId()).contains(perms);
+        }
+
+        return PermissionIndex.contains(getUserPermsBitSet(permsUser), perms);
     }
 
     /**
@@ -396,17 +447,17 @@ public class UserUtil {
 
 
         // 缓存Key
-        String cacheKey = CacheUtil.formatKey(RedisConstants.PREFIX_USER_ID_ORGS + userId);
+        String cacheKey = getOrgCacheKey(RedisConstants.PREFIX_USER_ID_ORGS, userId);
 
         final String finalUserId = userId;
-        Object cache = SecurityCache.get(redisTemplate, cacheKey, (k) -> {
+        Object cache = getCache(cacheKey, (k) -> {
             // 查询数据库
             ResultWrapper<List<UserOrgRefModel>> resultVo = userOrgRefApi.findListByUserId(finalUserId);
             if(!ResultWrapper.isSuccess(resultVo)){
                 return null;
             }
             return resultVo.getData();
-        }, true);
+        });
 
         List<UserOrgRefModel> orgList = Convert.toList(UserOrgRefModel.class, cache);
         if(null == orgList){
@@ -447,17 +498,17 @@ public class UserUtil {
 
 
         // 缓存Key
-        String cacheKey = CacheUtil.formatKey(RedisConstants.PREFIX_USER_ID_MENUS + userId);
+        String cacheKey = getPermsCacheKey(RedisConstants.PREFIX_USER_ID_MENUS, userId);
 
         final String finalUserId = userId;
-        Object cache = SecurityCache.get(redisTemplate, cacheKey, (k) -> {
+        Object cache = getCache(cacheKey, (k) -> {
             // 查询数据库
             ResultWrapper<List<MenuModel>> resultVo = userRoleRefApi.getMenuListByUserId(finalUserId);
             if(!ResultWrapper.isSuccess(resultVo)){
                 return null;
             }
             return resultVo.getData();
-        }, true);
+        });
 
         List<MenuModel> menus = Convert.toList(MenuModel.class, cache);
         if(null == menus){
@@ -486,17 +537,17 @@ public class UserUtil {
 
 
         // 缓存Key
-        String cacheKey = CacheUtil.formatKey(RedisConstants.PREFIX_USER_ID_DEF_ROLE + userId);
+        String cacheKey = getPermsCacheKey(RedisConstants.PREFIX_USER_ID_DEF_ROLE, userId);
 
         final String finalUserId = userId;
-        Object cache = SecurityCache.get(redisTemplate, cacheKey, (k) -> {
+        Object cache = getCache(cacheKey, (k) -> {
             // 查询数据库
             ResultWrapper<RoleModel> resultVo = userRoleRefApi.getDefRoleByUserId(finalUserId);
             if(!ResultWrapper.isSuccess(resultVo)){
                 return null;
             }
             return resultVo.getData();
-        }, true);
+        });
 
         return Convert.convert(RoleModel.class, cache);
     }
@@ -521,17 +572,17 @@ public class UserUtil {
         }
 
         // 缓存Key
-        String cacheKey = CacheUtil.formatKey(RedisConstants.PREFIX_USER_ID_DEF_ORG + userId);
+        String cacheKey = getOrgCacheKey(RedisConstants.PREFIX_USER_ID_DEF_ORG, userId);
 
         final String finalUserId = userId;
-        Object cache = SecurityCache.get(redisTemplate, cacheKey, (k) -> {
+        Object cache = getCache(cacheKey, (k) -> {
             // 查询数据库
             ResultWrapper<UserOrgRefModel> resultVo = userOrgRefApi.getDefOrgByUserId(finalUserId);
             if(!ResultWrapper.isSuccess(resultVo)){
                 return null;
             }
             return resultVo.getData();
-        }, true);
+        });
 
         return Convert.convert(UserOrgRefModel.class, cache);
     }
@@ -581,13 +632,16 @@ public class UserUtil {
         String cacheKeyByMobile = CacheUtil.formatKey(RedisConstants.PREFIX_USER_MOBILE + user.getMobile());
         String cacheKeyByEmail = CacheUtil.formatKey(RedisConstants.PREFIX_USER_EMAIL + user.getEmail());
 
+        // 清除请求内缓存
+        UserContextHolder.removeContextCache(
+                cacheKeyByUserId, cacheKeyByUsername, cacheKeyByMobile, cacheKeyByEmail);
         return SecurityCache.remove(redisTemplate,
                 cacheKeyByUserId, cacheKeyByUsername, cacheKeyByMobile, cacheKeyByEmail);
     }
 
 
     /**
-     * 刷新用户角色 - 删就完了
+     * 刷新用户角色 - 自增用户代数
      * @param userId 用户ID
      * @return boolean
      */
@@ -596,13 +650,12 @@ public class UserUtil {
         ThrowExceptionUtil.isThrowException(!IS_INIT,
                 CoreMsg.OTHER_EXCEPTION_UTILS_INIT);
 
-        String cacheKey = CacheUtil.formatKey(RedisConstants.PREFIX_USER_ID_AND_ROLES + userId);
-
-        return SecurityCache.remove(redisTemplate, cacheKey);
+        // 缓存Key 携带用户代数 自增后旧缓存自然失效
+        return incrGeneration(RedisConstants.PREFIX_GENERATION_USER, userId);
     }
 
     /**
-     * 刷新用户默认角色 - 删就完了
+     * 刷新用户默认角色 - 自增用户代数
      * @param userId 用户ID
      * @return boolean
      */
@@ -615,15 +668,14 @@ public class UserUtil {
             return true;
         }
 
-        String cacheKey = CacheUtil.formatKey(RedisConstants.PREFIX_USER_ID_DEF_ROLE + userId);
-
-        return SecurityCache.remove(redisTemplate, cacheKey);
+        // 缓存Key 携带用户代数 自增后旧缓存自然失效
+        return incrGeneration(RedisConstants.PREFIX_GENERATION_USER, userId);
     }
 
 
 
     /**
-     * 刷新用户权限 - 删就完了
+     * 刷新用户权限 - 自增用户代数
      * @param userId 用户ID
      * @return boolean
      */
@@ -632,13 +684,12 @@ public class UserUtil {
         ThrowExceptionUtil.isThrowException(!IS_INIT,
                 CoreMsg.OTHER_EXCEPTION_UTILS_INIT);
 
-        String cacheKey = CacheUtil.formatKey(RedisConstants.PREFIX_USER_ID_PERMISSIONS + userId);
-
-        return SecurityCache.remove(redisTemplate, cacheKey);
+        // 缓存Key 携带用户代数 自增后旧缓存自然失效
+        return incrGeneration(RedisConstants.PREFIX_GENERATION_USER, userId);
     }
 
     /**
-     * 刷新用户组织 - 删就完了
+     * 刷新用户组织 - 自增用户代数
      * @param userId 用户ID
      * @return boolean
      */
@@ -651,13 +702,12 @@ public class UserUtil {
             return true;
         }
 
-        String cacheKey = CacheUtil.formatKey(RedisConstants.PREFIX_USER_ID_ORGS + userId);
-
-        return SecurityCache.remove(redisTemplate, cacheKey);
+        // 缓存Key 携带用户代数 自增后旧缓存自然失效
+        return incrGeneration(RedisConstants.PREFIX_GENERATION_USER, userId);
     }
 
     /**
-     * 刷新用户默认组织 - 删就完了
+     * 刷新用户默认组织 - 自增用户代数
      * @param userId 用户ID
      * @return boolean
      */
@@ -670,14 +720,13 @@ public class UserUtil {
             return true;
         }
 
-        String cacheKey = CacheUtil.formatKey(RedisConstants.PREFIX_USER_ID_DEF_ORG + userId);
-
-        return SecurityCache.remove(redisTemplate, cacheKey);
+        // 缓存Key 携带用户代数 自增后旧缓存自然失效
+        return incrGeneration(RedisConstants.PREFIX_GENERATION_USER, userId);
     }
 
 
     /**
-     * 刷新用户菜单 - 删就完了
+     * 刷新用户菜单 - 自增用户代数
      * @param userId 用户ID
      * @return boolean
      */
@@ -686,9 +735,35 @@ public class UserUtil {
         ThrowExceptionUtil.isThrowException(!IS_INIT,
                 CoreMsg.OTHER_EXCEPTION_UTILS_INIT);
 
-        String cacheKey = CacheUtil.formatKey(RedisConstants.PREFIX_USER_ID_MENUS + userId);
+        // 缓存Key 携带用户代数 自增后旧缓存自然失效
+        return incrGeneration(RedisConstants.PREFIX_GENERATION_USER, userId);
+    }
+
+    /**
+     * 刷新角色权限 - 自增角色代数
+     * 该角色下全部用户的 角色、权限、菜单 缓存随之失效 无需逐个用户删除
+     * @param roleIds 角色ID
+     * @return boolean
+     */
+    public static boolean refreshRolePerms(String... roleIds){
+        // 判断 工具类是否初始化完成
+        ThrowExceptionUtil.isThrowException(!IS_INIT,
+                CoreMsg.OTHER_EXCEPTION_UTILS_INIT);
+
+        return incrGeneration(RedisConstants.PREFIX_GENERATION_ROLE, roleIds);
+    }
+
+    /**
+     * 刷新组织 - 自增组织代数
+     * 全部用户的 组织、默认组织 缓存随之失效 无需逐个用户删除
+     * @return boolean
+     */
+    public static boolean refreshOrgs(){
+        // 判断 工具类是否初始化完成
+        ThrowExceptionUtil.isThrowException(!IS_INIT,
+                CoreMsg.OTHER_EXCEPTION_UTILS_INIT);
 
-        return SecurityCache.remove(redisTemplate, cacheKey);
+        return incrGeneration(RedisConstants.PREFIX_GENERATION_ORG, StrUtil.EMPTY);
     }
 
     /**
@@ -742,13 +817,248 @@ public class UserUtil {
         }
 
         // 获得当前用户权限
-        List<String> userAllPermsByUserId = UserUtil.getUserAllPermsByUserId(currUser.getId());
-        return !CollUtil.isEmpty(userAllPermsByUserId) &&
-                userAllPermsByUserId.contains(PERMS_TENANT);
+        return hasPerms(currUser.getId(), PERMS_TENANT);
     }
 
     // =====================================
 
+    /**
+     * 获得缓存
+     * 优先读取请求内缓存 同一次请求内 相同缓存Key 只会查询一次
+     * Redis 中带随机 TTL 存储, 代数自增后 旧Key 不再被访问 到期自动删除
+     *
+     * @param cacheKey 缓存Key
+     * @param callbackSource 原数据回调
+     * @return Object
+     */
+    private static Object getCache(final String cacheKey, final Function<String, Object> callbackSource){
+        return UserContextHolder.getContextCache(cacheKey,
+                () -> SecurityCache.get(redisTemplate, cacheKey, callbackSource));
+    }
+
+    /**
+     * 获得 超级管理员权限 (按用户缓存)
+     *
+     * @param userId 用户ID
+     * @return List
+     */
+    private static List<String> getSuperAdminPerms(final String userId){
+        // 缓存Key
+        String cacheKey = getPermsCacheKey(RedisConstants.PREFIX_USER_ID_PERMISSIONS, userId);
+
+        Object cache = getCache(cacheKey, (k) -> {
+            // 查询数据库
+            ResultWrapper<List<String>> resultVo = userRoleRefApi.getAllPerms(userId);
+            if(!ResultWrapper.isSuccess(resultVo)){
+                return null;
+            }
+            return resultVo.getData();
+        });
+
+        List<String> permissions = Convert.toList(String.class, cache);
+        if(null == permissions){
+            return ListUtil.empty();
+        }
+        return permissions;
+    }
+
+    /**
+     * 获得 用户权限 BitSet (所属角色权限并集, 请求内只计算一次)
+     * 返回值为副本
+     *
+     * @param user 用户
+     * @return BitSet
+     */
+    private static BitSet getUserPermsBitSet(final UserModel user){
+        final String userId = user.getId();
+        // 0:系统模块 1:功能模块
+        final String label = TenantUtil.SUPER_ADMIN_TENANT_ID.equals(user.getTenantId())
+                ? DictType.MENU_LABEL_SYSTEM.getValue()
+                : DictType.MENU_LABEL_FUNCTION.getValue();
+
+        long userGeneration = getGeneration(
+                CacheUtil.formatKey(RedisConstants.PREFIX_GENERATION_USER + userId));
+        Map<String, Long> roleGenerations = getRoleGenerations(userId, userGeneration);
+
+        return UserContextHolder.getContextCache(
+                CONTEXT_GENERATION_PREFIX + "perms:" + userId + ":" + userGeneration, () -> {
+                    BitSet bitSet = new BitSet();
+                    for (Map.Entry<String, Long> entry : roleGenerations.entrySet()) {
+                        bitSet.or(getRolePermsBitSet(entry.getKey(), label, entry.getValue()));
+                    }
+                    return bitSet;
+                });
+    }
+
+    /**
+     * 获得 角色权限 BitSet
+     * Key 携带角色代数 角色变动后自然失效 (Redis 中带 TTL 旧代数到期删除), 本地只缓存驻留后的 BitSet
+     *
+     * @param roleId 角色ID
+     * @param label 标签
+     * @param roleGeneration 角色代数
+     * @return BitSet
+     */
+    private static BitSet getRolePermsBitSet(final String roleId, final String label,
+                                             final long roleGeneration){
+        String cacheKey = CacheUtil.formatKey(
+                RedisConstants.PREFIX_ROLE_ID_PERMISSIONS + roleId + ":" + label + ":" + roleGeneration);
+
+        BitSet bitSet = LOCAL_ROLE_PERMS.getIfPresent(cacheKey);
+        if(null != bitSet){
+            return bitSet;
+        }
+
+        Object cache = SecurityCache.get(redisTemplate, cacheKey, (k) -> {
+            // 查询数据库
+            ResultWrapper<List<String>> resultVo = roleMenuRefApi.getPermsByRoleId(roleId, label);
+            if(!ResultWrapper.isSuccess(resultVo)){
+                return null;
+            }
+            return resultVo.getData();
+        });
+
+        bitSet = PermissionIndex.toBitSet(Convert.toList(String.class, cache));
+        LOCAL_ROLE_PERMS.put(cacheKey, bitSet);
+        return bitSet;
+    }
+
+    /**
+     * 获得 权限类缓存Key (角色、权限、菜单、默认角色)
+     * Key 中携带 用户代数 与 用户所属角色代数之和, 任一代数自增后 旧Key 不再被访问 由TTL自然淘汰
+     *
+     * @param prefix 缓存前缀
+     * @param userId 用户ID
+     * @return String
+     */
+    private static String getPermsCacheKey(final String prefix, final String userId){
+        long userGeneration = getGeneration(
+                CacheUtil.formatKey(RedisConstants.PREFIX_GENERATION_USER + userId));
+
+        // 角色集合只随用户代数变化 代数只增不减 故求和即可保证唯一
+        long roleGeneration = 0L;
+        for (Long generation : getRoleGenerations(userId, userGeneration).values()) {
+            roleGeneration += generation;
+        }
+
+        return CacheUtil.formatKey(prefix + userId + ":" + userGeneration + "." + roleGeneration);
+    }
+
+    /**
+     * 获得 用户所属角色代数 (请求内只查询一次)
+     *
+     * @param userId 用户ID
+     * @param userGeneration 用户代数
+     * @return Map 角色ID -> 角色代数
+     */
+    private static Map<String, Long> getRoleGenerations(final String userId, final long userGeneration){
+        return UserContextHolder.getContextCache(
+                CONTEXT_GENERATION_PREFIX + "roles:" + userId + ":" + userGeneration, () -> {
+                    List<String> roleIds = getRoleIdsByUserId(userId, userGeneration);
+                    if(CollUtil.isEmpty(roleIds)){
+                        return Collections.<String, Long>emptyMap();
+                    }
+
+                    List<String> roleGenerationKeys = Lists.newArrayListWithCapacity(roleIds.size());
+                    for (String roleId : roleIds) {
+                        roleGenerationKeys.add(
+                                CacheUtil.formatKey(RedisConstants.PREFIX_GENERATION_ROLE + roleId));
+                    }
+
+                    List<Object> generations = redisTemplate.opsForValue().multiGet(roleGenerationKeys);
+                    Map<String, Long> roleGenerations = Maps.newLinkedHashMapWithExpectedSize(roleIds.size());
+                    for (int i = 0; i < roleIds.size(); i++) {
+                        Object generation = null != generations ? generations.get(i) : null;
+                        roleGenerations.put(roleIds.get(i), Convert.toLong(generation, 0L));
+                    }
+                    return roleGenerations;
+                });
+    }
+
+    /**
+     * 获得 组织类缓存Key (组织、默认组织)
+     *
+     * @param prefix 缓存前缀
+     * @param userId 用户ID
+     * @return String
+     */
+    private static String getOrgCacheKey(final String prefix, final String userId){
+        long userGeneration = getGeneration(
+                CacheUtil.formatKey(RedisConstants.PREFIX_GENERATION_USER + userId));
+        long orgGeneration = getGeneration(
+                CacheUtil.formatKey(RedisConstants.PREFIX_GENERATION_ORG));
+
+        return CacheUtil.formatKey(prefix + userId + ":" + userGeneration + "." + orgGeneration);
+    }
+
+    /**
+     * 获得 用户角色ID (随用户代数缓存)
+     *
+     * @param userId 用户ID
+     * @param userGeneration 用户代数
+     * @return List
+     */
+    private static List<String> getRoleIdsByUserId(final String userId, final long userGeneration){
+        String cacheKey = CacheUtil.formatKey(
+                RedisConstants.PREFIX_USER_ID_ROLE_IDS + userId + ":" + userGeneration);
+
+        Object cache = getCache(cacheKey, (k) -> {
+            // 查询数据库
+            ResultWrapper<List<String>> resultVo = userRoleRefApi.getRoleIdsByUserId(userId);
+            if(!ResultWrapper.isSuccess(resultVo)){
+                return null;
+            }
+            return resultVo.getData();
+        });
+
+        return Convert.toList(String.class, cache);
+    }
+
+    /**
+     * 获得代数 (请求内只查询一次)
+     *
+     * @param generationKey 代数Key
+     * @return long
+     */
+    private static long getGeneration(final String generationKey){
+        Long generation = UserContextHolder.getContextCache(CONTEXT_GENERATION_PREFIX + generationKey,
+                () -> Convert.toLong(redisTemplate.opsForValue().get(generationKey), 0L));
+        return null == generation ? 0L : generation;
+    }
+
+    /**
+     * 自增代数
+     *
+     * @param prefix 代数前缀
+     * @param ids ID
+     * @return boolean
+     */
+    private static boolean incrGeneration(final String prefix, final String... ids){
+        if(ArrayUtil.isEmpty(ids)){
+            return true;
+        }
+
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String id : ids) {
+                    if(null == id){
+                        continue;
+                    }
+                    connection.incr(
+                            CacheUtil.formatKey(prefix + id).getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+        }catch (Exception e){
+            log.error(e.getMessage(), e);
+            return false;
+        }
+
+        // 清除请求内 代数缓存
+        UserContextHolder.removeContextCacheByPrefix(CONTEXT_GENERATION_PREFIX);
+        return true;
+    }
+
     /**
      * 初始化
      */
@@ -757,6 +1067,7 @@ public class UserUtil {
                      UserApi userApi,
                      UserRoleRefApi userRoleRefApi,
                      UserOrgRefApi userOrgRefApi,
+                     RoleMenuRefApi roleMenuRefApi,
                      RedisTemplate<String, Object> redisTemplate) {
         if(globalProperties != null && globalProperties.getAuth() != null
                 && globalProperties.getAuth().getToken() != null
@@ -768,6 +1079,7 @@ public class UserUtil {
         UserUtil.userApi = userApi;
         UserUtil.userRoleRefApi = userRoleRefApi;
         UserUtil.userOrgRefApi = userOrgRefApi;
+        UserUtil.roleMenuRefApi = roleMenuRefApi;
         UserUtil.redisTemplate = redisTemplate;
         IS_INIT = true;
     }
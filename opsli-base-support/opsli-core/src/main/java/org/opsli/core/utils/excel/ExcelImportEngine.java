@@ -0,0 +1,265 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.core.utils.excel;
+
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.date.TimeInterval;
+import cn.hutool.json.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.opsli.common.enums.ExcelOperate;
+import org.opsli.core.utils.ExcelUtil;
+import org.opsli.core.utils.excel.factory.ModelFactoryHelper;
+import org.opsli.plugins.excel.exception.ExcelPluginException;
+import org.opsli.plugins.excel.listener.BatchExcelListener;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+/**
+ * Excel 流水线导入
+ *
+ * 解析线程只负责读取 每满一批投递到 全局共享的有界线程池 由工作线程完成 字典翻译 + 入库
+ * 线程池满时由解析线程自行处理该批 形成背压 内存占用上限 = (队列数 + 并行数 + 导入数) * 批大小
+ * 字典在导入开始时解析一次 之后各批次共用同一份快照
+ * 批量入库失败时 退化为逐行入库 找出被拒绝的行 其余行照常入库
+ *
+ * @author Parker
+ * @date 2020-09-16
+ */
+@Slf4j
+public class ExcelImportEngine<E> {
+
+    /** 默认每批行数 */
+    private static final int DEF_BATCH_SIZE = 2000;
+    /** 拒绝明细 记录上限 */
+    private static final int MAX_REJECT_ROWS = 1000;
+    /** 等待工作线程结束 最长时间(分钟) */
+    private static final long AWAIT_MINUTES = 60;
+
+    private final Class<E> modelClazz;
+    private final int batchSize;
+    /** 工作线程池 (全局共享 有界 满时拒绝) */
+    private final Executor executor;
+    /** 单行预处理 (如 创建人 创建时间) */
+    private final Consumer<E> rowHandler;
+    /** 入库 */
+    private final Function<List<E>, Boolean> inserter;
+
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong successCount = new AtomicLong();
+    private final AtomicLong rejectCount = new AtomicLong();
+    private final List<ExcelImportReport.RejectRow> rejectRows =
+            Collections.synchronizedList(new ArrayList<>());
+    /** 进度监听 */
+    private volatile LongConsumer progressListener;
+
+    public ExcelImportEngine(Class<E> modelClazz, Integer batchSize, Executor executor,
+                             Consumer<E> rowHandler, Function<List<E>, Boolean> inserter) {
+        this.modelClazz = modelClazz;
+        this.batchSize = null != batchSize && batchSize > 0 ? batchSize : DEF_BATCH_SIZE;
+        this.executor = executor;
+        this.rowHandler = rowHandler;
+        this.inserter = inserter;
+    }
+
+    /**
+     * 设置进度监听 每批处理完成后回调 已处理行数 (成功 + 拒绝)
+     * @param progressListener 进度监听
+     * @return ExcelImportEngine
+     */
+    public ExcelImportEngine<E> onProgress(LongConsumer progressListener) {
+        this.progressListener = progressListener;
+        return this;
+    }
+
+    /**
+     * 执行导入
+     * @param excel 文件
+     * @return ExcelImportReport
+     */
+    public ExcelImportReport execute(MultipartFile excel) throws ExcelPluginException {
+        try (InputStream inputStream = excel.getInputStream()){
+            return this.execute(inputStream);
+        }catch (IOException e){
+            log.error(e.getMessage(), e);
+            return new ExcelImportReport();
+        }
+    }
+
+    /**
+     * 执行导入
+     * @param inputStream 文件流
+     * @return ExcelImportReport
+     */
+    public ExcelImportReport execute(InputStream inputStream) throws ExcelPluginException {
+        TimeInterval timer = DateUtil.timer();
+
+        // 字典快照 整个导入只解析一次
+        final JSONObject fieldsDictJson = ExcelUtil.getInstance().getFieldsDict(
+                ExcelUtil.getInstance().getFields(modelClazz));
+        // 预先生成 helper 类 防止工作线程并发生成
+        try {
+            ModelFactoryHelper.getModelHelper(modelClazz);
+        }catch (Exception e){
+            log.error(e.getMessage(), e);
+        }
+
+        // 线程池为共享 以本次导入投递的批次 判断是否处理完成
+        final Phaser phaser = new Phaser(1);
+        try {
+            ExcelUtil.getInstance().readExcelByListener(inputStream, modelClazz, new BatchExcelListener<E>(batchSize) {
+                @Override
+                public void saveData(List<E> dataList) {
+                    if(dataList.isEmpty()){
+                        return;
+                    }
+                    // 监听器会复用集合 这里必须拷贝
+                    final List<E> batch = new ArrayList<>(dataList);
+                    final List<Integer> rowIndexList = new ArrayList<>(getRowIndexList());
+                    totalCount.addAndGet(batch.size());
+                    phaser.register();
+                    try {
+                        executor.execute(() -> {
+                            try {
+                                handleBatch(batch, rowIndexList, fieldsDictJson);
+                            }finally {
+                                phaser.arriveAndDeregister();
+                            }
+                        });
+                    }catch (RejectedExecutionException e){
+                        // 线程池已满 由解析线程自行处理 形成背压
+                        try {
+                            handleBatch(batch, rowIndexList, fieldsDictJson);
+                        }finally {
+                            phaser.arriveAndDeregister();
+                        }
+                    }
+                }
+            });
+        }finally {
+            try {
+                phaser.awaitAdvanceInterruptibly(phaser.arrive(), AWAIT_MINUTES, TimeUnit.MINUTES);
+            }catch (TimeoutException e){
+                log.error("Excel 导入 等待工作线程超时");
+            }catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        ExcelImportReport report = new ExcelImportReport();
+        report.setTotalCount(totalCount.get());
+        report.setSuccessCount(successCount.get());
+        report.setRejectCount(rejectCount.get());
+        report.setRejectRows(new ArrayList<>(rejectRows));
+        report.setTimeMillis(timer.interval());
+        return report;
+    }
+
+    /**
+     * 处理一批数据
+     * @param batch 数据
+     * @param rowIndexList 行号
+     * @param fieldsDictJson 字典快照
+     */
+    private void handleBatch(List<E> batch, List<Integer> rowIndexList, JSONObject fieldsDictJson) {
+        try {
+            this.insertBatch(batch, rowIndexList, fieldsDictJson);
+        }finally {
+            LongConsumer listener = progressListener;
+            if(null != listener){
+                listener.accept(successCount.get() + rejectCount.get());
+            }
+        }
+    }
+
+    /**
+     * 字典翻译 + 入库
+     * @param batch 数据
+     * @param rowIndexList 行号
+     * @param fieldsDictJson 字典快照
+     */
+    private void insertBatch(List<E> batch, List<Integer> rowIndexList, JSONObject fieldsDictJson) {
+        List<E> disposeData;
+        try {
+            disposeData = ExcelUtil.getInstance().handleDatas(
+                    batch, modelClazz, ExcelOperate.READ, fieldsDictJson);
+            if(null != rowHandler){
+                for (E model : disposeData) {
+                    rowHandler.accept(model);
+                }
+            }
+        }catch (Exception e){
+            // 预处理失败 整批计为拒绝
+            log.warn("Excel 导入 数据处理失败: {}", e.getMessage());
+            for (int i = 0; i < batch.size(); i++) {
+                this.reject(i, rowIndexList, e.getMessage());
+            }
+            return;
+        }
+
+        try {
+            if(Boolean.TRUE.equals(inserter.apply(disposeData))){
+                successCount.addAndGet(disposeData.size());
+                return;
+            }
+        }catch (Exception e){
+            log.warn("Excel 导入 批量入库失败 退化为逐行入库: {}", e.getMessage());
+        }
+
+        // 逐行入库 找出被拒绝的行
+        for (int i = 0; i < disposeData.size(); i++) {
+            String reason;
+            try {
+                if(Boolean.TRUE.equals(inserter.apply(Collections.singletonList(disposeData.get(i))))){
+                    successCount.incrementAndGet();
+                    continue;
+                }
+                reason = "入库失败";
+            }catch (Exception e){
+                reason = e.getMessage();
+            }
+            this.reject(i, rowIndexList, reason);
+        }
+    }
+
+    /**
+     * 记录被拒绝的行
+     * @param i 批次内序号
+     * @param rowIndexList 行号
+     * @param reason 原因
+     */
+    private void reject(int i, List<Integer> rowIndexList, String reason) {
+        rejectCount.incrementAndGet();
+        if(rejectRows.size() < MAX_REJECT_ROWS){
+            // 行号从0开始 转为 Excel 展示行号
+            Integer rowNum = i < rowIndexList.size() ? rowIndexList.get(i) + 1 : null;
+            rejectRows.add(new ExcelImportReport.RejectRow(rowNum, reason));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.core.utils.excel;
+
+import com.google.common.collect.Lists;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Excel 导入报告
+ *
+ * @author Parker
+ * @date 2020-09-16
+ */
+@Data
+public class ExcelImportReport implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** 读取总行数 */
+    private long totalCount;
+
+    /** 成功行数 */
+    private long successCount;
+
+    /** 拒绝行数 */
+    private long rejectCount;
+
+    /** 耗时(毫秒) */
+    private long timeMillis;
+
+    /** 拒绝明细 (超出上限后只计数 不再记录明细) */
+    private List<RejectRow> rejectRows = Lists.newArrayList();
+
+
+    /**
+     * 拒绝行
+     */
+    @Data
+    public static class RejectRow implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        /** Excel 行号 (从1开始 含表头) */
+        private Integer rowNum;
+
+        /** 拒绝原因 */
+        private String reason;
+
+        public RejectRow() {}
+
+        public RejectRow(Integer rowNum, String reason) {
+            this.rowNum = rowNum;
+            this.reason = reason;
+        }
+    }
+}
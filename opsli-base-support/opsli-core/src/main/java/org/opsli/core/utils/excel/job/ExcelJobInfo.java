@@ -0,0 +1,82 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.core.utils.excel.job;
+
+import lombok.Data;
+import org.opsli.core.utils.excel.ExcelImportReport;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Excel 异步任务信息 (存储于 Redis 供前端轮询)
+ *
+ * @author Parker
+ * @date 2020-09-16
+ */
+@Data
+public class ExcelJobInfo implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** 类型 导入 */
+    public static final String TYPE_IMPORT = "import";
+    /** 类型 导出 */
+    public static final String TYPE_EXPORT = "export";
+
+    /** 状态 排队中 */
+    public static final String STATUS_WAIT = "wait";
+    /** 状态 执行中 */
+    public static final String STATUS_RUNNING = "running";
+    /** 状态 成功 */
+    public static final String STATUS_SUCCESS = "success";
+    /** 状态 失败 */
+    public static final String STATUS_FAIL = "fail";
+
+    /** 任务ID */
+    private String jobId;
+
+    /** 提交人 */
+    private String userId;
+
+    /** 类型 */
+    private String type;
+
+    /** 状态 */
+    private String status;
+
+    /** 主题名 (导出文件名) */
+    private String subName;
+
+    /** 总行数 (未知时为 -1) */
+    private long total = -1;
+
+    /** 已处理行数 */
+    private long handled;
+
+    /** 提示信息 */
+    private String message;
+
+    /** 导入报告 */
+    private ExcelImportReport report;
+
+    /** 提交时间 */
+    private Date createTime;
+
+    /** 完成时间 */
+    private Date finishTime;
+
+}
@@ -0,0 +1,432 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.core.utils.excel.job;
+
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.excel.support.ExcelTypeEnum;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.opsli.common.constants.RedisConstants;
+import org.opsli.common.exception.ServiceException;
+import org.opsli.common.thread.ThreadPoolFactory;
+import org.opsli.core.autoconfigure.properties.GlobalProperties;
+import org.opsli.core.cache.CacheUtil;
+import org.opsli.core.holder.UserContextHolder;
+import org.opsli.core.msg.CoreMsg;
+import org.opsli.core.utils.excel.ExcelImportReport;
+import org.opsli.plugins.redis.RedisPlugin;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Excel 异步任务管理
+ *
+ * 导入导出在独立的有界线程池中执行 提交后立即返回任务ID 请求线程不再被长时间占用
+ * 导入文件先落盘 导出结果写入落盘文件 进度存储于 Redis 供前端轮询
+ * 下载使用固定缓冲区 流式输出落盘文件 (不整体读入内存) 落盘文件到期后定时清理
+ *
+ * @author Parker
+ * @date 2020-09-16
+ */
+@Slf4j
+@Component
+public class ExcelJobManager implements InitializingBean, DisposableBean {
+
+    /** 落盘目录 */
+    private static final String SPOOL_DIR = "excel-job";
+    /** 进度刷新间隔(毫秒) */
+    private static final long PROGRESS_FLUSH_INTERVAL = 1000L;
+    /** 清理间隔(分钟) */
+    private static final long CLEAN_INTERVAL_MINUTES = 30L;
+    /** 下载缓冲区大小 */
+    private static final int DOWNLOAD_BUFFER_SIZE = 64 * 1024;
+    /** xlsx Content-Type */
+    private static final String XLSX_CONTENT_TYPE =
+            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+    @Autowired
+    private GlobalProperties globalProperties;
+
+    @Autowired
+    private RedisPlugin redisPlugin;
+
+    /** 任务线程池 */
+    private ExecutorService executor;
+
+    /** 导入工作线程池 (全部导入共享 满时由解析线程自行处理) */
+    private ExecutorService importExecutor;
+
+    /** 清理线程 */
+    private ScheduledExecutorService cleaner;
+
+    @Override
+    public void afterPropertiesSet() {
+        GlobalProperties.Excel excelConf = globalProperties.getExcel();
+        int parallelism = null != excelConf.getJobParallelism() && excelConf.getJobParallelism() > 0
+                ? excelConf.getJobParallelism() : 2;
+        int queueSize = null != excelConf.getJobQueueSize() && excelConf.getJobQueueSize() > 0
+                ? excelConf.getJobQueueSize() : 16;
+        // 队列满直接拒绝 不允许退化到请求线程执行
+        executor = ThreadPoolFactory.createInitThreadPool(parallelism, parallelism, 60L, TimeUnit.SECONDS,
+                queueSize, "ExcelJob-%d", new ThreadPoolExecutor.AbortPolicy());
+
+        int importParallelism = null != excelConf.getImportParallelism() && excelConf.getImportParallelism() > 0
+                ? excelConf.getImportParallelism() : 4;
+        int importQueueSize = null != excelConf.getImportQueueSize() && excelConf.getImportQueueSize() > 0
+                ? excelConf.getImportQueueSize() : 4;
+        // 队列满直接拒绝 由导入引擎 在解析线程中处理该批
+        importExecutor = ThreadPoolFactory.createInitThreadPool(importParallelism, importParallelism, 60L,
+                TimeUnit.SECONDS, importQueueSize, "ExcelImport-%d", new ThreadPoolExecutor.AbortPolicy());
+
+        cleaner = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("ExcelJob-Cleaner").setDaemon(true).build());
+        cleaner.scheduleWithFixedDelay(this::cleanExpiredFiles,
+                CLEAN_INTERVAL_MINUTES, CLEAN_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public void destroy() {
+        if(null != cleaner){
+            cleaner.shutdownNow();
+        }
+        if(null != executor){
+            executor.shutdownNow();
+        }
+        if(null != importExecutor){
+            importExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 获得导入工作线程池
+     * @return ExecutorService
+     */
+    public ExecutorService getImportExecutor() {
+        return importExecutor;
+    }
+
+    /**
+     * 提交导入任务 上传文件先落盘 (请求结束后 MultipartFile 临时文件会被删除)
+     * @param userId 提交人
+     * @param subName 主题名
+     * @param excel 上传文件
+     * @param task 任务
+     * @return 任务ID
+     */
+    public String submitImport(String userId, String subName, MultipartFile excel, ExcelJobTask task) {
+        String jobId = IdUtil.fastSimpleUUID();
+        File spoolFile = this.getSpoolFile(jobId, "import");
+        try {
+            FileUtil.mkParentDirs(spoolFile);
+            excel.transferTo(spoolFile);
+        }catch (IOException e){
+            log.error(e.getMessage(), e);
+            FileUtil.del(spoolFile);
+            throw new ServiceException(CoreMsg.EXCEL_JOB_SPOOL_ERROR);
+        }
+        return this.submit(jobId, ExcelJobInfo.TYPE_IMPORT, userId, subName, spoolFile, task);
+    }
+
+    /**
+     * 提交导出任务
+     * @param userId 提交人
+     * @param subName 主题名
+     * @param task 任务
+     * @return 任务ID
+     */
+    public String submitExport(String userId, String subName, ExcelJobTask task) {
+        String jobId = IdUtil.fastSimpleUUID();
+        File spoolFile = this.getSpoolFile(jobId, "export");
+        FileUtil.mkParentDirs(spoolFile);
+        return this.submit(jobId, ExcelJobInfo.TYPE_EXPORT, userId, subName, spoolFile, task);
+    }
+
+    /**
+     * 获得任务信息
+     * @param jobId 任务ID
+     * @return Optional
+     */
+    public Optional<ExcelJobInfo> getJob(String jobId) {
+        if(StrUtil.isEmpty(jobId)){
+            return Optional.empty();
+        }
+        Object cacheObj = redisPlugin.get(this.getJobKey(jobId));
+        return Optional.ofNullable(Convert.convert(ExcelJobInfo.class, cacheObj));
+    }
+
+    /**
+     * 下载导出结果 固定缓冲区 流式输出
+     * @param job 任务
+     * @param response response
+     */
+    public void download(ExcelJobInfo job, HttpServletResponse response) {
+        if(null == job || !ExcelJobInfo.TYPE_EXPORT.equals(job.getType())
+                || !ExcelJobInfo.STATUS_SUCCESS.equals(job.getStatus())){
+            throw new ServiceException(CoreMsg.EXCEL_JOB_NULL);
+        }
+
+        File file = this.getSpoolFile(job.getJobId(), "export");
+        if(!file.exists()){
+            throw new ServiceException(CoreMsg.EXCEL_JOB_NULL);
+        }
+
+        String fileName = job.getSubName() + "-" +
+                DateUtil.format(job.getFinishTime(), "yyyyMMddHHmmss") + ExcelTypeEnum.XLSX.getValue();
+        fileName = new String(fileName.getBytes(), StandardCharsets.ISO_8859_1);
+        response.setContentType(XLSX_CONTENT_TYPE);
+        response.setHeader("Content-Disposition", "attachment; filename=" + fileName);
+        response.setHeader("Cache-Control", "no-store, no-cache");
+        response.setContentLengthLong(file.length());
+
+        try (InputStream in = new FileInputStream(file)){
+            OutputStream out = response.getOutputStream();
+            byte[] buffer = new byte[DOWNLOAD_BUFFER_SIZE];
+            int len;
+            while ((len = in.read(buffer)) != -1){
+                out.write(buffer, 0, len);
+            }
+            response.flushBuffer();
+        }catch (IOException e){
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    // ==================================================
+
+    /**
+     * 提交任务
+     */
+    private String submit(String jobId, String type, String userId, String subName, File spoolFile,
+                          ExcelJobTask task) {
+        ExcelJobInfo job = new ExcelJobInfo();
+        job.setJobId(jobId);
+        job.setType(type);
+        job.setUserId(userId);
+        job.setSubName(subName);
+        job.setStatus(ExcelJobInfo.STATUS_WAIT);
+        job.setCreateTime(DateUtil.date());
+        this.saveJob(job);
+
+        try {
+            executor.execute(() -> this.run(job, spoolFile, task));
+        }catch (RejectedExecutionException e){
+            redisPlugin.del(this.getJobKey(jobId));
+            if(ExcelJobInfo.TYPE_IMPORT.equals(type)){
+                FileUtil.del(spoolFile);
+            }
+            // 任务过多
+            throw new ServiceException(CoreMsg.EXCEL_JOB_BUSY);
+        }
+        return jobId;
+    }
+
+    /**
+     * 执行任务
+     */
+    private void run(ExcelJobInfo job, File spoolFile, ExcelJobTask task) {
+        // 任务内 独立的用户身份缓存 不复用已结束请求的缓存
+        UserContextHolder.openContextCache();
+
+        job.setStatus(ExcelJobInfo.STATUS_RUNNING);
+        this.saveJob(job);
+
+        ExcelJobContext context = new ExcelJobContext(job, spoolFile);
+        try {
+            task.run(context);
+            job.setStatus(ExcelJobInfo.STATUS_SUCCESS);
+        }catch (Exception e){
+            log.error("Excel 异步任务失败 jobId: {}", job.getJobId(), e);
+            job.setStatus(ExcelJobInfo.STATUS_FAIL);
+            job.setMessage(e.getMessage());
+            if(ExcelJobInfo.TYPE_EXPORT.equals(job.getType())){
+                FileUtil.del(spoolFile);
+            }
+        }finally {
+            // 导入文件 处理完即删除
+            if(ExcelJobInfo.TYPE_IMPORT.equals(job.getType())){
+                FileUtil.del(spoolFile);
+            }
+            job.setHandled(context.handled.get());
+            job.setFinishTime(DateUtil.date());
+            this.saveJob(job);
+            // 线程池线程复用 任务结束即释放
+            UserContextHolder.closeContextCache();
+        }
+    }
+
+    /**
+     * 保存任务信息
+     */
+    private void saveJob(ExcelJobInfo job) {
+        redisPlugin.put(this.getJobKey(job.getJobId()), job,
+                this.getExpireHours(), TimeUnit.HOURS);
+    }
+
+    /**
+     * 清理过期落盘文件
+     */
+    private void cleanExpiredFiles() {
+        try {
+            File dir = FileUtil.file(globalProperties.getWeb().getUploadPath(), SPOOL_DIR);
+            File[] files = dir.listFiles();
+            if(null == files){
+                return;
+            }
+            long expireTime = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(this.getExpireHours());
+            for (File file : files) {
+                if(file.isFile() && file.lastModified() < expireTime){
+                    FileUtil.del(file);
+                }
+            }
+        }catch (Exception e){
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    private File getSpoolFile(String jobId, String type) {
+        return FileUtil.file(globalProperties.getWeb().getUploadPath(), SPOOL_DIR,
+                jobId + "-" + type + ExcelTypeEnum.XLSX.getValue());
+    }
+
+    private String getJobKey(String jobId) {
+        return CacheUtil.formatKey(RedisConstants.PREFIX_TMP_EXCEL_JOB_NAME + jobId);
+    }
+
+    private int getExpireHours() {
+        Integer expireHours = globalProperties.getExcel().getJobExpireHours();
+        return null != expireHours && expireHours > 0 ? expireHours : 24;
+    }
+
+    // ==================================================
+
+    /**
+     * 任务
+     */
+    @FunctionalInterface
+    public interface ExcelJobTask {
+
+        /**
+         * 执行
+         * @param context 任务上下文
+         * @throws Exception 异常
+         */
+        void run(ExcelJobContext context) throws Exception;
+    }
+
+    /**
+     * 任务上下文 用于读写落盘文件 与 上报进度
+     */
+    public class ExcelJobContext {
+
+        private final ExcelJobInfo job;
+        private final File spoolFile;
+        private final AtomicLong handled = new AtomicLong();
+        private volatile long lastFlushTime;
+
+        private ExcelJobContext(ExcelJobInfo job, File spoolFile) {
+            this.job = job;
+            this.spoolFile = spoolFile;
+        }
+
+        /**
+         * 落盘文件 (导入为上传文件 导出为输出文件)
+         * @return File
+         */
+        public File getSpoolFile() {
+            return spoolFile;
+        }
+
+        /**
+         * 设置总行数
+         * @param total 总行数
+         */
+        public void setTotal(long total) {
+            job.setTotal(total);
+            this.flush(true);
+        }
+
+        /**
+         * 增加已处理行数
+         * @param count 行数
+         */
+        public void addHandled(long count) {
+            handled.addAndGet(count);
+            this.flush(false);
+        }
+
+        /**
+         * 设置已处理行数
+         * @param count 行数
+         */
+        public void setHandled(long count) {
+            handled.set(count);
+            this.flush(false);
+        }
+
+        /**
+         * 设置导入报告
+         * @param report 报告
+         */
+        public void setReport(ExcelImportReport report) {
+            job.setReport(report);
+        }
+
+        /**
+         * 设置提示信息
+         * @param message 信息
+         */
+        public void setMessage(String message) {
+            job.setMessage(message);
+        }
+
+        /**
+         * 刷新进度 限制频率 防止频繁写入 Redis
+         * @param force 强制刷新
+         */
+        private synchronized void flush(boolean force) {
+            long now = System.currentTimeMillis();
+            if(!force && now - lastFlushTime < PROGRESS_FLUSH_INTERVAL){
+                return;
+            }
+            lastFlushTime = now;
+            job.setHandled(handled.get());
+            saveJob(job);
+        }
+    }
+}
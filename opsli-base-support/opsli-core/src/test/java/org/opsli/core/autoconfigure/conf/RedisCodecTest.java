@@ -0,0 +1,257 @@
+package org.opsli.core.autoconfigure.conf;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.bean.PropDesc;
+import com.google.common.collect.Lists;
+import org.junit.Assert;
+import org.junit.Test;
+import org.opsli.api.base.warpper.ApiWrapper;
+import org.opsli.api.wrapper.system.dict.DictDetailModel;
+import org.opsli.api.wrapper.system.dict.DictWrapper;
+import org.opsli.api.wrapper.system.menu.MenuModel;
+import org.opsli.api.wrapper.system.options.OptionsModel;
+import org.opsli.api.wrapper.system.role.RoleModel;
+import org.opsli.api.wrapper.system.tenant.TenantModel;
+import org.opsli.api.wrapper.system.user.UserModel;
+import org.opsli.api.wrapper.system.user.UserOrgRefModel;
+import org.opsli.plugins.redis.codec.BeanSchemaCodec;
+import org.opsli.plugins.redis.codec.CodecRedisSerializer;
+import org.opsli.plugins.redis.codec.RedisValueCodec;
+import org.opsli.plugins.redis.jsonserializer.FastJson2JsonRedisSerializer;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Redis 二进制编码测试
+ *
+ * 覆盖 RedisCodecConfig 中注册的全部模型: 往返一致、空值与构造默认值、结构指纹不一致视为未命中
+ * 体积小于 FastJson2JsonRedisSerializer, 编解码耗时对比见 RedisCodecBenchmark (mvn -P jmh)
+ *
+ * @author Parker
+ * @date 2023-04-24 10:30
+ */
+public class RedisCodecTest {
+
+    /** 已注册模型 与 RedisCodecConfig 保持一致 */
+    private static final List<Class<?>> MODELS = Lists.newArrayList(
+            UserModel.class,
+            MenuModel.class,
+            RoleModel.class,
+            TenantModel.class,
+            OptionsModel.class,
+            UserOrgRefModel.class,
+            DictDetailModel.class,
+            DictWrapper.class
+    );
+
+    /** 固定时间 */
+    private static final long TIME = 1682303400000L;
+
+    private final FastJson2JsonRedisSerializer<Object> jsonSerializer =
+            new FastJson2JsonRedisSerializer<>(Object.class);
+
+    private final CodecRedisSerializer serializer = new CodecRedisSerializer(
+            Collections.singletonList(new RedisCodecConfig().systemModelCodec()), jsonSerializer, true);
+
+    @Test
+    public void roundTrip(){
+        for (Class<?> model : MODELS) {
+            Object bean = this.createFull(model);
+            byte[] bytes = serializer.serialize(bean);
+            Assert.assertEquals(model.getName(), CodecRedisSerializer.MAGIC, bytes[0]);
+
+            Object decoded = serializer.deserialize(bytes);
+            Assert.assertNotNull(model.getName(), decoded);
+            Assert.assertNotSame(bean, decoded);
+            this.assertBeanEquals(model.getName(), bean, decoded);
+        }
+    }
+
+    @Test
+    public void roundTripList(){
+        for (Class<?> model : MODELS) {
+            List<Object> list = Lists.newArrayList(this.createFull(model), this.createNull(model));
+            Object decoded = serializer.deserialize(serializer.serialize(list));
+            Assert.assertTrue(model.getName(), decoded instanceof List);
+            List<?> decodedList = (List<?>) decoded;
+            Assert.assertEquals(list.size(), decodedList.size());
+            for (int i = 0; i < list.size(); i++) {
+                this.assertBeanEquals(model.getName(), list.get(i), decodedList.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void nullFields(){
+        for (Class<?> model : MODELS) {
+            Object bean = this.createNull(model);
+            Object decoded = serializer.deserialize(serializer.serialize(bean));
+            Assert.assertNotNull(model.getName(), decoded);
+            // 空值 还原为空 不保留构造默认值
+            this.assertBeanEquals(model.getName(), bean, decoded);
+        }
+
+        // izApi / izManual 构造默认为 false
+        UserModel nullFlags = new UserModel();
+        nullFlags.setIzApi(null);
+        nullFlags.setIzManual(null);
+        UserModel decoded = (UserModel) serializer.deserialize(serializer.serialize(nullFlags));
+        Assert.assertNotNull(decoded);
+        Assert.assertNull(decoded.getIzApi());
+        Assert.assertNull(decoded.getIzManual());
+
+        // 未修改时 仍为构造默认值
+        decoded = (UserModel) serializer.deserialize(serializer.serialize(new UserModel()));
+        Assert.assertNotNull(decoded);
+        Assert.assertEquals(Boolean.FALSE, decoded.getIzApi());
+        Assert.assertEquals(Boolean.FALSE, decoded.getIzManual());
+
+        UserModel trueFlags = new UserModel();
+        trueFlags.setIzApi(true);
+        trueFlags.setIzManual(true);
+        decoded = (UserModel) serializer.deserialize(serializer.serialize(trueFlags));
+        Assert.assertNotNull(decoded);
+        Assert.assertEquals(Boolean.TRUE, decoded.getIzApi());
+        Assert.assertEquals(Boolean.TRUE, decoded.getIzManual());
+    }
+
+    @Test
+    public void fingerprintMismatch(){
+        byte[] bytes = serializer.serialize(this.createFull(UserModel.class));
+
+        // 相同编码器ID 不同结构 (模拟 模型变更后 读取旧缓存)
+        RedisValueCodec changedCodec = new BeanSchemaCodec(bytes[2], Lists.newArrayList(
+                UserModel.class,
+                MenuModel.class
+        ));
+        CodecRedisSerializer changedSerializer = new CodecRedisSerializer(
+                Collections.singletonList(changedCodec), jsonSerializer, true);
+
+        // 视为缓存不存在 由上层回源
+        Assert.assertNull(changedSerializer.deserialize(bytes));
+        // 未知编码器
+        CodecRedisSerializer emptySerializer = new CodecRedisSerializer(
+                Collections.emptyList(), jsonSerializer, true);
+        Assert.assertNull(emptySerializer.deserialize(bytes));
+    }
+
+    @Test
+    public void jsonCompatible(){
+        // 二进制写入前的 JSON 缓存 仍可读取
+        byte[] json = jsonSerializer.serialize(this.createFull(UserModel.class));
+        Object decoded = serializer.deserialize(json);
+        Assert.assertNotNull(decoded);
+        Assert.assertEquals("username", BeanUtil.getProperty(decoded, "username"));
+    }
+
+    @Test
+    public void smallerThanJson(){
+        for (Class<?> model : MODELS) {
+            Object bean = this.createFull(model);
+            byte[] json = jsonSerializer.serialize(bean);
+            byte[] bin = serializer.serialize(bean);
+            // 不写属性名 体积必然小于 JSON
+            Assert.assertTrue(model.getName(), bin.length < json.length);
+        }
+    }
+
+    // ======================
+
+    /**
+     * 创建 全部属性有值的对象
+     * @param model 模型
+     * @return Object
+     */
+    private Object createFull(Class<?> model) {
+        Object bean = this.newInstance(model);
+        for (PropDesc prop : BeanUtil.getBeanDesc(model).getProps()) {
+            if(prop.getGetter() == null || prop.getSetter() == null){
+                continue;
+            }
+            prop.setValue(bean, this.createValue(prop.getFieldName(), prop.getFieldClass()));
+        }
+        return bean;
+    }
+
+    /**
+     * 创建 全部属性为空的对象 (包括构造中有默认值的属性)
+     * @param model 模型
+     * @return Object
+     */
+    private Object createNull(Class<?> model) {
+        Object bean = this.newInstance(model);
+        for (PropDesc prop : BeanUtil.getBeanDesc(model).getProps()) {
+            if(prop.getGetter() == null || prop.getSetter() == null || prop.getFieldClass().isPrimitive()){
+                continue;
+            }
+            prop.setValue(bean, null);
+        }
+        return bean;
+    }
+
+    private Object createValue(String name, Class<?> type) {
+        if(type == String.class){
+            return name;
+        }
+        if(type == Integer.class || type == int.class){
+            return name.length();
+        }
+        if(type == Long.class || type == long.class){
+            return (long) name.hashCode();
+        }
+        if(type == Boolean.class || type == boolean.class){
+            return true;
+        }
+        if(type == Double.class || type == double.class){
+            return name.length() + 0.5D;
+        }
+        if(type == BigDecimal.class){
+            return new BigDecimal("12.50");
+        }
+        if(type == Date.class){
+            return new Date(TIME);
+        }
+        if(MODELS.contains(type)){
+            return this.createFull(type);
+        }
+        throw new IllegalArgumentException("不支持的属性类型: " + type.getName());
+    }
+
+    private Object newInstance(Class<?> model) {
+        try {
+            return model.getDeclaredConstructor().newInstance();
+        }catch (Exception e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 按属性逐个比较 (ApiWrapper 子类 equals 不包含父类属性)
+     */
+    private void assertBeanEquals(String message, Object expected, Object actual) {
+        Assert.assertNotNull(message, actual);
+        Assert.assertEquals(message, expected.getClass(), actual.getClass());
+        Map<String, Object> expectedMap = BeanUtil.beanToMap(expected, false, false);
+        Map<String, Object> actualMap = BeanUtil.beanToMap(actual, false, false);
+        Assert.assertEquals(message, expectedMap.keySet(), actualMap.keySet());
+        for (Map.Entry<String, Object> entry : expectedMap.entrySet()) {
+            Object expectedValue = entry.getValue();
+            Object actualValue = actualMap.get(entry.getKey());
+            String propMessage = message + "." + entry.getKey();
+            if(expectedValue != null && MODELS.contains(expectedValue.getClass())){
+                this.assertBeanEquals(propMessage, expectedValue, actualValue);
+                continue;
+            }
+            Assert.assertEquals(propMessage, expectedValue, actualValue);
+        }
+        if(expected instanceof ApiWrapper){
+            Assert.assertEquals(message + ".izApi",
+                    ((ApiWrapper) expected).getIzApi(), ((ApiWrapper) actual).getIzApi());
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package org.opsli.core.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.opsli.api.wrapper.system.user.UserModel;
+import org.opsli.core.autoconfigure.conf.RedisCodecConfig;
+import org.opsli.plugins.redis.RecordingRedisConnection;
+import org.opsli.plugins.redis.codec.CodecRedisSerializer;
+import org.opsli.plugins.redis.jsonserializer.FastJson2JsonRedisSerializer;
+import org.opsli.plugins.redis.scripts.RedisScriptCache;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * 安全缓存 本地一级缓存测试
+ *
+ * 录制连接 模拟 Redis 校验本地缓存命中、隔离、回填不广播
+ *
+ * @author Parker
+ * @date 2023-04-24 10:30
+ */
+public class SecurityCacheTest {
+
+    private final CodecRedisSerializer serializer = new CodecRedisSerializer(
+            Collections.singletonList(new RedisCodecConfig().systemModelCodec()),
+            new FastJson2JsonRedisSerializer<>(Object.class), true);
+
+    @Test
+    public void localCacheNotShared(){
+        UserModel user = new UserModel();
+        user.setId("1");
+        user.setUsername("username");
+        user.setTenantId("tenantId");
+        byte[] bytes = serializer.serialize(user);
+
+        RecordingRedisConnection connection = new RecordingRedisConnection(
+                (command, args) -> "get".equals(command) ? bytes : null);
+        RedisTemplate<String, Object> redisTemplate = connection.template(serializer);
+
+        String key = "security-cache-test:" + System.nanoTime();
+        Object first = SecurityCache.get(redisTemplate, key, k -> null);
+        Assert.assertTrue(first instanceof UserModel);
+
+        // 调用方修改返回值 (如 切换租户)
+        ((UserModel) first).setTenantId("switched");
+
+        Object second = SecurityCache.get(redisTemplate, key, k -> null);
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals("tenantId", ((UserModel) second).getTenantId());
+        // 第二次 命中本地缓存 不访问 Redis
+        Assert.assertEquals(1, connection.getCalls().size());
+    }
+
+    @Test
+    public void fillWithoutBroadcast(){
+        UserModel user = new UserModel();
+        user.setId("2");
+        user.setUsername("username");
+        user.setTenantId("tenantId");
+
+        RecordingRedisConnection connection = new RecordingRedisConnection(
+                (command, args) -> {
+                    if("publish".equals(command)){
+                        return 1L;
+                    }
+                    return command.startsWith("set") ? Boolean.TRUE : null;
+                });
+        RedisTemplate<String, Object> redisTemplate = connection.template(serializer);
+        SecurityCache.init(connection.plugin(serializer, new RedisScriptCache()));
+
+        String key = "security-cache-test:" + System.nanoTime();
+        Object first = SecurityCache.get(redisTemplate, key, k -> user);
+        Assert.assertTrue(first instanceof UserModel);
+
+        // 读穿透回填 不覆盖已有值 且不广播
+        Assert.assertTrue(connection.getCalls().stream().anyMatch(call ->
+                "set".equals(call.command)
+                        && Arrays.asList(call.args).contains(RedisStringCommands.SetOption.SET_IF_ABSENT)));
+        Assert.assertTrue(connection.getCalls().stream().noneMatch(call -> "publish".equals(call.command)));
+
+        // 回填后 命中本地缓存
+        connection.reset();
+        Object second = SecurityCache.get(redisTemplate, key, k -> null);
+        Assert.assertEquals("2", ((UserModel) second).getId());
+        Assert.assertTrue(connection.getCalls().isEmpty());
+
+        // 真实写入 才广播失效
+        SecurityCache.put(redisTemplate, key, user);
+        Assert.assertTrue(connection.getCalls().stream().anyMatch(call -> "publish".equals(call.command)));
+    }
+
+}
@@ -0,0 +1,246 @@
+package org.opsli.core.filters.limiter;
+
+import cn.hutool.core.io.IoUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.opsli.common.utils.RateLimiterUtil;
+import org.opsli.core.autoconfigure.properties.CacheProperties;
+import org.opsli.core.cache.CacheUtil;
+import org.opsli.plugins.redis.RecordingRedisConnection;
+import org.opsli.plugins.redis.RedisPlugin;
+import org.opsli.plugins.redis.codec.CodecRedisSerializer;
+import org.opsli.plugins.redis.jsonserializer.FastJson2JsonRedisSerializer;
+import org.opsli.plugins.redis.scripts.RedisScriptCache;
+import org.opsli.plugins.redis.scripts.enums.RedisScriptsEnum;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Redis 令牌桶 集群限流 准确性测试
+ *
+ * 录制连接 + 内存脚本执行器 模拟 Redis 多个 Backend 实例模拟多个节点 共享同一个令牌桶
+ * 校验 预取令牌后 全局放行数 仍不超过 QPS * 时长 + 桶容量, Redis 不可用时 降级为单机限流
+ *
+ * @author Parker
+ * @date 2023-04-26 14:20
+ */
+public class RedisTokenBucketTest {
+
+    /** 节点数 */
+    private static final int NODE_COUNT = 3;
+
+    /** 每个节点 并发线程数 */
+    private static final int THREAD_PER_NODE = 4;
+
+    /** 压测时长(毫秒) */
+    private static final long DURATION = 2000L;
+
+    /** QPS */
+    private static final double QPS = 50d;
+
+    /** 预取时长(毫秒) */
+    private static final int PREFETCH_MILLIS = 100;
+
+    private static final String IP = "127.0.0.1";
+
+    private static final String RESOURCE = "/api/v1/limiter/test";
+
+    private final RedisSerializer<Object> valueSerializer = new CodecRedisSerializer(
+            Collections.emptyList(), new FastJson2JsonRedisSerializer<>(Object.class), true);
+
+    private RecordingRedisConnection connection;
+    private RedisPlugin redisPlugin;
+
+    @Before
+    public void init(){
+        RedisScriptCache redisScriptCache = new RedisScriptCache();
+        for (RedisScriptsEnum scriptEnum : RedisScriptsEnum.values()) {
+            redisScriptCache.putScript(scriptEnum,
+                    IoUtil.read(getClass().getResourceAsStream(scriptEnum.getPath()), StandardCharsets.UTF_8));
+        }
+        InMemoryTokenBucket bucket = new InMemoryTokenBucket(redisScriptCache);
+        connection = new RecordingRedisConnection(bucket::eval);
+        redisPlugin = connection.plugin(valueSerializer, redisScriptCache);
+
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.setPrefix("opsli");
+        new CacheUtil().init(cacheProperties, redisPlugin);
+    }
+
+    @After
+    public void destroy(){
+        RateLimiterUtil.setQps(RESOURCE, null);
+        RateLimiterUtil.setBackend(null);
+    }
+
+    @Test
+    public void accuracy() throws InterruptedException {
+        List<RedisTokenBucketBackend> nodes = new ArrayList<>(NODE_COUNT);
+        for (int i = 0; i < NODE_COUNT; i++) {
+            nodes.add(this.createNode(PREFETCH_MILLIS));
+        }
+
+        AtomicLong admitted = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        int threadCount = NODE_COUNT * THREAD_PER_NODE;
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threadCount);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            RedisTokenBucketBackend node = nodes.get(i % NODE_COUNT);
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    long end = System.currentTimeMillis() + DURATION;
+                    while (System.currentTimeMillis() < end){
+                        if(node.tryAcquire(IP, RESOURCE, QPS)){
+                            admitted.incrementAndGet();
+                        }else {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                }catch (InterruptedException e){
+                    Thread.currentThread().interrupt();
+                }finally {
+                    done.countDown();
+                }
+            });
+        }
+        long t1 = System.currentTimeMillis();
+        start.countDown();
+        Assert.assertTrue(done.await(1, TimeUnit.MINUTES));
+        long elapsed = System.currentTimeMillis() - t1;
+        executor.shutdown();
+
+        long calls = connection.getCalls().size();
+        // 上限: 初始满桶 + 时长内生成的令牌
+        double limit = QPS * elapsed / 1000d + QPS;
+        Assert.assertTrue("admitted: " + admitted.get(), admitted.get() <= limit);
+        // 持续压测下 预取令牌基本被消费 不应大量浪费
+        Assert.assertTrue("admitted: " + admitted.get(), admitted.get() >= QPS * DURATION / 1000d / 2);
+        // 本地预取 + 空桶标记 回源次数远少于请求数
+        Assert.assertTrue("calls: " + calls, calls < admitted.get() + rejected.get());
+    }
+
+    @Test
+    public void qpsChangedInvalidatesPermits(){
+        RedisTokenBucketBackend node = this.createNode(1000);
+        RateLimiterUtil.setBackend(node);
+        RateLimiterUtil.setQps(RESOURCE, 10d);
+        Assert.assertEquals(10d, RateLimiterUtil.getQps(RESOURCE, 10d), 0d);
+
+        // 首次回源 预取 QPS * 1s 个令牌 (桶内令牌全部取走)
+        Assert.assertTrue(node.tryAcquire(IP, RESOURCE, RateLimiterUtil.getQps(RESOURCE, 10d)));
+        Assert.assertEquals(1, connection.getCalls().size());
+
+        // 值不变 不作废 本地消费 不回源
+        connection.reset();
+        RateLimiterUtil.setQps(RESOURCE, 10d);
+        Assert.assertTrue(node.tryAcquire(IP, RESOURCE, RateLimiterUtil.getQps(RESOURCE, 10d)));
+        Assert.assertEquals(0, connection.getCalls().size());
+
+        // 删除覆盖 恢复注解配置 (QPS 数值相同) 已预取令牌仍被作废 下一次请求回源
+        connection.reset();
+        RateLimiterUtil.setQps(RESOURCE, null);
+        Assert.assertFalse(RateLimiterUtil.getQpsOverrides().containsKey(RESOURCE));
+        // 桶已空 回源后拒绝
+        Assert.assertFalse(node.tryAcquire(IP, RESOURCE, RateLimiterUtil.getQps(RESOURCE, 10d)));
+        Assert.assertEquals(1, connection.getCalls().size());
+    }
+
+    @Test
+    public void fallbackToLocalLimiter(){
+        RecordingRedisConnection failing = new RecordingRedisConnection((command, args) -> {
+            throw new IllegalStateException("redis down");
+        });
+        RedisTokenBucketBackend node = this.createNode(PREFETCH_MILLIS);
+        ReflectionTestUtils.setField(node, "redisPlugin",
+                failing.plugin(valueSerializer, (RedisScriptCache) ReflectionTestUtils.getField(redisPlugin, "redisScriptCache")));
+        RateLimiterUtil.setBackend(node);
+
+        // Redis 不可用 不再全部放行 由单机限流器限流
+        String resource = RESOURCE + "/fallback";
+        Assert.assertTrue(RateLimiterUtil.enter(IP, resource, 1d));
+        Assert.assertFalse(RateLimiterUtil.enter(IP, resource, 1d));
+        Assert.assertFalse(failing.getCalls().isEmpty());
+    }
+
+    /**
+     * 创建节点
+     * @param prefetchMillis 预取时长
+     * @return RedisTokenBucketBackend
+     */
+    private RedisTokenBucketBackend createNode(int prefetchMillis) {
+        RedisTokenBucketBackend node = new RedisTokenBucketBackend();
+        ReflectionTestUtils.setField(node, "redisPlugin", redisPlugin);
+        ReflectionTestUtils.setField(node, "prefetchMillis", prefetchMillis);
+        return node;
+    }
+
+    /**
+     * 内存脚本执行器 与 redis_token_bucket.lua 等价的逻辑
+     */
+    private static final class InMemoryTokenBucket {
+
+        /** 令牌桶 名称 - [令牌数, 时间戳] */
+        private final Map<String, double[]> buckets = new HashMap<>();
+
+        private final String bucketSha;
+
+        InMemoryTokenBucket(RedisScriptCache redisScriptCache) {
+            bucketSha = redisScriptCache.getRedisScript(RedisScriptsEnum.REDIS_TOKEN_BUCKET, Long.class).getSha1();
+        }
+
+        synchronized Object eval(String command, Object[] args) {
+            if(!"evalSha".equals(command)){
+                throw new UnsupportedOperationException(command);
+            }
+            String sha = args[0] instanceof byte[]
+                    ? new String((byte[]) args[0], StandardCharsets.UTF_8) : String.valueOf(args[0]);
+            if(!bucketSha.equals(sha)){
+                throw new UnsupportedOperationException("unknown script: " + sha);
+            }
+            byte[][] keysAndArgs = (byte[][]) args[3];
+            int numKeys = (Integer) args[2];
+            String key = new String(keysAndArgs[0], StandardCharsets.UTF_8);
+            double rate = this.argAsDouble(keysAndArgs[numKeys]);
+            double capacity = this.argAsDouble(keysAndArgs[numKeys + 1]);
+            long requested = (long) this.argAsDouble(keysAndArgs[numKeys + 2]);
+
+            // Redis 服务器时间 各节点共享
+            long now = System.currentTimeMillis();
+            double[] bucket = buckets.get(key);
+            if(bucket == null){
+                bucket = new double[]{capacity, now};
+                buckets.put(key, bucket);
+            }
+
+            // 补充令牌
+            double tokens = Math.min(capacity, bucket[0] + Math.max(0, now - bucket[1]) * rate / 1000d);
+            // 扣减令牌
+            long granted = Math.min(requested, (long) Math.floor(tokens));
+            bucket[0] = tokens - granted;
+            bucket[1] = now;
+            return granted;
+        }
+
+        private double argAsDouble(byte[] arg) {
+            return Double.parseDouble(new String(arg, StandardCharsets.UTF_8).trim());
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package org.opsli.core.holder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 请求内 用户身份缓存测试
+ *
+ * 校验返回副本、不向其他线程传递
+ *
+ * @author Parker
+ * @date 2023-04-26 09:40
+ */
+public class UserContextHolderTest {
+
+    @Test
+    public void copyOnRead(){
+        UserContextHolder.openContextCache();
+        try {
+            AtomicInteger loads = new AtomicInteger();
+            BitSet first = UserContextHolder.getContextCache("perms", () -> {
+                loads.incrementAndGet();
+                BitSet bitSet = new BitSet();
+                bitSet.set(1);
+                return bitSet;
+            });
+            // 调用方修改返回值
+            first.set(2);
+
+            BitSet second = UserContextHolder.getContextCache("perms", BitSet::new);
+            Assert.assertEquals(1, loads.get());
+            Assert.assertNotSame(first, second);
+            Assert.assertFalse(second.get(2));
+        }finally {
+            UserContextHolder.clear();
+        }
+    }
+
+    @Test
+    public void notTransmitted() throws Exception {
+        UserContextHolder.openContextCache();
+        try {
+            UserContextHolder.getContextCache("key", () -> "parent");
+
+            String child = CompletableFuture.supplyAsync(
+                    () -> UserContextHolder.getContextCache("key", () -> "child")).get();
+            Assert.assertEquals("child", child);
+        }finally {
+            UserContextHolder.clear();
+        }
+    }
+
+}
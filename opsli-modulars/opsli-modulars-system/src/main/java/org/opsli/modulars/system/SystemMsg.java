@@ -118,6 +118,13 @@ public enum SystemMsg implements BaseMsg {
      */
     EXCEPTION_OTHER_CRYPTO_UNIQUE(20800,"算法类型重复，该角色已存在"),
 
+    /**
+     * 系统监控 - 限流
+     */
+    EXCEPTION_MONITOR_LIMITER_URI_NULL(20900,"限流URI不可为空"),
+    EXCEPTION_MONITOR_LIMITER_QPS_ERROR(20901,"限流QPS不可小于0"),
+    EXCEPTION_MONITOR_LIMITER_SAVE_ERROR(20902,"限流QPS保存失败"),
+
     ;
 
     private final int code;
@@ -17,7 +17,9 @@ package org.opsli.modulars.system.area.service.impl;
 
 
 import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.convert.Convert;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.google.common.collect.Lists;
 import org.apache.commons.lang3.StringUtils;
 import org.opsli.api.wrapper.system.area.SysAreaModel;
 import org.opsli.common.constants.MyBatisConstants;
@@ -26,8 +28,7 @@ import org.opsli.common.exception.ServiceException;
 import org.opsli.common.utils.FieldUtil;
 import org.opsli.core.base.entity.HasChildren;
 import org.opsli.core.base.service.impl.CrudServiceImpl;
-import org.opsli.core.persistence.querybuilder.GenQueryBuilder;
-import org.opsli.core.persistence.querybuilder.QueryBuilder;
+import org.opsli.core.utils.TreeSnapshotUtil;
 import org.opsli.modulars.system.SystemMsg;
 import org.opsli.modulars.system.area.entity.SysArea;
 import org.opsli.modulars.system.area.mapper.SysAreaMapper;
@@ -36,6 +37,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -81,7 +83,10 @@ public class SysAreaServiceImpl extends CrudServiceImpl<SysAreaMapper, SysArea,
             model.setParentId("0");
         }
 
-        return super.insert(model);
+        SysAreaModel insertModel = super.insert(model);
+        // 失效地域树快照
+        this.clearCache();
+        return insertModel;
     }
 
     @Transactional(rollbackFor = Exception.class)
@@ -98,7 +103,10 @@ public class SysAreaServiceImpl extends CrudServiceImpl<SysAreaMapper, SysArea,
             throw new ServiceException(SystemMsg.EXCEPTION_AREA_UNIQUE);
         }
 
-        return super.update(model);
+        SysAreaModel updateModel = super.update(model);
+        // 失效地域树快照
+        this.clearCache();
+        return updateModel;
     }
 
 
@@ -106,40 +114,52 @@ public class SysAreaServiceImpl extends CrudServiceImpl<SysAreaMapper, SysArea,
     @Transactional(rollbackFor = Exception.class)
     public boolean delete(String id) {
         // 先删除子数据
-        this.deleteByParentId(id);
+        this.deleteByParentIds(Collections.singletonList(id));
 
-        return super.delete(id);
+        boolean ret = super.delete(id);
+        // 失效地域树快照
+        this.clearCache();
+        return ret;
     }
 
     @Override
     @Transactional(rollbackFor = Exception.class)
     public boolean deleteAll(String[] ids) {
         // 先删除子数据
-        for (String id : ids) {
-            this.deleteByParentId(id);
-        }
+        this.deleteByParentIds(Convert.toList(String.class, ids));
 
-        return super.deleteAll(ids);
+        boolean ret = super.deleteAll(ids);
+        // 失效地域树快照
+        this.clearCache();
+        return ret;
     }
 
     /**
-     * 逐级删除子数据
-     * @param parentId 父级节点
+     * 删除整棵子树
+     * 地域表无路径字段 按层批量查询下级ID 最后一条 DELETE 完成 语句数与树深度相关
+     * @param parentIdList 父级节点集合
      * @return boolean
      */
     @Transactional(rollbackFor = Exception.class)
-    public boolean deleteByParentId(String parentId) {
-        boolean ret = false;
-        QueryBuilder<SysArea> queryBuilder = new GenQueryBuilder<>();
-        QueryWrapper<SysArea> queryWrapper = queryBuilder.build();
-        queryWrapper.eq(FieldUtil.humpToUnderline(MyBatisConstants.FIELD_PARENT_ID), parentId);
-        List<SysArea> childList = super.findList(queryWrapper);
-        for (SysArea child : childList) {
-            super.delete(child.getId());
-            // 逐级删除子数据
-            ret = this.deleteByParentId(child.getId());
+    public boolean deleteByParentIds(List<String> parentIdList) {
+        if(CollUtil.isEmpty(parentIdList)){
+            return false;
         }
-        return ret;
+
+        List<String> childIdList = Lists.newArrayList();
+        List<String> currParentIdList = parentIdList;
+        while (CollUtil.isNotEmpty(currParentIdList)){
+            QueryWrapper<SysArea> queryWrapper = new QueryWrapper<>();
+            queryWrapper.select(FieldUtil.humpToUnderline(MyBatisConstants.FIELD_ID))
+                    .in(FieldUtil.humpToUnderline(MyBatisConstants.FIELD_PARENT_ID), currParentIdList);
+            currParentIdList = super.listObjs(queryWrapper, Convert::toStr);
+            childIdList.addAll(currParentIdList);
+        }
+
+        if(childIdList.isEmpty()){
+            return false;
+        }
+        return super.removeByIds(childIdList);
     }
 
 
@@ -186,4 +206,13 @@ public class SysAreaServiceImpl extends CrudServiceImpl<SysAreaMapper, SysArea,
 
         return mapper.hasChildren(wrapper);
     }
+
+    // ==============================
+
+    /**
+     * 清除缓存
+     */
+    private void clearCache(){
+        TreeSnapshotUtil.evict(TreeSnapshotUtil.TREE_AREA);
+    }
 }
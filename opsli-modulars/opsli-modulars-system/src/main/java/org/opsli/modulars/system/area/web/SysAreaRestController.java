@@ -42,11 +42,14 @@ import org.opsli.core.log.annotation.OperateLogger;
 import org.opsli.core.log.enums.ModuleEnum;
 import org.opsli.core.log.enums.OperationTypeEnum;
 import org.opsli.core.utils.TreeBuildUtil;
+import org.opsli.core.utils.TreeSnapshotUtil;
 import org.opsli.modulars.system.area.entity.SysArea;
 import org.opsli.modulars.system.area.service.ISysAreaService;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.security.access.prepost.PreAuthorize;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
@@ -115,37 +118,19 @@ public class SysAreaRestController extends BaseRestController<SysArea, SysAreaMo
 
     /**
      * 获取全量地域列表
+     * 地域数据极少变更 按数据版本缓存 构建完成的响应 客户端可通过 ETag 协商缓存
      *
      * @param deep 层级
-     *
-     *
-     * @return ResultWrapper
+     * @param request request
+     * @param response response
      */
     @ApiOperation(value = "获取全量地域列表", notes = "获取全量地域列表")
     @PreAuthorize("hasAuthority('system_area_select')")
     @Override
-    public ResultWrapper<?> findTreeAll(Integer deep) {
-
-        List<SysArea> dataList =  IService.findList(new QueryWrapper<>());
-
-        // 获得BeanMapList
-        List<Map<String, Object>> beanMapList = this.getBeanMapList(dataList);
-
-        //配置
-        TreeNodeConfig treeNodeConfig = new TreeNodeConfig();
-        // 自定义属性名 都要默认值的
-        treeNodeConfig.setWeightKey(SORT_FIELD);
-        // 最大递归深度 最多支持1层
-        treeNodeConfig.setDeep(deep);
-
-        //转换器
-        List<Tree<Object>> treeNodes = TreeBuildUtil.INSTANCE.build(beanMapList, treeNodeConfig);
-
-        // 处理是否包含子集
-        super.handleTreeHasChildren(treeNodes,
-                (parentIds)-> IService.hasChildren(parentIds));
-
-        return ResultWrapper.getSuccessResultWrapper(treeNodes);
+    public void findTreeAll(Integer deep, HttpServletRequest request, HttpServletResponse response) {
+        TreeSnapshotUtil.TreeSnapshot snapshot = TreeSnapshotUtil.get(
+                TreeSnapshotUtil.TREE_AREA, String.valueOf(deep), () -> this.buildTreeAll(deep));
+        TreeSnapshotUtil.write(snapshot, request, response);
     }
 
     /**
@@ -228,6 +213,34 @@ public class SysAreaRestController extends BaseRestController<SysArea, SysAreaMo
 
     // ==============================
 
+    /**
+     * 构建全量地域树
+     * @param deep 层级
+     * @return List
+     */
+    private List<Tree<Object>> buildTreeAll(Integer deep) {
+        List<SysArea> dataList =  IService.findList(new QueryWrapper<>());
+
+        // 获得BeanMapList
+        List<Map<String, Object>> beanMapList = this.getBeanMapList(dataList);
+
+        //配置
+        TreeNodeConfig treeNodeConfig = new TreeNodeConfig();
+        // 自定义属性名 都要默认值的
+        treeNodeConfig.setWeightKey(SORT_FIELD);
+        // 最大递归深度 最多支持1层
+        treeNodeConfig.setDeep(deep);
+
+        //转换器
+        List<Tree<Object>> treeNodes = TreeBuildUtil.INSTANCE.build(beanMapList, treeNodeConfig);
+
+        // 处理是否包含子集
+        super.handleTreeHasChildren(treeNodes,
+                (parentIds)-> IService.hasChildren(parentIds));
+
+        return treeNodes;
+    }
+
     /**
      * 获得BeanMap集合
      * @param dataList 数据集合
@@ -0,0 +1,83 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.modulars.system.excel.web;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.opsli.api.base.result.ResultWrapper;
+import org.opsli.common.annotation.ApiRestController;
+import org.opsli.common.exception.ServiceException;
+import org.opsli.core.msg.CoreMsg;
+import org.opsli.core.utils.UserUtil;
+import org.opsli.core.utils.excel.job.ExcelJobInfo;
+import org.opsli.core.utils.excel.job.ExcelJobManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Excel 异步任务
+ *
+ * @author Parker
+ * @date 2020-09-16
+ */
+@Api(tags = "Excel 异步任务")
+@Slf4j
+@ApiRestController("/{ver}/system/excel/job")
+public class ExcelJobRestController {
+
+    @Autowired
+    private ExcelJobManager excelJobManager;
+
+    /**
+     * 查询任务进度
+     * @param jobId 任务ID
+     * @return ResultWrapper
+     */
+    @GetMapping("/get/{jobId}")
+    @ApiOperation(value = "查询任务进度", notes = "查询任务进度")
+    public ResultWrapper<ExcelJobInfo> get(@PathVariable("jobId") String jobId) {
+        return ResultWrapper.getSuccessResultWrapper(this.getOwnJob(jobId));
+    }
+
+    /**
+     * 下载导出结果
+     * @param jobId 任务ID
+     * @param response response
+     */
+    @GetMapping("/download/{jobId}")
+    @ApiOperation(value = "下载导出结果", notes = "下载导出结果")
+    public void download(@PathVariable("jobId") String jobId, HttpServletResponse response) {
+        excelJobManager.download(this.getOwnJob(jobId), response);
+    }
+
+    /**
+     * 获得当前用户提交的任务
+     * @param jobId 任务ID
+     * @return ExcelJobInfo
+     */
+    private ExcelJobInfo getOwnJob(String jobId) {
+        String userId = UserUtil.getUser().getId();
+        return excelJobManager.getJob(jobId)
+                .filter(job -> userId.equals(job.getUserId()))
+                // 任务不存在或已过期
+                .orElseThrow(() -> new ServiceException(CoreMsg.EXCEL_JOB_NULL));
+    }
+
+}
@@ -21,7 +21,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.opsli.api.wrapper.system.logs.LoginLogsModel;
 import org.opsli.api.wrapper.system.user.UserModel;
 import org.opsli.core.utils.UserUtil;
-import org.opsli.modulars.system.logs.service.ILoginLogsService;
+import org.opsli.modulars.system.logs.writer.LogBatchWriter;
 import org.opsli.modulars.system.user.service.IUserService;
 import org.opsli.plugins.security.eventbus.ISecurityEventConsumer;
 import org.springframework.stereotype.Component;
@@ -38,7 +38,7 @@ import org.springframework.stereotype.Component;
 public class LoginLogEvent implements ISecurityEventConsumer<LoginLogsModel> {
 
 	private final IUserService iUserService;
-	private final ILoginLogsService iLoginLogsService;
+	private final LogBatchWriter logBatchWriter;
 
 	@Override
 	@Subscribe
@@ -55,7 +55,7 @@ public class LoginLogEvent implements ISecurityEventConsumer<LoginLogsModel> {
 
 		// 记录用户登录日志 如果系统较大 可考虑 Elastic 的 filebeat
 		// 小系统 直接存在 mysql就好
-		iLoginLogsService.insert(userLoginModel);
+		logBatchWriter.writeLoginLog(userLoginModel);
 	}
 
 }
@@ -22,7 +22,7 @@ import org.opsli.api.wrapper.system.logs.OperationLogModel;
 import org.opsli.common.utils.WrapperUtil;
 import org.opsli.core.eventbus.IEventConsumer;
 import org.opsli.core.log.bean.OperationLog;
-import org.opsli.modulars.system.logs.service.IOperationLogService;
+import org.opsli.modulars.system.logs.writer.LogBatchWriter;
 import org.springframework.stereotype.Component;
 
 /**
@@ -36,7 +36,7 @@ import org.springframework.stereotype.Component;
 @Component
 public class OperationLogEvent implements IEventConsumer<OperationLog> {
 
-	private final IOperationLogService operationLogService;
+	private final LogBatchWriter logBatchWriter;
 
 	@Subscribe
 	@Override
@@ -45,7 +45,8 @@ public class OperationLogEvent implements IEventConsumer<OperationLog> {
 		OperationLogModel operationLogModel =
 				WrapperUtil.transformInstance(event, OperationLogModel.class);
 		operationLogModel.setId(null);
-		operationLogService.save(operationLogModel);
+		// 交由批量写入器 合并入库
+		logBatchWriter.writeOperationLog(operationLogModel);
 	}
 
 }
@@ -0,0 +1,151 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.modulars.system.logs.writer;
+
+import cn.hutool.core.util.StrUtil;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.opsli.api.wrapper.system.logs.LoginLogsModel;
+import org.opsli.api.wrapper.system.logs.OperationLogModel;
+import org.opsli.common.thread.BatchWriteBuffer;
+import org.opsli.api.base.warpper.ApiWrapper;
+import org.opsli.core.autoconfigure.properties.GlobalProperties;
+import org.opsli.core.utils.TenantUtil;
+import org.opsli.modulars.system.logs.service.ILoginLogsService;
+import org.opsli.modulars.system.logs.service.IOperationLogService;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 日志批量写入器
+ *
+ * 操作日志 与 登录日志 共用同一套写入管道, 由后台线程按批次 JDBC 批量插入
+ * 缓冲区满时丢弃 (高水位采样), 不会阻塞业务线程
+ *
+ * 写出线程 没有用户上下文 (Token), 入队前 在调用线程上 写入创建人/修改人/租户 并标记为手动赋值
+ * 避免自动填充时 通过 UserUtil 读取当前用户
+ *
+ * @author Parker
+ * @date 2023-04-12 14:20
+ */
+@Slf4j
+@Component
+public class LogBatchWriter implements MeterBinder, DisposableBean {
+
+	/** 匿名操作 创建人 */
+	private static final String ANONYMOUS_USER_ID = "0";
+
+	/** 停止时等待写出时长 (秒) */
+	private final long shutdownTimeout;
+
+	/** 操作日志缓冲区 */
+	private final BatchWriteBuffer<OperationLogModel> operationLogBuffer;
+
+	/** 登录日志缓冲区 */
+	private final BatchWriteBuffer<LoginLogsModel> loginLogBuffer;
+
+	public LogBatchWriter(GlobalProperties globalProperties,
+						  IOperationLogService iOperationLogService,
+						  ILoginLogsService iLoginLogsService) {
+		GlobalProperties.Log logProperties = globalProperties.getLog();
+		this.shutdownTimeout = logProperties.getShutdownTimeout();
+		this.operationLogBuffer = new BatchWriteBuffer<>("Operation-Log",
+				logProperties.getBufferCapacity(), logProperties.getBatchSize(),
+				logProperties.getFlushInterval(), TimeUnit.MILLISECONDS, logProperties.getSampleRate(),
+				iOperationLogService::insertBatch);
+		this.loginLogBuffer = new BatchWriteBuffer<>("Login-Log",
+				logProperties.getBufferCapacity(), logProperties.getBatchSize(),
+				logProperties.getFlushInterval(), TimeUnit.MILLISECONDS, logProperties.getSampleRate(),
+				iLoginLogsService::insertBatch);
+	}
+
+	/**
+	 * 写入操作日志
+	 * @param model 操作日志
+	 * @return boolean 是否被接收
+	 */
+	public boolean writeOperationLog(OperationLogModel model) {
+		if(null == model){
+			return false;
+		}
+		model.setTenantId(StrUtil.blankToDefault(model.getTenantId(), TenantUtil.SUPER_ADMIN_TENANT_ID));
+		fillManual(model, model.getUserId());
+		return operationLogBuffer.offer(model);
+	}
+
+	/**
+	 * 写入登录日志
+	 * @param model 登录日志
+	 * @return boolean 是否被接收
+	 */
+	public boolean writeLoginLog(LoginLogsModel model) {
+		if(null == model){
+			return false;
+		}
+		model.setTenantId(StrUtil.blankToDefault(model.getTenantId(), TenantUtil.SUPER_ADMIN_TENANT_ID));
+		fillManual(model, model.getCreateBy());
+		return loginLogBuffer.offer(model);
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		bind(registry, "operation", operationLogBuffer);
+		bind(registry, "login", loginLogBuffer);
+	}
+
+	@Override
+	public void destroy() {
+		operationLogBuffer.shutdown(shutdownTimeout, TimeUnit.SECONDS);
+		loginLogBuffer.shutdown(shutdownTimeout, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * 手动赋值 创建人/修改人 (写出线程无用户上下文)
+	 * @param model 日志
+	 * @param userId 用户ID
+	 */
+	private void fillManual(ApiWrapper model, String userId) {
+		String currUserId = StrUtil.blankToDefault(userId, ANONYMOUS_USER_ID);
+		model.setIzManual(true);
+		model.setCreateBy(StrUtil.blankToDefault(model.getCreateBy(), currUserId));
+		model.setUpdateBy(StrUtil.blankToDefault(model.getUpdateBy(), currUserId));
+	}
+
+	private void bind(MeterRegistry registry, String type, BatchWriteBuffer<?> buffer) {
+		Gauge.builder("opsli.log.writer.queue.depth", buffer, BatchWriteBuffer::getQueueDepth)
+				.tag("type", type)
+				.description("日志写入队列深度")
+				.register(registry);
+		FunctionCounter.builder("opsli.log.writer.dropped", buffer, BatchWriteBuffer::getDroppedCount)
+				.tag("type", type)
+				.description("日志丢弃数")
+				.register(registry);
+		FunctionCounter.builder("opsli.log.writer.written", buffer, BatchWriteBuffer::getWrittenCount)
+				.tag("type", type)
+				.description("日志写入数")
+				.register(registry);
+		FunctionCounter.builder("opsli.log.writer.failed", buffer, BatchWriteBuffer::getFailedCount)
+				.tag("type", type)
+				.description("日志写入失败数")
+				.register(registry);
+	}
+
+}
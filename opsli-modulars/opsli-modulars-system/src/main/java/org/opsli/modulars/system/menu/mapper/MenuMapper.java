@@ -41,6 +41,19 @@ public interface MenuMapper extends BaseMapper<SysMenu> {
      */
     List<HasChildren> hasChildren(@Param(Constants.WRAPPER) Wrapper<?> wrapper);
 
+    /**
+     * 替换子树 ParentIds 前缀
+     * @param oldParentIds 子树根节点 原ParentIds
+     * @param newParentIds 子树根节点 新ParentIds
+     * @return int
+     */
+    int updateChildrenParentIds(@Param("oldParentIds") String oldParentIds,
+                                @Param("newParentIds") String newParentIds);
 
+    /**
+     * 根据 ParentId 回填空 ParentIds (每次回填一层)
+     * @return int
+     */
+    int backfillBlankParentIds();
 
 }
@@ -38,6 +38,7 @@ import org.opsli.core.persistence.querybuilder.GenQueryBuilder;
 import org.opsli.core.persistence.querybuilder.QueryBuilder;
 import org.opsli.core.utils.MenuUtil;
 import org.opsli.core.utils.TreeBuildUtil;
+import org.opsli.core.utils.TreeSnapshotUtil;
 import org.opsli.core.utils.UserUtil;
 import org.opsli.modulars.system.SystemMsg;
 import org.opsli.modulars.system.menu.entity.SysMenu;
@@ -45,7 +46,6 @@ import org.opsli.modulars.system.menu.factory.MenuFactory;
 import org.opsli.modulars.system.menu.mapper.MenuMapper;
 import org.opsli.modulars.system.menu.service.IMenuService;
 import org.opsli.modulars.system.role.service.IRoleMenuRefService;
-import org.opsli.modulars.system.user.service.IUserRoleRefService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -67,11 +67,12 @@ public class MenuServiceImpl extends CrudServiceImpl<MenuMapper, SysMenu, MenuMo
     /** 菜单管理ID */
     private static final String MENU_ID = "2";
 
+    /** 回填 parentIds 最大层数 */
+    private static final int MAX_BACKFILL_DEPTH = 32;
+
     @Autowired(required = false)
     private MenuMapper mapper;
     @Autowired
-    private IUserRoleRefService iUserRoleRefService;
-    @Autowired
     private IRoleMenuRefService iRoleMenuRefService;
 
     @Override
@@ -145,6 +146,9 @@ public class MenuServiceImpl extends CrudServiceImpl<MenuMapper, SysMenu, MenuMo
             }
         }
 
+        // 回填空 parentIds 保证子树前缀完整
+        this.backfillParentIds();
+
         // 原数据
         MenuModel sourceModel = this.get(model);
         if(null == sourceModel){
@@ -169,24 +173,8 @@ public class MenuServiceImpl extends CrudServiceImpl<MenuMapper, SysMenu, MenuMo
             model.setParentIds(newParentIds);
             model.setLabel(newParentModel.getLabel());
 
-            // 查询所有受影响的子集菜单 批量修改子类的parentIds
-            QueryWrapper<SysMenu> findChildWrapper = new QueryWrapper<>();
-            findChildWrapper.likeRight("parent_ids", ordParentIds);
-            List<SysMenu> menuList = this.list(findChildWrapper);
-            // 循环变更 parentIds
-            for (SysMenu sysMenu : menuList) {
-                String parentIds = sysMenu.getParentIds();
-                if(StringUtils.isBlank(parentIds)){
-                    parentIds = newParentIds;
-                }else {
-                    parentIds = StrUtil.replace(parentIds, ordParentIds, newParentIds);
-                }
-                sysMenu.setParentIds(parentIds);
-                // 内部修改 防止版本行锁出现问题
-                sysMenu.setVersion(null);
-            }
-
-            this.saveOrUpdateBatch(menuList);
+            // 整棵子树 一条 UPDATE 替换 parentIds 前缀 (不动版本号 防止行锁冲突)
+            mapper.updateChildrenParentIds(ordParentIds, newParentIds);
         }
 
         // 如果 原始标签 与 当前标签发送变更 则逐级变更子类标签
@@ -292,6 +280,9 @@ public class MenuServiceImpl extends CrudServiceImpl<MenuMapper, SysMenu, MenuMo
     @Override
     @Transactional(rollbackFor = Exception.class)
     public boolean delete(String id) {
+        // 回填空 parentIds 保证子树前缀完整
+        this.backfillParentIds();
+
         MenuModel menuModel = super.get(id);
         if(menuModel == null){
             return false;
@@ -303,14 +294,18 @@ public class MenuServiceImpl extends CrudServiceImpl<MenuMapper, SysMenu, MenuMo
             throw new ServiceException(SystemMsg.EXCEPTION_MENU_HANDLE_SELF);
         }
 
-        // 清除缓存
-        this.clearCache(Collections.singletonList(menuModel));
+        List<MenuModel> rootList = Collections.singletonList(menuModel);
+        List<MenuModel> menuList = Lists.newArrayList(rootList);
+        menuList.addAll(this.findChildrenByParentIds(rootList));
+
+        // 清除缓存 整棵子树一次处理
+        this.clearCache(menuList);
 
         // 删除子数据
-        this.deleteByParentId(id);
+        this.deleteChildrenByParentIds(rootList);
 
         // 移除权限数据
-        iRoleMenuRefService.delPermsByMenuIds(Convert.toList(String.class, id));
+        iRoleMenuRefService.delPermsByMenuIds(getMenuIdList(menuList));
 
         return super.delete(id);
     }
@@ -318,6 +313,9 @@ public class MenuServiceImpl extends CrudServiceImpl<MenuMapper, SysMenu, MenuMo
     @Override
     @Transactional(rollbackFor = Exception.class)
     public boolean deleteAll(String[] ids) {
+        // 回填空 parentIds 保证子树前缀完整
+        this.backfillParentIds();
+
         QueryBuilder<SysMenu> queryBuilder = new GenQueryBuilder<>();
         QueryWrapper<SysMenu> queryWrapper = queryBuilder.build();
         queryWrapper.in(MyBatisConstants.FIELD_ID, Convert.toList(String.class, ids));
@@ -332,42 +330,106 @@ public class MenuServiceImpl extends CrudServiceImpl<MenuMapper, SysMenu, MenuMo
                 // 不可操作自身
                 throw new ServiceException(SystemMsg.EXCEPTION_MENU_HANDLE_SELF);
             }
+        }
 
-            // 清除缓存
-            this.clearCache(Collections.singletonList(menuModel));
+        List<MenuModel> allMenuList = Lists.newArrayList(menuList);
+        allMenuList.addAll(this.findChildrenByParentIds(menuList));
 
-            // 先删子数据
-            this.deleteByParentId(menuModel.getId());
-        }
+        // 清除缓存 整棵子树一次处理
+        this.clearCache(allMenuList);
+
+        // 先删子数据
+        this.deleteChildrenByParentIds(menuList);
 
         // 移除权限数据
-        iRoleMenuRefService.delPermsByMenuIds(Convert.toList(String.class, ids));
+        iRoleMenuRefService.delPermsByMenuIds(getMenuIdList(allMenuList));
 
         return super.deleteAll(ids);
     }
 
 
     /**
-     * 逐级删除子数据
-     * @param parentId 父级ID
-     * @return boolean
+     * 回填空 parentIds
+     * 历史数据 parent_ids 可能为空, 按 parent_id 逐层回填 否则子树前缀匹配不到 造成孤儿节点
      */
-    @Transactional(rollbackFor = Exception.class)
-    public boolean deleteByParentId(String parentId) {
-        boolean ret = false;
-        QueryBuilder<SysMenu> queryBuilder = new GenQueryBuilder<>();
-        QueryWrapper<SysMenu> queryWrapper = queryBuilder.build();
-        queryWrapper.eq(FieldUtil.humpToUnderline(MyBatisConstants.FIELD_PARENT_ID), parentId);
-        List<SysMenu> menuList = super.findList(queryWrapper);
-        for (SysMenu child : menuList) {
-            // 删除菜单数据
-            super.delete(child.getId());
-            // 移除权限数据
-            iRoleMenuRefService.delPermsByMenuIds(Convert.toList(String.class, child.getId()));
-            // 逐级删除子数据
-            ret = this.deleteByParentId(child.getId());
-        }
-        return ret;
+    private void backfillParentIds() {
+        for (int i = 0; i < MAX_BACKFILL_DEPTH; i++) {
+            if(mapper.backfillBlankParentIds() <= 0){
+                return;
+            }
+        }
+    }
+
+    /**
+     * 查询整棵子树 (不含根节点)
+     * @param parentList 子树根节点集合
+     * @return List
+     */
+    private List<MenuModel> findChildrenByParentIds(List<MenuModel> parentList) {
+        QueryWrapper<SysMenu> queryWrapper = this.buildChildrenWrapper(parentList);
+        if(queryWrapper == null){
+            return Collections.emptyList();
+        }
+        return super.transformTs2Ms(super.findList(queryWrapper));
+    }
+
+    /**
+     * 删除整棵子树 (不含根节点)
+     * 按 parent_ids 前缀 一条 DELETE 完成
+     * @param parentList 子树根节点集合
+     */
+    private void deleteChildrenByParentIds(List<MenuModel> parentList) {
+        QueryWrapper<SysMenu> queryWrapper = this.buildChildrenWrapper(parentList);
+        if(queryWrapper == null){
+            return;
+        }
+        super.remove(queryWrapper);
+    }
+
+    /**
+     * 子树条件 parent_ids 右模糊
+     * @param parentList 子树根节点集合
+     * @return QueryWrapper
+     */
+    private QueryWrapper<SysMenu> buildChildrenWrapper(List<MenuModel> parentList) {
+        if(CollUtil.isEmpty(parentList)){
+            return null;
+        }
+
+        List<String> prefixList = Lists.newArrayListWithCapacity(parentList.size());
+        for (MenuModel menuModel : parentList) {
+            if(StringUtils.isNotEmpty(menuModel.getParentIds())){
+                prefixList.add(
+                        StrUtil.appendIfMissing(menuModel.getParentIds(), ","));
+            }
+        }
+        if(prefixList.isEmpty()){
+            return null;
+        }
+
+        QueryWrapper<SysMenu> queryWrapper = new QueryWrapper<>();
+        queryWrapper.and(wra -> {
+            for (int i = 0; i < prefixList.size(); i++) {
+                wra.likeRight("parent_ids", prefixList.get(i));
+                if(i < prefixList.size() - 1){
+                    wra.or();
+                }
+            }
+        });
+        return queryWrapper;
+    }
+
+    /**
+     * 获得菜单ID集合
+     * @param menuModelList 菜单集合
+     * @return List
+     */
+    private static List<String> getMenuIdList(List<MenuModel> menuModelList) {
+        List<String> menuIdList = Lists.newArrayListWithCapacity(menuModelList.size());
+        for (MenuModel menuModel : menuModelList) {
+            menuIdList.add(menuModel.getId());
+        }
+        return menuIdList;
     }
 
     /**
@@ -448,6 +510,9 @@ public class MenuServiceImpl extends CrudServiceImpl<MenuMapper, SysMenu, MenuMo
             return;
         }
 
+        // 失效菜单树快照
+        TreeSnapshotUtil.evict(TreeSnapshotUtil.TREE_MENU);
+
         boolean cacheRet;
         // 计数器
         int cacheCount = menuModelList.size();
@@ -467,36 +532,22 @@ public class MenuServiceImpl extends CrudServiceImpl<MenuMapper, SysMenu, MenuMo
         // 菜单有变动 直接刷新超级管理员 菜单缓存
         UserModel adminUser = UserUtil.getUserByUserName(UserUtil.SUPER_ADMIN);
         if(adminUser != null){
-            cacheCount += 2;
+            cacheCount++;
+            // 权限、菜单 共用用户代数 自增一次即可
             cacheRet = UserUtil.refreshUserAllPerms(adminUser.getId());
             if(cacheRet){
                 cacheCount--;
             }
-            cacheRet = UserUtil.refreshUserMenus(adminUser.getId());
-            if(cacheRet){
-                cacheCount--;
-            }
         }
 
-        // 刷新用户缓存
-        // 清空该菜单下 用户缓存
-        List<String> userIdList = iUserRoleRefService.getUserIdListByMenuIdList(menuIdList);
-        if(CollUtil.isNotEmpty(userIdList)){
-            for (String userId : userIdList) {
-                cacheCount += 3;
-                // 清空当期用户缓存角色、权限、菜单
-                cacheRet = UserUtil.refreshUserRoles(userId);
-                if(cacheRet){
-                    cacheCount--;
-                }
-                cacheRet = UserUtil.refreshUserAllPerms(userId);
-                if(cacheRet){
-                    cacheCount--;
-                }
-                cacheRet = UserUtil.refreshUserMenus(userId);
-                if(cacheRet){
-                    cacheCount--;
-                }
+        // 刷新角色缓存
+        // 自增该菜单下 角色代数 角色下用户的角色、权限、菜单缓存随之失效
+        List<String> roleIdList = iRoleMenuRefService.getRoleIdListByMenuIdList(menuIdList);
+        if(CollUtil.isNotEmpty(roleIdList)){
+            cacheCount++;
+            cacheRet = UserUtil.refreshRolePerms(roleIdList.toArray(new String[0]));
+            if(cacheRet){
+                cacheCount--;
             }
         }
 
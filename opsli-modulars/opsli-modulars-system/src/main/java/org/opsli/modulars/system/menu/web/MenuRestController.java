@@ -49,6 +49,7 @@ import org.opsli.core.persistence.querybuilder.GenQueryBuilder;
 import org.opsli.core.persistence.querybuilder.QueryBuilder;
 import org.opsli.core.persistence.querybuilder.WebQueryBuilder;
 import org.opsli.core.utils.TreeBuildUtil;
+import org.opsli.core.utils.TreeSnapshotUtil;
 import org.opsli.core.utils.UserUtil;
 import org.opsli.modulars.system.menu.entity.SysMenu;
 import org.opsli.modulars.system.menu.service.IMenuService;
@@ -57,6 +58,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.util.List;
 import java.util.Map;
 
@@ -121,12 +123,14 @@ public class MenuRestController extends BaseRestController<SysMenu, MenuModel, I
      * 当前登陆用户菜单 高频率
      *
      * 判断是否是超级管理员，如果是 则显示全部菜单 否则显示有权限菜单
+     * 菜单集合相同的用户 共享同一份树快照 菜单变更后自动失效
      *
-     * @return ResultWrapper
+     * @param request request
+     * @param response response
      */
     @ApiOperation(value = "当前登陆用户菜单", notes = "当前登陆用户菜单")
     @Override
-    public ResultWrapper<?> findMenuTree() {
+    public void findMenuTree(HttpServletRequest request, HttpServletResponse response) {
         UserModel user = UserUtil.getUser();
 
         // 获得用户 对应菜单
@@ -140,10 +144,17 @@ public class MenuRestController extends BaseRestController<SysMenu, MenuModel, I
                 StringUtils.isEmpty(menuModel.getUrl())
                         ));
 
-        // 获得菜单树
-        List<Tree<Object>> treeNodes = getMenuTrees(menuModelList, EXCLUSION_FIELDS);
+        // 菜单指纹
+        List<String> menuIdList = Lists.newArrayListWithCapacity(menuModelList.size());
+        for (MenuModel menuModel : menuModelList) {
+            menuIdList.add(menuModel.getId());
+        }
 
-        return ResultWrapper.getSuccessResultWrapper(treeNodes);
+        // 获得菜单树
+        TreeSnapshotUtil.TreeSnapshot snapshot = TreeSnapshotUtil.get(
+                TreeSnapshotUtil.TREE_MENU, TreeSnapshotUtil.fingerprint(menuIdList),
+                () -> getMenuTrees(menuModelList, EXCLUSION_FIELDS));
+        TreeSnapshotUtil.write(snapshot, request, response);
     }
 
 
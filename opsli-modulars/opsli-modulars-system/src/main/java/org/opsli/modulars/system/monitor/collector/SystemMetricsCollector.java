@@ -0,0 +1,201 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.modulars.system.monitor.collector;
+
+import cn.hutool.system.oshi.CpuInfo;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.opsli.core.utils.SystemInfoUtil;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 系统指标采集器
+ *
+ * 后台线程按固定间隔采样 CPU、内存、JVM、GC、线程、磁盘 信息 写入环形缓冲区
+ * 接口直接读取最近一次采样 不再在请求线程中阻塞采样CPU
+ *
+ * @author Parker
+ * @date 2023-04-20 10:15
+ */
+@Slf4j
+@Component
+public class SystemMetricsCollector implements InitializingBean, DisposableBean {
+
+    /** 采样间隔 (秒) */
+    private static final long SAMPLE_INTERVAL = 5L;
+
+    /** 历史保留条数 (5秒 * 120 = 10分钟) */
+    private static final int HISTORY_SIZE = 120;
+
+    /** 磁盘采样间隔 (采样轮数) 磁盘信息变化缓慢 */
+    private static final int DISK_SAMPLE_ROUNDS = 6;
+
+    /** 历史采样 环形缓冲区 */
+    private final SystemMetrics[] history = new SystemMetrics[HISTORY_SIZE];
+
+    /** 下一个写入位置 */
+    private int writeIndex;
+
+    /** 已写入条数 */
+    private int size;
+
+    /** 最近一次采样 */
+    private volatile SystemMetrics latest;
+
+    /** 服务器信息 (启动后不变) */
+    private SystemInfoUtil.SysInfo sysInfo;
+
+    /** 上一次CPU时钟数 */
+    private long[] prevCpuTicks;
+
+    /** 最近一次磁盘信息 */
+    private List<SystemInfoUtil.DiskInfo> diskInfo;
+
+    /** 采样轮数 */
+    private long rounds;
+
+    /** 采样线程 */
+    private ScheduledExecutorService sampler;
+
+    @Override
+    public void afterPropertiesSet() {
+        sysInfo = SystemInfoUtil.INSTANCE.getSysInfo();
+        prevCpuTicks = SystemInfoUtil.INSTANCE.getCpuTicks();
+
+        sampler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("System-Metrics-Sampler")
+                        .setDaemon(true).build());
+        // 首次采样延迟1秒 保证CPU时钟数有可比较的区间
+        sampler.scheduleWithFixedDelay(this::sample,
+                1L, SAMPLE_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        if(null != sampler){
+            sampler.shutdownNow();
+        }
+    }
+
+    /**
+     * 获得最近一次采样
+     * @return SystemMetrics 尚未完成首次采样时为 null
+     */
+    public SystemMetrics getLatest() {
+        return latest;
+    }
+
+    /**
+     * 获得历史采样 (时间正序)
+     * @param limit 最近条数 小于等于0 则返回全部
+     * @return List SystemMetrics
+     */
+    public synchronized List<SystemMetrics> getHistory(int limit) {
+        if(size == 0){
+            return Collections.emptyList();
+        }
+        int count = limit > 0 ? Math.min(limit, size) : size;
+        List<SystemMetrics> list = Lists.newArrayListWithCapacity(count);
+        int start = writeIndex - count;
+        for (int i = 0; i < count; i++) {
+            list.add(history[Math.floorMod(start + i, HISTORY_SIZE)]);
+        }
+        return list;
+    }
+
+    /**
+     * 采样
+     */
+    private void sample() {
+        try {
+            long[] cpuTicks = SystemInfoUtil.INSTANCE.getCpuTicks();
+            CpuInfo cpuInfo = SystemInfoUtil.INSTANCE.getCpuInfo(prevCpuTicks, cpuTicks);
+            prevCpuTicks = cpuTicks;
+
+            if(null == diskInfo || rounds % DISK_SAMPLE_ROUNDS == 0){
+                diskInfo = SystemInfoUtil.INSTANCE.getDiskInfo();
+            }
+            rounds++;
+
+            SystemMetrics metrics = new SystemMetrics();
+            metrics.setTimestamp(System.currentTimeMillis());
+            metrics.setSystemInfo(sysInfo);
+            metrics.setCpuInfo(cpuInfo);
+            metrics.setMemInfo(SystemInfoUtil.INSTANCE.getMemoryInfo());
+            metrics.setJvmInfo(SystemInfoUtil.INSTANCE.getJvmInfo());
+            metrics.setGcInfo(SystemInfoUtil.INSTANCE.getGcInfo());
+            metrics.setThreadInfo(SystemInfoUtil.INSTANCE.getThreadInfo());
+            metrics.setSysFileInfo(diskInfo);
+            this.append(metrics);
+        }catch (Exception e){
+            log.error("系统指标采样失败", e);
+        }
+    }
+
+    private synchronized void append(SystemMetrics metrics) {
+        history[writeIndex] = metrics;
+        writeIndex = (writeIndex + 1) % HISTORY_SIZE;
+        if(size < HISTORY_SIZE){
+            size++;
+        }
+        latest = metrics;
+    }
+
+    // ======================================
+
+    /**
+     * 系统指标 采样点
+     */
+    @Data
+    public static class SystemMetrics {
+
+        /** 采样时间戳 */
+        private long timestamp;
+
+        /** 服务器信息 */
+        private SystemInfoUtil.SysInfo systemInfo;
+
+        /** CPU信息 */
+        private CpuInfo cpuInfo;
+
+        /** 内存信息 */
+        private SystemInfoUtil.MemoryInfo memInfo;
+
+        /** JVM信息 */
+        private SystemInfoUtil.JvmInfo jvmInfo;
+
+        /** GC信息 */
+        private List<SystemInfoUtil.GcInfo> gcInfo;
+
+        /** 线程信息 */
+        private SystemInfoUtil.ThreadInfo threadInfo;
+
+        /** 磁盘信息 */
+        private List<SystemInfoUtil.DiskInfo> sysFileInfo;
+    }
+
+}
@@ -19,12 +19,29 @@ import com.google.common.collect.Maps;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.opsli.api.base.result.ResultWrapper;
 import org.opsli.common.annotation.ApiRestController;
+import org.opsli.common.exception.ServiceException;
+import org.opsli.common.utils.RateLimiterUtil;
+import org.opsli.core.autoconfigure.properties.GlobalProperties;
+import org.opsli.core.cache.pushsub.LimiterQpsMsg;
+import org.opsli.core.filters.limiter.LimiterQpsStore;
+import org.opsli.core.log.annotation.OperateLogger;
+import org.opsli.core.log.enums.ModuleEnum;
+import org.opsli.core.log.enums.OperationTypeEnum;
+import org.opsli.core.msg.CoreMsg;
 import org.opsli.core.utils.SystemInfoUtil;
+import org.opsli.core.utils.UserUtil;
+import org.opsli.modulars.system.SystemMsg;
+import org.opsli.modulars.system.monitor.collector.SystemMetricsCollector;
+import org.opsli.plugins.redis.RedisPlugin;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -38,6 +55,18 @@ import java.util.Map;
 @ApiRestController("/{ver}/system/monitor")
 public class MonitorController {
 
+    @Autowired
+    private SystemMetricsCollector systemMetricsCollector;
+
+    @Autowired
+    private GlobalProperties globalProperties;
+
+    @Autowired
+    private RedisPlugin redisPlugin;
+
+    @Autowired
+    private LimiterQpsStore limiterQpsStore;
+
     /**
      * 查询服务器信息
      * @return ResultWrapper
@@ -46,6 +75,21 @@ public class MonitorController {
     @GetMapping("/getSystemInfo")
     @ApiOperation(value = "当前服务器信息", notes = "当前服务器信息")
     public ResultWrapper<?> getSystemInfo() {
+        // 优先读取 后台最近一次采样
+        SystemMetricsCollector.SystemMetrics metrics = systemMetricsCollector.getLatest();
+        if(null != metrics){
+            Map<String,Object> map = Maps.newHashMapWithExpectedSize(8);
+            map.put("timestamp", metrics.getTimestamp());
+            map.put("systemInfo", metrics.getSystemInfo());
+            map.put("cpuInfo", metrics.getCpuInfo());
+            map.put("memInfo", metrics.getMemInfo());
+            map.put("JVMInfo", metrics.getJvmInfo());
+            map.put("gcInfo", metrics.getGcInfo());
+            map.put("threadInfo", metrics.getThreadInfo());
+            map.put("sysFileInfo", metrics.getSysFileInfo());
+            return ResultWrapper.getSuccessResultWrapper(map);
+        }
+
         Map<String,Object> map = Maps.newHashMapWithExpectedSize(5);
         //服务器信息
         map.put("systemInfo", SystemInfoUtil.INSTANCE.getSysInfo());
@@ -68,6 +112,10 @@ public class MonitorController {
     @GetMapping("/getCpuInfo")
     @ApiOperation(value = "当前CPU信息", notes = "当前CPU信息")
     public ResultWrapper<?> getCpuInfo() {
+        SystemMetricsCollector.SystemMetrics metrics = systemMetricsCollector.getLatest();
+        if(null != metrics){
+            return ResultWrapper.getSuccessResultWrapper(metrics.getCpuInfo());
+        }
         return ResultWrapper
                 .getSuccessResultWrapper(SystemInfoUtil.INSTANCE.getCpuInfo());
     }
@@ -80,6 +128,10 @@ public class MonitorController {
     @GetMapping("/getMemInfo")
     @ApiOperation(value = "当前内存信息", notes = "当前内存信息")
     public ResultWrapper<?> getMemInfo() {
+        SystemMetricsCollector.SystemMetrics metrics = systemMetricsCollector.getLatest();
+        if(null != metrics){
+            return ResultWrapper.getSuccessResultWrapper(metrics.getMemInfo());
+        }
         return ResultWrapper.getSuccessResultWrapper(
                 SystemInfoUtil.INSTANCE.getMemoryInfo());
     }
@@ -92,8 +144,74 @@ public class MonitorController {
     @GetMapping("/getJVMInfo")
     @ApiOperation(value = "当前JVM信息", notes = "当前JVM信息")
     public ResultWrapper<?> getJvmInfo() {
+        SystemMetricsCollector.SystemMetrics metrics = systemMetricsCollector.getLatest();
+        if(null != metrics){
+            return ResultWrapper.getSuccessResultWrapper(metrics.getJvmInfo());
+        }
         return ResultWrapper.getSuccessResultWrapper(
                 SystemInfoUtil.INSTANCE.getJvmInfo());
     }
 
+    /**
+     * 查询历史采样 (时间序列)
+     * @param limit 最近条数 为空则返回全部
+     * @return ResultWrapper
+     */
+    @PreAuthorize("hasAuthority('devops_sysmonitor_select')")
+    @GetMapping("/getHistory")
+    @ApiOperation(value = "历史采样信息", notes = "历史采样信息")
+    public ResultWrapper<?> getHistory(Integer limit) {
+        List<SystemMetricsCollector.SystemMetrics> history =
+                systemMetricsCollector.getHistory(null != limit ? limit : 0);
+        return ResultWrapper.getSuccessResultWrapper(history);
+    }
+
+    /**
+     * 查询限流 QPS 覆盖
+     * @return ResultWrapper
+     */
+    @PreAuthorize("hasAuthority('devops_sysmonitor_select')")
+    @GetMapping("/getLimiterQps")
+    @ApiOperation(value = "限流QPS覆盖", notes = "限流QPS覆盖")
+    public ResultWrapper<?> getLimiterQps() {
+        return ResultWrapper.getSuccessResultWrapper(RateLimiterUtil.getQpsOverrides());
+    }
+
+    /**
+     * 修改限流 QPS 覆盖 (运行时生效 不回写配置)
+     * 保存至 Redis (后启动的节点 启动时加载), 本节点立即生效 并广播至其他节点 同时作废各节点该 URI 的预取令牌
+     * @param uri URI
+     * @param qps QPS (为空则删除覆盖 恢复 @Limiter 注解配置, 0 为不限流)
+     * @return ResultWrapper
+     */
+    @PreAuthorize("hasAuthority('devops_sysmonitor_update')")
+    @OperateLogger(description = "修改限流QPS",
+            module = ModuleEnum.MODULE_MONITOR, operationType = OperationTypeEnum.UPDATE, db = true)
+    @PostMapping("/updateLimiterQps")
+    @ApiOperation(value = "修改限流QPS", notes = "修改限流QPS")
+    public ResultWrapper<?> updateLimiterQps(String uri, Double qps) {
+        // 演示模式 不允许操作 （超级管理员可以操作）
+        if(globalProperties.isEnableDemo() &&
+                !StringUtils.equals(UserUtil.SUPER_ADMIN, UserUtil.getUser().getUsername())){
+            throw new ServiceException(CoreMsg.EXCEPTION_ENABLE_DEMO);
+        }
+        if(StringUtils.isBlank(uri)){
+            return ResultWrapper.getCustomResultWrapper(SystemMsg.EXCEPTION_MONITOR_LIMITER_URI_NULL);
+        }
+        if(null != qps && (qps < 0 || qps.isNaN() || qps.isInfinite())){
+            return ResultWrapper.getCustomResultWrapper(SystemMsg.EXCEPTION_MONITOR_LIMITER_QPS_ERROR);
+        }
+
+        // 持久化 后启动的节点 启动时加载
+        if(!limiterQpsStore.save(uri, qps)){
+            return ResultWrapper.getCustomResultWrapper(SystemMsg.EXCEPTION_MONITOR_LIMITER_SAVE_ERROR);
+        }
+
+        // 本节点 预先处理
+        RateLimiterUtil.setQps(uri, qps);
+        // 广播 其他节点
+        redisPlugin.sendMessage(LimiterQpsMsg.createQpsMsg(uri, qps));
+        return ResultWrapper.getSuccessResultWrapperByMsg("修改限流QPS成功");
+    }
+
 }
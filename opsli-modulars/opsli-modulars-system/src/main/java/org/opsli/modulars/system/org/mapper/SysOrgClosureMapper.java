@@ -0,0 +1,63 @@
+/**
+* Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+* <p>
+* Licensed under the Apache License, Version 2.0 (the "License"); you may not
+* use this file except in compliance with the License. You may obtain a copy of
+* the License at
+* <p>
+* http://www.apache.org/licenses/LICENSE-2.0
+* <p>
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+* WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and limitations under
+* the License.
+*/
+package org.opsli.modulars.system.org.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * 组织机构 闭包表 Mapper
+ *
+ * 维护 sys_org_closure (祖先ID, 后代ID, 深度) 含自身深度为0的记录
+ * 数据权限 部门及以下 通过该表做半连接 替代 org_ids 右模糊 OR 链
+ *
+ * @author Parker
+ * @date 2021-02-07 18:24:38
+ */
+@Mapper
+public interface SysOrgClosureMapper {
+
+    /**
+     * 新增节点 继承上级全部祖先 并写入自身
+     * @param id 节点ID
+     * @param parentId 上级ID
+     * @return int
+     */
+    int insertNode(@Param("id") String id, @Param("parentId") String parentId);
+
+    /**
+     * 断开子树与原祖先的关联 (子树内部关联保留)
+     * @param id 子树根节点ID
+     * @return int
+     */
+    int deleteSubtreeAncestors(@Param("id") String id);
+
+    /**
+     * 子树挂载到新上级 新祖先 × 子树 笛卡尔积写入
+     * @param id 子树根节点ID
+     * @param parentId 新上级ID
+     * @return int
+     */
+    int insertSubtreeAncestors(@Param("id") String id, @Param("parentId") String parentId);
+
+    /**
+     * 删除子树全部关联
+     * @param id 子树根节点ID
+     * @return int
+     */
+    int deleteSubtree(@Param("id") String id);
+
+}
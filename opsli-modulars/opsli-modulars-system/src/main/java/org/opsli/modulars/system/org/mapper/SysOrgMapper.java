@@ -50,4 +50,12 @@ public interface SysOrgMapper extends BaseMapper<SysOrg> {
      */
     Integer hasUse(@Param(Constants.WRAPPER) Wrapper<?> wrapper);
 
+    /**
+     * 替换子树 ParentIds 与 OrgIds 前缀
+     * @param oldOrgIds 子树根节点 原组织机构组
+     * @param newOrgIds 子树根节点 新组织机构组
+     * @return int
+     */
+    int updateChildrenOrgIds(@Param("oldOrgIds") String oldOrgIds, @Param("newOrgIds") String newOrgIds);
+
 }
@@ -25,26 +25,21 @@ import com.google.common.collect.Lists;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.opsli.api.wrapper.system.org.SysOrgModel;
-import org.opsli.api.wrapper.system.user.UserModel;
 import org.opsli.common.constants.MyBatisConstants;
 import org.opsli.common.enums.DictType;
 import org.opsli.common.exception.ServiceException;
 import org.opsli.common.utils.FieldUtil;
-import org.opsli.common.utils.ListDistinctUtil;
 import org.opsli.core.base.entity.HasChildren;
 import org.opsli.core.base.service.impl.CrudServiceImpl;
 import org.opsli.core.msg.CoreMsg;
-import org.opsli.core.persistence.querybuilder.GenQueryBuilder;
-import org.opsli.core.persistence.querybuilder.QueryBuilder;
 import org.opsli.core.persistence.querybuilder.chain.QueryTenantHandler;
-import org.opsli.core.utils.TenantUtil;
+import org.opsli.core.utils.TreeSnapshotUtil;
 import org.opsli.core.utils.UserUtil;
 import org.opsli.modulars.system.SystemMsg;
 import org.opsli.modulars.system.org.entity.SysOrg;
+import org.opsli.modulars.system.org.mapper.SysOrgClosureMapper;
 import org.opsli.modulars.system.org.mapper.SysOrgMapper;
 import org.opsli.modulars.system.org.service.ISysOrgService;
-import org.opsli.modulars.system.user.service.IUserOrgRefService;
-import org.opsli.modulars.system.user.service.IUserRoleRefService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -71,10 +66,9 @@ public class SysOrgServiceImpl extends CrudServiceImpl<SysOrgMapper, SysOrg, Sys
 
     @Autowired(required = false)
     private SysOrgMapper mapper;
-    @Autowired
-    private IUserRoleRefService iUserRoleRefService;
-    @Autowired
-    private IUserOrgRefService iUserOrgRefService;
+
+    @Autowired(required = false)
+    private SysOrgClosureMapper closureMapper;
 
     @Override
     @Transactional(rollbackFor = Exception.class)
@@ -114,16 +108,6 @@ public class SysOrgServiceImpl extends CrudServiceImpl<SysOrgMapper, SysOrg, Sys
                             sysOrgModel.getId());
         }
 
-        // 清理缓存 清除当前租户下 所有角色的数据范围为 全部数据的 用户缓存
-        // 如果是超级管理员体系 下的用户 还需要清空超级管理员的 缓存
-        if(TenantUtil.SUPER_ADMIN_TENANT_ID.equals(UserUtil.getTenantId())){
-            UserModel superAdmin = UserUtil.getUserByUserName(UserUtil.SUPER_ADMIN);
-            if(null != superAdmin){
-                // 清除缓存
-                this.clearCache(Collections.singletonList(superAdmin.getId()));
-            }
-        }
-
         // 更新 orgIds 字段
         SysOrgModel insertModel = super.insert(model);
         if(null != insertModel){
@@ -141,18 +125,11 @@ public class SysOrgServiceImpl extends CrudServiceImpl<SysOrgMapper, SysOrg, Sys
                 throw new RuntimeException("更新OrgIds失败");
             }
 
-            // 获得当前租户下 数据权限为全部数据的 用户ID 集合
-            List<String> userIdList = Lists.newArrayList();
-            List<String> userIdListByTenantId =
-                    iUserRoleRefService.getUserIdListByTenantIdAndAllData(UserUtil.getTenantId());
-            // 获得当前租户下 ordIds 分组后 所有用户ID 集合
-            List<String> userIdListByOrgIds = iUserOrgRefService.getUserIdListByOrgIds(orgIds);
-            // 组合ID
-            userIdList.addAll(userIdListByTenantId);
-            userIdList.addAll(userIdListByOrgIds);
-
-            // 清除缓存
-            this.clearCache(userIdList);
+            // 维护闭包表
+            closureMapper.insertNode(insertModel.getId(), insertModel.getParentId());
+
+            // 清除缓存 自增组织代数 全部用户组织缓存随之失效
+            this.clearCache();
         }
 
         return insertModel;
@@ -194,6 +171,12 @@ public class SysOrgServiceImpl extends CrudServiceImpl<SysOrgMapper, SysOrg, Sys
                     StrUtil.appendIfMissing(
                             model.getParentIds(), DELIMITER) +
                             model.getId());
+        }else if(TOP_PARENT_ID.equals(model.getParentId())){
+            model.setParentIds(TOP_PARENT_ID);
+            model.setOrgIds(
+                    StrUtil.appendIfMissing(
+                            TOP_PARENT_ID, DELIMITER) +
+                            model.getId());
         }
 
         SysOrgModel sysOrgModel = super.get(model);
@@ -205,30 +188,27 @@ public class SysOrgServiceImpl extends CrudServiceImpl<SysOrgMapper, SysOrg, Sys
             // 如果有组织还在被引用 则不允许操作该组织
             this.validationUsedByDel(Collections.singletonList(sysOrgModel.getId()));
 
-            // 如果没有被引用 则逐级修改
-            this.updateTenantByParentId(sysOrgModel.getId(), model.getTenantId());
+            // 如果没有被引用 则整棵子树一次修改
+            this.updateTenantByOrgIds(sysOrgModel.getOrgIds(), model.getTenantId());
         }
 
         // 如果 parentId 发生变化 则需要更改 下级数据 租户ID
-        if(sysOrgModel != null && !sysOrgModel.getParentId().equals(
-                model.getParentId())){
+        // 未传入上级ID 视为上级不变 避免子树从闭包表中脱离
+        if(sysOrgModel != null && StringUtils.isNotBlank(model.getParentId()) &&
+                !sysOrgModel.getParentId().equals(model.getParentId())){
             // 如果有组织还在被引用 则不允许操作该组织
             this.validationUsedByDel(Collections.singletonList(sysOrgModel.getId()));
 
-            // 如果没有被引用 则逐级修改
-            this.updateChildrenParentIdsByParentId(sysOrgModel.getId());
-        }
+            // 如果没有被引用 则整棵子树一次替换路径前缀
+            this.updateChildrenOrgIds(sysOrgModel.getOrgIds(), model.getOrgIds());
 
-        // 获得当前租户下 数据权限为全部数据的 用户ID 集合
-        List<String> userIdList =
-                iUserRoleRefService.getUserIdListByTenantIdAndAllData(UserUtil.getTenantId());
-        // 获得当前租户下 ordIds 分组后 所有用户ID 集合
-        List<String> userIdListByOrgIds = iUserOrgRefService.getUserIdListByOrgIds(updateRet.getOrgIds());
-        // 组合ID
-        userIdList.addAll(userIdListByOrgIds);
+            // 维护闭包表 整棵子树迁移至新上级
+            closureMapper.deleteSubtreeAncestors(sysOrgModel.getId());
+            closureMapper.insertSubtreeAncestors(sysOrgModel.getId(), model.getParentId());
+        }
 
-        // 清除缓存
-        this.clearCache(userIdList);
+        // 清除缓存 自增组织代数 全部用户组织缓存随之失效
+        this.clearCache();
 
         // 修改
         return updateRet;
@@ -245,10 +225,23 @@ public class SysOrgServiceImpl extends CrudServiceImpl<SysOrgMapper, SysOrg, Sys
         // 如果有组织还在被引用 则不允许操作该组织
         this.validationUsedByDel(Collections.singletonList(id));
 
+        SysOrgModel sysOrgModel = super.get(id);
+        if(sysOrgModel == null){
+            return false;
+        }
+
+        // 维护闭包表
+        closureMapper.deleteSubtree(id);
+
         // 先删除子数据
-        this.deleteByParentId(id);
+        this.deleteChildrenByOrgIds(Collections.singletonList(sysOrgModel.getOrgIds()));
+
+        boolean ret = super.delete(id);
+
+        // 清除缓存 自增组织代数 全部用户组织缓存随之失效
+        this.clearCache();
 
-        return super.delete(id);
+        return ret;
     }
 
     @Override
@@ -261,81 +254,94 @@ public class SysOrgServiceImpl extends CrudServiceImpl<SysOrgMapper, SysOrg, Sys
         // 如果有组织还在被引用 则不允许操作该组织
         this.validationUsedByDel(Convert.toList(String.class, ids));
 
-        // 先删除子数据
-        for (String id : ids) {
-            this.deleteByParentId(id);
+        List<SysOrg> entityList = super.listByIds(Convert.toList(String.class, ids));
+        List<String> orgIdsList = Lists.newArrayListWithCapacity(entityList.size());
+        for (SysOrg sysOrg : entityList) {
+            // 维护闭包表
+            closureMapper.deleteSubtree(sysOrg.getId());
+            orgIdsList.add(sysOrg.getOrgIds());
         }
 
-        return super.deleteAll(ids);
+        // 先删除子数据
+        this.deleteChildrenByOrgIds(orgIdsList);
+
+        boolean ret = super.deleteAll(ids);
+
+        // 清除缓存 自增组织代数 全部用户组织缓存随之失效
+        this.clearCache();
+
+        return ret;
     }
 
     /**
-     * 逐级修改机构下租户
-     * @param parentId 父级ID
+     * 修改整棵子树租户
+     * 按 org_ids 前缀 一条 UPDATE 完成
+     * @param orgIds 子树根节点 组织机构组
+     * @param tenantId 租户ID
      */
     @Transactional(rollbackFor = Exception.class)
-    public void updateTenantByParentId(String parentId, String tenantId) {
-        QueryBuilder<SysOrg> queryBuilder = new GenQueryBuilder<>();
-        QueryWrapper<SysOrg> queryWrapper = queryBuilder.build();
-        queryWrapper.eq(
-                FieldUtil.humpToUnderline(MyBatisConstants.FIELD_PARENT_ID), parentId);
-        List<SysOrg> entityList = super.findList(queryWrapper);
-        for (SysOrg sysOrg : entityList) {
-            sysOrg.setTenantId(tenantId);
-            super.updateById(sysOrg);
-            // 逐级删除子数据
-            this.updateTenantByParentId(sysOrg.getId(), tenantId);
+    public void updateTenantByOrgIds(String orgIds, String tenantId) {
+        if(StringUtils.isEmpty(orgIds)){
+            return;
         }
+
+        UpdateWrapper<SysOrg> updateWrapper = new UpdateWrapper<>();
+        updateWrapper.likeRight(
+                FieldUtil.humpToUnderline(MyBatisConstants.FIELD_ORG_GROUP),
+                StrUtil.appendIfMissing(orgIds, DELIMITER));
+        updateWrapper.set(
+                FieldUtil.humpToUnderline(MyBatisConstants.FIELD_TENANT), tenantId);
+        this.update(updateWrapper);
     }
 
     /**
-     * 逐级修改机构下租户
-     * @param parentId 父级ID
+     * 替换整棵子树 ParentIds 与 OrgIds 前缀
+     * 按 org_ids 前缀 一条 UPDATE 完成
+     * @param oldOrgIds 子树根节点 原组织机构组
+     * @param newOrgIds 子树根节点 新组织机构组
      */
     @Transactional(rollbackFor = Exception.class)
-    public void updateChildrenParentIdsByParentId(String parentId) {
-        QueryBuilder<SysOrg> queryBuilder = new GenQueryBuilder<>();
-        QueryWrapper<SysOrg> queryWrapper = queryBuilder.build();
-        queryWrapper.eq(
-                FieldUtil.humpToUnderline(MyBatisConstants.FIELD_PARENT_ID), parentId);
-        List<SysOrg> entityList = super.findList(queryWrapper);
-        for (SysOrg sysOrg : entityList) {
-            SysOrgModel sysOrgModel = super.get(parentId);
-
-            // 下级沿用上级ParentIds
-            sysOrg.setParentIds(
-                    StrUtil.appendIfMissing(
-                            sysOrgModel.getParentIds(), DELIMITER) +
-                            sysOrgModel.getId());
-
-            // 下级沿用上级OrgIds
-            sysOrg.setOrgIds(
-                    StrUtil.appendIfMissing(
-                            sysOrg.getParentIds(), DELIMITER) +
-                            sysOrg.getId());
-
-            super.updateById(sysOrg);
-            // 逐级删除子数据
-            this.updateChildrenParentIdsByParentId(sysOrg.getId());
+    public void updateChildrenOrgIds(String oldOrgIds, String newOrgIds) {
+        if(StringUtils.isEmpty(oldOrgIds) || StringUtils.isEmpty(newOrgIds)
+                || oldOrgIds.equals(newOrgIds)){
+            return;
         }
+
+        mapper.updateChildrenOrgIds(oldOrgIds, newOrgIds);
     }
 
     /**
-     * 逐级删除子数据
-     * @param parentId 父级ID
+     * 删除整棵子树
+     * 按 org_ids 前缀 一条 DELETE 完成
+     * @param orgIdsList 子树根节点 组织机构组集合
      */
     @Transactional(rollbackFor = Exception.class)
-    public void deleteByParentId(String parentId) {
-        QueryBuilder<SysOrg> queryBuilder = new GenQueryBuilder<>();
-        QueryWrapper<SysOrg> queryWrapper = queryBuilder.build();
-        queryWrapper.eq(
-                FieldUtil.humpToUnderline(MyBatisConstants.FIELD_PARENT_ID), parentId);
-        List<SysOrg> entityList = super.findList(queryWrapper);
-        for (SysOrg sysOrg : entityList) {
-            super.delete(sysOrg.getId());
-            // 逐级删除子数据
-            this.deleteByParentId(sysOrg.getId());
+    public void deleteChildrenByOrgIds(List<String> orgIdsList) {
+        if(CollUtil.isEmpty(orgIdsList)){
+            return;
         }
+
+        List<String> prefixList = Lists.newArrayListWithCapacity(orgIdsList.size());
+        for (String orgIds : orgIdsList) {
+            if(StringUtils.isNotEmpty(orgIds)){
+                prefixList.add(StrUtil.appendIfMissing(orgIds, DELIMITER));
+            }
+        }
+        if(prefixList.isEmpty()){
+            return;
+        }
+
+        QueryWrapper<SysOrg> queryWrapper = new QueryWrapper<>();
+        queryWrapper.and(wra -> {
+            for (int i = 0; i < prefixList.size(); i++) {
+                wra.likeRight(
+                        FieldUtil.humpToUnderline(MyBatisConstants.FIELD_ORG_GROUP), prefixList.get(i));
+                if(i < prefixList.size() - 1){
+                    wra.or();
+                }
+            }
+        });
+        super.remove(queryWrapper);
     }
 
     /**
@@ -410,32 +416,16 @@ public class SysOrgServiceImpl extends CrudServiceImpl<SysOrgMapper, SysOrg, Sys
 
     /**
      * 清除缓存
-     * @param userIdList 用户ID 集合
      */
-    private void clearCache(List<String> userIdList){
-        if(CollUtil.isNotEmpty(userIdList)){
-            // 去重
-            List<String> distinctUserIdList = ListDistinctUtil.distinct(userIdList);
-
-            int cacheCount = 0;
-            for (String userId : distinctUserIdList) {
-                cacheCount += 2;
-                boolean tmp;
-                // 清空当期用户缓存 组织
-                tmp = UserUtil.refreshUserOrgs(userId);
-                if(tmp){
-                    cacheCount--;
-                }
-                tmp = UserUtil.refreshUserDefOrg(userId);
-                if(tmp){
-                    cacheCount--;
-                }
-            }
-            // 判断删除状态
-            if(cacheCount != 0){
-                // 删除缓存失败
-                throw new ServiceException(CoreMsg.CACHE_DEL_EXCEPTION);
-            }
+    private void clearCache(){
+        // 失效组织树快照
+        TreeSnapshotUtil.evict(TreeSnapshotUtil.TREE_ORG);
+
+        boolean tmp = UserUtil.refreshOrgs();
+        // 判断删除状态
+        if(!tmp){
+            // 删除缓存失败
+            throw new ServiceException(CoreMsg.CACHE_DEL_EXCEPTION);
         }
     }
 }
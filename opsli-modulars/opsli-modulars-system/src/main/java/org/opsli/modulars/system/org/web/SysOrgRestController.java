@@ -46,15 +46,19 @@ import org.opsli.core.log.enums.ModuleEnum;
 import org.opsli.core.log.enums.OperationTypeEnum;
 import org.opsli.core.persistence.querybuilder.GenQueryBuilder;
 import org.opsli.core.persistence.querybuilder.QueryBuilder;
+import org.opsli.core.persistence.querybuilder.chain.QueryDataPermsHandler;
 import org.opsli.core.utils.OrgUtil;
 import org.opsli.core.utils.TenantUtil;
 import org.opsli.core.utils.TreeBuildUtil;
+import org.opsli.core.utils.TreeSnapshotUtil;
 import org.opsli.core.utils.UserUtil;
 import org.opsli.modulars.system.SystemMsg;
 import org.opsli.modulars.system.org.entity.SysOrg;
 import org.opsli.modulars.system.org.service.ISysOrgService;
 import org.springframework.security.access.prepost.PreAuthorize;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -82,11 +86,24 @@ public class SysOrgRestController extends BaseRestController<SysOrg, SysOrgModel
 
     /**
      * 获得当前用户下 组织
-     * @return ResultWrapper
+     * 按 当前用户 租户/数据权限 指纹 缓存树快照 组织变更后自动失效
+     * @param request request
+     * @param response response
      */
     @ApiOperation(value = "获得当前用户下 组织", notes = "获得当前用户下 组织")
     @Override
-    public ResultWrapper<?> findTreeByDefWithUserToLike() {
+    public void findTreeByDefWithUserToLike(HttpServletRequest request, HttpServletResponse response) {
+        TreeSnapshotUtil.TreeSnapshot snapshot = TreeSnapshotUtil.get(
+                TreeSnapshotUtil.TREE_ORG, "like:" + this.getCurrUserOrgFingerprint(),
+                this::buildTreeByDefWithUserToLike);
+        TreeSnapshotUtil.write(snapshot, request, response);
+    }
+
+    /**
+     * 构建 当前用户下 组织树
+     * @return List
+     */
+    private List<Tree<Object>> buildTreeByDefWithUserToLike() {
         // 生成 全部/未分组
         String parentId = PARENT_ID;
         List<SysOrgModel> orgModelList = OrgUtil.createDefShowNodes(parentId, Lists.newArrayList());
@@ -143,7 +160,7 @@ public class SysOrgRestController extends BaseRestController<SysOrg, SysOrgModel
         }
 
         // 处理组织树
-        return handleOrgTree(parentId, orgModelList, false);
+        return buildOrgTree(parentId, orgModelList, false);
     }
 
     /**
@@ -204,11 +221,29 @@ public class SysOrgRestController extends BaseRestController<SysOrg, SysOrgModel
 
     /**
      * 获得组织树
-     * @return ResultWrapper
+     * 按 参数与当前用户 租户/数据权限 指纹 缓存树快照 组织变更后自动失效
+     * @param isGen 是否包含根节点
+     * @param id 忽略自身ID
+     * @param request request
+     * @param response response
      */
     @ApiOperation(value = "获得组织树", notes = "获得组织树")
     @Override
-    public ResultWrapper<?> findTreeByDef(boolean isGen, String id) {
+    public void findTreeByDef(boolean isGen, String id, HttpServletRequest request, HttpServletResponse response) {
+        TreeSnapshotUtil.TreeSnapshot snapshot = TreeSnapshotUtil.get(
+                TreeSnapshotUtil.TREE_ORG, "def:" + isGen + ":" + StringUtils.defaultString(id) + ":" +
+                        this.getCurrUserOrgFingerprint(),
+                () -> this.buildTreeByDef(isGen, id));
+        TreeSnapshotUtil.write(snapshot, request, response);
+    }
+
+    /**
+     * 构建 组织树
+     * @param isGen 是否包含根节点
+     * @param id 忽略自身ID
+     * @return List
+     */
+    private List<Tree<Object>> buildTreeByDef(boolean isGen, String id) {
         List<SysOrgModel> orgModelList = Lists.newArrayList();
         String parentId = PARENT_ID;
         if(isGen){
@@ -280,7 +315,7 @@ public class SysOrgRestController extends BaseRestController<SysOrg, SysOrgModel
         }
 
         // 处理组织树
-        return handleOrgTree(parentId, orgModelList, false);
+        return buildOrgTree(parentId, orgModelList, false);
     }
 
 
@@ -428,6 +463,18 @@ public class SysOrgRestController extends BaseRestController<SysOrg, SysOrgModel
      * @return ResultWrapper
      */
     private ResultWrapper<?> handleOrgTree(String parentId, List<SysOrgModel> orgModelList, boolean izLazy) {
+        return ResultWrapper.getSuccessResultWrapper(
+                this.buildOrgTree(parentId, orgModelList, izLazy));
+    }
+
+    /**
+     * 构建组织树
+     * @param parentId 父级ID
+     * @param orgModelList 组织集合
+     * @param izLazy 是否懒加载
+     * @return List
+     */
+    private List<Tree<Object>> buildOrgTree(String parentId, List<SysOrgModel> orgModelList, boolean izLazy) {
         //配置
         TreeNodeConfig treeNodeConfig = new TreeNodeConfig();
         // 自定义属性名 都要默认值的
@@ -460,7 +507,35 @@ public class SysOrgRestController extends BaseRestController<SysOrg, SysOrgModel
                     (parentIds)-> IService.hasChildren(parentIdSet));
         }
 
-        return ResultWrapper.getSuccessResultWrapper(treeNodes);
+        return treeNodes;
+    }
+
+    /**
+     * 当前用户 组织树 指纹
+     * 组织树结果 与 生效租户(含切换租户) 及 数据权限入参(查询类型 / 所属组织 / 本人) 相关
+     * 任一变化 均落入不同快照 避免跨租户 跨用户复用
+     * @return String
+     */
+    private String getCurrUserOrgFingerprint() {
+        UserModel currUser = UserUtil.getUser();
+        List<UserOrgRefModel> orgListByUserId = UserUtil.getOrgListByUserId(currUser.getId());
+        List<String> orgIdsList = Lists.newArrayListWithCapacity(orgListByUserId.size());
+        for (UserOrgRefModel userOrgRefModel : orgListByUserId) {
+            orgIdsList.add(userOrgRefModel.getOrgIds());
+        }
+        orgIdsList = ListDistinctUtil.distinct(orgIdsList);
+
+        QueryDataPermsHandler.ConditionType conditionType =
+                QueryDataPermsHandler.getConditionType(currUser, orgIdsList);
+
+        List<String> parts = Lists.newArrayListWithCapacity(orgIdsList.size() + 3);
+        parts.add("tenant=" + StringUtils.defaultString(currUser.getTenantId()));
+        parts.add("scope=" + conditionType.name());
+        // 查自身 按创建人过滤 需区分用户
+        parts.add("self=" + (QueryDataPermsHandler.ConditionType.SELF.equals(conditionType)
+                ? currUser.getId() : ""));
+        parts.addAll(orgIdsList);
+        return TreeSnapshotUtil.fingerprint(parts);
     }
 
 }
@@ -17,6 +17,7 @@ package org.opsli.modulars.system.role.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.opsli.modulars.system.menu.entity.SysMenu;
 import org.opsli.modulars.system.role.entity.SysRoleMenuRef;
 
@@ -38,4 +39,12 @@ public interface RoleMenuRefMapper extends BaseMapper<SysRoleMenuRef> {
      */
     List<SysMenu> queryAllPerms(String roleId);
 
+    /**
+     * 根据角色ID 获得权限标识
+     * @param roleId 角色ID
+     * @param label 标签
+     * @return List
+     */
+    List<String> queryPermsByRoleId(@Param("roleId") String roleId, @Param("label") String label);
+
 }
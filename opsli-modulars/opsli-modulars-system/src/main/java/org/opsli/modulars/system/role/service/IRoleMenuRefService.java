@@ -34,6 +34,14 @@ public interface IRoleMenuRefService {
      */
     List<SysMenu> getPerms(String roleId);
 
+    /**
+     * 根据角色ID 获得权限标识
+     * @param roleId 角色ID
+     * @param label 标签
+     * @return List
+     */
+    List<String> getPermsByRoleId(String roleId, String label);
+
     /**
      * 保存权限
      * @param roleId 角色ID
@@ -64,4 +72,11 @@ public interface IRoleMenuRefService {
      */
     boolean delPermsByMenuIds(List<String> menuIds);
 
+    /**
+     * 根据菜单ID 获得对应 角色ID
+     * @param menuIdList 菜单ID
+     * @return List
+     */
+    List<String> getRoleIdListByMenuIdList(List<String> menuIdList);
+
 }
@@ -16,12 +16,14 @@
 package org.opsli.modulars.system.role.service.impl;
 
 import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.collection.ListUtil;
 import cn.hutool.core.convert.Convert;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.google.common.collect.Lists;
 import org.apache.commons.lang3.StringUtils;
 import org.opsli.common.exception.ServiceException;
+import org.opsli.common.utils.ListDistinctUtil;
 import org.opsli.core.msg.CoreMsg;
 import org.opsli.core.utils.UserUtil;
 import org.opsli.modulars.system.SystemMsg;
@@ -29,9 +31,7 @@ import org.opsli.modulars.system.menu.entity.SysMenu;
 import org.opsli.modulars.system.role.entity.SysRoleMenuRef;
 import org.opsli.modulars.system.role.mapper.RoleMenuRefMapper;
 import org.opsli.modulars.system.role.service.IRoleMenuRefService;
-import org.opsli.modulars.system.user.service.IUserRoleRefService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -50,15 +50,18 @@ public class RoleMenuRefServiceImpl extends ServiceImpl<RoleMenuRefMapper,SysRol
     @Autowired(required = false)
     private RoleMenuRefMapper mapper;
 
-    @Lazy
-    @Autowired
-    private IUserRoleRefService iUserRoleRefService;
-
     @Override
     public List<SysMenu> getPerms(String roleId) {
         return mapper.queryAllPerms(roleId);
     }
 
+    @Override
+    public List<String> getPermsByRoleId(String roleId, String label) {
+        List<String> perms = mapper.queryPermsByRoleId(roleId, label);
+        // 去重
+        return ListDistinctUtil.distinct(perms);
+    }
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public boolean setPerms(String roleId, String[] permsIds) {
@@ -136,6 +139,18 @@ public class RoleMenuRefServiceImpl extends ServiceImpl<RoleMenuRefMapper,SysRol
         return this.remove(queryWrapper);
     }
 
+    @Override
+    public List<String> getRoleIdListByMenuIdList(List<String> menuIdList) {
+        if(CollUtil.isEmpty(menuIdList)){
+            return ListUtil.empty();
+        }
+
+        QueryWrapper<SysRoleMenuRef> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("DISTINCT role_id");
+        queryWrapper.in("menu_id", menuIdList);
+        return super.listObjs(queryWrapper, Convert::toStr);
+    }
+
     // =========================
 
     /**
@@ -143,46 +158,12 @@ public class RoleMenuRefServiceImpl extends ServiceImpl<RoleMenuRefMapper,SysRol
      * @param roleId 角色ID
      */
     private void clearCache(String roleId){
-        // 清空该角色下 用户缓存
-        List<String> userIdList = iUserRoleRefService.getUserIdListByRoleId(roleId);
-        if(CollUtil.isNotEmpty(userIdList)){
-            int cacheCount = 0;
-            for (String userId : userIdList) {
-                cacheCount += 6;
-                boolean tmp;
-                // 清空当期用户缓存角色、权限、菜单
-                tmp = UserUtil.refreshUserRoles(userId);
-                if(tmp){
-                    cacheCount--;
-                }
-                tmp = UserUtil.refreshUserAllPerms(userId);
-                if(tmp){
-                    cacheCount--;
-                }
-                tmp = UserUtil.refreshUserMenus(userId);
-                if(tmp){
-                    cacheCount--;
-                }
-                tmp = UserUtil.refreshUserOrgs(userId);
-                if(tmp){
-                    cacheCount--;
-                }
-                tmp = UserUtil.refreshUserDefRole(userId);
-                if(tmp){
-                    cacheCount--;
-                }
-                tmp = UserUtil.refreshUserDefOrg(userId);
-                if(tmp){
-                    cacheCount--;
-                }
-            }
-            // 判断删除状态
-            if(cacheCount != 0){
-                // 删除缓存失败
-                throw new ServiceException(CoreMsg.CACHE_DEL_EXCEPTION);
-            }
+        // 自增角色代数 该角色下 用户的角色、权限、菜单缓存随之失效
+        boolean tmp = UserUtil.refreshRolePerms(roleId);
+        // 判断删除状态
+        if(!tmp){
+            // 删除缓存失败
+            throw new ServiceException(CoreMsg.CACHE_DEL_EXCEPTION);
         }
     }
 }
-
-
@@ -15,7 +15,6 @@
  */
 package org.opsli.modulars.system.role.service.impl;
 
-import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.convert.Convert;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.google.common.collect.Lists;
@@ -244,39 +243,13 @@ public class RoleServiceImpl extends CrudServiceImpl<RoleMapper, SysRole, RoleMo
      * @param roleIds 角色ID
      */
     private void clearCache(String[] roleIds){
-        // 清空该角色下 用户缓存
-        List<String> userIdList = iUserRoleRefService.getUserIdListByRoleIds(roleIds);
-        if(CollUtil.isNotEmpty(userIdList)){
-            int cacheCount = 0;
-            for (String userId : userIdList) {
-                cacheCount += 4;
-                boolean tmp;
-                // 清空当期用户缓存角色、权限、菜单
-                tmp = UserUtil.refreshUserRoles(userId);
-                if(tmp){
-                    cacheCount--;
-                }
-                tmp = UserUtil.refreshUserAllPerms(userId);
-                if(tmp){
-                    cacheCount--;
-                }
-                tmp = UserUtil.refreshUserMenus(userId);
-                if(tmp){
-                    cacheCount--;
-                }
-                tmp = UserUtil.refreshUserDefRole(userId);
-                if(tmp){
-                    cacheCount--;
-                }
-            }
-            // 判断删除状态
-            if(cacheCount != 0){
-                // 删除缓存失败
-                throw new ServiceException(CoreMsg.CACHE_DEL_EXCEPTION);
-            }
+        // 自增角色代数 该角色下 用户的角色、权限、菜单缓存随之失效
+        boolean tmp = UserUtil.refreshRolePerms(roleIds);
+        // 判断删除状态
+        if(!tmp){
+            // 删除缓存失败
+            throw new ServiceException(CoreMsg.CACHE_DEL_EXCEPTION);
         }
     }
 
 }
-
-
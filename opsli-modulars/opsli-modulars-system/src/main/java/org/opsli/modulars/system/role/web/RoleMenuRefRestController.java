@@ -173,6 +173,18 @@ public class RoleMenuRefRestController implements RoleMenuRefApi {
         return ResultWrapper.getCustomResultWrapper(SystemMsg.EXCEPTION_ROLE_PERMS_ERROR);
     }
 
+    /**
+     * 根据角色ID 获得权限标识
+     * @param roleId 角色Id
+     * @param label 标签
+     * @return ResultWrapper
+     */
+    @Override
+    public ResultWrapper<List<String>> getPermsByRoleId(String roleId, String label) {
+        List<String> perms = iRoleMenuRefService.getPermsByRoleId(roleId, label);
+        return ResultWrapper.getSuccessResultWrapper(perms);
+    }
+
 
     /**
      * 演示模式
@@ -109,6 +109,17 @@ public class UserRoleRefRestController implements UserRoleRefApi {
         return ResultWrapper.getSuccessResultWrapper(roleCodeList);
     }
 
+    /**
+     * 根据 userId 获得用户角色ID
+     * @param userId 用户Id
+     * @return ResultWrapper
+     */
+    @Override
+    public ResultWrapper<List<String>> getRoleIdsByUserId(String userId) {
+        List<String> roleIdList = iUserRoleRefService.getRoleIdList(userId);
+        return ResultWrapper.getSuccessResultWrapper(roleIdList);
+    }
+
     /**
      * 根据 userId 获得用户默认角色
      * @param userId 用户Id
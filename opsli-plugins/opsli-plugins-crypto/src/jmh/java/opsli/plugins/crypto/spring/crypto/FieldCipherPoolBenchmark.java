@@ -0,0 +1,67 @@
+package opsli.plugins.crypto.spring.crypto;
+
+import opsli.plugins.crypto.enums.CryptoSymmetricType;
+import opsli.plugins.crypto.model.CryptoSymmetric;
+import opsli.plugins.crypto.strategy.CryptoSymmetricService;
+import opsli.plugins.crypto.strategy.impl.CryptoSymmetricServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 字段加解密 基准测试
+ *
+ * 对比 CryptoSymmetricService 与 FieldCipherPool 快速通道 单次 加密+解密 耗时
+ * 运行: mvn -P jmh test -pl opsli-plugins/opsli-plugins-crypto -am
+ *
+ * @author Parker
+ * @date 2022-08-07 17:33
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldCipherPoolBenchmark {
+
+    /** 测试原文 */
+    private static final String VALUE = "张三 zhangsan@opsli.com";
+
+    @Param({"AES", "DES", "DE_SEDE", "SM4"})
+    private String type;
+
+    private final CryptoSymmetricService symmetric = new CryptoSymmetricServiceImpl();
+
+    private CryptoSymmetricType cryptoType;
+    private CryptoSymmetric model;
+    private String key;
+
+    @Setup
+    public void setup() {
+        cryptoType = CryptoSymmetricType.valueOf(type);
+        model = symmetric.createKeyModel(cryptoType);
+        key = model.getPrivateKey();
+    }
+
+    @Benchmark
+    public String symmetricService() {
+        return symmetric.decrypt(model, symmetric.encrypt(model, VALUE));
+    }
+
+    @Benchmark
+    public String fieldCipherPool() {
+        return FieldCipherPool.decrypt(cryptoType, key, FieldCipherPool.encrypt(cryptoType, key, VALUE));
+    }
+
+}
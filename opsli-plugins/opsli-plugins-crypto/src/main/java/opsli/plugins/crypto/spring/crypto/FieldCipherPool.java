@@ -0,0 +1,175 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package opsli.plugins.crypto.spring.crypto;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.util.CharsetUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.KeyUtil;
+import cn.hutool.crypto.SecureUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import opsli.plugins.crypto.enums.CryptoSymmetricType;
+import opsli.plugins.crypto.exception.CryptoException;
+import opsli.plugins.crypto.msg.CryptoMsg;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 字段加解密 快速通道
+ *
+ * 每个 算法 + 秘钥 预先生成 SecretKey 每个线程持有已初始化的 Cipher 直接复用
+ * 字节级 Base64 编解码 不再经过 CryptoSymmetric 模型 与 JSON 包装
+ * 密文格式 与 CryptoSymmetricService 保持一致 (已有数据无需迁移)
+ *
+ * @author Parker
+ * @date 2022-08-07 17:33
+ */
+@Slf4j
+public final class FieldCipherPool {
+
+    /** 默认缓存个数 超出后流量自动清理 */
+    private static final int DEFAULT_CACHE_COUNT = 1000;
+
+    /** 算法 + 秘钥 对应的 Cipher 持有者 */
+    private static final Cache<String, CipherHolder> HOLDER_CACHE = CacheBuilder.newBuilder()
+            .maximumSize(DEFAULT_CACHE_COUNT).build();
+
+    /**
+     * 加密
+     * @param cryptoType 算法类型
+     * @param key 秘钥 (Base64)
+     * @param value 原文
+     * @return 密文 (Base64)
+     */
+    public static String encrypt(CryptoSymmetricType cryptoType, String key, String value) {
+        if(value == null){
+            return null;
+        }
+        CipherHolder holder = getHolder(cryptoType, key);
+        try {
+            byte[] encrypted = holder.encryptCipher.get()
+                    .doFinal(StrUtil.bytes(value, CharsetUtil.CHARSET_UTF_8));
+            return Base64.encode(encrypted);
+        }catch (Exception e){
+            log.error(e.getMessage(), e);
+            // 加密失败
+            throw new CryptoException(CryptoMsg.CRYPTO_EXCEPTION_EN);
+        }
+    }
+
+    /**
+     * 解密
+     * @param cryptoType 算法类型
+     * @param key 秘钥 (Base64)
+     * @param value 密文 (Base64 / Hex)
+     * @return 原文
+     */
+    public static String decrypt(CryptoSymmetricType cryptoType, String key, String value) {
+        // 如果解密内容为空 则返回原内容
+        if(StringUtils.isEmpty(value)){
+            return value;
+        }
+        CipherHolder holder = getHolder(cryptoType, key);
+        try {
+            // 处理数据
+            byte[] data = SecureUtil.decode(StrUtil.replace(value, " ", "+"));
+            byte[] decrypted = holder.decryptCipher.get().doFinal(data);
+            return StrUtil.str(decrypted, CharsetUtil.CHARSET_UTF_8);
+        }catch (Exception e){
+            // 解密失败
+            throw new CryptoException(CryptoMsg.CRYPTO_EXCEPTION_DE);
+        }
+    }
+
+    // =====================================
+
+    /**
+     * 获得 Cipher 持有者
+     * @param cryptoType 算法类型
+     * @param key 秘钥
+     * @return CipherHolder
+     */
+    private static CipherHolder getHolder(CryptoSymmetricType cryptoType, String key) {
+        if(cryptoType == null || StringUtils.isEmpty(key)){
+            // 配置信息未初始化
+            throw new CryptoException(CryptoMsg.CRYPTO_EXCEPTION_MODEL_NULL);
+        }
+        try {
+            return HOLDER_CACHE.get(cryptoType.getCode() + ":" + key,
+                    () -> new CipherHolder(cryptoType, Base64.decode(key)));
+        }catch (ExecutionException | RuntimeException e){
+            log.error(e.getMessage(), e);
+            // 无法获得加解密执行器
+            throw new CryptoException(CryptoMsg.CRYPTO_EXCEPTION_HANDLER_NULL);
+        }
+    }
+
+    /**
+     * 获得 转换模式 与 CryptoSymmetricService 中执行器保持一致
+     * @param cryptoType 算法类型
+     * @return String
+     */
+    private static String getTransformation(CryptoSymmetricType cryptoType) {
+        switch (cryptoType) {
+            case AES:
+            case DES:
+            case SM4:
+                return cryptoType.getCode() + "/ECB/PKCS5Padding";
+            default:
+                return cryptoType.getCode();
+        }
+    }
+
+    private FieldCipherPool(){}
+
+    /**
+     * Cipher 持有者 每个线程独立的 加密/解密 Cipher
+     */
+    private static final class CipherHolder {
+
+        private final ThreadLocal<Cipher> encryptCipher;
+
+        private final ThreadLocal<Cipher> decryptCipher;
+
+        private CipherHolder(CryptoSymmetricType cryptoType, byte[] keyBytes) {
+            String transformation = getTransformation(cryptoType);
+            SecretKey secretKey = KeyUtil.generateKey(cryptoType.getCode(), keyBytes);
+
+            // 预先校验 秘钥与算法 可用
+            createCipher(transformation, Cipher.ENCRYPT_MODE, secretKey);
+
+            this.encryptCipher = ThreadLocal.withInitial(
+                    () -> createCipher(transformation, Cipher.ENCRYPT_MODE, secretKey));
+            this.decryptCipher = ThreadLocal.withInitial(
+                    () -> createCipher(transformation, Cipher.DECRYPT_MODE, secretKey));
+        }
+
+        private static Cipher createCipher(String transformation, int mode, SecretKey secretKey) {
+            try {
+                Cipher cipher = SecureUtil.createCipher(transformation);
+                cipher.init(mode, secretKey);
+                return cipher;
+            }catch (Exception e){
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
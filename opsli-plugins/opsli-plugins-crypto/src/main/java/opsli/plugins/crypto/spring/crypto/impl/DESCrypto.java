@@ -2,11 +2,9 @@ package opsli.plugins.crypto.spring.crypto.impl;
 
 
 import lombok.extern.slf4j.Slf4j;
-import opsli.plugins.crypto.CryptoPlugin;
 import opsli.plugins.crypto.enums.CryptoSymmetricType;
-import opsli.plugins.crypto.model.CryptoSymmetric;
+import opsli.plugins.crypto.spring.crypto.FieldCipherPool;
 import opsli.plugins.crypto.spring.crypto.ICrypto;
-import opsli.plugins.crypto.strategy.CryptoSymmetricService;
 
 /**
  * DES 加密解密器
@@ -26,12 +24,7 @@ public class DESCrypto implements ICrypto {
      */
     @Override
     public String encrypt(String value, String key) throws Exception {
-        CryptoSymmetric cryptoSymmetric = CryptoSymmetric.builder()
-                .cryptoType(CryptoSymmetricType.DES)
-                .privateKey(key)
-                .build();
-        CryptoSymmetricService symmetric = CryptoPlugin.getSymmetric();
-        return symmetric.encrypt(cryptoSymmetric, value);
+        return FieldCipherPool.encrypt(CryptoSymmetricType.DES, key, value);
     }
 
     /**
@@ -43,11 +36,6 @@ public class DESCrypto implements ICrypto {
      */
     @Override
     public String decrypt(String value, String key) {
-        CryptoSymmetric cryptoSymmetric = CryptoSymmetric.builder()
-                .cryptoType(CryptoSymmetricType.DES)
-                .privateKey(key)
-                .build();
-        CryptoSymmetricService symmetric = CryptoPlugin.getSymmetric();
-        return symmetric.decrypt(cryptoSymmetric, value);
+        return FieldCipherPool.decrypt(CryptoSymmetricType.DES, key, value);
     }
 }
@@ -0,0 +1,62 @@
+package opsli.plugins.crypto.spring.crypto;
+
+import opsli.plugins.crypto.enums.CryptoSymmetricType;
+import opsli.plugins.crypto.model.CryptoSymmetric;
+import opsli.plugins.crypto.strategy.CryptoSymmetricService;
+import opsli.plugins.crypto.strategy.impl.CryptoSymmetricServiceImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 字段加解密 快速通道 密文兼容测试
+ *
+ * 同一秘钥下 FieldCipherPool 与 CryptoSymmetricService 的密文 必须一致 且可互相解密
+ * 保证 切换快速通道前 已落库的密文 仍可读取
+ * 性能对比见 FieldCipherPoolBenchmark (mvn -P jmh)
+ *
+ * @author Parker
+ * @date 2022-08-07 17:33
+ */
+public class FieldCipherPoolTest {
+
+    /** 测试原文 */
+    private static final String[] VALUES = {
+            "", "a", "opsli", "13800000000", "张三 zhangsan@opsli.com",
+            "长文本-超过一个分组长度的内容-0123456789abcdefghijklmnopqrstuvwxyz"
+    };
+
+    private final CryptoSymmetricService symmetric = new CryptoSymmetricServiceImpl();
+
+    @Test
+    public void compatible(){
+        for (CryptoSymmetricType cryptoType : CryptoSymmetricType.values()) {
+            CryptoSymmetric model = symmetric.createKeyModel(cryptoType);
+            String key = model.getPrivateKey();
+
+            for (String value : VALUES) {
+                String oldEncrypted = symmetric.encrypt(model, value);
+                String newEncrypted = FieldCipherPool.encrypt(cryptoType, key, value);
+
+                // ECB 模式 密文确定 两条通道应完全一致
+                Assert.assertEquals(cryptoType.getCode(), oldEncrypted, newEncrypted);
+
+                // 交叉解密
+                Assert.assertEquals(cryptoType.getCode(), value,
+                        FieldCipherPool.decrypt(cryptoType, key, oldEncrypted));
+                Assert.assertEquals(cryptoType.getCode(), value,
+                        symmetric.decrypt(model, newEncrypted));
+            }
+        }
+    }
+
+    @Test
+    public void decryptKeepsBlank(){
+        for (CryptoSymmetricType cryptoType : CryptoSymmetricType.values()) {
+            String key = symmetric.createKeyModel(cryptoType).getPrivateKey();
+            Assert.assertNull(FieldCipherPool.encrypt(cryptoType, key, null));
+            Assert.assertNull(FieldCipherPool.decrypt(cryptoType, key, null));
+            Assert.assertEquals("", FieldCipherPool.decrypt(cryptoType, key, ""));
+        }
+    }
+
+}
@@ -27,6 +27,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.opsli.common.utils.WrapperUtil;
 import org.opsli.plugins.excel.exception.ExcelPluginException;
+import org.opsli.plugins.excel.factory.ExcelStreamWriter;
 import org.opsli.plugins.excel.listener.BatchExcelListener;
 import org.opsli.plugins.excel.listener.ExcelListener;
 import org.opsli.plugins.excel.msg.ExcelMsg;
@@ -38,6 +39,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.function.UnaryOperator;
 
 /**
  * ExcelUtil
@@ -171,7 +173,20 @@ public class ExcelPlugin {
         }catch (IOException e){
             log.error(e.getMessage(),e);
         }
-        if(null == inputStream){
+        readExcelByListener(inputStream, rowModel, sheetName, headLineNum, batchExcelListener);
+    }
+
+    /**
+     * 读取某个 sheet 的 Excel
+     * @param inputStream 文件流
+     * @param rowModel    实体类映射，继承 BaseRowModel 类
+     * @param sheetName     sheet 的序号 从1开始
+     * @param headLineNum 表头行数，默认为1
+     * @param batchExcelListener 监听器
+     */
+    public <T> void readExcelByListener(InputStream inputStream, Class<T>  rowModel, String sheetName,
+                                 int headLineNum, BatchExcelListener<T> batchExcelListener) throws ExcelPluginException {
+        if(null == inputStream || null == batchExcelListener){
             return;
         }
 
@@ -226,6 +241,50 @@ public class ExcelPlugin {
     }
 
 
+    /**
+     * 流式导出 Excel ：一个 sheet，带表头
+     * 调用方分批 write 写完后 close
+     * @param response  HttpServletResponse
+     * @param fileName  导出的文件名
+     * @param sheetName 导入文件的 sheet 名
+     * @param chunkHandler 批数据处理器
+     * @return ExcelStreamWriter
+     */
+    public <T> ExcelStreamWriter<T> openStreamWriter(HttpServletResponse response,
+                                                     String fileName, String sheetName,
+                                                     Class<T> classType, ExcelTypeEnum excelTypeEnum,
+                                                     UnaryOperator<List<T>> chunkHandler)
+            throws ExcelPluginException{
+
+        if(sheetName == null || "".equals(sheetName)){
+            sheetName = "sheet1";
+        }
+
+        fileName = fileName+"-"+DateUtil.format(DateUtil.date(), "yyyyMMddHHmmss");
+        OutputStream outputStream = getOutputStream(fileName, response, excelTypeEnum);
+        return openStreamWriter(outputStream, sheetName, classType, chunkHandler);
+    }
+
+    /**
+     * 流式导出 Excel 到指定输出流 (如 落盘文件)
+     * @param outputStream 输出流
+     * @param sheetName 导入文件的 sheet 名
+     * @param chunkHandler 批数据处理器
+     * @return ExcelStreamWriter
+     */
+    public <T> ExcelStreamWriter<T> openStreamWriter(OutputStream outputStream, String sheetName,
+                                                     Class<T> classType, UnaryOperator<List<T>> chunkHandler) {
+        if(sheetName == null || "".equals(sheetName)){
+            sheetName = "sheet1";
+        }
+
+        ExcelWriter excelWriter = EasyExcel.write(outputStream, classType).build();
+        WriteSheet writeSheet = EasyExcel.writerSheet(1, sheetName).build();
+        writeSheet.setRelativeHeadRowIndex(0);
+        return new ExcelStreamWriter<>(outputStream, excelWriter, writeSheet, chunkHandler);
+    }
+
+
     /**
      * 导出文件时为Writer生成OutputStream
      */
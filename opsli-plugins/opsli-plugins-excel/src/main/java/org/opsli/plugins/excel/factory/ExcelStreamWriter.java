@@ -0,0 +1,87 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.plugins.excel.factory;
+
+import com.alibaba.excel.ExcelWriter;
+import com.alibaba.excel.write.metadata.WriteSheet;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Excel 流式写出
+ *
+ * 数据按批写入同一个 Sheet 每批写完即可释放 内存占用只与批大小相关
+ * 使用完毕后必须 close 否则文件尾部不会写出
+ *
+ * @author Parker
+ * @date 2020-09-16 11:47
+ */
+@Slf4j
+public class ExcelStreamWriter<T> implements Closeable {
+
+    private final OutputStream outputStream;
+    private final ExcelWriter excelWriter;
+    private final WriteSheet writeSheet;
+    /** 批数据处理器 (如字典翻译) */
+    private final UnaryOperator<List<T>> chunkHandler;
+    /** 已写出行数 */
+    private long rowCount;
+
+    public ExcelStreamWriter(OutputStream outputStream, ExcelWriter excelWriter, WriteSheet writeSheet,
+                             UnaryOperator<List<T>> chunkHandler) {
+        this.outputStream = outputStream;
+        this.excelWriter = excelWriter;
+        this.writeSheet = writeSheet;
+        this.chunkHandler = chunkHandler;
+    }
+
+    /**
+     * 写出一批数据
+     * @param chunk 数据
+     */
+    public void write(List<T> chunk){
+        if(null == chunk || chunk.isEmpty()){
+            return;
+        }
+        List<T> data = null != chunkHandler ? chunkHandler.apply(chunk) : chunk;
+        excelWriter.write(data, writeSheet);
+        rowCount += data.size();
+    }
+
+    /**
+     * 获得已写出行数
+     * @return long
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public void close() {
+        // 关闭流
+        try {
+            excelWriter.finish();
+            outputStream.flush();
+            outputStream.close();
+        }catch (Exception e){
+            log.error(e.getMessage(),e);
+        }
+    }
+}
@@ -41,7 +41,22 @@ public abstract class BatchExcelListener<T> extends AnalysisEventListener<T> {
      */
     private static final int BATCH_COUNT = 2000;
 
-    private final List<Object> dataList = new ArrayList<>();
+    private final int batchCount;
+
+    private final List<Object> dataList;
+
+    /** 当前批次 每条数据对应的 Excel 行号 (从0开始) */
+    private final List<Integer> rowIndexList;
+
+    public BatchExcelListener() {
+        this(BATCH_COUNT);
+    }
+
+    public BatchExcelListener(int batchCount) {
+        this.batchCount = batchCount > 0 ? batchCount : BATCH_COUNT;
+        this.dataList = new ArrayList<>(this.batchCount);
+        this.rowIndexList = new ArrayList<>(this.batchCount);
+    }
 
     /**
      * 钩子函数 需要调用方重写 保存方法
@@ -56,11 +71,13 @@ public abstract class BatchExcelListener<T> extends AnalysisEventListener<T> {
     public void invoke(Object object, AnalysisContext context) {
         if(!checkObjAllFieldsIsNull(object)) {
             dataList.add(object);
+            rowIndexList.add(context.readRowHolder().getRowIndex());
             // 达到BATCH_COUNT了，需要去存储一次数据库，防止数据几万条数据在内存，容易OOM
-            if (dataList.size() >= BATCH_COUNT) {
+            if (dataList.size() >= batchCount) {
                 saveData((List<T>) dataList);
                 // 存储完成清理 list
                 dataList.clear();
+                rowIndexList.clear();
             }
         }
     }
@@ -69,6 +86,17 @@ public abstract class BatchExcelListener<T> extends AnalysisEventListener<T> {
     public void doAfterAllAnalysed(AnalysisContext context) {
         // 这里也要保存数据，确保最后遗留的数据也存储到数据库
         saveData((List<T>) dataList);
+        dataList.clear();
+        rowIndexList.clear();
+    }
+
+    /**
+     * 获得当前批次 每条数据对应的 Excel 行号 (从0开始)
+     * 仅在 saveData 内有效 批次保存后即被清理
+     * @return List
+     */
+    protected List<Integer> getRowIndexList() {
+        return rowIndexList;
     }
 
 
@@ -27,9 +27,10 @@ import org.springframework.data.redis.connection.RedisStringCommands;
 import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.ZSetOperations;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 
@@ -102,15 +103,33 @@ public class RedisPlugin {
 	 */
 	public Object callScript(RedisScriptsEnum scriptsEnum, List<String> keys, Object... argv) {
 		// 获得Script脚本
-		String script = redisScriptCache.getScript(scriptsEnum);
-		if(script == null || "".equals(script)){
+		RedisScript<?> script = redisScriptCache.getRedisScript(scriptsEnum, scriptsEnum.getResultType());
+		if(script == null){
 			return false;
 		}
-		// 这里有坑 DefaultRedisScript 必须传 ResultType 类型 ， 且为 Long类型，否则报错
-		DefaultRedisScript<Long> lockScript = new DefaultRedisScript<>();
-		lockScript.setScriptText(script);
-		lockScript.setResultType(Long.class);
-		return redisTemplate.execute(lockScript, keys, argv);
+		return redisTemplate.execute(script, keys, argv);
+	}
+
+	/**
+	 * 使用脚本
+	 *
+	 * 脚本已预先计算 SHA1 执行时走 EVALSHA 仅在 NOSCRIPT 时回退为 EVAL
+	 *
+	 * @param scriptsEnum 脚本枚举
+	 * @param resultType 返回类型 (Long、Boolean、List、String 等)
+	 * @param keys 多值
+	 * @param argv 多参数
+	 * @param <T> 泛型
+	 * @return T 脚本不存在时为 null
+	 */
+	public <T> T callScript(RedisScriptsEnum scriptsEnum, Class<T> resultType, List<String> keys, Object... argv) {
+		// 获得Script脚本
+		RedisScript<T> script = redisScriptCache.getRedisScript(scriptsEnum, resultType);
+		if(script == null){
+			log.warn("Redis 脚本不存在: {}", scriptsEnum);
+			return null;
+		}
+		return redisTemplate.execute(script, keys, argv);
 	}
 
 
@@ -147,6 +166,33 @@ public class RedisPlugin {
 		return ret != null && ret;
 	}
 
+	/**
+	 * 批量设置缓存有效时间 (管道批量提交)
+	 *
+	 * @param keys 主键集合
+	 * @param timeout 超时时间
+	 * @param unit 时间单位
+	 * @return boolean
+	 */
+	public boolean expire(Collection<String> keys, long timeout, TimeUnit unit) {
+		if(keys == null || keys.isEmpty() || timeout <= 0){
+			return false;
+		}
+		try {
+			final long seconds = unit.toSeconds(timeout);
+			redisTemplate.executePipelined((RedisCallback<Object>) con -> {
+				for (String key : keys) {
+					con.expire(key.getBytes(StandardCharsets.UTF_8), seconds);
+				}
+				return null;
+			});
+			return true;
+		}catch (Exception e){
+			log.error(e.getMessage(),e);
+		}
+		return false;
+	}
+
 	/**
 	 * 设置缓存有效时间
 	 *
@@ -0,0 +1,420 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.plugins.redis.codec;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.bean.PropDesc;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于结构的 Bean 二进制编码器
+ *
+ * 按注册顺序为每个类分配序号, 属性按名称排序 依次写入 (不写属性名与类名)
+ * 支持 单个对象 与 同类对象列表, 属性类型限 String/Integer/Long/Boolean/Double/BigDecimal/Date 及已注册的类
+ *
+ * 内容头部写入 结构指纹, 类或属性变更后 指纹不一致 旧内容解码失败 视为缓存不存在
+ *
+ * 空值属性 解码时同样还原为空 (不会保留构造函数中的默认值, 如 izApi = false)
+ *
+ * @author Parker
+ * @date 2023-04-24 10:30
+ */
+public class BeanSchemaCodec implements RedisValueCodec {
+
+    /** 值类型 */
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_INT = 2;
+    private static final byte TAG_LONG = 3;
+    private static final byte TAG_BOOLEAN = 4;
+    private static final byte TAG_DOUBLE = 5;
+    private static final byte TAG_DECIMAL = 6;
+    private static final byte TAG_DATE = 7;
+    private static final byte TAG_BEAN = 8;
+
+    /** 内容类型 */
+    private static final byte KIND_BEAN = 1;
+    private static final byte KIND_LIST = 2;
+
+    /** 编码器ID */
+    private final byte id;
+
+    /** 结构 按序号索引 */
+    private final BeanSchema[] schemas;
+
+    /** 结构 按类索引 */
+    private final Map<Class<?>, BeanSchema> schemaMap;
+
+    /** 结构指纹 */
+    private final int fingerprint;
+
+    public BeanSchemaCodec(byte id, List<Class<?>> types) {
+        this.id = id;
+        this.schemas = new BeanSchema[types.size()];
+        this.schemaMap = new HashMap<>(types.size() * 2);
+        for (int i = 0; i < types.size(); i++) {
+            BeanSchema schema = new BeanSchema(i, types.get(i));
+            schemas[i] = schema;
+            schemaMap.put(schema.type, schema);
+        }
+
+        // 解析属性 (嵌套类需已注册)
+        StringBuilder signature = new StringBuilder();
+        for (BeanSchema schema : schemas) {
+            schema.resolve(schemaMap);
+            signature.append(schema.signature()).append(';');
+        }
+        this.fingerprint = signature.toString().hashCode();
+    }
+
+    @Override
+    public byte getId() {
+        return id;
+    }
+
+    @Override
+    public boolean supports(Object value) {
+        if(value instanceof List){
+            List<?> list = (List<?>) value;
+            if(list.isEmpty()){
+                return false;
+            }
+            for (Object item : list) {
+                if(item == null || !schemaMap.containsKey(item.getClass())){
+                    return false;
+                }
+            }
+            return true;
+        }
+        return value != null && schemaMap.containsKey(value.getClass());
+    }
+
+    @Override
+    public void encode(Object value, DataOutput out) throws IOException {
+        out.writeInt(fingerprint);
+        if(value instanceof List){
+            List<?> list = (List<?>) value;
+            out.writeByte(KIND_LIST);
+            writeVarInt(out, list.size());
+            for (Object item : list) {
+                writeBean(out, item);
+            }
+            return;
+        }
+        out.writeByte(KIND_BEAN);
+        writeBean(out, value);
+    }
+
+    @Override
+    public Object decode(DataInput in) throws IOException {
+        if(in.readInt() != fingerprint){
+            throw new IOException("结构指纹不一致");
+        }
+        byte kind = in.readByte();
+        if(kind == KIND_LIST){
+            int size = readVarInt(in);
+            List<Object> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(readBean(in));
+            }
+            return list;
+        }
+        if(kind == KIND_BEAN){
+            return readBean(in);
+        }
+        throw new IOException("未知内容类型: " + kind);
+    }
+
+    // ======================
+
+    private void writeBean(DataOutput out, Object bean) throws IOException {
+        BeanSchema schema = schemaMap.get(bean.getClass());
+        writeVarInt(out, schema.index);
+        for (PropSchema prop : schema.props) {
+            Object value;
+            try {
+                value = prop.getter.invoke(bean);
+            }catch (Exception e){
+                throw new IOException("读取属性失败: " + prop.name, e);
+            }
+            writeValue(out, prop, value);
+        }
+    }
+
+    private Object readBean(DataInput in) throws IOException {
+        int index = readVarInt(in);
+        if(index < 0 || index >= schemas.length){
+            throw new IOException("未知类序号: " + index);
+        }
+        BeanSchema schema = schemas[index];
+        Object bean;
+        try {
+            bean = schema.constructor.newInstance();
+        }catch (Exception e){
+            throw new IOException("创建对象失败: " + schema.type.getName(), e);
+        }
+        for (PropSchema prop : schema.props) {
+            Object value = readValue(in);
+            // 默认值本身为空 无需写入
+            if(value == null && prop.defaultNull){
+                continue;
+            }
+            try {
+                prop.setter.invoke(bean, value);
+            }catch (Exception e){
+                throw new IOException("写入属性失败: " + prop.name, e);
+            }
+        }
+        return bean;
+    }
+
+    private void writeValue(DataOutput out, PropSchema prop, Object value) throws IOException {
+        if(value == null){
+            out.writeByte(TAG_NULL);
+            return;
+        }
+        out.writeByte(prop.tag);
+        switch (prop.tag){
+            case TAG_STRING:
+                writeString(out, (String) value);
+                break;
+            case TAG_INT:
+                out.writeInt((Integer) value);
+                break;
+            case TAG_LONG:
+                out.writeLong((Long) value);
+                break;
+            case TAG_BOOLEAN:
+                out.writeBoolean((Boolean) value);
+                break;
+            case TAG_DOUBLE:
+                out.writeDouble((Double) value);
+                break;
+            case TAG_DECIMAL:
+                writeString(out, ((BigDecimal) value).toString());
+                break;
+            case TAG_DATE:
+                out.writeLong(((Date) value).getTime());
+                break;
+            case TAG_BEAN:
+                writeBean(out, value);
+                break;
+            default:
+                throw new IOException("未知值类型: " + prop.tag);
+        }
+    }
+
+    private Object readValue(DataInput in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag){
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return readString(in);
+            case TAG_INT:
+                return in.readInt();
+            case TAG_LONG:
+                return in.readLong();
+            case TAG_BOOLEAN:
+                return in.readBoolean();
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_DECIMAL:
+                return new BigDecimal(readString(in));
+            case TAG_DATE:
+                return new Date(in.readLong());
+            case TAG_BEAN:
+                return readBean(in);
+            default:
+                throw new IOException("未知值类型: " + tag);
+        }
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0){
+                return value;
+            }
+        }
+        throw new IOException("VarInt 格式错误");
+    }
+
+    // ======================
+
+    /**
+     * 类结构
+     */
+    private static final class BeanSchema {
+
+        /** 序号 */
+        private final int index;
+
+        /** 类 */
+        private final Class<?> type;
+
+        /** 无参构造 */
+        private final Constructor<?> constructor;
+
+        /** 属性 按名称排序 */
+        private PropSchema[] props;
+
+        BeanSchema(int index, Class<?> type) {
+            this.index = index;
+            this.type = type;
+            try {
+                this.constructor = type.getDeclaredConstructor();
+                this.constructor.setAccessible(true);
+            }catch (NoSuchMethodException e){
+                throw new IllegalArgumentException("缺少无参构造: " + type.getName(), e);
+            }
+        }
+
+        void resolve(Map<Class<?>, BeanSchema> schemaMap) {
+            // 默认实例 用于判断属性默认值是否为空
+            Object defaults;
+            try {
+                defaults = constructor.newInstance();
+            }catch (Exception e){
+                throw new IllegalArgumentException("创建对象失败: " + type.getName(), e);
+            }
+
+            List<PropSchema> propList = new ArrayList<>();
+            for (PropDesc propDesc : BeanUtil.getBeanDesc(type).getProps()) {
+                Method getter = propDesc.getGetter();
+                Method setter = propDesc.getSetter();
+                if(getter == null || setter == null){
+                    continue;
+                }
+                byte tag = toTag(propDesc.getFieldClass(), schemaMap);
+                getter.setAccessible(true);
+                setter.setAccessible(true);
+                boolean defaultNull;
+                try {
+                    defaultNull = getter.invoke(defaults) == null;
+                }catch (Exception e){
+                    throw new IllegalArgumentException("读取属性失败: "
+                            + type.getName() + "." + propDesc.getFieldName(), e);
+                }
+                propList.add(new PropSchema(propDesc.getFieldName(), tag, getter, setter, defaultNull));
+            }
+            propList.sort(Comparator.comparing(p -> p.name));
+            this.props = propList.toArray(new PropSchema[0]);
+        }
+
+        String signature() {
+            StringBuilder signature = new StringBuilder(type.getName());
+            for (PropSchema prop : props) {
+                signature.append(',').append(prop.name).append(':').append(prop.tag);
+            }
+            return signature.toString();
+        }
+
+        private byte toTag(Class<?> fieldType, Map<Class<?>, BeanSchema> schemaMap) {
+            if(fieldType == String.class){
+                return TAG_STRING;
+            }
+            if(fieldType == Integer.class || fieldType == int.class){
+                return TAG_INT;
+            }
+            if(fieldType == Long.class || fieldType == long.class){
+                return TAG_LONG;
+            }
+            if(fieldType == Boolean.class || fieldType == boolean.class){
+                return TAG_BOOLEAN;
+            }
+            if(fieldType == Double.class || fieldType == double.class){
+                return TAG_DOUBLE;
+            }
+            if(fieldType == BigDecimal.class){
+                return TAG_DECIMAL;
+            }
+            if(fieldType == Date.class){
+                return TAG_DATE;
+            }
+            if(schemaMap.containsKey(fieldType)){
+                return TAG_BEAN;
+            }
+            throw new IllegalArgumentException("不支持的属性类型: "
+                    + type.getName() + "." + fieldType.getName());
+        }
+    }
+
+    /**
+     * 属性结构
+     */
+    private static final class PropSchema {
+
+        /** 属性名 */
+        private final String name;
+
+        /** 值类型 */
+        private final byte tag;
+
+        /** Getter */
+        private final Method getter;
+
+        /** Setter */
+        private final Method setter;
+
+        /** 默认值是否为空 */
+        private final boolean defaultNull;
+
+        PropSchema(String name, byte tag, Method getter, Method setter, boolean defaultNull) {
+            this.name = name;
+            this.tag = tag;
+            this.getter = getter;
+            this.setter = setter;
+            this.defaultNull = defaultNull;
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.plugins.redis.codec;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.List;
+
+/**
+ * Redis 值序列化 (二进制编码器 + JSON 兜底)
+ *
+ * 二进制格式: [魔数 0xC0][版本][编码器ID][编码内容]
+ * 0xC0 在 UTF-8 中不会出现, 与 JSON 文本不会冲突, 因此新旧格式可在同一库中共存
+ *
+ * 灰度上线: 读取始终兼容两种格式, 写入二进制由开关控制
+ * 需全部节点升级后 再开启写入, 否则旧节点无法识别二进制内容
+ *
+ * @author Parker
+ * @date 2023-04-24 10:30
+ */
+@Slf4j
+public class CodecRedisSerializer implements RedisSerializer<Object> {
+
+    /** 魔数 */
+    public static final byte MAGIC = (byte) 0xC0;
+
+    /** 版本 */
+    public static final byte VERSION = 1;
+
+    /** 头部长度 */
+    private static final int HEADER_LENGTH = 3;
+
+    /** 编码器 按ID索引 */
+    private final RedisValueCodec[] codecIndex = new RedisValueCodec[Byte.MAX_VALUE + 1];
+
+    /** 编码器 */
+    private final List<RedisValueCodec> codecs;
+
+    /** JSON 兜底 */
+    private final RedisSerializer<Object> fallback;
+
+    /** 是否写入二进制 */
+    private final boolean writeBinary;
+
+    public CodecRedisSerializer(List<RedisValueCodec> codecs, RedisSerializer<Object> fallback,
+                                boolean writeBinary) {
+        for (RedisValueCodec codec : codecs) {
+            byte id = codec.getId();
+            if(id <= 0){
+                throw new IllegalArgumentException("Redis 编码器ID 必须在 1 ~ 127 之间: " + codec);
+            }
+            if(codecIndex[id] != null){
+                throw new IllegalArgumentException("Redis 编码器ID 重复: " + id);
+            }
+            codecIndex[id] = codec;
+        }
+        this.codecs = codecs;
+        this.fallback = fallback;
+        this.writeBinary = writeBinary;
+    }
+
+    @Override
+    public byte[] serialize(Object t) throws SerializationException {
+        if(writeBinary && t != null){
+            for (RedisValueCodec codec : codecs) {
+                if(!codec.supports(t)){
+                    continue;
+                }
+                try {
+                    ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+                    bos.write(MAGIC);
+                    bos.write(VERSION);
+                    bos.write(codec.getId());
+                    codec.encode(t, new DataOutputStream(bos));
+                    return bos.toByteArray();
+                }catch (Exception e){
+                    log.warn("Redis 二进制编码失败 使用 JSON: {}", e.getMessage());
+                }
+                break;
+            }
+        }
+        return fallback.serialize(t);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if(bytes == null || bytes.length < HEADER_LENGTH || bytes[0] != MAGIC){
+            return fallback.deserialize(bytes);
+        }
+
+        // 版本或编码器不一致 视为缓存不存在 由上层回源后重新写入
+        RedisValueCodec codec = bytes[2] > 0 ? codecIndex[bytes[2]] : null;
+        if(bytes[1] != VERSION || codec == null){
+            log.warn("Redis 二进制内容无法识别 版本: {} 编码器: {}", bytes[1], bytes[2]);
+            return null;
+        }
+        try {
+            return codec.decode(new DataInputStream(
+                    new ByteArrayInputStream(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH)));
+        }catch (Exception e){
+            log.warn("Redis 二进制解码失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+}
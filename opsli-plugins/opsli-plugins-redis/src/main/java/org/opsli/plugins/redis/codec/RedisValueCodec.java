@@ -0,0 +1,62 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.plugins.redis.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Redis 值编码器 SPI
+ *
+ * 注册为 Spring Bean 后 由 CodecRedisSerializer 自动加载
+ * 编码结果前会写入 魔数 + 版本 + 编码器ID 头部, 未命中任何编码器的值 仍使用 JSON
+ *
+ * @author Parker
+ * @date 2023-04-24 10:30
+ */
+public interface RedisValueCodec {
+
+    /**
+     * 编码器ID 写入头部 全局唯一 (1 ~ 127)
+     * @return byte
+     */
+    byte getId();
+
+    /**
+     * 是否支持该值
+     * @param value 值
+     * @return boolean
+     */
+    boolean supports(Object value);
+
+    /**
+     * 编码
+     * @param value 值
+     * @param out 输出
+     * @throws IOException 异常
+     */
+    void encode(Object value, DataOutput out) throws IOException;
+
+    /**
+     * 解码
+     * @param in 输入
+     * @return Object
+     * @throws IOException 异常 (含结构不一致)
+     */
+    Object decode(DataInput in) throws IOException;
+
+}
@@ -16,17 +16,26 @@
 package org.opsli.plugins.redis.conf;
 
 import cn.hutool.core.io.IoUtil;
-import com.alibaba.fastjson.support.spring.FastJsonRedisSerializer;
 import com.google.common.collect.Lists;
 import lombok.extern.slf4j.Slf4j;
+import org.opsli.plugins.redis.codec.CodecRedisSerializer;
+import org.opsli.plugins.redis.codec.RedisValueCodec;
 import org.opsli.plugins.redis.jsonserializer.FastJson2JsonRedisSerializer;
+import org.opsli.plugins.redis.pushsub.receiver.BaseReceiver;
 import org.opsli.plugins.redis.scripts.RedisScriptCache;
 import org.opsli.plugins.redis.scripts.enums.RedisScriptsEnum;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.adapter.MessageListenerAdapter;
 import org.springframework.data.redis.serializer.RedisSerializer;
 
 import javax.annotation.Resource;
@@ -34,6 +43,7 @@ import java.io.BufferedReader;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Redis 配置类
@@ -45,27 +55,47 @@ import java.util.List;
 @Configuration
 public class RedisPluginConfig {
 
-    private static final FastJson2JsonRedisSerializer<?> FAST_JSON_REDIS_SERIALIZER = new FastJson2JsonRedisSerializer<>(Object.class);
+    private static final FastJson2JsonRedisSerializer<Object> FAST_JSON_REDIS_SERIALIZER = new FastJson2JsonRedisSerializer<>(Object.class);
 
     @Resource
     private LettuceConnectionFactory factory;
 
+    /** 是否写入二进制编码 (需全部节点升级后再开启) */
+    @Value("${opsli.redis.binary-codec:false}")
+    private boolean binaryCodec;
+
+    /**
+     * Redis 值序列化
+     *
+     * 已注册 RedisValueCodec 的类型 采用二进制编码, 其余类型 采用 json
+     * 读取时 自动识别两种格式
+     *
+     * @param codecs 二进制编码器
+     * @return CodecRedisSerializer
+     */
+    @Bean
+    public CodecRedisSerializer codecRedisSerializer(ObjectProvider<RedisValueCodec> codecs) {
+        return new CodecRedisSerializer(
+                codecs.orderedStream().collect(Collectors.toList()),
+                FAST_JSON_REDIS_SERIALIZER, binaryCodec);
+    }
+
     /**
      * RedisTemplate配置
      * 序列化设置
      */
     @Bean
-    public RedisTemplate<String, Object> redisTemplate() {
+    public RedisTemplate<String, Object> redisTemplate(CodecRedisSerializer codecRedisSerializer) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(factory);
         // key采用String的序列化方式
         template.setKeySerializer(RedisSerializer.string());
         // hash的key也采用String的序列化方式
         template.setHashKeySerializer(RedisSerializer.string());
-        // value序列化方式采用 json
-        template.setValueSerializer(FAST_JSON_REDIS_SERIALIZER);
-        // hash的value序列化方式采用 json
-        template.setHashValueSerializer(FAST_JSON_REDIS_SERIALIZER);
+        // value序列化方式采用 二进制编码 + json
+        template.setValueSerializer(codecRedisSerializer);
+        // hash的value序列化方式采用 二进制编码 + json
+        template.setHashValueSerializer(codecRedisSerializer);
 
         template.afterPropertiesSet();
 
@@ -80,6 +110,7 @@ public class RedisPluginConfig {
      * 加载脚本到缓存内
      *
      * 默认开启 全局乐观锁 一劳永逸
+     * 启动时预先 SCRIPT LOAD 到 Redis 后续调用直接 EVALSHA (失败不影响启动 执行时会自动回退 EVAL)
      *
      * @return RedisScriptCache
      */
@@ -98,7 +129,42 @@ public class RedisPluginConfig {
                 redisScriptCache.putScript(scriptEnum,read);
             }catch (Exception ignored){}
         }
+
+        // 预加载脚本
+        try (RedisConnection connection = factory.getConnection()) {
+            for (RedisScript<?> redisScript : redisScriptCache.getRedisScripts()) {
+                connection.scriptingCommands().scriptLoad(
+                        redisScript.getScriptAsString().getBytes(StandardCharsets.UTF_8));
+            }
+        }catch (Exception e){
+            log.warn("Redis 脚本预加载失败: {}", e.getMessage());
+        }
         return redisScriptCache;
     }
 
+
+    /**
+     * 消息订阅容器
+     *
+     * 自动注册全部 BaseReceiver 实现，消息体与 RedisTemplate 采用相同的序列化方式
+     *
+     * @param receivers 消息订阅实现
+     * @param codecRedisSerializer 值序列化
+     * @return RedisMessageListenerContainer
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(ObjectProvider<BaseReceiver> receivers,
+                                                                       CodecRedisSerializer codecRedisSerializer) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        receivers.orderedStream().forEach(receiver -> {
+            MessageListenerAdapter adapter = new MessageListenerAdapter(receiver, "receiveMessage");
+            // 发送时 采用 value 序列化方式
+            adapter.setSerializer(codecRedisSerializer);
+            adapter.afterPropertiesSet();
+            container.addMessageListener(adapter, new ChannelTopic(receiver.getListenerChannel()));
+        });
+        return container;
+    }
+
 }
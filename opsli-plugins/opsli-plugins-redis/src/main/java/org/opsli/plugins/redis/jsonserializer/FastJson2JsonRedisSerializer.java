@@ -66,7 +66,6 @@ public class FastJson2JsonRedisSerializer<T> implements RedisSerializer<T> {
             return null;
         }
         try {
-            String sourceStr = new String(bytes);
             Object parse = JSON.parseObject(
                     bytes,
                     fastJsonConfig.getCharset(),
@@ -76,8 +75,13 @@ public class FastJson2JsonRedisSerializer<T> implements RedisSerializer<T> {
                     JSON.DEFAULT_PARSER_FEATURE,
                     fastJsonConfig.getFeatures());
 
+            // 只有 字符串与数字 需要验证补位 其余类型 (对象、数组、布尔等) 避免多余的字符串拷贝
+            if(!(parse instanceof String || parse instanceof Number)){
+                return cast(parse);
+            }
+
             // 验证字符串
-            String verifyStr = sourceStr;
+            String verifyStr = new String(bytes, DEFAULT_CHARSET);
             boolean wrap = StrUtil.isWrap(verifyStr, SYMBOL);
             if(wrap){
                 // 去掉前后缀
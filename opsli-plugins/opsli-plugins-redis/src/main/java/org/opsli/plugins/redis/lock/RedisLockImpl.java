@@ -15,17 +15,28 @@
  */
 package org.opsli.plugins.redis.lock;
 
-import cn.hutool.core.thread.ThreadUtil;
 import cn.hutool.core.util.IdUtil;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.extern.slf4j.Slf4j;
+import org.opsli.common.enums.SystemInfo;
 import org.opsli.plugins.redis.RedisLockPlugins;
 import org.opsli.plugins.redis.RedisPlugin;
+import org.opsli.plugins.redis.pushsub.receiver.BaseReceiver;
 import org.opsli.plugins.redis.scripts.enums.RedisScriptsEnum;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Redis 锁实现
@@ -43,15 +54,37 @@ import java.util.List;
  * 2、这把锁只能是非阻塞的，无论成功还是失败都直接返回。
  * 3、这把锁是非重入的，一个线程获得锁之后，在释放锁之前，无法再次获得该锁，因为使用到的key在tair中已经存在。无法再执行put操作。
  *
+ * 等待锁时 不再轮询 Redis, 等待线程挂起在本地按锁名划分的等待队列上, 由解锁脚本发布的解锁消息唤醒
+ * 本节点解锁时 直接唤醒本地等待者, 解锁消息携带节点ID 本节点收到自身消息时跳过 避免重复唤醒
+ * 全部持有锁的续命 由一个共享的调度线程完成 不再为每把锁创建看门狗线程
+ *
  * @author Parker
  * @date 2020-09-16 11:47
  */
 @Slf4j
 @Service
-public class RedisLockImpl implements RedisLockPlugins {
+public class RedisLockImpl implements RedisLockPlugins, DisposableBean {
+
+    /** 解锁通知信道 */
+    private static final String UNLOCK_CHANNEL = BaseReceiver.BASE_CHANNEL + RedisLockReceiver.CHANNEL;
+
+    /** 单次等待最长时间 (毫秒) 兜底 防止通知丢失或锁自然过期时无人唤醒 */
+    private static final long MAX_WAIT_SLICE = 1000L;
+
+    /** 续命间隔 为锁有效时间的 1/3 */
+    private static final int RENEW_RATIO = 3;
+
+    /** 本地等待队列 锁名称 - 等待者 */
+    private final ConcurrentMap<String, LockWaiter> waiterMap = new ConcurrentHashMap<>();
 
-    /** 锁前缀 */
-    private static final String LOCK_NAME_PREFIX = "lock:";
+    /** 续命任务 锁凭证 - 任务 */
+    private final ConcurrentMap<String, ScheduledFuture<?>> renewMap = new ConcurrentHashMap<>();
+
+    /** 看门狗 共享调度线程 */
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                    .setNameFormat("Redis-Lock-Watchdog")
+                    .setDaemon(true).build());
 
     @Autowired
     private RedisPlugin redisPlugin;
@@ -85,22 +118,48 @@ public class RedisLockImpl implements RedisLockPlugins {
             return false;
         }
         try {
-            List<String> keys = Collections.singletonList(LOCK_NAME_PREFIX + redisLock.getLockName());
-            Long ret = (Long) redisPlugin.callScript(RedisScriptsEnum.REDIS_UN_LOCK, keys,
-                    redisLock.getIdentifier());
+            // 停止续命
+            ScheduledFuture<?> renewFuture = renewMap.remove(redisLock.getIdentifier());
+            if(renewFuture != null){
+                renewFuture.cancel(false);
+            }
+
+            List<String> keys = Arrays.asList(redisLock.getLockName(), UNLOCK_CHANNEL);
+            Long ret = redisPlugin.callScript(RedisScriptsEnum.REDIS_UN_LOCK, Long.class, keys,
+                    redisLock.getIdentifier(), SystemInfo.INSTANCE.getSystemID());
             // 减去线程锁
             redisLock.threadUnLock();
             log.info(this.getInfo("分布式锁 - 解除",redisLock));
             if(ret == null){
                 return false;
             }
-            return 1 == ret;
+            if(1 == ret){
+                // 本节点等待者 直接唤醒 无需等待消息回传
+                this.signal(redisLock.getLockName());
+                return true;
+            }
+            return false;
         }catch (Exception e){
             log.error(e.getMessage(),e);
         }
         return false;
     }
 
+    @Override
+    public void destroy() {
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * 唤醒等待该锁的一个线程
+     * @param lockName 锁名称
+     */
+    void signal(String lockName) {
+        LockWaiter waiter = waiterMap.get(lockName);
+        if(waiter != null){
+            waiter.semaphore.release();
+        }
+    }
 
     /**
      * Redis 加分布式锁
@@ -110,70 +169,121 @@ public class RedisLockImpl implements RedisLockPlugins {
     private RedisLock tryLock(RedisLock redisLock,String identifier) {
         try {
             List<String> keys = Collections.singletonList(redisLock.getLockName());
+            redisLock.setIdentifier(identifier);
+
+            // 无竞争时 仅一次脚本调用
+            Long ret = this.callLockScript(keys, redisLock, identifier);
+            if(ret == null){
+                return null;
+            }
+            if(1 == ret){
+                return redisLock;
+            }
+
             long acquireTimeEnd = System.currentTimeMillis() + redisLock.getAcquireTimeOut();
-            boolean acquired = false;
-            // 尝试获得锁
-            while (!acquired && (System.currentTimeMillis() < acquireTimeEnd)) {
-                Long ret = (Long) redisPlugin.callScript(RedisScriptsEnum.REDIS_LOCK, keys,
-                        identifier,redisLock.getLockTimeOut());
-                if(ret == null){
-                    break;
-                }
-                if (1 == ret){
-                    acquired = true;
-                } else {
-                    ThreadUtil.sleep(10);
+            // 先加入等待队列 再重试 避免错过两次之间的解锁通知
+            LockWaiter waiter = this.subscribe(redisLock.getLockName());
+            try {
+                while (true) {
+                    ret = this.callLockScript(keys, redisLock, identifier);
+                    if(ret == null){
+                        return null;
+                    }
+                    if(1 == ret){
+                        return redisLock;
+                    }
+
+                    long remaining = acquireTimeEnd - System.currentTimeMillis();
+                    if(remaining <= 0){
+                        return null;
+                    }
+                    // 挂起 等待解锁通知
+                    waiter.semaphore.tryAcquire(Math.min(remaining, MAX_WAIT_SLICE), TimeUnit.MILLISECONDS);
                 }
+            }finally {
+                this.unsubscribe(redisLock.getLockName());
             }
-            redisLock.setIdentifier(identifier);
-            return acquired ? redisLock : null;
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            return null;
         }catch (Exception e){
             log.error(e.getMessage(),e);
             return null;
         }
     }
 
+    /**
+     * 执行加锁脚本
+     */
+    private Long callLockScript(List<String> keys, RedisLock redisLock, String identifier) {
+        return redisPlugin.callScript(RedisScriptsEnum.REDIS_LOCK, Long.class, keys,
+                identifier,redisLock.getLockTimeOut());
+    }
+
+    /**
+     * 加入等待队列
+     * @param lockName 锁名称
+     * @return LockWaiter
+     */
+    private LockWaiter subscribe(String lockName) {
+        return waiterMap.compute(lockName, (k, v) -> {
+            LockWaiter waiter = v != null ? v : new LockWaiter();
+            waiter.count++;
+            return waiter;
+        });
+    }
+
+    /**
+     * 退出等待队列
+     * @param lockName 锁名称
+     */
+    private void unsubscribe(String lockName) {
+        waiterMap.computeIfPresent(lockName, (k, v) -> --v.count <= 0 ? null : v);
+    }
+
     /**
      * Redis 分布式锁 - 看门狗 自动续命使用
+     * 由共享调度线程 在锁有效时间的 1/3 处续命
      * @param redisLock 锁
-     * @return boolean
      */
     private void lockDog(RedisLock redisLock) {
         if(redisLock == null){
             return;
         }
-        Thread t = new Thread(()->{
-            try {
-                // 倒计时前续命
-                long countDownTime = 3000L;
-                // 锁释放时间
-                long lockTimeOutEnd = System.currentTimeMillis() + redisLock.getLockTimeOut();
-                // 看门狗检测 当前线程是否还存活
-                while (true) {
-                    int lock = redisLock.threadGetLock();
-                    if(lock <= 0){
-                        // 再一次确定 解锁 防止线程差 最后加锁
-                        this.unLock(redisLock);
-                        break;
-                    }
-
-                    ThreadUtil.sleep(10);
+        long delay = Math.max(1L, redisLock.getLockTimeOut() / RENEW_RATIO);
+        ScheduledFuture<?> future = watchdog.schedule(() -> this.renew(redisLock),
+                delay, TimeUnit.MILLISECONDS);
+        renewMap.put(redisLock.getIdentifier(), future);
+    }
 
-                    // 如果 距离倒计时 前 2000 毫秒还没有动作 则执行续命
-                    if((System.currentTimeMillis()+countDownTime) >= lockTimeOutEnd){
-                        Object o = this.tryLock(redisLock,redisLock.getIdentifier());
-                        if(o != null){
-                            lockTimeOutEnd = System.currentTimeMillis() + redisLock.getLockTimeOut();
-                            log.info(this.getInfo("分布式锁 - 续命",redisLock));
-                        }
-                    }
+    /**
+     * 续命
+     * @param redisLock 锁
+     */
+    private void renew(RedisLock redisLock) {
+        String identifier = redisLock.getIdentifier();
+        // 已解锁
+        if(redisLock.threadGetLock() <= 0 || !renewMap.containsKey(identifier)){
+            renewMap.remove(identifier);
+            return;
+        }
+        try {
+            // 专用续命脚本 仅在仍持有锁时 pexpire 与解锁并发时 不会重新创建锁
+            Long ret = redisPlugin.callScript(RedisScriptsEnum.REDIS_LOCK_RENEW, Long.class,
+                    Collections.singletonList(redisLock.getLockName()), identifier, redisLock.getLockTimeOut());
+            if(ret != null && 1 == ret){
+                log.info(this.getInfo("分布式锁 - 续命",redisLock));
+                // 解锁与续命并发时 不再继续调度
+                if(renewMap.containsKey(identifier)){
+                    this.lockDog(redisLock);
                 }
-            }catch (Exception e){
-                log.error(e.getMessage(),e);
+                return;
             }
-        });
-        t.setName(this.getInfo("分布式锁看门狗",redisLock));
-        t.start();
+            log.warn(this.getInfo("分布式锁 - 续命失败",redisLock));
+        }catch (Exception e){
+            log.error(e.getMessage(),e);
+        }
+        renewMap.remove(identifier);
     }
 
     /**
@@ -186,12 +296,18 @@ public class RedisLockImpl implements RedisLockPlugins {
         return name + " 锁名称: "+redisLock.getLockName()+" 锁凭证: "+redisLock.getIdentifier();
     }
 
+    // ==========================
 
-    public static void main(String[] args) {
-        int count = 0;
-        while (count <= 10) {
-            System.out.println(count);
-            count++;
-        }
+    /**
+     * 本地等待者
+     */
+    private static final class LockWaiter {
+
+        /** 唤醒信号 */
+        private final Semaphore semaphore = new Semaphore(0);
+
+        /** 等待线程数 (仅在 compute 中修改) */
+        private int count;
     }
+
 }
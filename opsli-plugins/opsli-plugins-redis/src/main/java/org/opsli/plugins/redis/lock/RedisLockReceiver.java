@@ -0,0 +1,64 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.plugins.redis.lock;
+
+import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.opsli.common.enums.SystemInfo;
+import org.opsli.plugins.redis.pushsub.receiver.BaseReceiver;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Redis 锁 解锁消息订阅
+ *
+ * 由解锁脚本发布 唤醒本节点上等待该锁的线程
+ * 消息格式 节点ID:锁名称, 本节点解锁时已直接唤醒 跳过自身消息
+ *
+ * @author Parker
+ * @date 2020-09-16 11:47
+ */
+@Slf4j
+@Component
+public class RedisLockReceiver extends BaseReceiver {
+
+    /** 监听信道 */
+    public static final String CHANNEL = "lock";
+
+    @Autowired
+    private RedisLockImpl redisLockImpl;
+
+    public RedisLockReceiver() {
+        super(CHANNEL);
+    }
+
+    @Override
+    public void receiveMessage(String msg) {
+        if(msg == null){
+            return;
+        }
+        int index = msg.indexOf(StrUtil.C_COLON);
+        if(index < 0){
+            return;
+        }
+        // 自身发出的消息 已在解锁时唤醒
+        if(SystemInfo.INSTANCE.getSystemID().equals(msg.substring(0, index))){
+            return;
+        }
+        redisLockImpl.signal(msg.substring(index + 1));
+    }
+
+}
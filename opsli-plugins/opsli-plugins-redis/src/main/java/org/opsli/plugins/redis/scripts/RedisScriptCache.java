@@ -16,13 +16,19 @@
 package org.opsli.plugins.redis.scripts;
 
 import org.opsli.plugins.redis.scripts.enums.RedisScriptsEnum;
+import org.springframework.data.redis.core.script.RedisScript;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 /**
  * 脚本缓存
  *
+ * 脚本在启动时构建为不可变的 RedisScript (预先计算 SHA1)
+ * 执行时走 EVALSHA 仅在 NOSCRIPT 时回退为 EVAL
+ *
  * @author Parker
  * @date 2020-09-16 11:47
  */
@@ -31,6 +37,9 @@ public class RedisScriptCache {
     /** 脚本存放容器 */
     private final ConcurrentMap<RedisScriptsEnum, String> scriptCacheMap = new ConcurrentHashMap<>();
 
+    /** RedisScript 存放容器 (脚本 + 返回类型) */
+    private final ConcurrentMap<String, RedisScript<?>> redisScriptMap = new ConcurrentHashMap<>();
+
     /**
      * 获得缓存脚本
      * @param scriptsEnum 脚本Enum
@@ -57,6 +66,12 @@ public class RedisScriptCache {
         }
         try {
             scriptCacheMap.put(scriptsEnum,script);
+            // 清除 旧脚本 按其他返回类型 构建的变体
+            String keyPrefix = scriptsEnum.name() + ":";
+            redisScriptMap.keySet().removeIf(k -> k.startsWith(keyPrefix));
+            // 按默认返回类型 预先构建
+            RedisScript<?> redisScript = RedisScript.of(script, scriptsEnum.getResultType());
+            redisScriptMap.put(getRedisScriptKey(scriptsEnum, scriptsEnum.getResultType()), redisScript);
         } catch (Exception e) {
             ret = false;
             e.printStackTrace();
@@ -64,4 +79,42 @@ public class RedisScriptCache {
         return ret;
     }
 
+    /**
+     * 获得 RedisScript
+     * @param scriptsEnum 脚本Enum
+     * @param resultType 返回类型
+     * @param <T> 泛型
+     * @return RedisScript 脚本不存在时为 null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> RedisScript<T> getRedisScript(RedisScriptsEnum scriptsEnum, Class<T> resultType){
+        if(scriptsEnum == null || resultType == null){
+            return null;
+        }
+        String script = scriptCacheMap.get(scriptsEnum);
+        if(script == null){
+            return null;
+        }
+        String key = getRedisScriptKey(scriptsEnum, resultType);
+        RedisScript<?> redisScript = redisScriptMap.get(key);
+        // 与 putScript 并发时 可能取到旧脚本的变体 按脚本内容校验 (同一实例 直接命中)
+        if(redisScript == null || !script.equals(redisScript.getScriptAsString())){
+            redisScript = RedisScript.of(script, resultType);
+            redisScriptMap.put(key, redisScript);
+        }
+        return (RedisScript<T>) redisScript;
+    }
+
+    /**
+     * 获得全部 RedisScript
+     * @return Collection
+     */
+    public Collection<RedisScript<?>> getRedisScripts(){
+        return Collections.unmodifiableCollection(redisScriptMap.values());
+    }
+
+    private static String getRedisScriptKey(RedisScriptsEnum scriptsEnum, Class<?> resultType){
+        return scriptsEnum.name() + ":" + resultType.getName();
+    }
+
 }
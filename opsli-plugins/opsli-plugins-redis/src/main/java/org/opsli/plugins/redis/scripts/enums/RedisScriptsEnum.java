@@ -25,16 +25,24 @@ package org.opsli.plugins.redis.scripts.enums;
 public enum RedisScriptsEnum {
 
     /** Redis加锁脚本 */
-    REDIS_LOCK("/lua/redis_lock.lua"),
+    REDIS_LOCK("/lua/redis_lock.lua", Long.class),
     /** Redis解锁脚本 */
-    REDIS_UN_LOCK("/lua/redis_unlock.lua")
+    REDIS_UN_LOCK("/lua/redis_unlock.lua", Long.class),
+    /** Redis锁续命脚本 */
+    REDIS_LOCK_RENEW("/lua/redis_lock_renew.lua", Long.class),
+    /** Redis令牌桶限流脚本 */
+    REDIS_TOKEN_BUCKET("/lua/redis_token_bucket.lua", Long.class)
     ;
 
     /** 脚本路径 */
     private final String path;
 
-    RedisScriptsEnum(String path){
+    /** 默认返回类型 */
+    private final Class<?> resultType;
+
+    RedisScriptsEnum(String path, Class<?> resultType){
         this.path = path;
+        this.resultType = resultType;
     }
 
     /**
@@ -44,4 +52,12 @@ public enum RedisScriptsEnum {
     public String getPath() {
         return path;
     }
+
+    /**
+     * 获得默认返回类型
+     * @return resultType
+     */
+    public Class<?> getResultType() {
+        return resultType;
+    }
 }
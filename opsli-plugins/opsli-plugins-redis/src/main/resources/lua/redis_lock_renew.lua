@@ -0,0 +1,9 @@
+-- 续命脚本
+-- key1：要续命的锁名称 argv1:当前线程或主机的地址 argv2：锁存活的时间ms
+-- 仅当前线程仍持有锁时 才刷新过期时间 不会重新创建已释放的锁
+if redis.call('hexists', KEYS[1], ARGV[1]) == 1 then
+   redis.call('pexpire', KEYS[1], tonumber(ARGV[2]))
+   return 1
+end
+-- 锁已释放或已被他人持有，返回失败
+return 0
\ No newline at end of file
@@ -0,0 +1,30 @@
+-- 令牌桶限流脚本
+-- key1：令牌桶名称 argv1：每秒生成令牌数 argv2：桶容量 argv3：申请令牌数
+-- 返回实际获得的令牌数 (0 ~ argv3) 速率与容量每次传入 变更后立即生效
+-- 使用 Redis 服务器时间 避免各节点时钟不一致
+redis.replicate_commands()
+local rate = tonumber(ARGV[1])
+local capacity = tonumber(ARGV[2])
+local requested = tonumber(ARGV[3])
+local time = redis.call('time')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local bucket = redis.call('hmget', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(bucket[1])
+local ts = tonumber(bucket[2])
+if tokens == nil or ts == nil then
+   tokens = capacity
+   ts = now
+end
+
+-- 补充令牌
+tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate / 1000)
+
+-- 扣减令牌
+local granted = math.min(requested, math.floor(tokens))
+tokens = tokens - granted
+
+redis.call('hmset', KEYS[1], 'tokens', tokens, 'ts', now)
+-- 桶装满后即可过期
+redis.call('pexpire', KEYS[1], math.ceil(capacity * 1000 / rate) + 1000)
+return granted
@@ -1,4 +1,5 @@
 -- 解锁脚本
+-- key1：要解锁的名称 key2：解锁通知信道 argv1:当前线程或主机的地址 argv2:解锁节点ID
 -- 判断是当前线程持有锁，避免解了其他线程加的锁
 if redis.call('hexists',KEYS[1],ARGV[1]) == 1 then
    -- 重入次数大于1，扣减次数
@@ -7,6 +8,11 @@ if redis.call('hexists',KEYS[1],ARGV[1]) == 1 then
    -- 重入次数等于1，删除该锁
    --else
        redis.call('del', KEYS[1]);
+       -- 通知等待者 消息格式 节点ID:锁名称 (解锁节点已在本地唤醒 收到自身消息时跳过)
+       -- 参数经 JSON 序列化 需先解码
+       if KEYS[2] and ARGV[2] then
+          redis.call('publish', KEYS[2], cjson.encode(cjson.decode(ARGV[2]) .. ':' .. KEYS[1]));
+       end
        return 1
    --end
 -- 判断不是当前线程持有锁，返回解锁失败
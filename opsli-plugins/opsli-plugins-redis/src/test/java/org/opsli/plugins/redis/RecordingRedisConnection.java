@@ -0,0 +1,190 @@
+package org.opsli.plugins.redis;
+
+import org.opsli.plugins.redis.scripts.RedisScriptCache;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * 录制型 Redis 连接 (测试桩)
+ *
+ * 不连接真实 Redis 记录发往连接的每条命令及其参数字节 返回值由 handler 决定
+ *
+ * @author Parker
+ * @date 2022-08-07 17:33
+ */
+public class RecordingRedisConnection implements InvocationHandler {
+
+    /** 连接生命周期方法 不计入命令 */
+    private static final Set<String> LIFECYCLE_METHODS = new HashSet<>(Arrays.asList(
+            "close", "isClosed", "isPipelined", "isQueueing", "isSubscribed",
+            "getNativeConnection", "getSubscription", "equals", "hashCode", "toString"
+    ));
+
+    /** 已录制命令 */
+    private final List<Call> calls = new ArrayList<>();
+
+    /** 命令处理 命令名 + 参数 -> 返回值 */
+    private final BiFunction<String, Object[], Object> handler;
+
+    private final RedisConnection connection;
+
+    public RecordingRedisConnection(BiFunction<String, Object[], Object> handler) {
+        this.handler = handler;
+        this.connection = (RedisConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RedisConnection.class}, this);
+    }
+
+    /**
+     * 连接工厂 每次返回同一个录制连接
+     * @return RedisConnectionFactory
+     */
+    public RedisConnectionFactory factory() {
+        return (RedisConnectionFactory) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RedisConnectionFactory.class}, (proxy, method, args) -> {
+                    if("getConnection".equals(method.getName())){
+                        return connection;
+                    }
+                    if("getConvertPipelineAndTxResults".equals(method.getName())){
+                        return true;
+                    }
+                    return defaultValue(method.getReturnType());
+                });
+    }
+
+    /**
+     * 与 RedisPluginConfig 相同的序列化配置
+     * @param valueSerializer 值序列化
+     * @return RedisTemplate
+     */
+    public RedisTemplate<String, Object> template(RedisSerializer<Object> valueSerializer) {
+        RedisTemplate<String, Object> template = new RedisTemplate<>();
+        template.setConnectionFactory(factory());
+        template.setKeySerializer(RedisSerializer.string());
+        template.setHashKeySerializer(RedisSerializer.string());
+        template.setValueSerializer(valueSerializer);
+        template.setHashValueSerializer(valueSerializer);
+        template.afterPropertiesSet();
+        return template;
+    }
+
+    /**
+     * 基于录制连接的 RedisPlugin
+     * @param valueSerializer 值序列化
+     * @param redisScriptCache 脚本缓存
+     * @return RedisPlugin
+     */
+    public RedisPlugin plugin(RedisSerializer<Object> valueSerializer, RedisScriptCache redisScriptCache) {
+        RedisPlugin redisPlugin = new RedisPlugin();
+        ReflectionTestUtils.setField(redisPlugin, "redisTemplate", template(valueSerializer));
+        ReflectionTestUtils.setField(redisPlugin, "redisScriptCache", redisScriptCache);
+        return redisPlugin;
+    }
+
+    /**
+     * 获得已录制命令
+     * @return List
+     */
+    public List<Call> getCalls() {
+        synchronized (calls) {
+            return new ArrayList<>(calls);
+        }
+    }
+
+    /**
+     * 清空已录制命令
+     */
+    public void reset() {
+        synchronized (calls) {
+            calls.clear();
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        String name = method.getName();
+        // xxxCommands() 直接返回自身 命令仍由本连接录制
+        if(name.endsWith("Commands") && method.getParameterCount() == 0
+                && method.getReturnType().isInstance(proxy)){
+            return proxy;
+        }
+        if(LIFECYCLE_METHODS.contains(name)){
+            if("equals".equals(name)){
+                return proxy == args[0];
+            }
+            if("hashCode".equals(name)){
+                return System.identityHashCode(proxy);
+            }
+            if("toString".equals(name)){
+                return "RecordingRedisConnection";
+            }
+            return defaultValue(method.getReturnType());
+        }
+
+        Object[] currArgs = args == null ? new Object[0] : args;
+        synchronized (calls) {
+            calls.add(new Call(name, currArgs));
+        }
+        Object ret = handler.apply(name, currArgs);
+        return ret != null ? ret : defaultValue(method.getReturnType());
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if(type == boolean.class){
+            return false;
+        }
+        if(type == long.class){
+            return 0L;
+        }
+        if(type == int.class){
+            return 0;
+        }
+        if(type == double.class){
+            return 0D;
+        }
+        return null;
+    }
+
+    /**
+     * 已录制的命令
+     */
+    public static final class Call {
+
+        /** 命令 (连接方法名) */
+        public final String command;
+
+        /** 参数 */
+        public final Object[] args;
+
+        Call(String command, Object[] args) {
+            this.command = command;
+            this.args = args;
+        }
+
+        /**
+         * 参数转为字符串 (byte[] 按 UTF-8)
+         * @param index 下标
+         * @return String
+         */
+        public String argAsString(int index) {
+            Object arg = args[index];
+            if(arg instanceof byte[]){
+                return new String((byte[]) arg, StandardCharsets.UTF_8);
+            }
+            return String.valueOf(arg);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package org.opsli.plugins.redis.lock;
+
+import cn.hutool.core.io.IoUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.opsli.common.enums.SystemInfo;
+import org.opsli.plugins.redis.RecordingRedisConnection;
+import org.opsli.plugins.redis.RedisPlugin;
+import org.opsli.plugins.redis.codec.CodecRedisSerializer;
+import org.opsli.plugins.redis.jsonserializer.FastJson2JsonRedisSerializer;
+import org.opsli.plugins.redis.scripts.RedisScriptCache;
+import org.opsli.plugins.redis.scripts.enums.RedisScriptsEnum;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Redis 分布式锁 竞争测试
+ *
+ * 录制连接 + 内存脚本执行器 模拟 Redis 校验互斥, 以及等待者由解锁唤醒 不轮询 Redis
+ *
+ * @author Parker
+ * @date 2022-08-07 17:33
+ */
+public class RedisLockContentionTest {
+
+    /** 竞争线程数 */
+    private static final int THREAD_COUNT = 200;
+
+    /** 锁名称 */
+    private static final String LOCK_NAME = "contention";
+
+    private final RedisSerializer<Object> valueSerializer = new CodecRedisSerializer(
+            Collections.emptyList(), new FastJson2JsonRedisSerializer<>(Object.class), true);
+
+    private InMemoryLockScripts scripts;
+    private RecordingRedisConnection connection;
+    private RedisPlugin redisPlugin;
+    private RedisLockImpl redisLockImpl;
+
+    @Before
+    public void init(){
+        RedisScriptCache redisScriptCache = new RedisScriptCache();
+        for (RedisScriptsEnum scriptEnum : RedisScriptsEnum.values()) {
+            redisScriptCache.putScript(scriptEnum,
+                    IoUtil.read(getClass().getResourceAsStream(scriptEnum.getPath()), StandardCharsets.UTF_8));
+        }
+        scripts = new InMemoryLockScripts(redisScriptCache);
+        connection = new RecordingRedisConnection(scripts::eval);
+        redisPlugin = connection.plugin(valueSerializer, redisScriptCache);
+
+        redisLockImpl = new RedisLockImpl();
+        ReflectionTestUtils.setField(redisLockImpl, "redisPlugin", redisPlugin);
+    }
+
+    @After
+    public void destroy(){
+        redisLockImpl.destroy();
+    }
+
+    @Test
+    public void contention() throws InterruptedException {
+        AtomicInteger acquired = new AtomicInteger();
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger maxInside = new AtomicInteger();
+
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREAD_COUNT);
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    RedisLock redisLock = new RedisLock()
+                            .setLockName(LOCK_NAME)
+                            .setAcquireTimeOut(60000L)
+                            .setLockTimeOut(30000L);
+                    redisLock = redisLockImpl.tryLock(redisLock);
+                    if(redisLock == null){
+                        return;
+                    }
+                    try {
+                        acquired.incrementAndGet();
+                        int curr = inside.incrementAndGet();
+                        maxInside.accumulateAndGet(curr, Math::max);
+                        inside.decrementAndGet();
+                    }finally {
+                        redisLockImpl.unLock(redisLock);
+                    }
+                }catch (InterruptedException e){
+                    Thread.currentThread().interrupt();
+                }finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        Assert.assertTrue(done.await(2, TimeUnit.MINUTES));
+        executor.shutdown();
+
+        Assert.assertEquals(THREAD_COUNT, acquired.get());
+        // 互斥
+        Assert.assertEquals(1, maxInside.get());
+        // 锁已释放
+        Assert.assertFalse(scripts.exists(new RedisLock().setLockName(LOCK_NAME).getLockName()));
+    }
+
+    @Test
+    public void waiterWokenByUnlock() throws InterruptedException {
+        RedisLock holder = redisLockImpl.tryLock(this.newLock(1000L));
+        Assert.assertNotNull(holder);
+
+        AtomicReference<RedisLock> waiterLock = new AtomicReference<>();
+        Thread waiter = new Thread(() -> {
+            RedisLock redisLock = redisLockImpl.tryLock(this.newLock(60000L));
+            waiterLock.set(redisLock);
+            if(redisLock != null){
+                redisLockImpl.unLock(redisLock);
+            }
+        });
+        waiter.start();
+
+        // 等待者 首次加锁失败 加入等待队列后 重试仍失败 (加锁 1 次 + 等待者 2 次)
+        ConcurrentMap<?, ?> waiterMap = (ConcurrentMap<?, ?>) ReflectionTestUtils.getField(redisLockImpl, "waiterMap");
+        Assert.assertNotNull(waiterMap);
+        long deadline = System.currentTimeMillis() + 10000L;
+        while ((connection.getCalls().size() < 3 || !waiterMap.containsKey(holder.getLockName()))
+                && System.currentTimeMillis() < deadline){
+            Thread.sleep(1);
+        }
+        Assert.assertEquals(3, connection.getCalls().size());
+
+        Assert.assertTrue(redisLockImpl.unLock(holder));
+        waiter.join(10000L);
+        Assert.assertNotNull(waiterLock.get());
+
+        // 解锁 唤醒一次 等待者加锁 + 解锁; 其间不轮询 Redis
+        Assert.assertEquals(6, connection.getCalls().size());
+        Assert.assertFalse(scripts.exists(holder.getLockName()));
+    }
+
+    @Test
+    public void selfUnlockMessageSkipped(){
+        String lockName = this.newLock(1000L).getLockName();
+        RedisLockReceiver receiver = new RedisLockReceiver();
+        ReflectionTestUtils.setField(receiver, "redisLockImpl", redisLockImpl);
+
+        Object waiter = ReflectionTestUtils.invokeMethod(redisLockImpl, "subscribe", lockName);
+        Assert.assertNotNull(waiter);
+        Semaphore semaphore = (Semaphore) ReflectionTestUtils.getField(waiter, "semaphore");
+        Assert.assertNotNull(semaphore);
+
+        // 本节点解锁时 已直接唤醒 自身消息不再重复唤醒
+        receiver.receiveMessage(SystemInfo.INSTANCE.getSystemID() + ":" + lockName);
+        Assert.assertEquals(0, semaphore.availablePermits());
+
+        // 其他节点解锁 唤醒一次
+        receiver.receiveMessage("other-node:" + lockName);
+        Assert.assertEquals(1, semaphore.availablePermits());
+    }
+
+    @Test
+    public void renewAfterUnlock(){
+        RedisLock redisLock = redisLockImpl.tryLock(new RedisLock()
+                .setLockName(LOCK_NAME)
+                .setAcquireTimeOut(1000L)
+                .setLockTimeOut(30000L));
+        Assert.assertNotNull(redisLock);
+
+        // 持有锁时 续命成功
+        Assert.assertEquals(Long.valueOf(1L), this.callRenew(redisLock));
+
+        // 模拟 续命任务已通过本地检查 此时锁被释放 (绕过 unLock 保留续命任务)
+        redisPlugin.callScript(RedisScriptsEnum.REDIS_UN_LOCK, Long.class,
+                Collections.singletonList(redisLock.getLockName()), redisLock.getIdentifier());
+        Assert.assertFalse(scripts.exists(redisLock.getLockName()));
+
+        ReflectionTestUtils.invokeMethod(redisLockImpl, "renew", redisLock);
+
+        // 续命 不会重新创建锁 且续命任务被移除
+        Assert.assertFalse(scripts.exists(redisLock.getLockName()));
+        ConcurrentMap<?, ?> renewMap = (ConcurrentMap<?, ?>) ReflectionTestUtils.getField(redisLockImpl, "renewMap");
+        Assert.assertNotNull(renewMap);
+        Assert.assertFalse(renewMap.containsKey(redisLock.getIdentifier()));
+    }
+
+    private RedisLock newLock(long acquireTimeOut) {
+        return new RedisLock()
+                .setLockName(LOCK_NAME)
+                .setAcquireTimeOut(acquireTimeOut)
+                .setLockTimeOut(30000L);
+    }
+
+    private Long callRenew(RedisLock redisLock) {
+        return redisPlugin.callScript(RedisScriptsEnum.REDIS_LOCK_RENEW, Long.class,
+                Collections.singletonList(redisLock.getLockName()),
+                redisLock.getIdentifier(), redisLock.getLockTimeOut());
+    }
+
+    /**
+     * 内存脚本执行器 按 SHA1 执行与 Lua 脚本等价的逻辑
+     */
+    private static final class InMemoryLockScripts {
+
+        /** 锁 hash 锁名称 - (凭证 - 重入次数) */
+        private final Map<String, Map<String, Long>> hashes = new HashMap<>();
+        /** 过期时间 */
+        private final Map<String, Long> expireAt = new HashMap<>();
+
+        private final String lockSha;
+        private final String unLockSha;
+        private final String renewSha;
+
+        InMemoryLockScripts(RedisScriptCache redisScriptCache) {
+            lockSha = redisScriptCache.getRedisScript(RedisScriptsEnum.REDIS_LOCK, Long.class).getSha1();
+            unLockSha = redisScriptCache.getRedisScript(RedisScriptsEnum.REDIS_UN_LOCK, Long.class).getSha1();
+            renewSha = redisScriptCache.getRedisScript(RedisScriptsEnum.REDIS_LOCK_RENEW, Long.class).getSha1();
+        }
+
+        synchronized boolean exists(String key) {
+            return this.get(key) != null;
+        }
+
+        synchronized Object eval(String command, Object[] args) {
+            if(!"evalSha".equals(command)){
+                throw new UnsupportedOperationException(command);
+            }
+            String sha = args[0] instanceof byte[]
+                    ? new String((byte[]) args[0], StandardCharsets.UTF_8) : String.valueOf(args[0]);
+            byte[][] keysAndArgs = (byte[][]) args[3];
+            String key = new String(keysAndArgs[0], StandardCharsets.UTF_8);
+            int numKeys = (Integer) args[2];
+            String identifier = new String(keysAndArgs[numKeys], StandardCharsets.UTF_8);
+
+            Map<String, Long> hash = this.get(key);
+            if(lockSha.equals(sha)){
+                long expire = Long.parseLong(new String(keysAndArgs[numKeys + 1], StandardCharsets.UTF_8));
+                if(hash == null){
+                    hash = new HashMap<>();
+                    hash.put(identifier, 1L);
+                    hashes.put(key, hash);
+                    this.pexpire(key, expire);
+                    return 1L;
+                }
+                if(hash.containsKey(identifier)){
+                    hash.merge(identifier, 1L, Long::sum);
+                    this.pexpire(key, expire);
+                    return 1L;
+                }
+                return 0L;
+            }
+            if(unLockSha.equals(sha)){
+                if(hash != null && hash.containsKey(identifier)){
+                    hashes.remove(key);
+                    expireAt.remove(key);
+                    return 1L;
+                }
+                return 0L;
+            }
+            if(renewSha.equals(sha)){
+                if(hash != null && hash.containsKey(identifier)){
+                    long expire = Long.parseLong(new String(keysAndArgs[numKeys + 1], StandardCharsets.UTF_8));
+                    this.pexpire(key, expire);
+                    return 1L;
+                }
+                return 0L;
+            }
+            throw new UnsupportedOperationException("unknown script: " + sha);
+        }
+
+        private Map<String, Long> get(String key) {
+            Long expire = expireAt.get(key);
+            if(expire != null && expire <= System.currentTimeMillis()){
+                hashes.remove(key);
+                expireAt.remove(key);
+            }
+            return hashes.get(key);
+        }
+
+        private void pexpire(String key, long expire) {
+            expireAt.put(key, System.currentTimeMillis() + expire);
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+package org.opsli.plugins.redis.scripts;
+
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.crypto.SecureUtil;
+import org.junit.Assert;
+import org.junit.Test;
+import org.opsli.plugins.redis.RecordingRedisConnection;
+import org.opsli.plugins.redis.RedisPlugin;
+import org.opsli.plugins.redis.codec.CodecRedisSerializer;
+import org.opsli.plugins.redis.jsonserializer.FastJson2JsonRedisSerializer;
+import org.opsli.plugins.redis.scripts.enums.RedisScriptsEnum;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Redis 脚本 发送字节测试
+ *
+ * 通过录制连接 校验脚本调用走 EVALSHA (SHA1 预先计算) 仅 NOSCRIPT 时回退 EVAL
+ *
+ * @author Parker
+ * @date 2022-08-07 17:33
+ */
+public class RedisScriptWireTest {
+
+    private final RedisSerializer<Object> valueSerializer = new CodecRedisSerializer(
+            Collections.emptyList(), new FastJson2JsonRedisSerializer<>(Object.class), true);
+
+    @Test
+    public void evalSha(){
+        RedisScriptCache redisScriptCache = this.loadScripts();
+        String script = redisScriptCache.getScript(RedisScriptsEnum.REDIS_UN_LOCK);
+
+        RecordingRedisConnection connection = new RecordingRedisConnection((command, args) -> 1L);
+        RedisPlugin redisPlugin = connection.plugin(valueSerializer, redisScriptCache);
+
+        List<String> keys = Arrays.asList("lock:test", "listener:lock");
+        for (int i = 0; i < 3; i++) {
+            Long ret = redisPlugin.callScript(RedisScriptsEnum.REDIS_UN_LOCK, Long.class, keys, "identifier");
+            Assert.assertEquals(Long.valueOf(1L), ret);
+        }
+
+        // 每次调用 仅一条 EVALSHA 不发送脚本正文
+        List<RecordingRedisConnection.Call> calls = connection.getCalls();
+        Assert.assertEquals(3, calls.size());
+        for (RecordingRedisConnection.Call call : calls) {
+            Assert.assertEquals("evalSha", call.command);
+            Assert.assertEquals(SecureUtil.sha1(script), call.argAsString(0));
+            Assert.assertEquals(2, call.args[2]);
+
+            byte[][] keysAndArgs = (byte[][]) call.args[3];
+            Assert.assertEquals(3, keysAndArgs.length);
+            Assert.assertArrayEquals("lock:test".getBytes(StandardCharsets.UTF_8), keysAndArgs[0]);
+            Assert.assertArrayEquals("listener:lock".getBytes(StandardCharsets.UTF_8), keysAndArgs[1]);
+            // 参数 与 RedisTemplate 值序列化一致
+            Assert.assertArrayEquals(valueSerializer.serialize("identifier"), keysAndArgs[2]);
+        }
+    }
+
+    @Test
+    public void noScriptFallback(){
+        RedisScriptCache redisScriptCache = this.loadScripts();
+        String script = redisScriptCache.getScript(RedisScriptsEnum.REDIS_LOCK);
+
+        // 首次 EVALSHA 返回 NOSCRIPT
+        AtomicBoolean loaded = new AtomicBoolean(false);
+        RecordingRedisConnection connection = new RecordingRedisConnection((command, args) -> {
+            if("evalSha".equals(command) && !loaded.get()){
+                throw new InvalidDataAccessApiUsageException("NOSCRIPT No matching script. Please use EVAL.");
+            }
+            if("eval".equals(command)){
+                loaded.set(true);
+            }
+            return 1L;
+        });
+        RedisPlugin redisPlugin = connection.plugin(valueSerializer, redisScriptCache);
+
+        List<String> keys = Collections.singletonList("lock:test");
+        redisPlugin.callScript(RedisScriptsEnum.REDIS_LOCK, Long.class, keys, "identifier", 30000L);
+        redisPlugin.callScript(RedisScriptsEnum.REDIS_LOCK, Long.class, keys, "identifier", 30000L);
+
+        List<RecordingRedisConnection.Call> calls = connection.getCalls();
+        Assert.assertEquals(3, calls.size());
+        Assert.assertEquals("evalSha", calls.get(0).command);
+        // 回退 EVAL 发送脚本正文 (同时由 Redis 缓存脚本)
+        Assert.assertEquals("eval", calls.get(1).command);
+        Assert.assertEquals(script, calls.get(1).argAsString(0));
+        // 之后 恢复 EVALSHA
+        Assert.assertEquals("evalSha", calls.get(2).command);
+    }
+
+    @Test
+    public void resultTypeVariant(){
+        RedisScriptCache redisScriptCache = this.loadScripts();
+
+        RedisScript<Long> defScript = redisScriptCache.getRedisScript(RedisScriptsEnum.REDIS_LOCK, Long.class);
+        // 同一类型 复用同一实例 (SHA1 只计算一次)
+        Assert.assertSame(defScript, redisScriptCache.getRedisScript(RedisScriptsEnum.REDIS_LOCK, Long.class));
+
+        RedisScript<Object> objScript = redisScriptCache.getRedisScript(RedisScriptsEnum.REDIS_LOCK, Object.class);
+        Assert.assertEquals(defScript.getSha1(), objScript.getSha1());
+
+        // 重新放入脚本后 其他返回类型的变体 同步更新
+        String newScript = "return 1";
+        redisScriptCache.putScript(RedisScriptsEnum.REDIS_LOCK, newScript);
+        Assert.assertEquals(newScript,
+                redisScriptCache.getRedisScript(RedisScriptsEnum.REDIS_LOCK, Object.class).getScriptAsString());
+        Assert.assertEquals(SecureUtil.sha1(newScript),
+                redisScriptCache.getRedisScript(RedisScriptsEnum.REDIS_LOCK, Long.class).getSha1());
+        // 旧脚本的变体 已全部清除
+        Assert.assertTrue(redisScriptCache.getRedisScripts().stream()
+                .noneMatch(s -> s.getScriptAsString().equals(defScript.getScriptAsString())));
+    }
+
+    /**
+     * 与 RedisPluginConfig 相同 按脚本枚举加载
+     * @return RedisScriptCache
+     */
+    private RedisScriptCache loadScripts() {
+        RedisScriptCache redisScriptCache = new RedisScriptCache();
+        for (RedisScriptsEnum scriptEnum : RedisScriptsEnum.values()) {
+            String script = IoUtil.read(getClass().getResourceAsStream(scriptEnum.getPath()), StandardCharsets.UTF_8);
+            Assert.assertTrue(redisScriptCache.putScript(scriptEnum, script));
+        }
+        return redisScriptCache;
+    }
+
+}
@@ -5,6 +5,11 @@ import org.redisson.Redisson;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -87,6 +92,37 @@ public class RedissonLock {
         return getLock;
     }
 
+    /**
+     * 获得锁对象
+     *
+     * 多个锁名称时 按名称排序去重后 组合为 MultiLock
+     * 保证不同线程以相同顺序加锁 避免死锁
+     *
+     * @param lockNames 锁名称
+     * @return RLock
+     */
+    public RLock getLock(Collection<String> lockNames) {
+        List<RLock> locks = this.getLocks(lockNames);
+        if(locks.size() == 1){
+            return locks.get(0);
+        }
+        return redisson.getMultiLock(locks.toArray(new RLock[0]));
+    }
+
+    /**
+     * 获得锁对象集合 按名称排序去重
+     * @param lockNames 锁名称
+     * @return List
+     */
+    public List<RLock> getLocks(Collection<String> lockNames) {
+        TreeSet<String> sortedNames = new TreeSet<>(lockNames);
+        List<RLock> locks = new ArrayList<>(sortedNames.size());
+        for (String lockName : sortedNames) {
+            locks.add(redisson.getLock(PREFIX + lockName));
+        }
+        return locks;
+    }
+
     /**
      * 解锁
      * @param lockName  锁名称
@@ -5,6 +5,10 @@ import java.lang.annotation.*;
 /**
  * 基于注解的分布式式锁
  *
+ * 锁名称 = value + ":" + keys 计算结果
+ * keys 为 SpEL 表达式 基于方法参数计算 例: #model.id 、 #tenantId
+ * 表达式结果为集合或数组时 展开为多把锁 按名称排序后以 MultiLock 方式获取
+ *
  * @author xub
  * @date 2019/6/19 下午9:22
  */
@@ -19,10 +23,21 @@ public @interface DistributedLock {
      */
     String value() default "opsli:redisson";
 
+    /**
+     * 锁的Key (SpEL 表达式) 为空则只使用锁名称
+     */
+    String[] keys() default {};
+
     /**
      * 锁的有效时间
      */
     int leaseTime() default 10;
-}
-
 
+    /**
+     * 尝试获取锁的等待时间 (秒)
+     * 小于 0 则一直等待直到获得锁, 0 则获取失败立即返回 (快速失败)
+     * 多把锁且为 0 时 不使用 MultiLock 按锁名称排序逐个立即尝试 任一失败则释放已获得的锁
+     * 超过等待时间仍未获得锁时 抛出异常
+     */
+    int waitTime() default -1;
+}
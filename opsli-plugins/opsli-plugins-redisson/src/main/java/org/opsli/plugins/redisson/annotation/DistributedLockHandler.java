@@ -1,16 +1,37 @@
 package org.opsli.plugins.redisson.annotation;
 
 
+import cn.hutool.core.util.ArrayUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 
 
+import org.aspectj.lang.reflect.MethodSignature;
 import org.opsli.plugins.redisson.RedissonLock;
+import org.opsli.plugins.redisson.exception.RedissonPluginException;
+import org.opsli.plugins.redisson.msg.RedissonMsg;
+import org.redisson.RedissonMultiLock;
+import org.redisson.api.RLock;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.stereotype.Component;
 
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
 
 /**
  * Redisson分布式锁注解解析器
@@ -23,37 +44,164 @@ import org.springframework.stereotype.Component;
 @Slf4j
 public class DistributedLockHandler {
 
+    /** 锁名称分隔符 */
+    private static final String SEPARATOR = ":";
+
+    /** SpEL 解析器 */
+    private static final ExpressionParser PARSER = new SpelExpressionParser();
+
+    /** 参数名称获取 */
+    private static final ParameterNameDiscoverer NAME_DISCOVERER = new DefaultParameterNameDiscoverer();
+
+    /** 表达式缓存 */
+    private static final Map<String, Expression> EXPRESSION_CACHE = new ConcurrentHashMap<>();
+
     @Autowired(required = false)
     private RedissonLock redissonLock;
 
     @Around("@annotation(distributedLock)")
     public Object around(ProceedingJoinPoint joinPoint, DistributedLock distributedLock) throws Throwable {
-        Object returnValue = null;
-
-        if(redissonLock != null){
-            log.info("[开始]执行RedisLock环绕通知,获取Redis分布式锁开始");
-            //获取锁名称
-            String lockName = distributedLock.value();
-            //获取超时时间，默认10秒
-            int leaseTime = distributedLock.leaseTime();
-            redissonLock.lock(lockName, leaseTime);
-            try {
-                log.info("获取Redis分布式锁[成功]，加锁完成，开始执行业务逻辑...");
-                returnValue = joinPoint.proceed();
-            } catch (Throwable throwable) {
-                log.error("获取Redis分布式锁[异常]，加锁失败", throwable);
-                throwable.printStackTrace();
-            } finally {
-                //如果该线程还持有该锁，那么释放该锁。如果该线程不持有该锁，说明该线程的锁已到过期时间，自动释放锁
-                if (redissonLock.isHeldByCurrentThread(lockName)) {
-                    redissonLock.unlock(lockName);
-                }
+        if(redissonLock == null){
+            return joinPoint.proceed();
+        }
+
+        log.info("[开始]执行RedisLock环绕通知,获取Redis分布式锁开始");
+        //获取锁名称
+        List<String> lockNames = this.getLockNames(joinPoint, distributedLock);
+        //获取超时时间，默认10秒
+        int leaseTime = distributedLock.leaseTime();
+        int waitTime = distributedLock.waitTime();
+
+        List<RLock> acquiredLocks;
+        if(waitTime < 0){
+            RLock rLock = redissonLock.getLock(lockNames);
+            rLock.lock(leaseTime, TimeUnit.SECONDS);
+            acquiredLocks = Collections.singletonList(rLock);
+        }else if(waitTime == 0){
+            // MultiLock 的 tryLock(0, ...) 剩余等待时间恒为 0 多把锁时必定失败
+            // 快速失败 按排序逐个尝试 任一失败则释放已获得的锁
+            acquiredLocks = redissonLock.getLocks(lockNames);
+            if(!this.tryLockImmediately(acquiredLocks, leaseTime)){
+                log.info("获取Redis分布式锁[失败]，锁名称: {}", lockNames);
+                throw new RedissonPluginException(RedissonMsg.EXCEPTION_LOCK_FAIL);
             }
-            log.info("释放Redis分布式锁[成功]，解锁完成，结束业务逻辑...");
         }else {
-            returnValue = joinPoint.proceed();
+            RLock rLock = redissonLock.getLock(lockNames);
+            boolean isLock = rLock.tryLock(waitTime, leaseTime, TimeUnit.SECONDS);
+            if(!isLock){
+                log.info("获取Redis分布式锁[失败]，锁名称: {}", lockNames);
+                throw new RedissonPluginException(RedissonMsg.EXCEPTION_LOCK_FAIL);
+            }
+            acquiredLocks = Collections.singletonList(rLock);
         }
 
-        return returnValue;
+        try {
+            log.info("获取Redis分布式锁[成功]，加锁完成，开始执行业务逻辑...");
+            return joinPoint.proceed();
+        } finally {
+            this.unlock(acquiredLocks);
+            log.info("释放Redis分布式锁[成功]，解锁完成，结束业务逻辑...");
+        }
+    }
+
+    /**
+     * 立即尝试获取全部锁 (不等待)
+     * 任一锁获取失败 按获取的逆序释放已获得的锁
+     * @param locks 已排序的锁
+     * @param leaseTime 锁有效时间 (秒)
+     * @return boolean
+     */
+    private boolean tryLockImmediately(List<RLock> locks, int leaseTime) throws InterruptedException {
+        List<RLock> acquired = new ArrayList<>(locks.size());
+        boolean success = false;
+        try {
+            for (RLock rLock : locks) {
+                if(!rLock.tryLock(0, leaseTime, TimeUnit.SECONDS)){
+                    return false;
+                }
+                acquired.add(rLock);
+            }
+            success = true;
+            return true;
+        } finally {
+            if(!success){
+                this.unlock(acquired);
+            }
+        }
+    }
+
+    /**
+     * 按获取的逆序 释放锁
+     * @param locks 锁
+     */
+    private void unlock(List<RLock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            this.unlock(locks.get(i));
+        }
+    }
+
+    /**
+     * 释放锁
+     * 如果该线程还持有该锁，那么释放该锁。如果该线程不持有该锁，说明该线程的锁已到过期时间，自动释放锁
+     * @param rLock 锁
+     */
+    private void unlock(RLock rLock) {
+        try {
+            // MultiLock 不支持 isHeldByCurrentThread 由各子锁自行判断
+            if (rLock instanceof RedissonMultiLock || rLock.isHeldByCurrentThread()) {
+                rLock.unlock();
+            }
+        }catch (IllegalMonitorStateException e){
+            log.warn("释放Redis分布式锁[失败]，锁已过期: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 获得锁名称
+     * @param joinPoint 切点
+     * @param distributedLock 注解
+     * @return List
+     */
+    private List<String> getLockNames(ProceedingJoinPoint joinPoint, DistributedLock distributedLock) {
+        String prefix = distributedLock.value();
+        List<String> lockNames = new ArrayList<>();
+        if(ArrayUtil.isEmpty(distributedLock.keys())){
+            lockNames.add(prefix);
+            return lockNames;
+        }
+
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        MethodBasedEvaluationContext context = new MethodBasedEvaluationContext(
+                null, method, joinPoint.getArgs(), NAME_DISCOVERER);
+        for (String key : distributedLock.keys()) {
+            Expression expression = EXPRESSION_CACHE.computeIfAbsent(key, PARSER::parseExpression);
+            this.appendLockNames(lockNames, prefix, expression.getValue(context));
+        }
+        if(lockNames.isEmpty()){
+            throw new RedissonPluginException(RedissonMsg.EXCEPTION_LOCK_KEY_NULL);
+        }
+        return lockNames;
+    }
+
+    /**
+     * 追加锁名称 集合或数组 展开为多把锁
+     */
+    private void appendLockNames(List<String> lockNames, String prefix, Object value) {
+        if(value == null){
+            throw new RedissonPluginException(RedissonMsg.EXCEPTION_LOCK_KEY_NULL);
+        }
+        if(value instanceof Collection){
+            for (Object item : (Collection<?>) value) {
+                this.appendLockNames(lockNames, prefix, item);
+            }
+            return;
+        }
+        if(value.getClass().isArray()){
+            for (Object item : ArrayUtil.wrap(value)) {
+                this.appendLockNames(lockNames, prefix, item);
+            }
+            return;
+        }
+        lockNames.add(prefix + SEPARATOR + value);
     }
 }
@@ -0,0 +1,21 @@
+package org.opsli.plugins.redisson.exception;
+
+import org.opsli.common.base.msg.BaseMsg;
+import org.opsli.common.exception.ServiceException;
+
+/**
+ * Redisson 异常
+ *
+ * @author Parker
+ * @date 2020-09-17 23:40
+ */
+public class RedissonPluginException extends ServiceException {
+
+    public RedissonPluginException(Integer code, String errorMessage) {
+        super(code, errorMessage);
+    }
+
+    public RedissonPluginException(BaseMsg msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,35 @@
+package org.opsli.plugins.redisson.msg;
+
+import org.opsli.common.base.msg.BaseMsg;
+
+/**
+ * Redisson 消息
+ *
+ * @author Parker
+ * @date 2020-09-17 23:40
+ */
+public enum RedissonMsg implements BaseMsg {
+
+    /** 分布式锁 */
+    EXCEPTION_LOCK_FAIL(90600, "操作频繁，请稍后再试！"),
+    EXCEPTION_LOCK_KEY_NULL(90601, "分布式锁 Key 不可为空！"),
+    ;
+
+    private final int code;
+    private final String message;
+
+    RedissonMsg(int code, String message){
+        this.code = code;
+        this.message = message;
+    }
+
+    @Override
+    public Integer getCode() {
+        return this.code;
+    }
+
+    @Override
+    public String getMessage() {
+        return this.message;
+    }
+}
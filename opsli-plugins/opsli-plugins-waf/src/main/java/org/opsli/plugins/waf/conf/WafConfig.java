@@ -16,6 +16,7 @@
 package org.opsli.plugins.waf.conf;
 
 import cn.hutool.core.convert.Convert;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.opsli.plugins.waf.filter.WafFilter;
 import org.opsli.plugins.waf.properties.WafProperties;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -58,4 +59,14 @@ public class WafConfig {
 		return registration;
 	}
 
+	/**
+	 * 防火墙 指标
+	 * @param wafFilterRegistration 防火墙注册
+	 * @return MeterBinder
+	 */
+	@Bean
+	public MeterBinder wafFilterMetrics(FilterRegistrationBean<WafFilter> wafFilterRegistration) {
+		return wafFilterRegistration.getFilter();
+	}
+
 }
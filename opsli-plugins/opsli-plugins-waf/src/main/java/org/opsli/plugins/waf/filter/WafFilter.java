@@ -17,6 +17,10 @@ package org.opsli.plugins.waf.filter;
 
 
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
 import org.opsli.plugins.waf.servlet.WafHttpServletRequestWrapper;
 
 import javax.servlet.*;
@@ -27,16 +31,24 @@ import java.util.Set;
 /**
  * 防火墙
  *
+ * 每个请求的 过滤次数 与 过滤字符数 记录为 Micrometer 分布统计 (opsli.waf.filter.count / opsli.waf.filter.length)
+ *
  * @author Parker
  * @date 2020-10-09
  */
-public class WafFilter implements Filter {
+@Slf4j
+public class WafFilter implements Filter, MeterBinder {
 
 	private boolean enableXssFilter = false;
 	private boolean enableSqlFilter = false;
 
 	private Set<String> urlExclusion;
 
+	/** 每个请求 过滤次数 */
+	private volatile DistributionSummary filterCountSummary;
+	/** 每个请求 过滤字符数 */
+	private volatile DistributionSummary filterLengthSummary;
+
 
 	@Override
 	public void init(FilterConfig config) {
@@ -54,9 +66,24 @@ public class WafFilter implements Filter {
 			chain.doFilter(request, response);
 		} else {
 			// 执行过滤
-			chain.doFilter(
-					new WafHttpServletRequestWrapper((HttpServletRequest) request, enableXssFilter, enableSqlFilter),
-					response);
+			WafHttpServletRequestWrapper wafRequest =
+					new WafHttpServletRequestWrapper((HttpServletRequest) request, enableXssFilter, enableSqlFilter);
+			try {
+				chain.doFilter(wafRequest, response);
+			} finally {
+				DistributionSummary countSummary = filterCountSummary;
+				if (countSummary != null) {
+					countSummary.record(wafRequest.getFilterCount());
+				}
+				DistributionSummary lengthSummary = filterLengthSummary;
+				if (lengthSummary != null) {
+					lengthSummary.record(wafRequest.getFilterLength());
+				}
+				if (log.isDebugEnabled()) {
+					log.debug("防火墙过滤 - 请求: {} 过滤次数: {} 过滤字符数: {}",
+							servletPath, wafRequest.getFilterCount(), wafRequest.getFilterLength());
+				}
+			}
 		}
 	}
 
@@ -64,6 +91,17 @@ public class WafFilter implements Filter {
 	public void destroy() {
 	}
 
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		filterCountSummary = DistributionSummary.builder("opsli.waf.filter.count")
+				.description("防火墙 每个请求过滤次数")
+				.register(registry);
+		filterLengthSummary = DistributionSummary.builder("opsli.waf.filter.length")
+				.description("防火墙 每个请求过滤字符数")
+				.baseUnit("chars")
+				.register(registry);
+	}
+
 	// ============================
 
 
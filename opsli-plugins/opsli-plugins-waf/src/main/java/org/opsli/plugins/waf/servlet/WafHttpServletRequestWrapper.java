@@ -18,8 +18,7 @@ package org.opsli.plugins.waf.servlet;
 import com.google.common.collect.Lists;
 import lombok.extern.slf4j.Slf4j;
 import org.opsli.common.constants.TokenConstants;
-import org.opsli.plugins.waf.util.SQLFilterKit;
-import org.opsli.plugins.waf.util.XSSFilterKit;
+import org.opsli.plugins.waf.util.WafScanner;
 import org.springframework.util.StreamUtils;
 import org.springframework.util.StringUtils;
 
@@ -29,7 +28,8 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -64,6 +64,18 @@ public class WafHttpServletRequestWrapper extends HttpServletRequestWrapper {
 	/** SQL 攻击防护 */
 	private final boolean enableSqlFilter;
 
+	/** 已过滤参数名缓存 (请求生命周期内有效) */
+	private final Map<String, String> paramNameCache = new HashMap<>();
+	/** 已过滤参数值缓存 */
+	private final Map<String, String[]> paramValuesCache = new HashMap<>();
+	/** 已过滤头信息缓存 */
+	private final Map<String, String> headerCache = new HashMap<>();
+
+	/** 过滤次数 */
+	private int filterCount;
+	/** 过滤字符数 (请求体 按 UTF-8 解码后的字符计) */
+	private long filterLength;
+
 	public WafHttpServletRequestWrapper(HttpServletRequest request, boolean enableXssFilter, boolean enableSqlFilter) {
 		super(request);
 		orgRequest = request;
@@ -85,19 +97,21 @@ public class WafHttpServletRequestWrapper extends HttpServletRequestWrapper {
 		}
 
 		// 为空，直接返回
-		String json = StreamUtils.copyToString(super.getInputStream(), StandardCharsets.UTF_8);
-		if (StringUtils.isEmpty(json)) {
+		byte[] body = StreamUtils.copyToByteArray(super.getInputStream());
+		if (body.length == 0) {
 			return super.getInputStream();
 		}
 
-		// 防火墙过滤
-		json = filterParamString(json);
-		ByteArrayInputStream bis = new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+		// 防火墙过滤 直接扫描字节流 未命中时原样返回
+		filterCount++;
+		filterLength += countUtf8Chars(body);
+		body = WafScanner.filter(body, this.enableXssFilter, this.enableSqlFilter);
+		ByteArrayInputStream bis = new ByteArrayInputStream(body);
 
 		return new ServletInputStream() {
 			@Override
 			public boolean isFinished() {
-				return true;
+				return bis.available() == 0;
 			}
 
 			@Override
@@ -113,67 +127,69 @@ public class WafHttpServletRequestWrapper extends HttpServletRequestWrapper {
 			public int read() {
 				return bis.read();
 			}
+
+			@Override
+			public int read(byte[] b, int off, int len) {
+				return bis.read(b, off, len);
+			}
 		};
 	}
 
 
 	@Override
 	public String getParameter(String name) {
-		String value = super.getParameter(filterParamString(name));
-		if (!StringUtils.isEmpty(value) && !TokenConstants.ACCESS_TOKEN.equals(name)) {
-			// 防火墙过滤
-			value = filterParamString(value);
-		}
-		return value;
+		String[] values = getFilteredValues(name, getFilteredName(name));
+		return values == null || values.length == 0 ? null : values[0];
 	}
 
 	@Override
 	public String[] getParameterValues(String name) {
-		String[] parameters = super.getParameterValues(name);
-		if (parameters == null || parameters.length == 0) {
+		String[] values = getFilteredValues(name, name);
+		if (values == null || values.length == 0) {
 			return null;
 		}
-
-		for (int i = 0; i < parameters.length; i++) {
-			if (!TokenConstants.ACCESS_TOKEN.equals(name)) {
-				if(parameters[i] != null){
-					// 防火墙过滤
-					parameters[i] = filterParamString(parameters[i]);
-				}
-			}
-		}
-		return parameters;
+		// 返回副本 防止调用方修改缓存
+		return values.clone();
 	}
 
 	@Override
 	public Map<String, String[]> getParameterMap() {
 		Map<String, String[]> map = new LinkedHashMap<>();
-		Map<String, String[]> parameters = super.getParameterMap();
-		for (String key : parameters.keySet()) {
-			String[] values = parameters.get(key);
-			if (!TokenConstants.ACCESS_TOKEN.equals(key)) {
-				for (int i = 0; i < values.length; i++) {
-					if(values[i] != null){
-						// 防火墙过滤
-						values[i] = filterParamString(values[i]);
-					}
-				}
-			}
-			map.put(key, values);
+		for (String key : super.getParameterMap().keySet()) {
+			String[] values = getFilteredValues(key, key);
+			// 返回副本 防止调用方修改缓存
+			map.put(key, values == null ? null : values.clone());
 		}
-		return map;
+		return Collections.unmodifiableMap(map);
 	}
 
 	@Override
 	public String getHeader(String name) {
-		String value = super.getHeader(filterParamString(name));
+		if (headerCache.containsKey(name)) {
+			return headerCache.get(name);
+		}
+		String value = super.getHeader(getFilteredName(name));
 		if (!StringUtils.isEmpty(value) && !TokenConstants.ACCESS_TOKEN.equals(name)) {
 			// 防火墙过滤
 			value = filterParamString(value);
 		}
+		headerCache.put(name, value);
 		return value;
 	}
 
+	/**
+	 * 获取过滤次数
+	 */
+	public int getFilterCount() {
+		return filterCount;
+	}
+
+	/**
+	 * 获取过滤字符数
+	 */
+	public long getFilterLength() {
+		return filterLength;
+	}
 
 	/**
 	 * 获取最原始的request
@@ -201,14 +217,74 @@ public class WafHttpServletRequestWrapper extends HttpServletRequestWrapper {
 		if (StringUtils.isEmpty(rawValue)) {
 			return rawValue;
 		}
-		String tmpStr = rawValue;
-		if (this.enableXssFilter) {
-			tmpStr = XSSFilterKit.stripXSS(rawValue);
+		filterCount++;
+		filterLength += rawValue.length();
+		return WafScanner.filter(rawValue, this.enableXssFilter, this.enableSqlFilter);
+	}
+
+	/**
+	 * 获取过滤后的参数名 (缓存)
+	 * @param name 参数名
+	 * @return String
+	 */
+	private String getFilteredName(String name) {
+		if (name == null) {
+			return null;
+		}
+		String filteredName = paramNameCache.get(name);
+		if (filteredName == null) {
+			filteredName = filterParamString(name);
+			paramNameCache.put(name, filteredName);
+		}
+		return filteredName;
+	}
+
+	/**
+	 * 获取过滤后的参数值 (缓存)
+	 * 拷贝原数组后过滤 不修改容器内的原始参数
+	 * Token 豁免 按调用方传入的原始参数名判断
+	 * @param originalName 调用方传入的参数名
+	 * @param name 实际查找的参数名
+	 * @return String[]
+	 */
+	private String[] getFilteredValues(String originalName, String name) {
+		if (TokenConstants.ACCESS_TOKEN.equals(originalName)) {
+			return super.getParameterValues(name);
+		}
+		if (paramValuesCache.containsKey(name)) {
+			return paramValuesCache.get(name);
+		}
+		String[] values = super.getParameterValues(name);
+		if (values != null) {
+			values = values.clone();
+			for (int i = 0; i < values.length; i++) {
+				if(values[i] != null){
+					// 防火墙过滤
+					values[i] = filterParamString(values[i]);
+				}
+			}
 		}
-		if (this.enableSqlFilter) {
-			tmpStr = XSSFilterKit.stripXSS(
-					SQLFilterKit.stripSQL(tmpStr));
+		paramValuesCache.put(name, values);
+		return values;
+	}
+
+	/**
+	 * 统计 UTF-8 字节流中的字符数 (UTF-16 单元) 与 String.length() 计数单位保持一致
+	 * @param bytes 字节流
+	 * @return long
+	 */
+	private static long countUtf8Chars(byte[] bytes) {
+		long count = 0;
+		for (byte b : bytes) {
+			// 跳过 多字节字符的后续字节 (10xxxxxx)
+			if ((b & 0xC0) != 0x80) {
+				count++;
+			}
+			// 四字节字符 对应 两个 UTF-16 单元
+			if ((b & 0xF8) == 0xF0) {
+				count++;
+			}
 		}
-		return tmpStr;
+		return count;
 	}
 }
@@ -0,0 +1,294 @@
+/**
+ * Copyright 2020 OPSLI 快速开发平台 https://www.opsli.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.opsli.plugins.waf.util;
+
+import org.opsli.common.exception.WafException;
+import org.opsli.plugins.waf.msg.WafMsg;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * 防火墙 单次扫描器
+ *
+ * 基于 Aho-Corasick 自动机 一次遍历 同时匹配 XSS 与 SQL 关键字 (ASCII 忽略大小写)
+ * 可直接扫描 字节流 (UTF-8 多字节字符 不会命中 ASCII 关键字) 无需先转换为字符串
+ *
+ * 未命中任何关键字时 原样返回 不产生任何拷贝
+ * 命中时 回退到 XSSFilterKit / SQLFilterKit 处理 保证过滤结果与原有逻辑完全一致
+ *
+ * @author Parker
+ * @date 2020-10-09
+ */
+public final class WafScanner {
+
+	/** 关键字类型 XSS */
+	private static final int TYPE_XSS = 1;
+	/** 关键字类型 SQL */
+	private static final int TYPE_SQL = 1 << 1;
+
+	/** 扫描结果 原文命中 XSS */
+	private static final int HIT_RAW_XSS = 1;
+	/** 扫描结果 去除SQL字符后 命中 XSS */
+	private static final int HIT_STRIPPED_XSS = 1 << 1;
+	/** 扫描结果 去除SQL字符后 命中 SQL */
+	private static final int HIT_STRIPPED_SQL = 1 << 2;
+	/** 扫描结果 SQL 过滤需要改写 (包含需去除字符 或 大写字符) */
+	private static final int NEED_SQL_REWRITE = 1 << 3;
+
+	/** XSS 触发关键字 (为 XSSFilterKit 中正则的必要前缀) */
+	private static final String[] XSS_KEYWORDS = {
+			"<script", "</script>", "eval(", "expression(", "javascript:", "vbscript:", "onload"
+	};
+
+	/** SQL 关键字 (与 SQLFilterKit 保持一致) */
+	private static final String[] SQL_KEYWORDS = {
+			"master", "truncate", "insert", "select", "delete", "update", "declare", "alter", "drop"
+	};
+
+	/** 字母表大小 (ASCII) */
+	private static final int ALPHABET = 128;
+
+	/** 状态转移表 */
+	private static final int[][] GOTO;
+	/** 状态输出 (关键字类型) */
+	private static final int[] OUTPUT;
+
+	static {
+		// 构建 Trie
+		int maxStates = 1;
+		for (String keyword : XSS_KEYWORDS) {
+			maxStates += keyword.length();
+		}
+		for (String keyword : SQL_KEYWORDS) {
+			maxStates += keyword.length();
+		}
+
+		int[][] gotoTable = new int[maxStates][];
+		int[] output = new int[maxStates];
+		gotoTable[0] = newRow();
+		int stateCount = 1;
+
+		String[][] keywordGroups = {XSS_KEYWORDS, SQL_KEYWORDS};
+		int[] keywordTypes = {TYPE_XSS, TYPE_SQL};
+		for (int g = 0; g < keywordGroups.length; g++) {
+			for (String keyword : keywordGroups[g]) {
+				int state = 0;
+				for (int i = 0; i < keyword.length(); i++) {
+					int c = keyword.charAt(i);
+					if (gotoTable[state][c] < 0) {
+						gotoTable[stateCount] = newRow();
+						gotoTable[state][c] = stateCount++;
+					}
+					state = gotoTable[state][c];
+				}
+				output[state] |= keywordTypes[g];
+			}
+		}
+
+		// BFS 构建失败指针 并压缩为 完整转移表
+		int[] fail = new int[stateCount];
+		Deque<Integer> queue = new ArrayDeque<>();
+		for (int c = 0; c < ALPHABET; c++) {
+			int next = gotoTable[0][c];
+			if (next < 0) {
+				gotoTable[0][c] = 0;
+			} else {
+				fail[next] = 0;
+				queue.add(next);
+			}
+		}
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			output[state] |= output[fail[state]];
+			for (int c = 0; c < ALPHABET; c++) {
+				int next = gotoTable[state][c];
+				if (next < 0) {
+					gotoTable[state][c] = gotoTable[fail[state]][c];
+				} else {
+					fail[next] = gotoTable[fail[state]][c];
+					queue.add(next);
+				}
+			}
+		}
+
+		GOTO = Arrays.copyOf(gotoTable, stateCount);
+		OUTPUT = Arrays.copyOf(output, stateCount);
+	}
+
+	/**
+	 * 过滤字符串
+	 * @param value 原值
+	 * @param enableXss XSS 过滤
+	 * @param enableSql SQL 过滤
+	 * @return 过滤后的值 (未命中时为原值)
+	 */
+	public static String filter(String value, boolean enableXss, boolean enableSql) {
+		if (value == null || value.isEmpty() || (!enableXss && !enableSql)) {
+			return value;
+		}
+
+		int rawState = 0;
+		int strippedState = 0;
+		int hits = 0;
+		for (int i = 0, len = value.length(); i < len; i++) {
+			char c = value.charAt(i);
+			int symbol = toSymbol(c);
+			rawState = GOTO[rawState][symbol];
+			hits |= (OUTPUT[rawState] & TYPE_XSS) != 0 ? HIT_RAW_XSS : 0;
+
+			if (enableSql) {
+				if (isSqlStripChar(c)) {
+					hits |= NEED_SQL_REWRITE;
+					continue;
+				}
+				if (Character.toLowerCase(c) != c) {
+					hits |= NEED_SQL_REWRITE;
+				}
+				strippedState = GOTO[strippedState][symbol];
+				hits |= toStrippedHits(OUTPUT[strippedState]);
+			}
+		}
+
+		return handleHits(value, hits, enableXss, enableSql);
+	}
+
+	/**
+	 * 过滤字节流 (UTF-8)
+	 * @param body 原始字节
+	 * @param enableXss XSS 过滤
+	 * @param enableSql SQL 过滤
+	 * @return 过滤后的字节 (未命中时为原数组)
+	 */
+	public static byte[] filter(byte[] body, boolean enableXss, boolean enableSql) {
+		if (body == null || body.length == 0 || (!enableXss && !enableSql)) {
+			return body;
+		}
+
+		int rawState = 0;
+		int strippedState = 0;
+		int hits = 0;
+		for (byte b : body) {
+			int symbol = toSymbol(b);
+			rawState = GOTO[rawState][symbol];
+			hits |= (OUTPUT[rawState] & TYPE_XSS) != 0 ? HIT_RAW_XSS : 0;
+
+			if (enableSql) {
+				// 非 ASCII 与 大写字符 需要 toLowerCase 统一交由字符串处理
+				if (isSqlStripChar((char) b) || b < 0 || (b >= 'A' && b <= 'Z')) {
+					hits |= NEED_SQL_REWRITE;
+					if (isSqlStripChar((char) b)) {
+						continue;
+					}
+				}
+				strippedState = GOTO[strippedState][symbol];
+				hits |= toStrippedHits(OUTPUT[strippedState]);
+			}
+		}
+
+		if (hits == 0) {
+			return body;
+		}
+		String value = new String(body, StandardCharsets.UTF_8);
+		String filtered = handleHits(value, hits, enableXss, enableSql);
+		return filtered == null ? new byte[0] : filtered.getBytes(StandardCharsets.UTF_8);
+	}
+
+	// ====================
+
+	/**
+	 * 处理命中结果
+	 */
+	private static String handleHits(String value, int hits, boolean enableXss, boolean enableSql) {
+		if (hits == 0) {
+			return value;
+		}
+
+		// 命中 XSS 回退到原有过滤逻辑
+		if ((enableXss && (hits & HIT_RAW_XSS) != 0) || (hits & HIT_STRIPPED_XSS) != 0) {
+			return filterByKit(value, enableXss, enableSql);
+		}
+
+		// 命中 SQL 关键字
+		if ((hits & HIT_STRIPPED_SQL) != 0) {
+			throw new WafException(WafMsg.WAF_EXCEPTION_SQL);
+		}
+
+		// SQL 改写 (去除字符 + 小写) 此时已确认 不含任何关键字
+		if (enableSql && (hits & NEED_SQL_REWRITE) != 0) {
+			String stripped = SQLFilterKit.stripSQL(value);
+			// 与 XSSFilterKit.stripXSS 保持一致 空串返回 null
+			return stripped == null || stripped.isEmpty() ? null : stripped;
+		}
+		return value;
+	}
+
+	/**
+	 * 原有过滤逻辑
+	 */
+	private static String filterByKit(String value, boolean enableXss, boolean enableSql) {
+		String tmpStr = value;
+		if (enableXss) {
+			tmpStr = XSSFilterKit.stripXSS(value);
+		}
+		if (enableSql) {
+			tmpStr = XSSFilterKit.stripXSS(
+					SQLFilterKit.stripSQL(tmpStr));
+		}
+		return tmpStr;
+	}
+
+	private static int toStrippedHits(int output) {
+		int hits = 0;
+		if ((output & TYPE_XSS) != 0) {
+			hits |= HIT_STRIPPED_XSS;
+		}
+		if ((output & TYPE_SQL) != 0) {
+			hits |= HIT_STRIPPED_SQL;
+		}
+		return hits;
+	}
+
+	/**
+	 * SQL 过滤 需去除的字符
+	 */
+	private static boolean isSqlStripChar(char c) {
+		return c == '\'' || c == ';' || c == '\\';
+	}
+
+	/**
+	 * 字符 转换为 字母表符号 ASCII 忽略大小写 非 ASCII 统一为 0
+	 */
+	private static int toSymbol(int c) {
+		if (c < 0 || c >= ALPHABET) {
+			return 0;
+		}
+		if (c >= 'A' && c <= 'Z') {
+			return c + ('a' - 'A');
+		}
+		return c;
+	}
+
+	private static int[] newRow() {
+		int[] row = new int[ALPHABET];
+		Arrays.fill(row, -1);
+		return row;
+	}
+
+	private WafScanner(){}
+}
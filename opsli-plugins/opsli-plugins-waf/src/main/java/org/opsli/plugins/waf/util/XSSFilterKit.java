@@ -67,11 +67,8 @@ public final class XSSFilterKit {
 			// avoid encoded attacks.
 			// value = ESAPI.encoder().canonicalize(value);
 
-			// Avoid null characters
-			rlt = value.replaceAll("", "");
-
 			// Avoid anything between script tags
-			rlt = SCRIPT_ALL_PATTERN.matcher(rlt).replaceAll("");
+			rlt = SCRIPT_ALL_PATTERN.matcher(value).replaceAll("");
 
 			// Avoid anything in a src='...' type of expression
 			/*scriptPattern = Pattern.compile("src[\r\n]*=[\r\n]*\\\'(.*?)\\\'", Pattern.CASE_INSENSITIVE
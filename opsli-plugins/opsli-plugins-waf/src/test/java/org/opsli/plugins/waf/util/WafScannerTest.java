@@ -0,0 +1,134 @@
+package org.opsli.plugins.waf.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.opsli.common.exception.WafException;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * 防火墙 单次扫描器 等价性测试
+ *
+ * 随机生成 (固定种子) 含 XSS/SQL 关键字、大小写、SQL 去除字符、非 ASCII 字符 的输入
+ * 校验 WafScanner 与原有 XSSFilterKit / SQLFilterKit 过滤链 结果完全一致 (含 SQL 小写/去除字符 改写)
+ *
+ * @author Parker
+ * @date 2020-10-09
+ */
+public class WafScannerTest {
+
+    /** 随机用例数 */
+    private static final int CASES = 20_000;
+
+    /** 随机片段 */
+    private static final String[] FRAGMENTS = {
+            "<script>", "</script>", "<script src=x>", "<SCRIPT", "eval(", "EvAl(", "expression(", ")",
+            "javascript:", "JavaScript:", "vbscript:", "onload", "OnLoad", "=",
+            "master", "truncate", "insert", "select", "delete", "update", "declare", "alter", "drop",
+            "SeLeCt", "DROP", "sel", "ect", "up", "date", "ins", "ert",
+            "'", ";", "\\", "\"", "|",
+            "a", "b", "Z", " ", "\n", "0", "中", "é", "İ", "{\"name\":", "}"
+    };
+
+    /** 原值 标记 (用于区分 抛出异常) */
+    private static final String EXCEPTION = "<WafException>";
+
+    @Test
+    public void stringEquivalence(){
+        Random random = new Random(20201009L);
+        for (int i = 0; i < CASES; i++) {
+            String value = randomValue(random);
+            for (int flags = 1; flags < 4; flags++) {
+                boolean enableXss = (flags & 1) != 0;
+                boolean enableSql = (flags & 2) != 0;
+                Assert.assertEquals("value: " + value + ", xss: " + enableXss + ", sql: " + enableSql,
+                        legacy(value, enableXss, enableSql), scan(value, enableXss, enableSql));
+            }
+        }
+    }
+
+    @Test
+    public void bytesEquivalence(){
+        Random random = new Random(20230426L);
+        for (int i = 0; i < CASES; i++) {
+            String value = randomValue(random);
+            if(value.isEmpty()){
+                continue;
+            }
+            for (int flags = 1; flags < 4; flags++) {
+                boolean enableXss = (flags & 1) != 0;
+                boolean enableSql = (flags & 2) != 0;
+                String expected = legacy(value, enableXss, enableSql);
+                // 原有逻辑 过滤结果为 null 时 请求体为空
+                if(null == expected){
+                    expected = "";
+                }
+                Assert.assertEquals("value: " + value + ", xss: " + enableXss + ", sql: " + enableSql,
+                        expected, scanBytes(value, enableXss, enableSql));
+            }
+        }
+    }
+
+    @Test
+    public void sqlRewrite(){
+        // 无关键字 仅大写与去除字符 走 NEED_SQL_REWRITE 改写
+        Assert.assertEquals("abc", WafScanner.filter("A'B;C\\", false, true));
+        Assert.assertNull(WafScanner.filter("';\\", false, true));
+        // 未命中 原样返回
+        String value = "abc";
+        Assert.assertSame(value, WafScanner.filter(value, true, true));
+    }
+
+    // ====================
+
+    private static String randomValue(Random random) {
+        int count = random.nextInt(8);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+        }
+        return sb.toString();
+    }
+
+    private static String scan(String value, boolean enableXss, boolean enableSql) {
+        try {
+            return WafScanner.filter(value, enableXss, enableSql);
+        }catch (WafException e){
+            return EXCEPTION;
+        }
+    }
+
+    private static String scanBytes(String value, boolean enableXss, boolean enableSql) {
+        try {
+            return new String(WafScanner.filter(value.getBytes(StandardCharsets.UTF_8), enableXss, enableSql),
+                    StandardCharsets.UTF_8);
+        }catch (WafException e){
+            return EXCEPTION;
+        }
+    }
+
+    /**
+     * 原有过滤链 (WafHttpServletRequestWrapper.filterParamString)
+     */
+    private static String legacy(String value, boolean enableXss, boolean enableSql) {
+        if (StringUtils.isEmpty(value)) {
+            return value;
+        }
+        try {
+            String tmpStr = value;
+            if (enableXss) {
+                tmpStr = XSSFilterKit.stripXSS(value);
+            }
+            if (enableSql) {
+                tmpStr = XSSFilterKit.stripXSS(
+                        SQLFilterKit.stripSQL(tmpStr));
+            }
+            return tmpStr;
+        }catch (WafException e){
+            return EXCEPTION;
+        }
+    }
+
+}